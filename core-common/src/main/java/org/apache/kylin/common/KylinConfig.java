@@ -56,7 +56,7 @@ public class KylinConfig extends KylinConfigBase {
     public static final String KYLIN_CONF = "KYLIN_CONF";
 
     // static cached instances
-    private static KylinConfig ENV_INSTANCE = null;
+    private static volatile KylinConfig ENV_INSTANCE = null;
 
     public static KylinConfig getInstanceFromEnv() {
         if (ENV_INSTANCE == null) {
@@ -158,6 +158,13 @@ public class KylinConfig extends KylinConfigBase {
         }
     }
 
+    /**
+     * Replaces the env instance, e.g. by the coprocessor with the config of the query being served.
+     */
+    public static void setKylinConfigInEnv(KylinConfig config) {
+        ENV_INSTANCE = config;
+    }
+
     public static KylinConfig createKylinConfigFromInputStream(InputStream is) {
         KylinConfig config = new KylinConfig();
         config.reloadKylinConfig(is);
@@ -458,6 +458,13 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.table.snapshot.max_mb", "300"));
     }
 
+    /**
+     * bytes of snapshot tables kept in memory, least recently used ones are evicted beyond it
+     */
+    public long getTableSnapshotCacheMaxSize() {
+        return Long.parseLong(getOptional("kylin.table.snapshot.cache.max.size", String.valueOf(1024L * 1024 * 1024)));
+    }
+
     public int getHBaseRegionCountMin() {
         return Integer.parseInt(getOptional("kylin.hbase.region.count.min", "1"));
     }
@@ -526,6 +533,87 @@ abstract public class KylinConfigBase implements Serializable {
         return Double.parseDouble(this.getOptional("kylin.query.coprocessor.mem.gb", "3.0"));
     }
 
+    /**
+     * calcite connections kept for reuse per project, 0 opens a new connection for every query
+     */
+    public int getQueryConnectionPoolSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.connection.pool.size", "16"));
+    }
+
+    public boolean isQueryCoprocessorHashAggrEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.coprocessor.hash.aggr.enabled", "false"));
+    }
+
+    /**
+     * number of segments scanned concurrently by one query, 1 means scanning segments one by one
+     */
+    public int getQuerySegmentScanParallelism() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment.scan.parallelism", "1"));
+    }
+
+    /**
+     * size of the thread pool shared by the parallel segment scans of all queries
+     */
+    public int getQuerySegmentScanThreads() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment.scan.threads", "16"));
+    }
+
+    /**
+     * whether to pick among the cuboids able to answer a query by the row counts in segment statistics
+     */
+    public boolean isQueryCuboidCostBasedEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.cuboid.cost.based.enabled", "true"));
+    }
+
+    /**
+     * number of record batches buffered for a parallel segment scan, before the scanning threads are blocked
+     */
+    public int getQuerySegmentScanQueueSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment.scan.queue.size", "16"));
+    }
+
+    /**
+     * reuse the records a READY segment returned for the same scan request
+     */
+    public boolean isQuerySegmentCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.segment.cache.enabled", "true"));
+    }
+
+    /**
+     * bytes of segment results kept in memory by the segment cache
+     */
+    public long getQuerySegmentCacheMaxSize() {
+        return Long.parseLong(this.getOptional("kylin.query.segment.cache.max.size", String.valueOf(256L * 1024 * 1024)));
+    }
+
+    /**
+     * results of a segment bigger than this many bytes are not cached
+     */
+    public int getQuerySegmentCacheMaxEntrySize() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment.cache.max.entry.size", String.valueOf(8 * 1024 * 1024)));
+    }
+
+    /**
+     * rows per block of a streamed query result, unless the client asks for its own fetch size
+     */
+    public int getQueryStreamFetchSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.stream.fetch.size", "1000"));
+    }
+
+    /**
+     * bytes of lookup table indexes kept after no query uses them
+     */
+    public long getLookupTableCacheMaxSize() {
+        return Long.parseLong(this.getOptional("kylin.query.lookup.cache.max.size", String.valueOf(512L * 1024 * 1024)));
+    }
+
+    /**
+     * distinct values of a dimension kept decoded during the scan of a segment
+     */
+    public int getQueryDimensionDecodeCacheSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.dimension.decode.cache.size", "10000"));
+    }
+
     public boolean isQuerySecureEnabled() {
         return Boolean.parseBoolean(this.getOptional("kylin.query.security.enabled", "true"));
     }
@@ -593,6 +681,16 @@ abstract public class KylinConfigBase implements Serializable {
         return percent;
     }
 
+    /** native memory in MB for in-mem cubing to keep cuboids off heap, 0 keeps them on local disk */
+    public int getCubingInMemOffHeapBudgetMB() {
+        return Integer.parseInt(this.getOptional("kylin.job.cubing.inmem.offheap.budget.mb", "0"));
+    }
+
+    /** threads of the mapper to dictionary encode rows for in-mem cubing, 0 leaves the encoding to the cube builder */
+    public int getCubingInMemEncoderThreads() {
+        return Integer.parseInt(this.getOptional("kylin.job.cubing.inmem.encoder.threads", "2"));
+    }
+
     public String getHbaseDefaultCompressionCodec() {
         return getOptional("kylin.hbase.default.compression.codec", "");
     }
@@ -609,6 +707,27 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.valueOf(getOptional("kylin.hbase.small.family.block.size", "65536"));
     }
 
+    /**
+     * whether streaming cubing writes hbase through PipelinedHBaseCuboidWriter instead of HBaseCuboidWriter
+     */
+    public boolean isHBaseStreamingWritePipelined() {
+        return Boolean.parseBoolean(getOptional("kylin.hbase.streaming.write.pipelined", "false"));
+    }
+
+    /**
+     * rows per batch put to hbase by streaming cubing
+     */
+    public int getHBaseStreamingWriteBatchSize() {
+        return Integer.parseInt(getOptional("kylin.hbase.streaming.write.batch.size", "10000"));
+    }
+
+    /**
+     * batches being put to hbase while streaming cubing goes on with the next one
+     */
+    public int getHBaseStreamingWriteMaxInFlight() {
+        return Integer.parseInt(getOptional("kylin.hbase.streaming.write.max.inflight", "2"));
+    }
+
     public boolean isHiveKeepFlatTable() {
         return Boolean.parseBoolean(this.getOptional("kylin.hive.keep.flat.table", "false"));
     }
@@ -689,6 +808,16 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.dim.distinct.max", "5000000"));
     }
 
+    /** heap in MB for each fact distinct columns mapper to drop repeated column values before shuffle, 0 disables it */
+    public int getFactDistinctMapperCacheMB() {
+        return Integer.parseInt(getOptional("kylin.job.mr.fact.distinct.mapper.cache.mb", "64"));
+    }
+
+    /** reducers sharing the distinct values of each shard by column, which is usually of ultra high cardinality */
+    public int getFactDistinctUHCReducerCount() {
+        return Integer.parseInt(getOptional("kylin.job.mr.fact.distinct.uhc.reducer.count", "1"));
+    }
+
     public int getCubeStatsHLLPrecision() {
         return Integer.parseInt(getOptional("kylin.job.cubing.inmem.sampling.hll.precision", "14"));
     }
@@ -759,6 +888,50 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.query.endpoint.compression.result", "true"));
     }
 
+    /**
+     * size in bytes of one independently compressed row block in an endpoint response, 0 means one block per region
+     */
+    public int getQueryEndpointRowBlockSize() {
+        return Integer.parseInt(getOptional("kylin.query.endpoint.row.block.size", String.valueOf(1024 * 1024)));
+    }
+
+    /**
+     * max bytes one endpoint call returns before the client has to resume the region scan, 0 means unlimited
+     */
+    public long getQueryEndpointPageSize() {
+        return Long.parseLong(getOptional("kylin.query.endpoint.page.size", String.valueOf(64L * 1024 * 1024)));
+    }
+
+    /**
+     * max bytes one endpoint call returns when the region can not be paged, e.g. rows are aggregated in the region; the call fails beyond it, 0 means unlimited
+     */
+    public long getQueryEndpointMaxUnpagedBytes() {
+        return Long.parseLong(getOptional("kylin.query.endpoint.max.unpaged.bytes", "0"));
+    }
+
+    /**
+     * plan scan ranges, fuzzy keys and hbase raw scans inside the region from the filter, instead of sending them with every request; the coprocessor must be up to date,
+     * so turn it on only after the coprocessor is redeployed on every region server
+     */
+    public boolean isQueryEndpointRawScanInRegion() {
+        return Boolean.parseBoolean(getOptional("kylin.query.endpoint.raw.scan.in.region", "false"));
+    }
+
+    /**
+     * send only the digests of kylin properties and GTInfo once the region servers have cached them; the coprocessor must be up to date,
+     * so turn it on only after the coprocessor is redeployed on every region server
+     */
+    public boolean isQueryEndpointPayloadCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.endpoint.payload.cache.enabled", "false"));
+    }
+
+    /**
+     * threads one endpoint call may use to scan and aggregate a region, bounded by the cores of the region server; the coprocessor must be up to date
+     */
+    public int getQueryEndpointParallelism() {
+        return Integer.parseInt(getOptional("kylin.query.endpoint.parallelism", "1"));
+    }
+
     public Map<String, String> getUDFs() {
         return getPropertiesByPrefix("kylin.query.udf.");
     }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.common.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Releases the native memory of direct buffers right away. Otherwise it is returned only when the buffer
+ * object is garbage collected, which may never come in time under -XX:+DisableExplicitGC.
+ */
+public class DirectBufferUtil {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectBufferUtil.class);
+
+    // java 9+, sun.misc.Unsafe.invokeCleaner(ByteBuffer)
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    // java 7 and 8, ((sun.nio.ch.DirectBuffer) buf).cleaner().clean()
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+        } catch (Throwable e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (Throwable e2) {
+                logger.warn("Cannot free direct buffers explicitly, their memory is left to GC", e2);
+                cleaner = null;
+                clean = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    /**
+     * Frees the native memory of a direct buffer allocated by ByteBuffer.allocateDirect(), not a slice or view of it.
+     * The buffer must not be accessed afterwards. Heap buffers are ignored.
+     *
+     * @return true if the memory has been freed, false if it is left to GC
+     */
+    public static boolean free(ByteBuffer buf) {
+        if (buf == null || !buf.isDirect())
+            return false;
+
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buf);
+                return true;
+            }
+            if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(buf);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                    return true;
+                }
+            }
+        } catch (Throwable e) {
+            logger.debug("Failed to free direct buffer, leave it to GC", e);
+        }
+        return false;
+    }
+}
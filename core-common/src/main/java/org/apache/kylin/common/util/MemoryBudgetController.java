@@ -17,6 +17,8 @@
 
 package org.apache.kylin.common.util;
 
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -63,17 +65,27 @@ public class MemoryBudgetController {
 
     // all budget numbers are in MB
     private final int totalBudgetMB;
+    private final boolean offHeap; // budget of native (direct) memory rather than JVM heap
     private final ConcurrentHashMap<MemoryConsumer, ConsumerEntry> booking = new ConcurrentHashMap<MemoryConsumer, ConsumerEntry>();
     private int totalReservedMB;
     private final ReentrantLock lock = new ReentrantLock();
 
     public MemoryBudgetController(int totalBudgetMB) {
+        this(totalBudgetMB, false);
+    }
+
+    public MemoryBudgetController(int totalBudgetMB, boolean offHeap) {
         Preconditions.checkArgument(totalBudgetMB >= 0);
-        Preconditions.checkState(totalBudgetMB <= getSystemAvailMB());
+        Preconditions.checkState(totalBudgetMB <= (offHeap ? getMaxDirectMemoryMB() : getSystemAvailMB()));
         this.totalBudgetMB = totalBudgetMB;
+        this.offHeap = offHeap;
         this.totalReservedMB = 0;
     }
 
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
     public int getTotalBudgetMB() {
         return totalBudgetMB;
     }
@@ -172,8 +184,9 @@ public class MemoryBudgetController {
             throw new NotEnoughBudgetException();
 
         if (debug) {
-            if (getSystemAvailMB() < getRemainingBudgetMB()) {
-                logger.debug("Remaining budget is " + getRemainingBudgetMB() + " MB free, but system only has " + getSystemAvailMB() + " MB free. If this persists, some memory calculation must be wrong.");
+            int systemAvailMB = offHeap ? getDirectMemoryAvailMB() : getSystemAvailMB();
+            if (systemAvailMB < getRemainingBudgetMB()) {
+                logger.debug("Remaining budget is " + getRemainingBudgetMB() + " MB free, but system only has " + systemAvailMB + " MB free. If this persists, some memory calculation must be wrong.");
             }
         }
     }
@@ -274,6 +287,40 @@ public class MemoryBudgetController {
         return (int) (getSystemAvailBytes() / ONE_MB);
     }
 
+    /** the -XX:MaxDirectMemorySize setting, which defaults to the max heap when absent */
+    public static long getMaxDirectMemoryBytes() {
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-XX:MaxDirectMemorySize=")) {
+                String size = arg.substring("-XX:MaxDirectMemorySize=".length()).trim().toLowerCase();
+                long unit = 1;
+                char last = size.charAt(size.length() - 1);
+                if (last == 'k' || last == 'm' || last == 'g') {
+                    unit = last == 'k' ? 1024 : (last == 'm' ? ONE_MB : ONE_GB);
+                    size = size.substring(0, size.length() - 1);
+                }
+                return Long.parseLong(size) * unit;
+            }
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    public static int getMaxDirectMemoryMB() {
+        return (int) (getMaxDirectMemoryBytes() / ONE_MB);
+    }
+
+    /** native memory currently held by direct byte buffers */
+    public static long getDirectMemoryUsedBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName()))
+                return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    public static int getDirectMemoryAvailMB() {
+        return (int) ((getMaxDirectMemoryBytes() - getDirectMemoryUsedBytes()) / ONE_MB);
+    }
+
 
     // protective estimate of memory usage, prefer overestimate rather than underestimate
     public static class MemoryWaterLevel {
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.common.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class DirectBufferUtilTest {
+
+    @Test
+    public void testFree() {
+        int size = 64 * 1024 * 1024;
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        long before = directMemoryUsed();
+
+        assertTrue(DirectBufferUtil.free(buf));
+        assertTrue(directMemoryUsed() <= before - size);
+    }
+
+    @Test
+    public void testNotFreed() {
+        assertFalse(DirectBufferUtil.free(null));
+        assertFalse(DirectBufferUtil.free(ByteBuffer.allocate(16)));
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(16);
+        buf.position(8);
+        assertFalse(DirectBufferUtil.free(buf.slice())); // only the buffer owning the memory can free it
+        assertTrue(DirectBufferUtil.free(buf));
+    }
+
+    private long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName()))
+                return pool.getMemoryUsed();
+        }
+        throw new IllegalStateException();
+    }
+}
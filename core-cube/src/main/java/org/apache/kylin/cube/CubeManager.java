@@ -595,6 +595,10 @@ public class CubeManager implements IRealizationProvider {
         cubeMap.removeLocal(cubeName);
     }
 
+    /**
+     * Returns the lookup table of the dimension, shared by all segments using the same snapshot.
+     * The caller must {@link #releaseLookupTable(LookupStringTable)} it when done.
+     */
     public LookupStringTable getLookupTable(CubeSegment cubeSegment, DimensionDesc dim) {
 
         String tableName = dim.getTable();
@@ -604,14 +608,17 @@ public class CubeManager implements IRealizationProvider {
             throw new IllegalStateException("No snaphot for table '" + tableName + "' found on cube segment" + cubeSegment.getCubeInstance().getName() + "/" + cubeSegment);
 
         try {
-            SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
             TableDesc tableDesc = getMetadataManager().getTableDesc(tableName);
-            return new LookupStringTable(tableDesc, pkCols, snapshot);
+            return getSnapshotManager().acquireLookupTable(snapshotResPath, tableDesc, pkCols);
         } catch (IOException e) {
             throw new IllegalStateException("Failed to load lookup table " + tableName + " from snapshot " + snapshotResPath, e);
         }
     }
 
+    public void releaseLookupTable(LookupStringTable lookupTable) {
+        getSnapshotManager().releaseLookupTable(lookupTable);
+    }
+
     private CubeSegment newSegment(CubeInstance cube, long startDate, long endDate, long startOffset, long endOffset) {
         CubeSegment segment = new CubeSegment();
         segment.setUuid(UUID.randomUUID().toString());
@@ -58,7 +58,7 @@ public class DictionaryGeneratorCLI {
                 logger.info("Building snapshot of " + dim.getTable());
                 cubeMgr.buildSnapshotTable(cubeSeg, dim.getTable());
                 logger.info("Checking snapshot of " + dim.getTable());
-                cubeMgr.getLookupTable(cubeSeg, dim); // load the table for sanity check
+                cubeMgr.releaseLookupTable(cubeMgr.getLookupTable(cubeSeg, dim)); // load the table for sanity check
             }
         }
     }
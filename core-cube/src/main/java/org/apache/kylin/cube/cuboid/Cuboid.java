@@ -88,6 +88,18 @@ public class Cuboid implements Comparable<Cuboid> {
 
     }
 
+    /**
+     * Returns a cuboid that answers the given cuboid ID using the given valid cuboid, which must be
+     * one of {@link #findValidCandidates(CubeDesc, long)}. Cuboids other than the default translation are not cached.
+     */
+    public static Cuboid findById(CubeDesc cube, long cuboidID, long validCuboidID) {
+        Cuboid cuboid = findById(cube, cuboidID);
+        if (cuboid.getId() == validCuboidID) {
+            return cuboid;
+        }
+        return new Cuboid(cube, cuboidID, validCuboidID);
+    }
+
     public static boolean isValid(CubeDesc cube, long cuboidID) {
         if (cuboidID == getBaseCuboidId(cube)) {
             return true;
@@ -132,23 +144,30 @@ public class Cuboid implements Comparable<Cuboid> {
     }
 
     public static long translateToValidCuboid(CubeDesc cubeDesc, long cuboidID) {
+        return Collections.min(findValidCandidates(cubeDesc, cuboidID), cuboidSelectComparator);
+    }
+
+    /**
+     * Returns the valid cuboids able to answer the given cuboid ID, at most one from each aggregation group,
+     * or only the base cuboid if no aggregation group covers it.
+     */
+    public static List<Long> findValidCandidates(CubeDesc cubeDesc, long cuboidID) {
         long baseCuboidId = getBaseCuboidId(cubeDesc);
         if (cuboidID == baseCuboidId) {
-            return cuboidID;
+            return Collections.singletonList(cuboidID);
         }
         List<Long> candidates = Lists.newArrayList();
         for (AggregationGroup agg : cubeDesc.getAggregationGroups()) {
             Long candidate = translateToValidCuboid(agg, cuboidID);
-            if (candidate != null) {
+            if (candidate != null && !candidates.contains(candidate)) {
                 candidates.add(candidate);
             }
         }
 
         if (candidates.size() == 0) {
-            return baseCuboidId;
+            candidates.add(baseCuboidId);
         }
-
-        return Collections.min(candidates, cuboidSelectComparator);
+        return candidates;
     }
 
     private static Long translateToValidCuboid(AggregationGroup agg, long cuboidID) {
@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
@@ -43,6 +44,7 @@ abstract public class AbstractInMemCubeBuilder {
 
     protected int taskThreadCount = 4;
     protected int reserveMemoryMB = 100;
+    protected MemoryBudgetController offHeapBudget = null; // null means cuboids are kept on disk only
 
     public AbstractInMemCubeBuilder(CubeDesc cubeDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
         if (cubeDesc == null)
@@ -66,6 +68,16 @@ abstract public class AbstractInMemCubeBuilder {
         return this.reserveMemoryMB;
     }
 
+    /** keep cuboids in native memory up to the given MB before spilling to disk, zero to disable */
+    public void setOffHeapStoreBudgetMB(int mb) {
+        int maxMB = MemoryBudgetController.getMaxDirectMemoryMB();
+        if (mb > maxMB) {
+            logger.warn("Off-heap store budget " + mb + " MB exceeds max direct memory " + maxMB + " MB, consider increase -XX:MaxDirectMemorySize");
+            mb = maxMB;
+        }
+        this.offHeapBudget = mb > 0 ? new MemoryBudgetController(mb, true) : null;
+    }
+
     public Runnable buildAsRunnable(final BlockingQueue<List<String>> input, final ICuboidWriter output) {
         return new Runnable() {
             @Override
@@ -79,8 +91,24 @@ abstract public class AbstractInMemCubeBuilder {
         };
     }
 
+    public Runnable buildFromEncodedAsRunnable(final BlockingQueue<GTRecord[]> input, final ICuboidWriter output) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    buildFromEncoded(input, output);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
     abstract public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException;
 
+    /** build from batches of base cuboid records, e.g. encoded by InMemCubeBuilderInputEncoder, an empty batch marks the end of input */
+    abstract public void buildFromEncoded(BlockingQueue<GTRecord[]> input, ICuboidWriter output) throws IOException;
+
     protected void outputCuboid(long cuboidId, GridTable gridTable, ICuboidWriter output) throws IOException {
         long startTime = System.currentTimeMillis();
         GTScanRequest req = new GTScanRequest(gridTable.getInfo(), null, null, null);
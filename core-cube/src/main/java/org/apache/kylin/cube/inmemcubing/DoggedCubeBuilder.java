@@ -18,7 +18,6 @@ package org.apache.kylin.cube.inmemcubing;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,6 +32,8 @@ import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
@@ -69,7 +70,55 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
 
     @Override
     public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException {
-        new BuildOnce().build(input, output);
+        new BuildOnce().build(new RowInput(input), output);
+    }
+
+    @Override
+    public void buildFromEncoded(BlockingQueue<GTRecord[]> input, ICuboidWriter output) throws IOException {
+        new BuildOnce().build(new EncodedInput(input), output);
+    }
+
+    /** the input as batches of base cuboid records, an empty batch marks the end */
+    private interface IBatchInput {
+        GTRecord[] nextBatch(int maxRows) throws InterruptedException;
+    }
+
+    /** encodes rows on the thread that feeds the splits, leaving the split threads to aggregate */
+    private class RowInput implements IBatchInput {
+        final BlockingQueue<List<String>> input;
+        final InMemCubeBuilderInputConverter converter;
+        boolean eof = false;
+
+        RowInput(BlockingQueue<List<String>> input) {
+            this.input = input;
+            this.converter = new InMemCubeBuilderInputConverter(cubeDesc, dictionaryMap, CubeGridTable.newGTInfo(cubeDesc, Cuboid.getBaseCuboidId(cubeDesc), dictionaryMap));
+        }
+
+        @Override
+        public GTRecord[] nextBatch(int maxRows) throws InterruptedException {
+            List<GTRecord> batch = Lists.newArrayListWithCapacity(eof ? 0 : maxRows);
+            while (!eof && batch.size() < maxRows) {
+                List<String> row = input.take();
+                if (row == null || row.isEmpty())
+                    eof = true;
+                else
+                    batch.add(converter.convertCompact(row));
+            }
+            return batch.toArray(new GTRecord[batch.size()]);
+        }
+    }
+
+    private static class EncodedInput implements IBatchInput {
+        final BlockingQueue<GTRecord[]> input;
+
+        EncodedInput(BlockingQueue<GTRecord[]> input) {
+            this.input = input;
+        }
+
+        @Override
+        public GTRecord[] nextBatch(int maxRows) throws InterruptedException {
+            return input.take(); // already batched by the encoder
+        }
     }
 
     private class BuildOnce {
@@ -77,7 +126,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
         BuildOnce() {
         }
 
-        public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException {
+        public void build(IBatchInput input, ICuboidWriter output) throws IOException {
             final List<SplitThread> splits = new ArrayList<SplitThread>();
             final Merger merger = new Merger();
 
@@ -198,20 +247,20 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
             }
         }
 
-        private boolean feedSomeInput(BlockingQueue<List<String>> input, SplitThread split, int n) {
+        private boolean feedSomeInput(IBatchInput input, SplitThread split, int n) {
             try {
                 int i = 0;
                 while (i < n) {
-                    List<String> record = input.take();
-                    i++;
+                    GTRecord[] batch = input.nextBatch(n - i);
+                    i += batch.length;
 
-                    while (split.inputQueue.offer(record, 1, TimeUnit.SECONDS) == false) {
+                    while (split.inputQueue.offer(batch, 1, TimeUnit.SECONDS) == false) {
                         if (split.exception != null)
                             return true; // got some error
                     }
-                    split.inputRowCount++;
+                    split.inputRowCount += batch.length;
 
-                    if (record == null || record.isEmpty()) {
+                    if (batch.length == 0) {
                         return true;
                     }
                 }
@@ -226,7 +275,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
             try {
                 // signal the end of input
                 while (last.isAlive()) {
-                    if (last.inputQueue.offer(Collections.<String> emptyList())) {
+                    if (last.inputQueue.offer(new GTRecord[0])) {
                         break;
                     }
                     Thread.sleep(1000);
@@ -262,7 +311,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
     }
 
     private class SplitThread extends Thread {
-        final BlockingQueue<List<String>> inputQueue = new ArrayBlockingQueue<List<String>>(16);
+        final BlockingQueue<GTRecord[]> inputQueue = new ArrayBlockingQueue<GTRecord[]>(16);
         final InMemCubeBuilder builder;
 
         ConcurrentNavigableMap<Long, CuboidResult> buildResult;
@@ -273,12 +322,13 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
             this.builder = new InMemCubeBuilder(cubeDesc, dictionaryMap);
             this.builder.setConcurrentThreads(taskThreadCount);
             this.builder.setReserveMemoryMB(reserveMemoryMB);
+            this.builder.offHeapBudget = offHeapBudget; // splits share one native memory budget
         }
 
         @Override
         public void run() {
             try {
-                buildResult = builder.build(inputQueue);
+                buildResult = builder.buildFromEncoded(inputQueue);
             } catch (Exception e) {
                 if (e instanceof RuntimeException)
                     this.exception = (RuntimeException) e;
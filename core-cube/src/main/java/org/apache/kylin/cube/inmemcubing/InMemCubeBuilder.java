@@ -22,14 +22,16 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kylin.measure.topn.Counter;
 import org.apache.kylin.measure.topn.TopNCounter;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.MemoryBudgetController;
@@ -46,6 +48,10 @@ import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GridTable;
 import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.measure.BufferedMeasureEncoder;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.metadata.datatype.DataType;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
 import org.apache.kylin.metadata.model.MeasureDesc;
 import org.apache.kylin.metadata.model.TblColRef;
@@ -78,8 +84,12 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
     private Thread[] taskThreads;
     private Throwable[] taskThreadExceptions;
-    private TreeSet<CuboidTask> taskPending;
+    private List<ConcurrentLinkedDeque<CuboidTask>> taskQueues; // one per task thread, idle threads steal from others
+    private final Object taskSignal = new Object(); // idle task threads wait on it until tasks are added or the build ends
+    private AtomicInteger taskQueueNext = new AtomicInteger(0);
     private AtomicInteger taskCuboidCompleted = new AtomicInteger(0);
+    private ConcurrentSkipListMap<Long, CuboidResult> builtCuboids; // candidate parents for the pending tasks
+    private boolean spanningParentOnly = false;
 
     private CuboidResult baseResult;
     private Object[] totalSumForSanityCheck;
@@ -103,13 +113,26 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         this.metricsAggrFuncs = metricsAggrFuncsList.toArray(new String[metricsAggrFuncsList.size()]);
     }
 
+    /**
+     * Builds every cuboid from its spanning parent through the aggregation cache, instead of from the smallest built
+     * parent and by streaming when only rowkey tail dimensions are dropped. Slower, to cross check the default path.
+     */
+    public void setSpanningParentOnly(boolean spanningParentOnly) {
+        this.spanningParentOnly = spanningParentOnly;
+    }
+
     private GridTable newGridTableByCuboidID(long cuboidID) throws IOException {
         GTInfo info = CubeGridTable.newGTInfo(cubeDesc, cuboidID, dictionaryMap);
 
         // Below several store implementation are very similar in performance. The ConcurrentDiskStore is the simplest.
         // MemDiskStore store = new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget);
         // MemDiskStore store = new MemDiskStore(info, MemoryBudgetController.ZERO_BUDGET);
-        ConcurrentDiskStore store = new ConcurrentDiskStore(info);
+        // When given a native memory budget, keep cuboids off heap and out of the heap budget of the aggregation caches.
+        IGTStore store;
+        if (offHeapBudget != null)
+            store = new OffHeapMemDiskStore(info, offHeapBudget);
+        else
+            store = new ConcurrentDiskStore(info);
 
         GridTable gridTable = new GridTable(info, store);
         return gridTable;
@@ -128,9 +151,31 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         }
     }
 
+    @Override
+    public void buildFromEncoded(BlockingQueue<GTRecord[]> input, ICuboidWriter output) throws IOException {
+        ConcurrentNavigableMap<Long, CuboidResult> result = buildFromEncoded(input);
+        try {
+            for (CuboidResult cuboidResult : result.values()) {
+                outputCuboid(cuboidResult.cuboidId, cuboidResult.table, output);
+                cuboidResult.table.close();
+            }
+        } finally {
+            output.close();
+        }
+    }
+
     public ConcurrentNavigableMap<Long, CuboidResult> build(BlockingQueue<List<String>> input) throws IOException {
+        return build(new InputConverter(CubeGridTable.newGTInfo(cubeDesc, baseCuboidId, dictionaryMap), input));
+    }
+
+    /** build from batches of records already encoded as the base cuboid, an empty batch marks the end of input */
+    public ConcurrentNavigableMap<Long, CuboidResult> buildFromEncoded(BlockingQueue<GTRecord[]> input) throws IOException {
+        return build(new EncodedInput(CubeGridTable.newGTInfo(cubeDesc, baseCuboidId, dictionaryMap), input));
+    }
+
+    private ConcurrentNavigableMap<Long, CuboidResult> build(IGTScanner baseInput) throws IOException {
         final ConcurrentNavigableMap<Long, CuboidResult> result = new ConcurrentSkipListMap<Long, CuboidResult>();
-        build(input, new ICuboidCollector() {
+        build(baseInput, new ICuboidCollector() {
             @Override
             public void collect(CuboidResult cuboidResult) {
                 logger.info("collecting CuboidResult cuboid id:" + cuboidResult.cuboidId);
@@ -145,7 +190,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         void collect(CuboidResult result);
     }
 
-    private void build(BlockingQueue<List<String>> input, ICuboidCollector collector) throws IOException {
+    private void build(IGTScanner baseInput, ICuboidCollector collector) throws IOException {
         long startTime = System.currentTimeMillis();
         logger.info("In Mem Cube Build start, " + cubeDesc.getName());
 
@@ -153,15 +198,20 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         baseCuboidMemTracker.markLow();
 
         // multiple threads to compute cuboid in parallel
-        taskPending = new TreeSet<CuboidTask>();
+        taskQueues = Lists.newArrayListWithCapacity(taskThreadCount);
+        for (int i = 0; i < taskThreadCount; i++) {
+            taskQueues.add(new ConcurrentLinkedDeque<CuboidTask>());
+        }
+        taskQueueNext.set(0);
         taskCuboidCompleted.set(0);
+        builtCuboids = new ConcurrentSkipListMap<Long, CuboidResult>();
         taskThreads = prepareTaskThreads();
         taskThreadExceptions = new Throwable[taskThreadCount];
 
         // build base cuboid
         resultCollector = collector;
         totalSumForSanityCheck = null;
-        baseResult = createBaseCuboid(input);
+        baseResult = createBaseCuboid(baseInput);
         if (baseResult.nRows == 0)
             return;
 
@@ -170,7 +220,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         makeMemoryBudget();
 
         // kick off N-D cuboid tasks and output
-        addChildTasks(baseResult);
+        addChildTasks(-1, baseResult);
         start(taskThreads);
 
         // wait complete
@@ -250,38 +300,55 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         @Override
         public void run() {
             try {
-                while (!isAllCuboidDone()) {
-                    CuboidTask task = null;
-                    synchronized (taskPending) {
-                        while (task == null && taskHasNoException()) {
-                            task = taskPending.pollFirst();
-                            if (task == null)
-                                taskPending.wait(60000);
-                        }
-                    }
-                    // if task error occurs
+                while (true) {
+                    CuboidTask task = takeTask(id);
+                    // all cuboids done, or task error occurs
                     if (task == null)
                         break;
 
-                    CuboidResult newCuboid = buildCuboid(task.parent, task.childCuboidId);
-                    addChildTasks(newCuboid);
-
-                    if (isAllCuboidDone()) {
-                        for (Thread t : taskThreads) {
-                            if (t != Thread.currentThread())
-                                t.interrupt();
-                        }
-                    }
+                    CuboidResult parent = spanningParentOnly ? task.parent : chooseParent(task);
+                    CuboidResult newCuboid = buildCuboid(parent, task.childCuboidId);
+                    addChildTasks(id, newCuboid);
                 }
             } catch (Throwable ex) {
                 if (!isAllCuboidDone()) {
                     logger.error("task thread exception", ex);
                     taskThreadExceptions[id] = ex;
                 }
+            } finally {
+                signalTaskThreads();
             }
         }
     }
 
+    /**
+     * Returns the next task of the thread, waits if there is none for now. Returns null once all cuboids are done or
+     * a task thread fails.
+     */
+    private CuboidTask takeTask(int threadId) throws InterruptedException {
+        CuboidTask task = pollOrStealTask(threadId);
+        if (task != null)
+            return task;
+
+        synchronized (taskSignal) {
+            // a task added after the check below notifies only after we start waiting
+            while (true) {
+                if (!taskHasNoException() || isAllCuboidDone())
+                    return null;
+                task = pollOrStealTask(threadId);
+                if (task != null)
+                    return task;
+                taskSignal.wait();
+            }
+        }
+    }
+
+    private void signalTaskThreads() {
+        synchronized (taskSignal) {
+            taskSignal.notifyAll();
+        }
+    }
+
     private boolean taskHasNoException() {
         for (int i = 0; i < taskThreadExceptions.length; i++)
             if (taskThreadExceptions[i] != null)
@@ -289,16 +356,56 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         return true;
     }
 
-    private void addChildTasks(CuboidResult parent) {
+    /**
+     * Children of a cuboid go to the head of the queue of the thread that built it, so the thread keeps working
+     * depth first on a warm parent. Children of the base cuboid (threadId < 0) are spread over all queues.
+     */
+    private void addChildTasks(int threadId, CuboidResult parent) {
         List<Long> children = cuboidScheduler.getSpanningCuboid(parent.cuboidId);
-        if (!children.isEmpty()) {
-            synchronized (taskPending) {
-                for (Long child : children) {
-                    taskPending.add(new CuboidTask(parent, child));
-                }
-                taskPending.notifyAll();
+        for (Long child : children) {
+            int q = threadId >= 0 ? threadId : (taskQueueNext.getAndIncrement() & Integer.MAX_VALUE) % taskQueues.size();
+            taskQueues.get(q).offerFirst(new CuboidTask(parent, child));
+        }
+        // wake up the idle threads, also when no child is added, the build may have just completed
+        signalTaskThreads();
+    }
+
+    private CuboidTask pollOrStealTask(int threadId) {
+        CuboidTask task = taskQueues.get(threadId).pollFirst();
+        if (task != null)
+            return task;
+
+        // steal from the tail of the others, where the oldest and usually biggest tasks are
+        int n = taskQueues.size();
+        for (int i = 1; i < n && task == null; i++) {
+            task = taskQueues.get((threadId + i) % n).pollLast();
+        }
+        return task;
+    }
+
+    /**
+     * The spanning parent given by the scheduler is only one of the cuboids a child can be aggregated from. Pick the
+     * built ancestor with the fewest rows instead, preferring one that the child can be streamed from on ties.
+     */
+    private CuboidResult chooseParent(CuboidTask task) {
+        final long child = task.childCuboidId;
+        CuboidResult best = task.parent;
+        boolean bestStreamable = InMemCubeBuilderUtils.isRowkeySuffixDropped(best.cuboidId, child);
+        for (CuboidResult candidate : builtCuboids.values()) {
+            if (candidate.cuboidId == child || (candidate.cuboidId & child) != child)
+                continue;
+
+            boolean streamable = InMemCubeBuilderUtils.isRowkeySuffixDropped(candidate.cuboidId, child);
+            if (candidate.nRows < best.nRows || (candidate.nRows == best.nRows && streamable && !bestStreamable)) {
+                best = candidate;
+                bestStreamable = streamable;
             }
         }
+
+        if (best != task.parent) {
+            logger.debug("Cuboid " + child + " picks parent " + best.cuboidId + " (" + best.nRows + " rows) over spanning parent " + task.parent.cuboidId + " (" + task.parent.nRows + " rows)");
+        }
+        return best;
     }
 
     private void makeMemoryBudget() {
@@ -320,13 +427,12 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         memBudget = new MemoryBudgetController(budget);
     }
 
-    private CuboidResult createBaseCuboid(BlockingQueue<List<String>> input) throws IOException {
+    private CuboidResult createBaseCuboid(IGTScanner baseInput) throws IOException {
         long startTime = System.currentTimeMillis();
         logger.info("Calculating base cuboid " + baseCuboidId);
 
         GridTable baseCuboid = newGridTableByCuboidID(baseCuboidId);
         GTBuilder baseBuilder = baseCuboid.rebuild();
-        IGTScanner baseInput = new InputConverter(baseCuboid.getInfo(), input);
 
         Pair<ImmutableBitSet, ImmutableBitSet> dimensionMetricsBitSet = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(baseCuboidId, measureCount);
         GTScanRequest req = new GTScanRequest(baseCuboid.getInfo(), null, null, dimensionMetricsBitSet.getFirst(), dimensionMetricsBitSet.getSecond(), metricsAggrFuncs, null, true, 0);
@@ -361,6 +467,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         }
 
         CuboidResult result = new CuboidResult(cuboidId, table, nRows, timeSpent, aggrCacheMB);
+        builtCuboids.put(cuboidId, result);
         taskCuboidCompleted.incrementAndGet();
 
         resultCollector.collect(result);
@@ -368,6 +475,11 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     }
 
     private CuboidResult buildCuboid(CuboidResult parent, long cuboidId) throws IOException {
+        // rows of the parent are sorted by rowkey, a child dropping only tail dimensions needs no aggregation cache
+        if (!spanningParentOnly && InMemCubeBuilderUtils.isRowkeySuffixDropped(parent.cuboidId, cuboidId)) {
+            return streamAggregateGridTable(parent, cuboidId);
+        }
+
         final String consumerName = "AggrCache@Cuboid " + cuboidId;
         MemoryBudgetController.MemoryConsumer consumer = new MemoryBudgetController.MemoryConsumer() {
             @Override
@@ -402,18 +514,148 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
         // for child cuboid, some measures don't need aggregation.
         if (parentId != cuboidId) {
-            boolean[] aggrMask = new boolean[measureDescs.length];
-            for (int i = 0; i < measureDescs.length; i++) {
-                aggrMask[i] = !measureDescs[i].getFunction().getMeasureType().onlyAggrInBaseCuboid();
+            scanner.setAggrMask(createChildAggrMask());
+        }
+
+        return scanner;
+    }
+
+    private boolean[] createChildAggrMask() {
+        boolean[] aggrMask = new boolean[measureDescs.length];
+        for (int i = 0; i < measureDescs.length; i++) {
+            aggrMask[i] = !measureDescs[i].getFunction().getMeasureType().onlyAggrInBaseCuboid();
 
-                if (!aggrMask[i]) {
-                    logger.info(measureDescs[i].toString() + " doesn't need aggregation.");
+            if (!aggrMask[i]) {
+                logger.info(measureDescs[i].toString() + " doesn't need aggregation.");
+            }
+        }
+        return aggrMask;
+    }
+
+    /**
+     * Calculates a child whose dimensions are a rowkey prefix of the parent. Parent rows come out sorted, so rows of
+     * the same child key are adjacent and can be merged in one pass without re-sorting through GTAggregateScanner.
+     */
+    private CuboidResult streamAggregateGridTable(CuboidResult parent, long cuboidId) throws IOException {
+        long startTime = System.currentTimeMillis();
+        logger.info("Calculating cuboid " + cuboidId + " by streaming parent " + parent.cuboidId);
+
+        GTInfo parentInfo = parent.table.getInfo();
+        ImmutableBitSet parentMeasures = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(parent.cuboidId, measureCount).getSecond();
+        int nDims = Long.bitCount(cuboidId);
+
+        MeasureAggregator<?>[] aggrs = parentInfo.getCodeSystem().newMetricsAggregators(parentMeasures, metricsAggrFuncs);
+        boolean[] aggrMask = createChildAggrMask();
+        boolean[] primitiveAggr = new boolean[measureCount];
+        for (int i = 0; i < measureCount; i++) {
+            primitiveAggr[i] = measureDescs[i].getFunction().getMeasureType().supportsPrimitiveAggregation();
+        }
+        Object[] states = new Object[measureCount];
+        DataType[] measureTypes = new DataType[measureCount];
+        for (int i = 0; i < measureCount; i++) {
+            measureTypes[i] = parentInfo.getColumnType(parentMeasures.trueBitAt(i));
+        }
+        BufferedMeasureEncoder measureCodec = new BufferedMeasureEncoder(measureTypes);
+        measureCodec.setBufferSize(parentInfo.getMaxColumnLength(parentMeasures));
+
+        // the child key of the group being merged, dimension i at keyBuf[keyOffsets[i], keyOffsets[i + 1])
+        int[] keyOffsets = new int[nDims + 1];
+        byte[] keyBuf = new byte[Math.max(parentInfo.getMaxColumnLength(InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(cuboidId, 0).getFirst()), 1)];
+        boolean hasGroup = false;
+
+        GridTable newGridTable = newGridTableByCuboidID(cuboidId);
+        GTBuilder builder = newGridTable.rebuild();
+        GTRecord newRecord = new GTRecord(newGridTable.getInfo());
+        IGTScanner scanner = parent.table.scan(new GTScanRequest(parentInfo, null, null, null));
+        int count = 0;
+        try {
+            for (GTRecord record : scanner) {
+                if (!hasGroup || !isSameKey(record, nDims, keyBuf, keyOffsets)) {
+                    if (hasGroup) {
+                        writeStreamedRecord(newRecord, nDims, keyBuf, keyOffsets, aggrs, states, measureCodec, builder);
+                        count++;
+                    }
+                    keyBuf = copyKey(record, nDims, keyBuf, keyOffsets);
+                    for (MeasureAggregator<?> aggr : aggrs) {
+                        aggr.reset();
+                    }
+                    hasGroup = true;
                 }
+                aggregateStreamedMeasures(record, parentInfo, parentMeasures, aggrs, aggrMask, primitiveAggr);
+            }
+            if (hasGroup) {
+                writeStreamedRecord(newRecord, nDims, keyBuf, keyOffsets, aggrs, states, measureCodec, builder);
+                count++;
             }
-            scanner.setAggrMask(aggrMask);
+        } finally {
+            scanner.close();
+            builder.close();
         }
 
-        return scanner;
+        long timeSpent = System.currentTimeMillis() - startTime;
+        logger.info("Cuboid " + cuboidId + " has " + count + " rows, build takes " + timeSpent + "ms");
+
+        return updateCuboidResult(cuboidId, newGridTable, count, timeSpent, 0);
+    }
+
+    private boolean isSameKey(GTRecord record, int nDims, byte[] keyBuf, int[] keyOffsets) {
+        for (int i = 0; i < nDims; i++) {
+            ByteArray col = record.get(i);
+            if (!Bytes.equals(col.array(), col.offset(), col.length(), keyBuf, keyOffsets[i], keyOffsets[i + 1] - keyOffsets[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private byte[] copyKey(GTRecord record, int nDims, byte[] keyBuf, int[] keyOffsets) {
+        int len = 0;
+        for (int i = 0; i < nDims; i++) {
+            len += record.get(i).length();
+        }
+        if (len > keyBuf.length) {
+            keyBuf = new byte[len];
+        }
+
+        int offset = 0;
+        for (int i = 0; i < nDims; i++) {
+            ByteArray col = record.get(i);
+            keyOffsets[i] = offset;
+            System.arraycopy(col.array(), col.offset(), keyBuf, offset, col.length());
+            offset += col.length();
+        }
+        keyOffsets[nDims] = offset;
+        return keyBuf;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void aggregateStreamedMeasures(GTRecord record, GTInfo parentInfo, ImmutableBitSet parentMeasures, MeasureAggregator[] aggrs, boolean[] aggrMask, boolean[] primitiveAggr) {
+        for (int i = 0; i < aggrs.length; i++) {
+            if (aggrMask[i]) {
+                ByteArray value = record.get(parentMeasures.trueBitAt(i));
+                if (primitiveAggr[i])
+                    aggrs[i].aggregateSerialized(value.array(), value.offset());
+                else
+                    aggrs[i].aggregate(parentInfo.getCodeSystem().decodeColumnValue(parentMeasures.trueBitAt(i), value.asBuffer()));
+            }
+        }
+    }
+
+    private void writeStreamedRecord(GTRecord newRecord, int nDims, byte[] keyBuf, int[] keyOffsets, MeasureAggregator<?>[] aggrs, Object[] states, BufferedMeasureEncoder measureCodec, GTBuilder builder) throws IOException {
+        for (int i = 0; i < nDims; i++) {
+            newRecord.get(i).set(keyBuf, keyOffsets[i], keyOffsets[i + 1] - keyOffsets[i]);
+        }
+
+        for (int i = 0; i < aggrs.length; i++) {
+            states[i] = aggrs[i].getState();
+        }
+        byte[] bytes = measureCodec.encode(states).array();
+        int[] sizes = measureCodec.getMeasureSizes();
+        int offset = 0;
+        for (int i = 0; i < aggrs.length; i++) {
+            newRecord.get(nDims + i).set(bytes, offset, sizes[i]);
+            offset += sizes[i];
+        }
+        builder.write(newRecord);
     }
 
     private CuboidResult scanAndAggregateGridTable(GridTable gridTable, long parentId, long cuboidId, ImmutableBitSet aggregationColumns, ImmutableBitSet measureColumns) throws IOException {
@@ -485,20 +727,14 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
     // ===========================================================================
 
-    private static class CuboidTask implements Comparable<CuboidTask> {
-        final CuboidResult parent;
+    private static class CuboidTask {
+        final CuboidResult parent; // the spanning parent, always built when the task is queued
         final long childCuboidId;
 
         CuboidTask(CuboidResult parent, long childCuboidId) {
             this.parent = parent;
             this.childCuboidId = childCuboidId;
         }
-
-        @Override
-        public int compareTo(CuboidTask o) {
-            long comp = this.childCuboidId - o.childCuboidId;
-            return comp < 0 ? -1 : (comp > 0 ? 1 : 0);
-        }
     }
 
     // ============================================================================
@@ -562,4 +798,67 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
             return 0;
         }
     }
+
+    // ============================================================================
+
+    private static class EncodedInput implements IGTScanner {
+        final GTInfo info;
+        final BlockingQueue<GTRecord[]> input;
+
+        public EncodedInput(GTInfo info, BlockingQueue<GTRecord[]> input) {
+            this.info = info;
+            this.input = input;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return new Iterator<GTRecord>() {
+
+                GTRecord[] batch = new GTRecord[0];
+                int next = 0;
+                boolean eof = false;
+
+                @Override
+                public boolean hasNext() {
+                    while (!eof && next >= batch.length) {
+                        try {
+                            batch = input.take();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        next = 0;
+                        eof = batch.length == 0;
+                    }
+                    return !eof;
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (!hasNext())
+                        throw new IllegalStateException();
+
+                    return batch[next++];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            return 0;
+        }
+    }
 }
@@ -17,6 +17,7 @@
 */
 package org.apache.kylin.cube.inmemcubing;
 
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
 
@@ -48,6 +49,7 @@ public class InMemCubeBuilderInputConverter {
     private final Map<TblColRef, Dictionary<String>> dictionaryMap;
     private final GTInfo gtInfo;
     protected List<byte[]> nullBytes;
+    private ByteArray encodeSpace; // reused by convertCompact(), like the measure ingesters this is not thread safe
     
 
     public InMemCubeBuilderInputConverter(CubeDesc cubeDesc, Map<TblColRef, Dictionary<String>> dictionaryMap, GTInfo gtInfo) {
@@ -67,12 +69,43 @@ public class InMemCubeBuilderInputConverter {
     }
 
     public final void convert(List<String> row, GTRecord record) {
+        record.setValues(buildRecordValues(row));
+    }
+
+    /**
+     * Encode the row into a new record whose columns share one array of just the code bytes, instead of
+     * the max record length. Good for records that are queued in batches for a while.
+     */
+    public final GTRecord convertCompact(List<String> row) {
+        if (encodeSpace == null)
+            encodeSpace = new ByteArray(gtInfo.getMaxRecordLength());
+
+        final GTRecord record = new GTRecord(gtInfo);
+        record.setValues(gtInfo.getAllColumns(), encodeSpace, buildRecordValues(row));
+
+        ByteArray[] cols = record.getInternal();
+        int length = 0;
+        for (ByteArray col : cols) {
+            length += col.length();
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (ByteArray col : cols) {
+            int len = col.length();
+            System.arraycopy(col.array(), col.offset(), bytes, offset, len);
+            col.set(bytes, offset, len);
+            offset += len;
+        }
+        return record;
+    }
+
+    private Object[] buildRecordValues(List<String> row) {
         Object[] dimensions = buildKey(row);
         Object[] metricsValues = buildValue(row);
         Object[] recordValues = new Object[dimensions.length + metricsValues.length];
         System.arraycopy(dimensions, 0, recordValues, 0, dimensions.length);
         System.arraycopy(metricsValues, 0, recordValues, dimensions.length, metricsValues.length);
-        record.setValues(recordValues);
+        return recordValues;
     }
 
     private Object[] buildKey(List<String> row) {
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dictionary encodes input rows into base cuboid records on a few threads, and hands them in batches to
+ * AbstractInMemCubeBuilder.buildFromEncoded(), so the cube builder only aggregates.
+ * 
+ * Rows are written from one thread. The order of the batches is not kept, which does not matter to aggregation.
+ */
+public class InMemCubeBuilderInputEncoder {
+
+    private static Logger logger = LoggerFactory.getLogger(InMemCubeBuilderInputEncoder.class);
+
+    private final BlockingQueue<List<List<String>>> rowBatches;
+    private final BlockingQueue<GTRecord[]> output;
+    private final EncoderThread[] encoders;
+    private final int batchSize;
+
+    private List<List<String>> batch; // rows not yet handed to the encoders
+    private volatile boolean aborted = false;
+    private volatile Throwable exception = null;
+
+    public InMemCubeBuilderInputEncoder(CubeDesc cubeDesc, Map<TblColRef, Dictionary<String>> dictionaryMap, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("encoder threads must be positive: " + threads);
+
+        // smaller batches if a single row is big, like DoggedCubeBuilder does
+        this.batchSize = cubeDesc.hasMemoryHungryMeasures() ? 100 : 1000;
+        this.rowBatches = new ArrayBlockingQueue<List<List<String>>>(threads * 2);
+        this.output = new ArrayBlockingQueue<GTRecord[]>(threads * 2);
+        this.batch = new ArrayList<List<String>>(batchSize);
+
+        long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+        this.encoders = new EncoderThread[threads];
+        for (int i = 0; i < threads; i++) {
+            // the converter, its measure ingesters and code system are not thread safe, one each thread
+            InMemCubeBuilderInputConverter converter = new InMemCubeBuilderInputConverter(cubeDesc, dictionaryMap, CubeGridTable.newGTInfo(cubeDesc, baseCuboidId, dictionaryMap));
+            encoders[i] = new EncoderThread(converter);
+            encoders[i].setName("InputEncoder-" + i);
+            encoders[i].setDaemon(true);
+            encoders[i].start();
+        }
+    }
+
+    /** the input of AbstractInMemCubeBuilder.buildFromEncoded() */
+    public BlockingQueue<GTRecord[]> getOutput() {
+        return output;
+    }
+
+    /**
+     * @return false if the input has been aborted and the row is dropped
+     */
+    public boolean write(List<String> row) throws IOException {
+        checkException();
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            if (!handOver(batch))
+                return false;
+            batch = new ArrayList<List<String>>(batchSize);
+        }
+        return true;
+    }
+
+    /**
+     * Waits all rows encoded and then marks the end of the output. The end is marked even when encoding
+     * failed, so the cube builder quits; the error is thrown after.
+     * 
+     * @return false if the input has been aborted
+     */
+    public boolean finish() throws IOException {
+        if (!batch.isEmpty() && handOver(batch))
+            batch = new ArrayList<List<String>>(batchSize);
+
+        for (int i = 0; i < encoders.length; i++) {
+            handOver(Collections.<List<String>> emptyList()); // one end mark for each encoder
+        }
+        try {
+            for (EncoderThread encoder : encoders) {
+                encoder.join();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while waiting input encoded", e);
+        }
+
+        if (exception != null)
+            output.clear(); // the build is going to fail, save the cube builder some work
+
+        try {
+            while (!aborted) {
+                if (output.offer(new GTRecord[0], 1, TimeUnit.SECONDS))
+                    break;
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while marking end of input", e);
+        }
+
+        checkException();
+        return !aborted;
+    }
+
+    /** stops encoding, e.g. when the cube builder has quit and takes no more input */
+    public void abort() {
+        aborted = true;
+    }
+
+    private boolean isStopped() {
+        return aborted || exception != null;
+    }
+
+    private boolean handOver(List<List<String>> rows) throws IOException {
+        try {
+            while (!rowBatches.offer(rows, 1, TimeUnit.SECONDS)) {
+                if (isStopped())
+                    return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while handing rows to encoders", e);
+        }
+    }
+
+    private void checkException() throws IOException {
+        Throwable t = exception;
+        if (t == null)
+            return;
+        else if (t instanceof IOException)
+            throw (IOException) t;
+        else
+            throw new IOException("Failed to encode input rows", t);
+    }
+
+    private class EncoderThread extends Thread {
+        final InMemCubeBuilderInputConverter converter;
+
+        EncoderThread(InMemCubeBuilderInputConverter converter) {
+            this.converter = converter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isStopped()) {
+                    List<List<String>> rows = rowBatches.poll(1, TimeUnit.SECONDS);
+                    if (rows == null)
+                        continue;
+                    if (rows.isEmpty())
+                        return;
+
+                    GTRecord[] records = new GTRecord[rows.size()];
+                    for (int i = 0; i < records.length; i++) {
+                        records[i] = converter.convertCompact(rows.get(i));
+                    }
+
+                    while (!output.offer(records, 1, TimeUnit.SECONDS)) {
+                        if (isStopped())
+                            return;
+                    }
+                }
+            } catch (Throwable e) {
+                logger.error("Error encoding input rows", e);
+                exception = e;
+            }
+        }
+    }
+}
@@ -55,4 +55,21 @@ public final class InMemCubeBuilderUtils {
         }
         return Pair.newPair(childDimensions, measureColumns);
     }
+
+    /**
+     * True if the child can be calculated from the parent by merging adjacent rows, i.e. the dimensions the child drops
+     * are all at the tail of the parent's rowkey. Rows of a cuboid are sorted by rowkey, so rows sharing the same child
+     * key are contiguous in the parent.
+     */
+    public static final boolean isRowkeySuffixDropped(final long parentCuboidId, final long childCuboidId) {
+        if ((parentCuboidId & childCuboidId) != childCuboidId)
+            return false;
+
+        long dropped = parentCuboidId & ~childCuboidId;
+        if (dropped == 0)
+            return true;
+
+        // every remaining dimension must come before (be a higher bit than) every dropped dimension
+        return Long.numberOfTrailingZeros(childCuboidId) > Long.SIZE - 1 - Long.numberOfLeadingZeros(dropped);
+    }
 }
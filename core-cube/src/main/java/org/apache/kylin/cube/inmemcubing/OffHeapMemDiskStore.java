@@ -0,0 +1,723 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.apache.kylin.common.util.MemoryBudgetController.ONE_MB;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.kylin.common.util.DirectBufferUtil;
+import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.common.util.MemoryBudgetController.MemoryConsumer;
+import org.apache.kylin.common.util.MemoryBudgetController.NotEnoughBudgetException;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.IGTWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A variant of MemDiskStore that keeps data in direct byte buffers instead of on-heap byte arrays, so the mapper heap
+ * needs not be sized for the biggest cuboid. Like ConcurrentDiskStore, it allows concurrent read and exclusive write.
+ * 
+ * The store is a sequence of fixed size chunks. A chunk lives either in native memory, reserved from the budget
+ * controller, or in the spill file at the same offset. When the budget runs out, the writer continues on disk, and
+ * freeUp() spills sealed chunks from the head. Readers resolve each offset on their own and take no lock.
+ * 
+ * A chunk dropped by spilling or clearing frees its native memory as soon as no read is in progress on it, rather
+ * than when the GC gets to it, so the memory given back to the budget controller is really available.
+ */
+public class OffHeapMemDiskStore implements IGTStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapMemDiskStore.class);
+    private static final boolean debug = true;
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final int MEM_CHUNK_SIZE_MB = 5;
+    private static final int MEM_CHUNK_SIZE = MEM_CHUNK_SIZE_MB * ONE_MB;
+
+    private final GTInfo info;
+    private final Object lock; // guards the writer/readers lifecycle, not the reads and writes themselves
+    private final MemPart memPart;
+    private final DiskPart diskPart;
+
+    private Writer activeWriter;
+    private HashSet<Reader> activeReaders = new HashSet<Reader>();
+    private volatile long tailOffset;
+
+    // throughput counters, accumulated as readers close and chunks spill
+    private final AtomicLong memReadBytes = new AtomicLong();
+    private final AtomicLong diskReadBytes = new AtomicLong();
+    private final AtomicLong diskReadNanos = new AtomicLong();
+    private final AtomicLong spillBytes = new AtomicLong();
+    private final AtomicLong spillNanos = new AtomicLong();
+
+    public OffHeapMemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl) throws IOException {
+        this(info, budgetCtrl, File.createTempFile("OffHeapMemDiskStore", ""), true);
+    }
+
+    public OffHeapMemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl, File diskFile) throws IOException {
+        this(info, budgetCtrl, diskFile, false);
+    }
+
+    private OffHeapMemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl, File diskFile, boolean delOnClose) throws IOException {
+        if (!budgetCtrl.isOffHeap() && budgetCtrl.getTotalBudgetMB() > 0)
+            logger.warn(this + " is given a heap memory budget, native memory will be counted as heap");
+
+        this.info = info;
+        this.lock = this;
+        this.memPart = new MemPart(budgetCtrl);
+        this.diskPart = new DiskPart(diskFile, delOnClose);
+
+        // in case user forget to call close()
+        if (delOnClose)
+            diskFile.deleteOnExit();
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public IGTWriter rebuild() throws IOException {
+        return newWriter(0);
+    }
+
+    @Override
+    public IGTWriter append() throws IOException {
+        return newWriter(tailOffset);
+    }
+
+    private Writer newWriter(long startOffset) throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null || !activeReaders.isEmpty())
+                throw new IllegalStateException();
+
+            if (startOffset == 0) {
+                memPart.clear();
+                diskPart.clear();
+                tailOffset = 0;
+            }
+            activeWriter = new Writer(startOffset);
+            return activeWriter;
+        }
+    }
+
+    private void closeWriter(Writer w) {
+        synchronized (lock) {
+            if (activeWriter != w)
+                throw new IllegalStateException();
+
+            activeWriter = null;
+        }
+    }
+
+    @Override
+    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null)
+                throw new IllegalStateException();
+
+            Reader r = new Reader();
+            activeReaders.add(r);
+            return r;
+        }
+    }
+
+    private void closeReader(Reader r) {
+        synchronized (lock) {
+            activeReaders.remove(r);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null || !activeReaders.isEmpty())
+                throw new IllegalStateException();
+
+            memPart.clear();
+            diskPart.close();
+        }
+    }
+
+    public long length() {
+        return tailOffset;
+    }
+
+    public long getMemReadBytes() {
+        return memReadBytes.get();
+    }
+
+    public long getDiskReadBytes() {
+        return diskReadBytes.get();
+    }
+
+    /** read throughput of the disk part in MB per second, zero if nothing was read from disk */
+    public double getDiskReadMBPerSecond() {
+        return mbPerSecond(diskReadBytes.get(), diskReadNanos.get());
+    }
+
+    public long getSpillBytes() {
+        return spillBytes.get();
+    }
+
+    /** spill throughput in MB per second, zero if nothing was spilled */
+    public double getSpillMBPerSecond() {
+        return mbPerSecond(spillBytes.get(), spillNanos.get());
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return nanos == 0 ? 0 : (double) bytes / ONE_MB / (nanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapMemDiskStore@" + (info.getTableName() == null ? this.hashCode() : info.getTableName());
+    }
+
+    // ============================================================================
+
+    private class Reader implements IGTScanner {
+
+        final DataInputStream din;
+        long readOffset = 0;
+        long memRead = 0;
+        long diskRead = 0;
+        long diskNanos = 0;
+        int count = 0;
+
+        Reader() throws IOException {
+            if (debug)
+                logger.debug(OffHeapMemDiskStore.this + " read start @ " + readOffset);
+
+            InputStream in = new InputStream() {
+                byte[] tmp = new byte[1];
+
+                @Override
+                public int read() throws IOException {
+                    int n = read(tmp, 0, 1);
+                    if (n <= 0)
+                        return -1;
+                    else
+                        return (int) tmp[0];
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (available() <= 0)
+                        return -1;
+
+                    int lenToGo = Math.min(available(), len);
+                    int nRead = 0;
+                    while (lenToGo > 0) {
+                        int n = memPart.read(readOffset, b, off, lenToGo);
+                        if (n > 0) {
+                            memRead += n;
+                        } else {
+                            // not in memory, could have been spilled, so the disk must hold it now
+                            long start = System.nanoTime();
+                            n = diskPart.read(readOffset, b, off, Math.min(lenToGo, memPart.chunkRemaining(readOffset)));
+                            diskNanos += System.nanoTime() - start;
+                            diskRead += n;
+                        }
+                        lenToGo -= n;
+                        nRead += n;
+                        off += n;
+                        readOffset += n;
+                    }
+                    return nRead;
+                }
+
+                @Override
+                public int available() throws IOException {
+                    return (int) Math.min(tailOffset - readOffset, Integer.MAX_VALUE);
+                }
+            };
+
+            din = new DataInputStream(new BufferedInputStream(in, STREAM_BUFFER_SIZE));
+        }
+
+        @Override
+        public void close() throws IOException {
+            din.close();
+            memReadBytes.addAndGet(memRead);
+            diskReadBytes.addAndGet(diskRead);
+            diskReadNanos.addAndGet(diskNanos);
+            closeReader(this);
+            if (debug)
+                logger.debug(OffHeapMemDiskStore.this + " read end @ " + readOffset + ", " + memRead + " from mem, " + diskRead + " from disk");
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            count = 0;
+            return new Iterator<GTRecord>() {
+                GTRecord record = new GTRecord(info);
+                GTRecord next;
+                ByteBuffer buf = ByteBuffer.allocate(info.getMaxRecordLength());
+
+                @Override
+                public boolean hasNext() {
+                    if (next != null)
+                        return true;
+
+                    try {
+                        if (din.available() > 0) {
+                            int len = din.readInt();
+                            din.readFully(buf.array(), buf.arrayOffset(), len);
+                            buf.clear();
+                            buf.limit(len);
+                            record.loadColumns(info.getAllColumns(), buf);
+                            next = record;
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    return next != null;
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (next == null) {
+                        hasNext();
+                        if (next == null)
+                            throw new NoSuchElementException();
+                    }
+                    GTRecord r = next;
+                    next = null;
+                    count++;
+                    return r;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            return count;
+        }
+    }
+
+    private class Writer implements IGTWriter {
+
+        final DataOutputStream dout;
+        final ByteBuffer buf;
+        long writeOffset;
+        long memWrite = 0;
+        long diskWrite = 0;
+        boolean closed = false;
+
+        Writer(long startOffset) throws IOException {
+            buf = ByteBuffer.allocate(info.getMaxRecordLength());
+            writeOffset = startOffset;
+            memPart.activateMemWrite();
+            if (debug)
+                logger.debug(OffHeapMemDiskStore.this + " write start @ " + writeOffset);
+
+            OutputStream out = new OutputStream() {
+                byte[] tmp = new byte[1];
+
+                @Override
+                public void write(int b) throws IOException {
+                    tmp[0] = (byte) b;
+                    write(tmp, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    while (length > 0) {
+                        int n = memPart.write(writeOffset, bytes, offset, length);
+                        if (n > 0) {
+                            memWrite += n;
+                        } else {
+                            n = diskPart.write(writeOffset, bytes, offset, Math.min(length, memPart.chunkRemaining(writeOffset)));
+                            diskWrite += n;
+                        }
+                        offset += n;
+                        length -= n;
+                        writeOffset += n;
+                    }
+                }
+            };
+            dout = new DataOutputStream(new BufferedOutputStream(out, STREAM_BUFFER_SIZE));
+        }
+
+        @Override
+        public void write(GTRecord rec) throws IOException {
+            buf.clear();
+            rec.exportColumns(info.getAllColumns(), buf);
+
+            int len = buf.position();
+            dout.writeInt(len);
+            dout.write(buf.array(), buf.arrayOffset(), len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            dout.close();
+            memPart.deactivateMemWrite();
+            tailOffset = writeOffset;
+            closed = true;
+            closeWriter(this);
+            if (debug)
+                logger.debug(OffHeapMemDiskStore.this + " write end @ " + writeOffset + ", " + memWrite + " to mem, " + diskWrite + " to disk");
+        }
+    }
+
+    private static class MemChunk {
+        final long headOffset;
+        final ByteBuffer data; // direct buffer, only read through duplicates
+        final AtomicInteger refCount = new AtomicInteger(1); // one for the store until dropped, plus one per read in progress
+        volatile int length;
+        volatile boolean sealed; // no more writes, safe to spill
+
+        MemChunk(long headOffset) {
+            this.headOffset = headOffset;
+            this.data = ByteBuffer.allocateDirect(MEM_CHUNK_SIZE);
+        }
+
+        /** pin the data for a read, or return false if it is already freed */
+        boolean retain() {
+            while (true) {
+                int n = refCount.get();
+                if (n <= 0)
+                    return false;
+                if (refCount.compareAndSet(n, n + 1))
+                    return true;
+            }
+        }
+
+        void release() {
+            if (refCount.decrementAndGet() == 0)
+                DirectBufferUtil.free(data);
+        }
+    }
+
+    private class MemPart implements MemoryConsumer {
+
+        final MemoryBudgetController budgetCtrl;
+        final Object spillLock = new Object(); // guards chunk allocation and spilling, never held across reserve()
+
+        // chunk i covers [i * MEM_CHUNK_SIZE, (i + 1) * MEM_CHUNK_SIZE), null if the range is on disk
+        volatile AtomicReferenceArray<MemChunk> chunks = new AtomicReferenceArray<MemChunk>(16);
+        int liveChunkCount;
+        int spillHead; // chunks before this index are all on disk
+        boolean writeActivated;
+
+        // the writer's view of the chunk being written
+        MemChunk writeChunk;
+        ByteBuffer writeView;
+
+        MemPart(MemoryBudgetController budgetCtrl) {
+            this.budgetCtrl = budgetCtrl;
+        }
+
+        int chunkRemaining(long offset) {
+            return (int) (MEM_CHUNK_SIZE - offset % MEM_CHUNK_SIZE);
+        }
+
+        /** read from memory, or return 0 if the offset is not in memory */
+        int read(long offset, byte[] b, int off, int len) {
+            AtomicReferenceArray<MemChunk> snapshot = chunks;
+            int idx = (int) (offset / MEM_CHUNK_SIZE);
+            MemChunk chunk = idx < snapshot.length() ? snapshot.get(idx) : null;
+            if (chunk == null || !chunk.retain())
+                return 0;
+
+            // the chunk may be spilled meanwhile, but its data is not freed until we release it
+            try {
+                int chunkOffset = (int) (offset - chunk.headOffset);
+                int n = Math.min(chunk.length - chunkOffset, len);
+                if (n <= 0)
+                    return 0;
+
+                ByteBuffer view = chunk.data.duplicate();
+                view.position(chunkOffset);
+                view.get(b, off, n);
+                return n;
+            } finally {
+                chunk.release();
+            }
+        }
+
+        /** write to memory, or return 0 if the memory budget is used up */
+        int write(long offset, byte[] bytes, int off, int len) {
+            if (!writeActivated)
+                return 0;
+
+            if (writeChunk == null || writeChunk.headOffset + MEM_CHUNK_SIZE <= offset) {
+                if (writeChunk != null)
+                    writeChunk.sealed = true;
+                writeChunk = null;
+                writeView = null;
+                if (!allocateChunk(offset))
+                    return 0;
+            }
+
+            int n = Math.min(len, chunkRemaining(offset));
+            writeView.position((int) (offset - writeChunk.headOffset));
+            writeView.put(bytes, off, n);
+            writeChunk.length = writeView.position();
+            return n;
+        }
+
+        private boolean allocateChunk(long offset) {
+            int idx = (int) (offset / MEM_CHUNK_SIZE);
+            MemChunk chunk;
+            synchronized (spillLock) {
+                chunk = idx < chunks.length() ? chunks.get(idx) : null;
+            }
+
+            // appending into a chunk that is still in memory
+            if (chunk != null && !chunk.sealed) {
+                writeChunk = chunk;
+                writeView = chunk.data.duplicate();
+                return true;
+            }
+            // the range was written before and is now on disk, stay on disk
+            if (offset % MEM_CHUNK_SIZE != 0)
+                return false;
+
+            // call to budgetCtrl.reserve() must be out of synchronized block, or deadlock may happen between MemoryConsumers
+            int requestMB;
+            synchronized (spillLock) {
+                requestMB = (liveChunkCount + 1) * MEM_CHUNK_SIZE_MB;
+            }
+            try {
+                budgetCtrl.reserve(this, requestMB);
+            } catch (NotEnoughBudgetException ex) {
+                deactivateMemWrite();
+                return false;
+            }
+
+            chunk = new MemChunk(offset);
+            int correctMB;
+            synchronized (spillLock) {
+                AtomicReferenceArray<MemChunk> array = chunks;
+                if (idx >= array.length()) {
+                    AtomicReferenceArray<MemChunk> grown = new AtomicReferenceArray<MemChunk>(Math.max(array.length() * 2, idx + 1));
+                    for (int i = 0; i < array.length(); i++) {
+                        grown.set(i, array.get(i));
+                    }
+                    array = grown;
+                    chunks = grown;
+                }
+                array.set(idx, chunk);
+                liveChunkCount++;
+                correctMB = liveChunkCount * MEM_CHUNK_SIZE_MB;
+            }
+            // our own head chunks may have been spilled by the reserve() above, give back what they held
+            if (correctMB < requestMB) {
+                try {
+                    budgetCtrl.reserve(this, correctMB);
+                } catch (NotEnoughBudgetException ex) {
+                    // a concurrent freeUp() has already lowered the booking
+                }
+            }
+
+            writeChunk = chunk;
+            writeView = chunk.data.duplicate();
+            return true;
+        }
+
+        void activateMemWrite() {
+            if (budgetCtrl.getTotalBudgetMB() > 0) {
+                writeActivated = true;
+                if (debug)
+                    logger.debug(OffHeapMemDiskStore.this + " mem write activated");
+            }
+        }
+
+        void deactivateMemWrite() {
+            if (writeChunk != null)
+                writeChunk.sealed = true;
+            writeChunk = null;
+            writeView = null;
+            writeActivated = false;
+            if (debug)
+                logger.debug(OffHeapMemDiskStore.this + " mem write de-activated");
+        }
+
+        @Override
+        public int freeUp(int mb) {
+            synchronized (spillLock) {
+                int mbReleased = 0;
+                AtomicReferenceArray<MemChunk> array = chunks;
+                while (mbReleased < mb && spillHead < array.length()) {
+                    MemChunk chunk = array.get(spillHead);
+                    if (chunk != null) {
+                        if (!chunk.sealed)
+                            break;
+
+                        try {
+                            spill(chunk);
+                        } catch (IOException e) {
+                            logger.error(OffHeapMemDiskStore.this + " failed to spill chunk @ " + chunk.headOffset, e);
+                            break;
+                        }
+                        array.set(spillHead, null);
+                        chunk.release();
+                        liveChunkCount--;
+                        mbReleased += MEM_CHUNK_SIZE_MB;
+                    }
+                    spillHead++;
+                }
+                return mbReleased;
+            }
+        }
+
+        private void spill(MemChunk chunk) throws IOException {
+            long start = System.nanoTime();
+            ByteBuffer view = chunk.data.duplicate();
+            view.position(0);
+            view.limit(chunk.length);
+            diskPart.write(chunk.headOffset, view);
+            spillNanos.addAndGet(System.nanoTime() - start);
+            spillBytes.addAndGet(chunk.length);
+        }
+
+        void clear() {
+            synchronized (spillLock) {
+                AtomicReferenceArray<MemChunk> array = chunks;
+                for (int i = 0; i < array.length(); i++) {
+                    MemChunk chunk = array.get(i);
+                    if (chunk != null)
+                        chunk.release();
+                }
+                chunks = new AtomicReferenceArray<MemChunk>(16);
+                liveChunkCount = 0;
+                spillHead = 0;
+                writeChunk = null;
+                writeView = null;
+            }
+            budgetCtrl.reserve(this, 0);
+        }
+
+        @Override
+        public String toString() {
+            return OffHeapMemDiskStore.this.toString();
+        }
+    }
+
+    private class DiskPart implements Closeable {
+        final File diskFile;
+        final boolean delOnClose;
+        volatile FileChannel channel; // positional read and write are thread safe, shared by all
+
+        DiskPart(File diskFile, boolean delOnClose) {
+            this.diskFile = diskFile;
+            this.delOnClose = delOnClose;
+            if (debug)
+                logger.debug(OffHeapMemDiskStore.this + " disk file " + diskFile.getAbsolutePath());
+        }
+
+        private FileChannel channel() throws IOException {
+            FileChannel c = channel;
+            if (c == null) {
+                synchronized (this) {
+                    if (channel == null)
+                        channel = FileChannel.open(diskFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    c = channel;
+                }
+            }
+            return c;
+        }
+
+        int read(long diskOffset, byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer dst = ByteBuffer.wrap(bytes, offset, length);
+            FileChannel c = channel();
+            while (dst.hasRemaining()) {
+                int n = c.read(dst, diskOffset + dst.position() - offset);
+                if (n < 0)
+                    throw new EOFException(OffHeapMemDiskStore.this + " @ " + diskOffset);
+            }
+            return length;
+        }
+
+        int write(long diskOffset, byte[] bytes, int offset, int length) throws IOException {
+            write(diskOffset, ByteBuffer.wrap(bytes, offset, length));
+            return length;
+        }
+
+        void write(long diskOffset, ByteBuffer src) throws IOException {
+            FileChannel c = channel();
+            long pos = diskOffset;
+            while (src.hasRemaining()) {
+                pos += c.write(src, pos);
+            }
+        }
+
+        void clear() throws IOException {
+            closeChannel();
+            diskFile.delete();
+        }
+
+        private synchronized void closeChannel() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeChannel();
+            if (delOnClose) {
+                diskFile.delete();
+            }
+        }
+    }
+
+}
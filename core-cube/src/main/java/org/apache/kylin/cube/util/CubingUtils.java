@@ -41,12 +41,9 @@ import java.util.Map;
 
 import javax.annotation.Nullable;
 
-import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeSegment;
-import org.apache.kylin.cube.cuboid.Cuboid;
-import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
 import org.apache.kylin.dict.DictionaryGenerator;
@@ -62,11 +59,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 
 /**
  */
@@ -76,75 +69,12 @@ public class CubingUtils {
 
     public static Map<Long, HyperLogLogPlusCounter> sampling(CubeDesc cubeDesc, Iterable<List<String>> streams) {
         CubeJoinedFlatTableDesc intermediateTableDesc = new CubeJoinedFlatTableDesc(cubeDesc, null);
-        final int rowkeyLength = cubeDesc.getRowkey().getRowKeyColumns().length;
-        final List<Long> allCuboidIds = new CuboidScheduler(cubeDesc).getAllCuboidIds();
-        final long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
-        final Map<Long, Integer[]> allCuboidsBitSet = Maps.newHashMap();
-
-        Lists.transform(allCuboidIds, new Function<Long, Integer[]>() {
-            @Nullable
-            @Override
-            public Integer[] apply(@Nullable Long cuboidId) {
-                Integer[] result = new Integer[Long.bitCount(cuboidId)];
-
-                long mask = Long.highestOneBit(baseCuboidId);
-                int position = 0;
-                for (int i = 0; i < rowkeyLength; i++) {
-                    if ((mask & cuboidId) > 0) {
-                        result[position] = i;
-                        position++;
-                    }
-                    mask = mask >> 1;
-                }
-                return result;
-            }
-        });
-        final Map<Long, HyperLogLogPlusCounter> result = Maps.newHashMapWithExpectedSize(allCuboidIds.size());
-        for (Long cuboidId : allCuboidIds) {
-            result.put(cuboidId, new HyperLogLogPlusCounter(cubeDesc.getConfig().getCubeStatsHLLPrecision()));
-            Integer[] cuboidBitSet = new Integer[Long.bitCount(cuboidId)];
-
-            long mask = Long.highestOneBit(baseCuboidId);
-            int position = 0;
-            for (int i = 0; i < rowkeyLength; i++) {
-                if ((mask & cuboidId) > 0) {
-                    cuboidBitSet[position] = i;
-                    position++;
-                }
-                mask = mask >> 1;
-            }
-            allCuboidsBitSet.put(cuboidId, cuboidBitSet);
-        }
-
-        HashFunction hf = Hashing.murmur3_32();
-        ByteArray[] row_hashcodes = new ByteArray[rowkeyLength];
-        for (int i = 0; i < rowkeyLength; i++) {
-            row_hashcodes[i] = new ByteArray();
-        }
+        final int[] rowKeyColumnIndexes = intermediateTableDesc.getRowKeyColumnIndexes();
+        CuboidStatsCollector collector = new CuboidStatsCollector(cubeDesc, cubeDesc.getConfig().getCubeStatsHLLPrecision());
         for (List<String> row : streams) {
-            //generate hash for each row key column
-            for (int i = 0; i < rowkeyLength; i++) {
-                Hasher hc = hf.newHasher();
-                final String cell = row.get(intermediateTableDesc.getRowKeyColumnIndexes()[i]);
-                if (cell != null) {
-                    row_hashcodes[i].set(hc.putString(cell).hash().asBytes());
-                } else {
-                    row_hashcodes[i].set(hc.putInt(0).hash().asBytes());
-                }
-            }
-
-            for (Map.Entry<Long, HyperLogLogPlusCounter> longHyperLogLogPlusCounterEntry : result.entrySet()) {
-                Long cuboidId = longHyperLogLogPlusCounterEntry.getKey();
-                HyperLogLogPlusCounter counter = longHyperLogLogPlusCounterEntry.getValue();
-                Hasher hc = hf.newHasher();
-                final Integer[] cuboidBitSet = allCuboidsBitSet.get(cuboidId);
-                for (int position = 0; position < cuboidBitSet.length; position++) {
-                    hc.putBytes(row_hashcodes[cuboidBitSet[position]].array());
-                }
-                counter.add(hc.hash().asBytes());
-            }
+            collector.addRow(row, rowKeyColumnIndexes);
         }
-        return result;
+        return collector.getCuboidCounters();
     }
 
     public static Map<TblColRef, Dictionary<String>> buildDictionary(final CubeInstance cubeInstance, Iterable<List<String>> recordList) throws IOException {
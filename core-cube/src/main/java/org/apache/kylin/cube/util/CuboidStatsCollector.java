@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.cube.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.measure.hllc.HyperLogLogPlusCounter;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Estimates the row count of every cuboid from rows of rowkey column values.
+ *
+ * Each column value is hashed once into a long, and the hash of a cuboid is the XOR of its column hashes.
+ * Cuboids are visited along the spanning tree of CuboidScheduler, so a child only XORs out the columns
+ * it drops from its parent. Nothing is allocated per row.
+ */
+public class CuboidStatsCollector {
+
+    /**
+     * Version of the hashing stored with the statistics. Counters of different versions share no hash values
+     * and can not be merged, 0 stands for the murmur3 hasher of builds before this class.
+     */
+    public static final int HASH_VERSION = 1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long NULL_HASH = 0x9ae16a3b2f90404fL;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final int nRowKey;
+    private final long[] cuboidIds; // in spanning tree pre-order, base cuboid first
+    private final int[] parents; // index of the parent cuboid, -1 for base cuboid
+    private final int[][] droppedColumns; // rowkey columns in the parent but not in the cuboid
+    private final HyperLogLogPlusCounter[] counters;
+
+    private final long[] columnHashes;
+    private final long[] cuboidHashes;
+
+    public CuboidStatsCollector(CubeDesc cubeDesc, int hllPrecision) {
+        this.nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
+
+        long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+        List<Long> idList = Lists.newArrayList();
+        List<Integer> parentList = Lists.newArrayList();
+        addCuboid(new CuboidScheduler(cubeDesc), baseCuboidId, -1, idList, parentList);
+
+        int n = idList.size();
+        this.cuboidIds = new long[n];
+        this.parents = new int[n];
+        this.droppedColumns = new int[n][];
+        this.counters = new HyperLogLogPlusCounter[n];
+        for (int i = 0; i < n; i++) {
+            cuboidIds[i] = idList.get(i);
+            parents[i] = parentList.get(i);
+            long columns = parents[i] < 0 ? baseCuboidId : cuboidIds[parents[i]] & ~cuboidIds[i];
+            droppedColumns[i] = toColumnIndexes(columns, baseCuboidId);
+            counters[i] = new HyperLogLogPlusCounter(hllPrecision);
+        }
+
+        this.columnHashes = new long[nRowKey];
+        this.cuboidHashes = new long[n];
+    }
+
+    private static void addCuboid(CuboidScheduler scheduler, long cuboidId, int parent, List<Long> idList, List<Integer> parentList) {
+        int index = idList.size();
+        idList.add(cuboidId);
+        parentList.add(parent);
+        Collection<Long> children = scheduler.getSpanningCuboid(cuboidId);
+        for (Long child : children) {
+            addCuboid(scheduler, child, index, idList, parentList);
+        }
+    }
+
+    private int[] toColumnIndexes(long columns, long baseCuboidId) {
+        int[] result = new int[Long.bitCount(columns)];
+        long mask = Long.highestOneBit(baseCuboidId);
+        int position = 0;
+        for (int i = 0; i < nRowKey; i++) {
+            if ((mask & columns) != 0) {
+                result[position++] = i;
+            }
+            mask = mask >> 1;
+        }
+        return result;
+    }
+
+    /**
+     * @param rowkeyValues values of the rowkey columns, in rowkey order
+     */
+    public void addRow(String[] rowkeyValues) {
+        for (int i = 0; i < nRowKey; i++) {
+            columnHashes[i] = hashColumn(i, rowkeyValues[i]);
+        }
+        update();
+    }
+
+    /**
+     * @param rowkeyColumnIndexes position of each rowkey column in the row, in rowkey order
+     */
+    public void addRow(String[] row, int[] rowkeyColumnIndexes) {
+        for (int i = 0; i < nRowKey; i++) {
+            columnHashes[i] = hashColumn(i, row[rowkeyColumnIndexes[i]]);
+        }
+        update();
+    }
+
+    public void addRow(List<String> row, int[] rowkeyColumnIndexes) {
+        for (int i = 0; i < nRowKey; i++) {
+            columnHashes[i] = hashColumn(i, row.get(rowkeyColumnIndexes[i]));
+        }
+        update();
+    }
+
+    private void update() {
+        for (int i = 0; i < cuboidIds.length; i++) {
+            long hash = parents[i] < 0 ? 0 : cuboidHashes[parents[i]];
+            int[] dropped = droppedColumns[i];
+            for (int j = 0; j < dropped.length; j++) {
+                hash ^= columnHashes[dropped[j]];
+            }
+            cuboidHashes[i] = hash;
+            counters[i].addHashDirectly(hash);
+        }
+    }
+
+    static long hashColumn(int column, String value) {
+        long h;
+        if (value == null) {
+            h = NULL_HASH;
+        } else {
+            h = FNV_OFFSET;
+            for (int i = 0, n = value.length(); i < n; i++) {
+                h ^= value.charAt(i);
+                h *= FNV_PRIME;
+            }
+        }
+        // salt by column so that equal values of different columns don't cancel out in the XOR
+        return mix(h + (column + 1) * GOLDEN_GAMMA);
+    }
+
+    // murmur3 fmix64, spreads the bits evenly for the hll buckets and leading zeros
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public long[] getCuboidIds() {
+        return cuboidIds;
+    }
+
+    public HyperLogLogPlusCounter[] getCounters() {
+        return counters;
+    }
+
+    public Map<Long, HyperLogLogPlusCounter> getCuboidCounters() {
+        Map<Long, HyperLogLogPlusCounter> result = Maps.newHashMapWithExpectedSize(cuboidIds.length);
+        for (int i = 0; i < cuboidIds.length; i++) {
+            result.put(cuboidIds[i], counters[i]);
+        }
+        return result;
+    }
+}
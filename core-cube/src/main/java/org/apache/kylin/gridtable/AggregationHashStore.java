@@ -0,0 +1,475 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.DirectBufferUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.basic.DoubleMaxAggregator;
+import org.apache.kylin.measure.basic.DoubleMinAggregator;
+import org.apache.kylin.measure.basic.DoubleSumAggregator;
+import org.apache.kylin.measure.basic.LongMaxAggregator;
+import org.apache.kylin.measure.basic.LongMinAggregator;
+import org.apache.kylin.measure.basic.LongSumAggregator;
+import org.apache.kylin.metadata.datatype.DoubleMutable;
+import org.apache.kylin.metadata.datatype.LongMutable;
+
+/**
+ * An open addressing hash table as the alternative group store of GTAggregateScanner.
+ * <p/>
+ * Group keys live in fixed-width slots of a direct buffer, only the group by bytes (the compare mask)
+ * take part in hashing and equality. Basic long/double SUM, MIN, MAX measures keep their state as primitives
+ * in another direct buffer and are read straight from the serialized bytes, other measures fall back to
+ * MeasureAggregator objects on heap. Entries are sorted only when iterated, i.e. at spill or output time.
+ * The direct buffers are freed as soon as they are replaced, call free() when done with the store.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+class AggregationHashStore {
+
+    static final int INITIAL_CAPACITY = 1024;
+    static final float LOAD_FACTOR = 0.75f;
+
+    static final byte KIND_OBJECT = 0;
+    static final byte KIND_LONG_SUM = 1;
+    static final byte KIND_LONG_MIN = 2;
+    static final byte KIND_LONG_MAX = 3;
+    static final byte KIND_DOUBLE_SUM = 4;
+    static final byte KIND_DOUBLE_MIN = 5;
+    static final byte KIND_DOUBLE_MAX = 6;
+
+    final GTInfo info;
+    final ImmutableBitSet metrics;
+    final String[] metricsAggrFuncs;
+    final boolean[] primitiveAggr; // measures that MeasureAggregator.aggregateSerialized() can take
+    final int keyLength;
+    final int[] groupByOffsets; // offsets of the group by bytes inside a key
+    final byte[] kinds;
+    final int[] primIndex; // position in primitive state area, -1 for object measures
+    final int nPrims;
+    final boolean hasObjects;
+    final int valueLength; // 8 bytes state + 1 byte "has value" flag for each primitive measure
+
+    int capacity;
+    int size;
+    int lastInsertedSlot = -1;
+    ByteBuffer keys;
+    ByteBuffer values;
+    int[] hashes;
+    boolean[] occupied;
+    MeasureAggregator[][] objAggrs;
+
+    public AggregationHashStore(GTInfo info, ImmutableBitSet metrics, String[] metricsAggrFuncs, boolean[] primitiveAggr, boolean[] compareMask) {
+        this.info = info;
+        this.metrics = metrics;
+        this.metricsAggrFuncs = metricsAggrFuncs;
+        this.primitiveAggr = primitiveAggr;
+        this.keyLength = compareMask.length;
+
+        int n = 0;
+        for (boolean m : compareMask) {
+            if (m)
+                n++;
+        }
+        this.groupByOffsets = new int[n];
+        for (int i = 0, j = 0; i < compareMask.length; i++) {
+            if (compareMask[i])
+                groupByOffsets[j++] = i;
+        }
+
+        MeasureAggregator[] samples = newAggregators();
+        this.kinds = new byte[samples.length];
+        this.primIndex = new int[samples.length];
+        int prims = 0;
+        boolean objects = false;
+        for (int i = 0; i < samples.length; i++) {
+            // primitive slots read the serialized bytes, only for the serializers that aggregateSerialized() knows
+            kinds[i] = primitiveAggr[i] ? kindOf(samples[i]) : KIND_OBJECT;
+            if (kinds[i] == KIND_OBJECT) {
+                primIndex[i] = -1;
+                objects = true;
+            } else {
+                primIndex[i] = prims++;
+            }
+        }
+        this.nPrims = prims;
+        this.hasObjects = objects;
+        this.valueLength = nPrims * 9;
+
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private static byte kindOf(MeasureAggregator aggr) {
+        if (aggr instanceof LongSumAggregator)
+            return KIND_LONG_SUM;
+        if (aggr instanceof LongMinAggregator)
+            return KIND_LONG_MIN;
+        if (aggr instanceof LongMaxAggregator)
+            return KIND_LONG_MAX;
+        if (aggr instanceof DoubleSumAggregator)
+            return KIND_DOUBLE_SUM;
+        if (aggr instanceof DoubleMinAggregator)
+            return KIND_DOUBLE_MIN;
+        if (aggr instanceof DoubleMaxAggregator)
+            return KIND_DOUBLE_MAX;
+        return KIND_OBJECT;
+    }
+
+    private MeasureAggregator[] newAggregators() {
+        return info.codeSystem.newMetricsAggregators(metrics, metricsAggrFuncs);
+    }
+
+    private void allocate(int newCapacity) {
+        if ((long) newCapacity * Math.max(keyLength, valueLength) > Integer.MAX_VALUE)
+            throw new IllegalStateException("AggregationHashStore cannot grow beyond " + capacity + " slots");
+
+        DirectBufferUtil.free(keys);
+        DirectBufferUtil.free(values);
+        keys = null;
+        values = null;
+
+        capacity = newCapacity;
+        size = 0;
+        lastInsertedSlot = -1;
+        keys = ByteBuffer.allocateDirect(Math.max(1, capacity * keyLength));
+        values = ByteBuffer.allocateDirect(Math.max(1, capacity * valueLength));
+        hashes = new int[capacity];
+        occupied = new boolean[capacity];
+        objAggrs = hasObjects ? new MeasureAggregator[capacity][] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** drop all entries and shrink back to initial capacity */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /** release the direct buffers, the store cannot be used afterwards */
+    public void free() {
+        DirectBufferUtil.free(keys);
+        DirectBufferUtil.free(values);
+        keys = null;
+        values = null;
+        size = 0;
+    }
+
+    public long estimatedMemSize() {
+        if (size == 0)
+            return 0;
+
+        long est = (long) capacity * (keyLength + valueLength) // off-heap slots
+                + (long) capacity * (4 + 1) // hashes and occupied flags
+                + (long) capacity * (hasObjects ? 8 : 0); // refs to object aggregators
+        if (hasObjects && lastInsertedSlot >= 0) {
+            est += GTAggregateScanner.estimateSizeOf(objAggrs[lastInsertedSlot]) * size;
+        }
+        return est;
+    }
+
+    private int hash(byte[] key) {
+        int h = 1;
+        for (int off : groupByOffsets) {
+            h = 31 * h + key[off];
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean keyEquals(int slot, byte[] key) {
+        int base = slot * keyLength;
+        for (int off : groupByOffsets) {
+            if (keys.get(base + off) != key[off])
+                return false;
+        }
+        return true;
+    }
+
+    private int findOrInsert(byte[] key) {
+        if (size + 1 > capacity * LOAD_FACTOR) {
+            rehash(capacity * 2);
+        }
+
+        int h = hash(key);
+        int mask = capacity - 1;
+        int slot = h & mask;
+        while (occupied[slot]) {
+            if (hashes[slot] == h && keyEquals(slot, key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+
+        occupied[slot] = true;
+        hashes[slot] = h;
+        ByteBuffer dup = keys.duplicate();
+        dup.position(slot * keyLength);
+        dup.put(key, 0, keyLength);
+        if (hasObjects) {
+            objAggrs[slot] = newAggregators();
+        }
+        size++;
+        lastInsertedSlot = slot;
+        return slot;
+    }
+
+    private void rehash(int newCapacity) {
+        int oldCapacity = capacity;
+        ByteBuffer oldKeys = keys;
+        ByteBuffer oldValues = values;
+        int[] oldHashes = hashes;
+        boolean[] oldOccupied = occupied;
+        MeasureAggregator[][] oldObjAggrs = objAggrs;
+        int oldSize = size;
+
+        keys = null; // keep the old buffers alive through allocate(), they are freed after copied
+        values = null;
+        allocate(newCapacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            if (!oldOccupied[i])
+                continue;
+
+            int slot = oldHashes[i] & mask;
+            while (occupied[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            occupied[slot] = true;
+            hashes[slot] = oldHashes[i];
+            copy(oldKeys, i * keyLength, keys, slot * keyLength, keyLength);
+            copy(oldValues, i * valueLength, values, slot * valueLength, valueLength);
+            if (hasObjects) {
+                objAggrs[slot] = oldObjAggrs[i];
+            }
+            lastInsertedSlot = slot;
+        }
+        size = oldSize;
+
+        DirectBufferUtil.free(oldKeys);
+        DirectBufferUtil.free(oldValues);
+    }
+
+    private static void copy(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int length) {
+        if (length == 0)
+            return;
+        ByteBuffer s = src.duplicate();
+        s.limit(srcOffset + length);
+        s.position(srcOffset);
+        ByteBuffer d = dst.duplicate();
+        d.position(dstOffset);
+        d.put(s);
+    }
+
+    /** aggregate the metrics of a record into the group of given key, the key array can be reused by caller */
+    public void aggregate(byte[] key, GTRecord r, boolean[] aggrMask) {
+        int slot = findOrInsert(key);
+        int base = slot * valueLength;
+        for (int i = 0; i < kinds.length; i++) {
+            if (!aggrMask[i])
+                continue;
+
+            int col = metrics.trueBitAt(i);
+            byte[] bytes = r.cols[col].array();
+            int offset = r.cols[col].offset();
+            if (kinds[i] != KIND_OBJECT) {
+                aggregatePrimitive(kinds[i], base + primIndex[i] * 8, base + nPrims * 8 + primIndex[i], bytes, offset);
+            } else if (primitiveAggr[i]) {
+                objAggrs[slot][i].aggregateSerialized(bytes, offset);
+            } else {
+                objAggrs[slot][i].aggregate(info.codeSystem.decodeColumnValue(col, r.cols[col].asBuffer()));
+            }
+        }
+    }
+
+    // the bytes are what LongSerializer (vlong) or DoubleSerializer writes, same as the aggregateSerialized() of the basic aggregators
+    private void aggregatePrimitive(byte kind, int pos, int flagPos, byte[] bytes, int offset) {
+        boolean first = values.get(flagPos) == 0;
+        switch (kind) {
+        case KIND_LONG_SUM:
+            values.putLong(pos, values.getLong(pos) + BytesUtil.readVLong(bytes, offset));
+            break;
+        case KIND_LONG_MIN: {
+            long v = BytesUtil.readVLong(bytes, offset);
+            if (first || v < values.getLong(pos))
+                values.putLong(pos, v);
+            break;
+        }
+        case KIND_LONG_MAX: {
+            long v = BytesUtil.readVLong(bytes, offset);
+            if (first || v > values.getLong(pos))
+                values.putLong(pos, v);
+            break;
+        }
+        case KIND_DOUBLE_SUM:
+            values.putDouble(pos, values.getDouble(pos) + Bytes.toDouble(bytes, offset));
+            break;
+        case KIND_DOUBLE_MIN: {
+            double v = Bytes.toDouble(bytes, offset);
+            if (first || v < values.getDouble(pos))
+                values.putDouble(pos, v);
+            break;
+        }
+        case KIND_DOUBLE_MAX: {
+            double v = Bytes.toDouble(bytes, offset);
+            if (first || v > values.getDouble(pos))
+                values.putDouble(pos, v);
+            break;
+        }
+        default:
+            throw new IllegalStateException("Unknown measure kind " + kind);
+        }
+        if (first)
+            values.put(flagPos, (byte) 1);
+    }
+
+    private int compareSlots(int a, int b) {
+        int baseA = a * keyLength;
+        int baseB = b * keyLength;
+        for (int off : groupByOffsets) {
+            int result = (keys.get(baseA + off) & 0xff) - (keys.get(baseB + off) & 0xff);
+            if (result != 0)
+                return result;
+        }
+        return 0;
+    }
+
+    /** quick sort of slot numbers by their keys, on the primitive array to avoid boxing every entry */
+    private void sortSlots(int[] a, int lo, int hi) {
+        while (hi - lo >= 16) {
+            int mid = (lo + hi) >>> 1;
+            // median of three as pivot
+            if (compareSlots(a[mid], a[lo]) < 0)
+                swap(a, lo, mid);
+            if (compareSlots(a[hi], a[lo]) < 0)
+                swap(a, lo, hi);
+            if (compareSlots(a[hi], a[mid]) < 0)
+                swap(a, mid, hi);
+            int pivot = a[mid];
+
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compareSlots(a[i], pivot) < 0)
+                    i++;
+                while (compareSlots(a[j], pivot) > 0)
+                    j--;
+                if (i <= j)
+                    swap(a, i++, j--);
+            }
+            // recurse into the smaller part, loop on the larger to bound the stack depth
+            if (j - lo < hi - i) {
+                sortSlots(a, lo, j);
+                lo = i;
+            } else {
+                sortSlots(a, i, hi);
+                hi = j;
+            }
+        }
+        // insertion sort for the short ranges
+        for (int i = lo + 1; i <= hi; i++) {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= lo && compareSlots(a[j], v) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    /**
+     * Iterate entries in the order of group by bytes, same as the sorted map of AggregationCache.
+     * The returned key and aggregators are reused between calls of next().
+     */
+    public Iterator<Pair<byte[], MeasureAggregator[]>> sortedIterator() {
+        final int[] sorted = new int[size];
+        for (int i = 0, j = 0; i < capacity; i++) {
+            if (occupied[i])
+                sorted[j++] = i;
+        }
+        sortSlots(sorted, 0, sorted.length - 1);
+
+        return new Iterator<Pair<byte[], MeasureAggregator[]>>() {
+            int cursor = 0;
+            final byte[] key = new byte[keyLength];
+            final MeasureAggregator[] primAggrs = newAggregators();
+            final MeasureAggregator[] result = new MeasureAggregator[kinds.length];
+            final LongMutable longValue = new LongMutable();
+            final DoubleMutable doubleValue = new DoubleMutable();
+
+            @Override
+            public boolean hasNext() {
+                return cursor < sorted.length;
+            }
+
+            @Override
+            public Pair<byte[], MeasureAggregator[]> next() {
+                int slot = sorted[cursor++];
+
+                ByteBuffer dup = keys.duplicate();
+                dup.position(slot * keyLength);
+                dup.get(key, 0, keyLength);
+
+                int base = slot * valueLength;
+                for (int i = 0; i < kinds.length; i++) {
+                    if (kinds[i] == KIND_OBJECT) {
+                        result[i] = objAggrs[slot][i];
+                        continue;
+                    }
+
+                    MeasureAggregator aggr = primAggrs[i];
+                    aggr.reset();
+                    int pos = base + primIndex[i] * 8;
+                    if (values.get(base + nPrims * 8 + primIndex[i]) != 0) {
+                        if (kinds[i] <= KIND_LONG_MAX) {
+                            longValue.set(values.getLong(pos));
+                            aggr.aggregate(longValue);
+                        } else {
+                            doubleValue.set(values.getDouble(pos));
+                            aggr.aggregate(doubleValue);
+                        }
+                    }
+                    result[i] = aggr;
+                }
+                return new Pair<byte[], MeasureAggregator[]>(key, result);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
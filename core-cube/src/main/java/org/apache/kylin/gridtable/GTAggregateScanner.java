@@ -46,6 +46,7 @@ import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.measure.BufferedMeasureEncoder;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.measure.MeasureAggregators;
+import org.apache.kylin.measure.MeasureTypeFactory;
 import org.apache.kylin.metadata.datatype.DataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,12 +67,23 @@ public class GTAggregateScanner implements IGTScanner {
     final IGTScanner inputScanner;
     final AggregationCache aggrCache;
     final long spillThreshold;
+    final boolean hashAggrCache;
+    final boolean streamAggregation;
+    final boolean[] primitiveAggr; // metrics aggregated from serialized bytes, without decoding to objects
 
     private int aggregatedRowCount = 0;
     private MemoryWaterLevel memTracker;
     private boolean[] aggrMask;
 
     public GTAggregateScanner(IGTScanner inputScanner, GTScanRequest req) {
+        this(inputScanner, req, false);
+    }
+
+    /**
+     * @param inputSorted whether the input scanner returns records in primary key order, 
+     *  if so and group by is a prefix of primary key, groups are emitted as soon as the key changes
+     */
+    public GTAggregateScanner(IGTScanner inputScanner, GTScanRequest req, boolean inputSorted) {
         if (!req.hasAggregation())
             throw new IllegalStateException();
 
@@ -81,11 +93,34 @@ public class GTAggregateScanner implements IGTScanner {
         this.metrics = req.getAggrMetrics();
         this.metricsAggrFuncs = req.getAggrMetricsFuncs();
         this.inputScanner = inputScanner;
-        this.aggrCache = new AggregationCache();
+        this.hashAggrCache = req.isHashAggrCache();
         this.spillThreshold = (long) (req.getAggrCacheGB() * MemoryBudgetController.ONE_GB);
         this.aggrMask = new boolean[metricsAggrFuncs.length];
+        this.streamAggregation = inputSorted && isPrefixOfPrimaryKey(info, groupBy);
+        this.primitiveAggr = new boolean[metricsAggrFuncs.length];
+        for (int i = 0; i < metricsAggrFuncs.length; i++) {
+            DataType type = info.getColumnType(metrics.trueBitAt(i));
+            primitiveAggr[i] = MeasureTypeFactory.create(metricsAggrFuncs[i], type).supportsPrimitiveAggregation();
+        }
+        this.aggrCache = new AggregationCache(); // after primitiveAggr, which the hash store reads
 
         Arrays.fill(aggrMask, true);
+
+        if (streamAggregation) {
+            logger.info("Group by " + groupBy + " is a prefix of primary key " + info.getPrimaryKey() + ", will aggregate in streaming mode");
+        }
+    }
+
+    public static boolean isPrefixOfPrimaryKey(GTInfo info, ImmutableBitSet columns) {
+        ImmutableBitSet primaryKey = info.getPrimaryKey();
+        if (columns.trueBitCount() > primaryKey.trueBitCount())
+            return false;
+
+        for (int i = 0; i < columns.trueBitCount(); i++) {
+            if (columns.trueBitAt(i) != primaryKey.trueBitAt(i))
+                return false;
+        }
+        return true;
     }
 
     public static long estimateSizeOfAggrCache(byte[] keySample, MeasureAggregator<?>[] aggrSample, int size) {
@@ -134,6 +169,10 @@ public class GTAggregateScanner implements IGTScanner {
 
     @Override
     public Iterator<GTRecord> iterator() {
+        if (streamAggregation) {
+            return aggrCache.streamIterator(inputScanner.iterator());
+        }
+
         for (GTRecord r : inputScanner) {
             aggrCache.aggregate(r);
         }
@@ -144,6 +183,10 @@ public class GTAggregateScanner implements IGTScanner {
         return aggrCache.dumps.size();
     }
 
+    public boolean isStreamAggregation() {
+        return streamAggregation;
+    }
+
     public void setAggrMask(boolean[] aggrMask) {
         this.aggrMask = aggrMask;
     }
@@ -183,12 +226,23 @@ public class GTAggregateScanner implements IGTScanner {
 
         SortedMap<byte[], MeasureAggregator[]> aggBufMap;
 
+        // alternative to aggBufMap, when hash aggregation is asked by the scan request
+        final AggregationHashStore hashStore;
+        final byte[] reusedKey;
+
         public AggregationCache() {
             compareMask = createCompareMask();
             keyLength = compareMask.length;
             dumps = Lists.newArrayList();
             aggBufMap = createBuffMap();
             measureCodec = createMeasureCodec();
+            if (hashAggrCache) {
+                hashStore = new AggregationHashStore(info, metrics, metricsAggrFuncs, primitiveAggr, compareMask);
+                reusedKey = new byte[keyLength];
+            } else {
+                hashStore = null;
+                reusedKey = null;
+            }
         }
 
         private BufferedMeasureEncoder createMeasureCodec() {
@@ -229,16 +283,24 @@ public class GTAggregateScanner implements IGTScanner {
 
         private byte[] createKey(GTRecord record) {
             byte[] result = new byte[keyLength];
+            fillKey(record, result);
+            return result;
+        }
+
+        private void fillKey(GTRecord record, byte[] result) {
             int offset = 0;
             for (int i = 0; i < dimensions.trueBitCount(); i++) {
                 int c = dimensions.trueBitAt(i);
                 final ByteArray byteArray = record.cols[c];
                 final int columnLength = info.codeSystem.maxCodeLength(c);
                 System.arraycopy(byteArray.array(), byteArray.offset(), result, offset, byteArray.length());
+                if (byteArray.length() < columnLength) {
+                    // the result may be reused, clear what the previous key left
+                    Arrays.fill(result, offset + byteArray.length(), offset + columnLength, (byte) 0);
+                }
                 offset += columnLength;
             }
             assert offset == result.length;
-            return result;
         }
 
         void aggregate(GTRecord r) {
@@ -254,30 +316,79 @@ public class GTAggregateScanner implements IGTScanner {
                 }
             }
 
+            if (hashStore != null) {
+                fillKey(r, reusedKey);
+                hashStore.aggregate(reusedKey, r, aggrMask);
+                return;
+            }
+
             final byte[] key = createKey(r);
             MeasureAggregator[] aggrs = aggBufMap.get(key);
             if (aggrs == null) {
                 aggrs = newAggregators();
                 aggBufMap.put(key, aggrs);
             }
+            aggregateMetrics(r, aggrs);
+        }
+
+        private void aggregateMetrics(GTRecord r, MeasureAggregator[] aggrs) {
             for (int i = 0; i < aggrs.length; i++) {
                 if (aggrMask[i]) {
                     int col = metrics.trueBitAt(i);
-                    Object metrics = info.codeSystem.decodeColumnValue(col, r.cols[col].asBuffer());
-                    aggrs[i].aggregate(metrics);
+                    if (primitiveAggr[i]) {
+                        aggrs[i].aggregateSerialized(r.cols[col].array(), r.cols[col].offset());
+                    } else {
+                        Object metrics = info.codeSystem.decodeColumnValue(col, r.cols[col].asBuffer());
+                        aggrs[i].aggregate(metrics);
+                    }
                 }
             }
         }
 
+        private boolean isBuffEmpty() {
+            return hashStore != null ? hashStore.isEmpty() : aggBufMap.isEmpty();
+        }
+
+        private Iterator<Pair<byte[], MeasureAggregator[]>> sortedBuffIterator() {
+            if (hashStore != null)
+                return hashStore.sortedIterator();
+
+            final Iterator<Entry<byte[], MeasureAggregator[]>> it = aggBufMap.entrySet().iterator();
+            return new Iterator<Pair<byte[], MeasureAggregator[]>>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Pair<byte[], MeasureAggregator[]> next() {
+                    Entry<byte[], MeasureAggregator[]> entry = it.next();
+                    return new Pair<byte[], MeasureAggregator[]>(entry.getKey(), entry.getValue());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
         private void spillBuffMap() throws RuntimeException {
-            if (aggBufMap.isEmpty())
+            if (isBuffEmpty())
                 return;
 
             try {
-                Dump dump = new Dump(aggBufMap);
-                dump.flush();
-                dumps.add(dump);
-                aggBufMap = createBuffMap();
+                if (hashStore != null) {
+                    Dump dump = new Dump(hashStore.size(), hashStore.sortedIterator());
+                    dump.flush();
+                    dumps.add(dump);
+                    hashStore.clear();
+                } else {
+                    Dump dump = new Dump(aggBufMap.size(), sortedBuffIterator());
+                    dump.flush();
+                    dumps.add(dump);
+                    aggBufMap = createBuffMap();
+                }
             } catch (Exception e) {
                 throw new RuntimeException("AggregationCache spill failed: " + e.getMessage());
             }
@@ -285,6 +396,8 @@ public class GTAggregateScanner implements IGTScanner {
 
         @Override
         public void close() throws RuntimeException {
+            if (hashStore != null)
+                hashStore.free();
             try {
                 for (Dump dump : dumps) {
                     dump.terminate();
@@ -299,6 +412,9 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         public long estimatedMemSize() {
+            if (hashStore != null)
+                return hashStore.estimatedMemSize();
+
             if (aggBufMap.isEmpty())
                 return 0;
 
@@ -307,12 +423,74 @@ public class GTAggregateScanner implements IGTScanner {
             return estimateSizeOfAggrCache(sampleKey, sampleValue, aggBufMap.size());
         }
 
+        /**
+         * Aggregate sorted input on the fly, only the current group is held in memory.
+         * Input must come in the order of group by bytes, i.e. group by is a prefix of primary key.
+         */
+        public Iterator<GTRecord> streamIterator(final Iterator<GTRecord> input) {
+            return new Iterator<GTRecord>() {
+
+                final ReturningRecord returningRecord = new ReturningRecord();
+                final MeasureAggregator[] aggrs = newAggregators();
+                final MeasureAggregators resultAggrs = new MeasureAggregators(aggrs);
+                byte[] currentKey = new byte[keyLength];
+                byte[] nextKey = new byte[keyLength];
+                boolean hasCurrent = false;
+
+                @Override
+                public boolean hasNext() {
+                    return hasCurrent || input.hasNext();
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (!hasCurrent) {
+                        GTRecord first = input.next();
+                        fillKey(first, currentKey);
+                        startGroup(first);
+                    }
+
+                    while (input.hasNext()) {
+                        GTRecord r = input.next();
+                        fillKey(r, nextKey);
+                        if (bytesComparator.compare(currentKey, nextKey) != 0) {
+                            returningRecord.load(currentKey, aggrs);
+                            // the returned record refers currentKey, which is overwritten only on the next call
+                            byte[] tmp = currentKey;
+                            currentKey = nextKey;
+                            nextKey = tmp;
+                            startGroup(r);
+                            return returningRecord.record;
+                        }
+                        aggregatedRowCount++;
+                        aggregateMetrics(r, aggrs);
+                    }
+
+                    hasCurrent = false;
+                    returningRecord.load(currentKey, aggrs);
+                    return returningRecord.record;
+                }
+
+                private void startGroup(GTRecord r) {
+                    resultAggrs.reset();
+                    aggregatedRowCount++;
+                    aggregateMetrics(r, aggrs);
+                    hasCurrent = true;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
         public Iterator<GTRecord> iterator() {
             // the all-in-mem case
             if (dumps.isEmpty()) {
                 return new Iterator<GTRecord>() {
 
-                    final Iterator<Entry<byte[], MeasureAggregator[]>> it = aggBufMap.entrySet().iterator();
+                    final Iterator<Pair<byte[], MeasureAggregator[]>> it = sortedBuffIterator();
                     final ReturningRecord returningRecord = new ReturningRecord();
 
                     @Override
@@ -322,7 +500,7 @@ public class GTAggregateScanner implements IGTScanner {
 
                     @Override
                     public GTRecord next() {
-                        Entry<byte[], MeasureAggregator[]> entry = it.next();
+                        Pair<byte[], MeasureAggregator[]> entry = it.next();
                         returningRecord.load(entry.getKey(), entry.getValue());
                         return returningRecord.record;
                     }
@@ -394,10 +572,12 @@ public class GTAggregateScanner implements IGTScanner {
         class Dump implements Iterable<Pair<byte[], byte[]>> {
             File dumpedFile;
             DataInputStream dis;
-            SortedMap<byte[], MeasureAggregator[]> buffMap;
+            int buffSize;
+            Iterator<Pair<byte[], MeasureAggregator[]>> buffIterator;
 
-            public Dump(SortedMap<byte[], MeasureAggregator[]> buffMap) throws IOException {
-                this.buffMap = buffMap;
+            public Dump(int buffSize, Iterator<Pair<byte[], MeasureAggregator[]>> buffIterator) throws IOException {
+                this.buffSize = buffSize;
+                this.buffIterator = buffIterator;
             }
 
             @Override
@@ -444,7 +624,7 @@ public class GTAggregateScanner implements IGTScanner {
             }
 
             public void flush() throws IOException {
-                if (buffMap != null) {
+                if (buffIterator != null) {
                     DataOutputStream dos = null;
                     Object[] aggrResult = null;
                     try {
@@ -452,8 +632,9 @@ public class GTAggregateScanner implements IGTScanner {
 
                         logger.info("AggregationCache will dump to file: " + dumpedFile.getAbsolutePath());
                         dos = new DataOutputStream(new FileOutputStream(dumpedFile));
-                        dos.writeInt(buffMap.size());
-                        for (Entry<byte[], MeasureAggregator[]> entry : buffMap.entrySet()) {
+                        dos.writeInt(buffSize);
+                        while (buffIterator.hasNext()) {
+                            Pair<byte[], MeasureAggregator[]> entry = buffIterator.next();
                             MeasureAggregators aggs = new MeasureAggregators(entry.getValue());
                             aggrResult = new Object[metrics.trueBitCount()];
                             aggs.collectStates(aggrResult);
@@ -464,14 +645,14 @@ public class GTAggregateScanner implements IGTScanner {
                             dos.write(metricsBuf.array(), 0, metricsBuf.position());
                         }
                     } finally {
-                        buffMap = null;
+                        buffIterator = null;
                         IOUtils.closeQuietly(dos);
                     }
                 }
             }
 
             public void terminate() throws IOException {
-                buffMap = null;
+                buffIterator = null;
                 if (dis != null)
                     dis.close();
                 if (dumpedFile != null && dumpedFile.exists())
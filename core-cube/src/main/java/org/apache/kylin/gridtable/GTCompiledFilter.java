@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.gridtable;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+
+/**
+ * A pushed down filter compiled into predicates over the encoded column bytes of GTRecord, to save the
+ * per row cost of TupleFilter.evaluate() going through IEvaluatableTuple and IFilterCodeSystem.
+ *
+ * Compares between a column and constants are compiled, as well as AND/OR/NOT over them. IN lists
+ * of short fixed length codes, like dictionary ids, become bitsets over the codes. Any other part of
+ * the filter is evaluated the old way. Results are the same as TupleFilter.evaluate().
+ */
+abstract class GTCompiledFilter {
+
+    // bitset IN lists are for codes up to this many bytes, and values under the max bits
+    private static final int BITSET_MAX_CODE_LENGTH = 4;
+    private static final int BITSET_MAX_BITS = 1 << 24;
+
+    abstract boolean evaluate(GTRecord record);
+
+    /**
+     * @return null if the code system does not compare codes as plain bytes, and thus cannot be compiled
+     */
+    static GTCompiledFilter compile(TupleFilter filter, GTInfo info) {
+        if (!(info.codeSystem.getComparator() instanceof DefaultGTComparator)) {
+            return null;
+        }
+        return compile(filter, info, new RecordTuple(), GTUtil.wrap(info.codeSystem.getComparator()));
+    }
+
+    private static GTCompiledFilter compile(TupleFilter filter, GTInfo info, RecordTuple tuple, IFilterCodeSystem<ByteArray> cs) {
+        if (filter == null) {
+            return new Constant(true);
+        }
+
+        if (filter instanceof ConstantTupleFilter) {
+            return new Constant(!filter.getValues().isEmpty());
+        }
+
+        if (filter instanceof LogicalTupleFilter) {
+            List<? extends TupleFilter> children = filter.getChildren();
+            GTCompiledFilter[] compiled = new GTCompiledFilter[children.size()];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = compile(children.get(i), info, tuple, cs);
+            }
+            switch (filter.getOperator()) {
+            case AND:
+                return new And(compiled);
+            case OR:
+                return new Or(compiled);
+            case NOT:
+                return new Not(compiled[0]);
+            default:
+                return new Constant(false);
+            }
+        }
+
+        if (filter instanceof CompareTupleFilter) {
+            GTCompiledFilter compiled = compileCompare((CompareTupleFilter) filter, info);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+
+        return new Fallback(filter, tuple, cs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GTCompiledFilter compileCompare(CompareTupleFilter filter, GTInfo info) {
+        // only COLUMN {op} CONST, the way CompareTupleFilter.evaluate() sees it
+        if (filter.getFunction() != null || filter.getColumn() == null || !filter.getVariables().isEmpty()) {
+            return null;
+        }
+        for (TupleFilter child : filter.getChildren()) {
+            if (!(child instanceof ColumnTupleFilter) && !(child instanceof ConstantTupleFilter)) {
+                return null;
+            }
+        }
+
+        int col = filter.getColumn().getColumnDesc().getZeroBasedIndex();
+        ByteArray first = (ByteArray) filter.getFirstValue();
+        if (first == null) {
+            return null;
+        }
+
+        switch (filter.getOperator()) {
+        case EQ:
+        case NEQ:
+        case LT:
+        case LTE:
+        case GT:
+        case GTE:
+            if (isNull(first)) {
+                return new Constant(false);
+            }
+            return new Compare(col, filter.getOperator(), first);
+        case IN:
+        case NOTIN:
+            if (isNull(first)) {
+                return new Constant(false);
+            }
+            Set<ByteArray> values = (Set<ByteArray>) filter.getValues();
+            boolean not = filter.getOperator() == TupleFilter.FilterOperatorEnum.NOTIN;
+            GTCompiledFilter bitset = BitsetIn.create(col, info.codeSystem.maxCodeLength(col), values, not);
+            return bitset != null ? bitset : new SetIn(col, values, not);
+        default:
+            return null;
+        }
+    }
+
+    private static boolean isNull(ByteArray code) {
+        return DimensionEncoding.isNull(code.array(), code.offset(), code.length());
+    }
+
+    private static class RecordTuple implements IEvaluatableTuple {
+        GTRecord record;
+
+        @Override
+        public Object getValue(TblColRef col) {
+            return record.get(col.getColumnDesc().getZeroBasedIndex());
+        }
+    }
+
+    private static class Constant extends GTCompiledFilter {
+        private final boolean result;
+
+        Constant(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            return result;
+        }
+    }
+
+    private static class And extends GTCompiledFilter {
+        private final GTCompiledFilter[] children;
+
+        And(GTCompiledFilter[] children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            for (GTCompiledFilter child : children) {
+                if (!child.evaluate(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Or extends GTCompiledFilter {
+        private final GTCompiledFilter[] children;
+
+        Or(GTCompiledFilter[] children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            for (GTCompiledFilter child : children) {
+                if (child.evaluate(record)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Not extends GTCompiledFilter {
+        private final GTCompiledFilter child;
+
+        Not(GTCompiledFilter child) {
+            this.child = child;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            return !child.evaluate(record);
+        }
+    }
+
+    private static class Compare extends GTCompiledFilter {
+        private final int col;
+        private final TupleFilter.FilterOperatorEnum op;
+        private final byte[] value;
+        private final int offset;
+        private final int length;
+
+        Compare(int col, TupleFilter.FilterOperatorEnum op, ByteArray value) {
+            this.col = col;
+            this.op = op;
+            this.value = value.array();
+            this.offset = value.offset();
+            this.length = value.length();
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            ByteArray code = record.get(col);
+            if (isNull(code)) {
+                return false;
+            }
+
+            // same as ByteArray.compareTo()
+            int comp = code.array() == null ? -1 : Bytes.compareTo(code.array(), code.offset(), code.length(), value, offset, length);
+            switch (op) {
+            case EQ:
+                return comp == 0;
+            case NEQ:
+                return comp != 0;
+            case LT:
+                return comp < 0;
+            case LTE:
+                return comp <= 0;
+            case GT:
+                return comp > 0;
+            case GTE:
+                return comp >= 0;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class SetIn extends GTCompiledFilter {
+        private final int col;
+        private final Set<ByteArray> values;
+        private final boolean not;
+
+        SetIn(int col, Set<ByteArray> values, boolean not) {
+            this.col = col;
+            this.values = values;
+            this.not = not;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            ByteArray code = record.get(col);
+            if (isNull(code)) {
+                return false;
+            }
+            return values.contains(code) != not;
+        }
+    }
+
+    private static class BitsetIn extends GTCompiledFilter {
+        private final int col;
+        private final int codeLength;
+        private final BitSet bits;
+        private final SetIn other; // for codes not of codeLength, should not happen with fixed length encodings
+        private final boolean not;
+
+        static BitsetIn create(int col, int codeLength, Set<ByteArray> values, boolean not) {
+            if (codeLength <= 0 || codeLength > BITSET_MAX_CODE_LENGTH) {
+                return null;
+            }
+
+            BitSet bits = new BitSet();
+            for (ByteArray value : values) {
+                if (value.array() == null || value.length() != codeLength) {
+                    return null;
+                }
+                if (isNull(value)) {
+                    continue;
+                }
+                long v = BytesUtil.readLong(value.array(), value.offset(), codeLength);
+                if (v >= BITSET_MAX_BITS) {
+                    return null;
+                }
+                bits.set((int) v);
+            }
+            return new BitsetIn(col, codeLength, bits, new SetIn(col, values, not), not);
+        }
+
+        private BitsetIn(int col, int codeLength, BitSet bits, SetIn other, boolean not) {
+            this.col = col;
+            this.codeLength = codeLength;
+            this.bits = bits;
+            this.other = other;
+            this.not = not;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            ByteArray code = record.get(col);
+            if (code.length() != codeLength || code.array() == null) {
+                return other.evaluate(record);
+            }
+            if (isNull(code)) {
+                return false;
+            }
+            long v = BytesUtil.readLong(code.array(), code.offset(), codeLength);
+            boolean in = v < BITSET_MAX_BITS && bits.get((int) v);
+            return in != not;
+        }
+    }
+
+    private static class Fallback extends GTCompiledFilter {
+        private final TupleFilter filter;
+        private final RecordTuple tuple;
+        private final IFilterCodeSystem<ByteArray> cs;
+
+        Fallback(TupleFilter filter, RecordTuple tuple, IFilterCodeSystem<ByteArray> cs) {
+            this.filter = filter;
+            this.tuple = tuple;
+            this.cs = cs;
+        }
+
+        @Override
+        boolean evaluate(GTRecord record) {
+            tuple.record = record;
+            return filter.evaluate(tuple, cs);
+        }
+    }
+}
@@ -37,14 +37,23 @@ public class GTFilterScanner implements IGTScanner {
 
     final private IGTScanner inputScanner;
     final private TupleFilter filter;
+    final private boolean compileFilter;
     final private IFilterCodeSystem<ByteArray> filterCodeSystem;
     final private IEvaluatableTuple oneTuple; // avoid instance creation
 
     private GTRecord next = null;
 
     public GTFilterScanner(IGTScanner inputScanner, GTScanRequest req) throws IOException {
+        this(inputScanner, req, true); // evaluate by GTCompiledFilter by default
+    }
+
+    /**
+     * @param compileFilter evaluates the filter by GTCompiledFilter if true, or by TupleFilter.evaluate() otherwise
+     */
+    public GTFilterScanner(IGTScanner inputScanner, GTScanRequest req, boolean compileFilter) throws IOException {
         this.inputScanner = inputScanner;
         this.filter = req.getFilterPushDown();
+        this.compileFilter = compileFilter;
         this.filterCodeSystem = GTUtil.wrap(getInfo().codeSystem.getComparator());
         this.oneTuple = new IEvaluatableTuple() {
             @Override
@@ -77,6 +86,7 @@ public class GTFilterScanner implements IGTScanner {
         return new Iterator<GTRecord>() {
 
             private Iterator<GTRecord> inputIterator = inputScanner.iterator();
+            private GTCompiledFilter compiledFilter = compileFilter && filter != null ? GTCompiledFilter.compile(filter, getInfo()) : null;
             private FilterResultCache resultCache = new FilterResultCache(getInfo(), filter);
 
             @Override
@@ -98,7 +108,11 @@ public class GTFilterScanner implements IGTScanner {
             private boolean evaluate() {
                 if (filter == null)
                     return true;
-                
+
+                // compiled filter is about as cheap as a cache check
+                if (compiledFilter != null)
+                    return compiledFilter.evaluate(next);
+
                 // 'next' and 'oneTuple' are referring to the same record
                 boolean[] cachedResult = resultCache.checkCache(next);
                 if (cachedResult != null)
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Stops reading the input once the given number of records are returned.
+ * Only correct when the returned records need no further aggregation by the caller.
+ */
+public class GTLimitScanner implements IGTScanner {
+
+    final private IGTScanner inputScanner;
+    final private int limit;
+
+    public GTLimitScanner(IGTScanner inputScanner, int limit) {
+        this.inputScanner = inputScanner;
+        this.limit = limit;
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return inputScanner.getInfo();
+    }
+
+    @Override
+    public int getScannedRowCount() {
+        return inputScanner.getScannedRowCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputScanner.close();
+    }
+
+    @Override
+    public Iterator<GTRecord> iterator() {
+        return new Iterator<GTRecord>() {
+
+            private Iterator<GTRecord> inputIterator = inputScanner.iterator();
+            private int count = 0;
+
+            @Override
+            public boolean hasNext() {
+                return count < limit && inputIterator.hasNext();
+            }
+
+            @Override
+            public GTRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                count++;
+                return inputIterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
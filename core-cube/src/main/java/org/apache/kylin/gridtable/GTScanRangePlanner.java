@@ -135,7 +135,8 @@ public class GTScanRangePlanner {
     }
 
     /**
-     * constrcut GTScanRangePlanner with incomplete information. only be used for UT  
+     * constrcut GTScanRangePlanner with incomplete information. used for UT, and by the coprocessor to plan the ranges
+     * from the filter of GTScanRequest
      * @param info
      * @param gtStartAndEnd
      * @param gtPartitionCol
@@ -167,7 +168,9 @@ public class GTScanRangePlanner {
         GTScanRequest scanRequest;
         List<GTScanRange> scanRanges = this.planScanRanges();
         if (scanRanges != null && scanRanges.size() != 0) {
-            scanRequest = new GTScanRequest(gtInfo, scanRanges, gtDimensions, gtAggrGroups, gtAggrMetrics, gtAggrFuncs, gtFilter, allowPreAggregate, cubeSegment.getCubeInstance().getConfig().getQueryCoprocessorMemGB());
+            KylinConfig config = cubeSegment.getCubeInstance().getConfig();
+            scanRequest = new GTScanRequest(gtInfo, scanRanges, gtDimensions, gtAggrGroups, gtAggrMetrics, gtAggrFuncs, gtFilter, allowPreAggregate, config.getQueryCoprocessorMemGB());
+            scanRequest.setHashAggrCache(config.isQueryCoprocessorHashAggrEnabled());
         } else {
             scanRequest = null;
         }
@@ -53,6 +53,12 @@ public class GTScanRequest {
     // hint to storage behavior
     private boolean allowPreAggregation = true;
     private double aggrCacheGB = 0; // no limit
+    private boolean hashAggrCache = false; // use AggregationHashStore instead of a sorted map to group rows
+
+    // optional limit pushed down to storage, only safe when the returned rows need no further aggregation
+    private int storageLimit = Integer.MAX_VALUE; // no limit
+    private int storageOrderColumn = -1; // if set, keep the top storageLimit rows by this (metric) column instead of the first ones
+    private boolean storageOrderDescending = true;
 
     public GTScanRequest(GTInfo info, List<GTScanRange> ranges, ImmutableBitSet columns, TupleFilter filterPushDown) {
         this.info = info;
@@ -150,6 +156,14 @@ public class GTScanRequest {
      * Refer to CoprocessorBehavior for explanation
      */
     public IGTScanner decorateScanner(IGTScanner scanner, boolean doFilter, boolean doAggr) throws IOException {
+        return decorateScanner(scanner, doFilter, doAggr, false);
+    }
+
+    /**
+     * @param inputSorted tells the scanner returns records in primary key order, e.g. a scan within one region,
+     *  aggregation can then be streamed if group by is a prefix of primary key
+     */
+    public IGTScanner decorateScanner(IGTScanner scanner, boolean doFilter, boolean doAggr, boolean inputSorted) throws IOException {
         IGTScanner result = scanner;
         if (!doFilter) { //Skip reading this section if you're not profiling! 
             int scanned = lookAndForget(result);
@@ -167,7 +181,15 @@ public class GTScanRequest {
             }
 
             if (this.allowPreAggregation && this.hasAggregation()) {
-                result = new GTAggregateScanner(result, this);
+                result = new GTAggregateScanner(result, this, inputSorted);
+            }
+
+            if (this.hasStorageLimit()) {
+                if (this.hasStorageOrder()) {
+                    result = new GTTopKScanner(result, this);
+                } else {
+                    result = new GTLimitScanner(result, storageLimit);
+                }
             }
             return result;
         }
@@ -202,6 +224,10 @@ public class GTScanRequest {
         return aggrGroupBy != null && aggrMetrics != null && aggrMetricsFuncs != null;
     }
 
+    public boolean isAllowPreAggregation() {
+        return allowPreAggregation;
+    }
+
     public GTInfo getInfo() {
         return info;
     }
@@ -246,84 +272,152 @@ public class GTScanRequest {
         this.aggrCacheGB = gb;
     }
 
+    public boolean isHashAggrCache() {
+        return hashAggrCache;
+    }
+
+    public void setHashAggrCache(boolean hashAggrCache) {
+        this.hashAggrCache = hashAggrCache;
+    }
+
+    public boolean hasStorageLimit() {
+        return storageLimit != Integer.MAX_VALUE;
+    }
+
+    public int getStorageLimit() {
+        return storageLimit;
+    }
+
+    public void setStorageLimit(int storageLimit) {
+        if (storageLimit <= 0)
+            throw new IllegalArgumentException("storage limit must be positive: " + storageLimit);
+        this.storageLimit = storageLimit;
+    }
+
+    public boolean hasStorageOrder() {
+        return storageOrderColumn >= 0;
+    }
+
+    public int getStorageOrderColumn() {
+        return storageOrderColumn;
+    }
+
+    public boolean isStorageOrderDescending() {
+        return storageOrderDescending;
+    }
+
+    /**
+     * Let storage keep only the top rows by the given column, requires a storage limit to take effect.
+     * The column must be a returned metric whose decoded values are Comparable.
+     */
+    public void setStorageOrder(int storageOrderColumn, boolean descending) {
+        if (!columns.get(storageOrderColumn))
+            throw new IllegalArgumentException("order column " + storageOrderColumn + " is not in " + columns);
+        this.storageOrderColumn = storageOrderColumn;
+        this.storageOrderDescending = descending;
+    }
+
     @Override
     public String toString() {
-        return "GTScanRequest [range=" + ranges + ", columns=" + columns + ", filterPushDown=" + filterPushDown + ", aggrGroupBy=" + aggrGroupBy + ", aggrMetrics=" + aggrMetrics + ", aggrMetricsFuncs=" + Arrays.toString(aggrMetricsFuncs) + "]";
+        return "GTScanRequest [range=" + ranges + ", columns=" + columns + ", filterPushDown=" + filterPushDown + ", aggrGroupBy=" + aggrGroupBy + ", aggrMetrics=" + aggrMetrics + ", aggrMetricsFuncs=" + Arrays.toString(aggrMetricsFuncs) + (hasStorageLimit() ? ", storageLimit=" + storageLimit : "") + (hasStorageOrder() ? ", storageOrderColumn=" + storageOrderColumn + (storageOrderDescending ? " desc" : " asc") : "") + "]";
     }
 
     public static final BytesSerializer<GTScanRequest> serializer = new BytesSerializer<GTScanRequest>() {
         @Override
         public void serialize(GTScanRequest value, ByteBuffer out) {
             GTInfo.serializer.serialize(value.info, out);
-
-            BytesUtil.writeVInt(value.ranges.size(), out);
-            for (GTScanRange range : value.ranges) {
-                serializeGTRecord(range.pkStart, out);
-                serializeGTRecord(range.pkEnd, out);
-                BytesUtil.writeVInt(range.fuzzyKeys.size(), out);
-                for (GTRecord f : range.fuzzyKeys) {
-                    serializeGTRecord(f, out);
-                }
-            }
-
-            ImmutableBitSet.serializer.serialize(value.columns, out);
-            BytesUtil.writeByteArray(GTUtil.serializeGTFilter(value.filterPushDown, value.info), out);
-
-            ImmutableBitSet.serializer.serialize(value.aggrGroupBy, out);
-            ImmutableBitSet.serializer.serialize(value.aggrMetrics, out);
-            BytesUtil.writeAsciiStringArray(value.aggrMetricsFuncs, out);
-            BytesUtil.writeVInt(value.allowPreAggregation ? 1 : 0, out);
-            out.putDouble(value.aggrCacheGB);
+            serializeWithoutInfo(value, out);
         }
 
         @Override
         public GTScanRequest deserialize(ByteBuffer in) {
             GTInfo sInfo = GTInfo.serializer.deserialize(in);
-
-            List<GTScanRange> sRanges = Lists.newArrayList();
-            int sRangesCount = BytesUtil.readVInt(in);
-            for (int rangeIdx = 0; rangeIdx < sRangesCount; rangeIdx++) {
-                GTRecord sPkStart = deserializeGTRecord(in, sInfo);
-                GTRecord sPkEnd = deserializeGTRecord(in, sInfo);
-                List<GTRecord> sFuzzyKeys = Lists.newArrayList();
-                int sFuzzyKeySize = BytesUtil.readVInt(in);
-                for (int i = 0; i < sFuzzyKeySize; i++) {
-                    sFuzzyKeys.add(deserializeGTRecord(in, sInfo));
-                }
-                GTScanRange sRange = new GTScanRange(sPkStart, sPkEnd, sFuzzyKeys);
-                sRanges.add(sRange);
-            }
-
-            ImmutableBitSet sColumns = ImmutableBitSet.serializer.deserialize(in);
-            TupleFilter sGTFilter = GTUtil.deserializeGTFilter(BytesUtil.readByteArray(in), sInfo);
-
-            ImmutableBitSet sAggGroupBy = ImmutableBitSet.serializer.deserialize(in);
-            ImmutableBitSet sAggrMetrics = ImmutableBitSet.serializer.deserialize(in);
-            String[] sAggrMetricFuncs = BytesUtil.readAsciiStringArray(in);
-            boolean sAllowPreAggr = (BytesUtil.readVInt(in) == 1);
-            double sAggrCacheGB = in.getDouble();
-
-            return new GTScanRequest(sInfo, sRanges, sColumns, sAggGroupBy, sAggrMetrics, sAggrMetricFuncs, sGTFilter, sAllowPreAggr, sAggrCacheGB);
+            return deserializeWithInfo(sInfo, in);
         }
+    };
 
-        private void serializeGTRecord(GTRecord gtRecord, ByteBuffer out) {
-            BytesUtil.writeVInt(gtRecord.cols.length, out);
-            for (ByteArray col : gtRecord.cols) {
-                col.exportData(out);
+    /**
+     * Same as serializer, but leaves out the GTInfo, for a receiver that has the GTInfo already.
+     */
+    public static void serializeWithoutInfo(GTScanRequest value, ByteBuffer out) {
+        BytesUtil.writeVInt(value.ranges.size(), out);
+        for (GTScanRange range : value.ranges) {
+            serializeGTRecord(range.pkStart, out);
+            serializeGTRecord(range.pkEnd, out);
+            BytesUtil.writeVInt(range.fuzzyKeys.size(), out);
+            for (GTRecord f : range.fuzzyKeys) {
+                serializeGTRecord(f, out);
             }
-            ImmutableBitSet.serializer.serialize(gtRecord.maskForEqualHashComp, out);
         }
 
-        private GTRecord deserializeGTRecord(ByteBuffer in, GTInfo sInfo) {
-            int colLength = BytesUtil.readVInt(in);
-            ByteArray[] sCols = new ByteArray[colLength];
-            for (int i = 0; i < colLength; i++) {
-                sCols[i] = ByteArray.importData(in);
+        ImmutableBitSet.serializer.serialize(value.columns, out);
+        BytesUtil.writeByteArray(GTUtil.serializeGTFilter(value.filterPushDown, value.info), out);
+
+        ImmutableBitSet.serializer.serialize(value.aggrGroupBy, out);
+        ImmutableBitSet.serializer.serialize(value.aggrMetrics, out);
+        BytesUtil.writeAsciiStringArray(value.aggrMetricsFuncs, out);
+        BytesUtil.writeVInt(value.allowPreAggregation ? 1 : 0, out);
+        out.putDouble(value.aggrCacheGB);
+        BytesUtil.writeVInt(value.hashAggrCache ? 1 : 0, out);
+        BytesUtil.writeVInt(value.storageLimit, out);
+        BytesUtil.writeVInt(value.storageOrderColumn, out);
+        BytesUtil.writeVInt(value.storageOrderDescending ? 1 : 0, out);
+    }
+
+    /**
+     * Reads what serializeWithoutInfo writes, with the given GTInfo.
+     */
+    public static GTScanRequest deserializeWithInfo(GTInfo sInfo, ByteBuffer in) {
+        List<GTScanRange> sRanges = Lists.newArrayList();
+        int sRangesCount = BytesUtil.readVInt(in);
+        for (int rangeIdx = 0; rangeIdx < sRangesCount; rangeIdx++) {
+            GTRecord sPkStart = deserializeGTRecord(in, sInfo);
+            GTRecord sPkEnd = deserializeGTRecord(in, sInfo);
+            List<GTRecord> sFuzzyKeys = Lists.newArrayList();
+            int sFuzzyKeySize = BytesUtil.readVInt(in);
+            for (int i = 0; i < sFuzzyKeySize; i++) {
+                sFuzzyKeys.add(deserializeGTRecord(in, sInfo));
             }
-            ImmutableBitSet sMaskForEqualHashComp = ImmutableBitSet.serializer.deserialize(in);
-            return new GTRecord(sInfo, sMaskForEqualHashComp, sCols);
+            GTScanRange sRange = new GTScanRange(sPkStart, sPkEnd, sFuzzyKeys);
+            sRanges.add(sRange);
         }
 
-    };
+        ImmutableBitSet sColumns = ImmutableBitSet.serializer.deserialize(in);
+        TupleFilter sGTFilter = GTUtil.deserializeGTFilter(BytesUtil.readByteArray(in), sInfo);
+
+        ImmutableBitSet sAggGroupBy = ImmutableBitSet.serializer.deserialize(in);
+        ImmutableBitSet sAggrMetrics = ImmutableBitSet.serializer.deserialize(in);
+        String[] sAggrMetricFuncs = BytesUtil.readAsciiStringArray(in);
+        boolean sAllowPreAggr = (BytesUtil.readVInt(in) == 1);
+        double sAggrCacheGB = in.getDouble();
+        boolean sHashAggrCache = (BytesUtil.readVInt(in) == 1);
+        int sStorageLimit = BytesUtil.readVInt(in);
+        int sStorageOrderColumn = BytesUtil.readVInt(in);
+        boolean sStorageOrderDescending = (BytesUtil.readVInt(in) == 1);
+
+        GTScanRequest result = new GTScanRequest(sInfo, sRanges, sColumns, sAggGroupBy, sAggrMetrics, sAggrMetricFuncs, sGTFilter, sAllowPreAggr, sAggrCacheGB);
+        result.setHashAggrCache(sHashAggrCache);
+        result.storageLimit = sStorageLimit;
+        result.storageOrderColumn = sStorageOrderColumn;
+        result.storageOrderDescending = sStorageOrderDescending;
+        return result;
+    }
+
+    private static void serializeGTRecord(GTRecord gtRecord, ByteBuffer out) {
+        BytesUtil.writeVInt(gtRecord.cols.length, out);
+        for (ByteArray col : gtRecord.cols) {
+            col.exportData(out);
+        }
+        ImmutableBitSet.serializer.serialize(gtRecord.maskForEqualHashComp, out);
+    }
 
+    private static GTRecord deserializeGTRecord(ByteBuffer in, GTInfo sInfo) {
+        int colLength = BytesUtil.readVInt(in);
+        ByteArray[] sCols = new ByteArray[colLength];
+        for (int i = 0; i < colLength; i++) {
+            sCols[i] = ByteArray.importData(in);
+        }
+        ImmutableBitSet sMaskForEqualHashComp = ImmutableBitSet.serializer.deserialize(in);
+        return new GTRecord(sInfo, sMaskForEqualHashComp, sCols);
+    }
 }
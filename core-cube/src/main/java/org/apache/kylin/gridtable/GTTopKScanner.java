@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.metadata.datatype.DoubleMutable;
+import org.apache.kylin.metadata.datatype.LongMutable;
+
+/**
+ * Keeps the top N records by one column in a bounded heap and returns them in order, best first.
+ * <p/>
+ * Only correct when each returned record is a final group, i.e. no records of the same group come from
+ * other scanners; the caller is still responsible for the final sort and limit.
+ */
+public class GTTopKScanner implements IGTScanner {
+
+    final private IGTScanner inputScanner;
+    final private ImmutableBitSet columns;
+    final private int orderColumn;
+    final private int limit;
+    final private boolean descending;
+
+    public GTTopKScanner(IGTScanner inputScanner, GTScanRequest req) {
+        this(inputScanner, req.getColumns(), req.getStorageOrderColumn(), req.isStorageOrderDescending(), req.getStorageLimit());
+    }
+
+    public GTTopKScanner(IGTScanner inputScanner, ImmutableBitSet columns, int orderColumn, boolean descending, int limit) {
+        this.inputScanner = inputScanner;
+        this.columns = columns;
+        this.orderColumn = orderColumn;
+        this.limit = limit;
+        this.descending = descending;
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return inputScanner.getInfo();
+    }
+
+    @Override
+    public int getScannedRowCount() {
+        return inputScanner.getScannedRowCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputScanner.close();
+    }
+
+    @Override
+    public Iterator<GTRecord> iterator() {
+        // worst entry at the heap top, so it is the one to evict
+        Comparator<Entry> comparator = new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return compareRank(o1.value, o2.value);
+            }
+        };
+        PriorityQueue<Entry> heap = new PriorityQueue<Entry>(Math.min(limit, 1024) + 1, comparator);
+        IGTCodeSystem codeSystem = getInfo().codeSystem;
+
+        for (GTRecord r : inputScanner) {
+            Comparable value = decode(codeSystem, r);
+            if (heap.size() >= limit) {
+                // the input record is reused, copy only when it makes into the heap
+                if (compareRank(heap.peek().value, value) >= 0)
+                    continue;
+                heap.poll();
+            }
+            heap.offer(new Entry(value, r.copy(columns)));
+        }
+
+        Entry[] sorted = heap.toArray(new Entry[heap.size()]);
+        Arrays.sort(sorted, comparator);
+
+        final GTRecord[] result = new GTRecord[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            result[i] = sorted[sorted.length - 1 - i].record;
+        }
+
+        return Arrays.asList(result).iterator();
+    }
+
+    private Comparable decode(IGTCodeSystem codeSystem, GTRecord r) {
+        if (r.get(orderColumn).array() == null)
+            return null;
+
+        // serializers reuse the mutable instance they return, take out the primitive value
+        Object value = codeSystem.decodeColumnValue(orderColumn, r.get(orderColumn).asBuffer());
+        if (value instanceof LongMutable)
+            return ((LongMutable) value).get();
+        if (value instanceof DoubleMutable)
+            return ((DoubleMutable) value).get();
+        if (value instanceof Comparable)
+            return (Comparable) value;
+        throw new IllegalStateException("Can't order by column " + orderColumn + ", value " + value + " is not comparable");
+    }
+
+    private static class Entry {
+        final Comparable value;
+        final GTRecord record;
+
+        Entry(Comparable value, GTRecord record) {
+            this.value = value;
+            this.record = record;
+        }
+    }
+
+    // negative if a ranks worse than b; null is the smallest value
+    @SuppressWarnings("unchecked")
+    private int compareRank(Comparable a, Comparable b) {
+        int comp;
+        if (a == b)
+            comp = 0;
+        else if (a == null)
+            comp = -1;
+        else if (b == null)
+            comp = 1;
+        else
+            comp = a.compareTo(b);
+        return descending ? comp : -comp;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.gridtable.benchmark;
+
+import java.util.Random;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.util.CuboidStatsCollector;
+import org.apache.kylin.measure.hllc.HyperLogLogPlusCounter;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Benchmark of collecting cuboid statistics of 1 million rows, hashing the columns of every cuboid with a
+ * Guava Hasher versus CuboidStatsCollector.
+ * 
+ * Needs a cube desc from the metadata of KYLIN_CONF, "test_kylin_cube_without_slr_desc" by default.
+ */
+public class CuboidStatsCollectorBenchmark {
+
+    final int N = 1000000; // 1M
+    final int ROUNDS = 3;
+
+    final CubeDesc cubeDesc;
+    final int nRowKey;
+    final int precision;
+    final String[][] rows;
+
+    public static void main(String[] args) {
+        String cubeDescName = args.length > 0 ? args[0] : "test_kylin_cube_without_slr_desc";
+        CubeDesc cubeDesc = CubeDescManager.getInstance(KylinConfig.getInstanceFromEnv()).getCubeDesc(cubeDescName);
+        new CuboidStatsCollectorBenchmark(cubeDesc).testCollect();
+    }
+
+    public CuboidStatsCollectorBenchmark(CubeDesc cubeDesc) {
+        this.cubeDesc = cubeDesc;
+        this.nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
+        this.precision = cubeDesc.getConfig().getCubeStatsHLLPrecision();
+        this.rows = generate();
+    }
+
+    private void testCollect() {
+        long hasherTime = Long.MAX_VALUE;
+        long collectorTime = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            hasherTime = Math.min(hasherTime, collectByHasher());
+            collectorTime = Math.min(collectorTime, collectByCollector());
+        }
+
+        int nCuboids = new CuboidStatsCollector(cubeDesc, precision).getCuboidIds().length;
+        System.out.println(nCuboids + " cuboids of " + N + " rows, guava hasher: " + calcSpeed(hasherTime) + "K rec/sec, stats collector: " + calcSpeed(collectorTime) + "K rec/sec");
+    }
+
+    private String[][] generate() {
+        Random rand = new Random(N);
+        String[][] result = new String[N][nRowKey];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < nRowKey; j++) {
+                result[i][j] = "value_" + rand.nextInt(j % 2 == 0 ? 100 : 100000);
+            }
+        }
+        return result;
+    }
+
+    // how the statistics were collected before CuboidStatsCollector
+    private long collectByHasher() {
+        CuboidStatsCollector layout = new CuboidStatsCollector(cubeDesc, precision);
+        long[] cuboidIds = layout.getCuboidIds();
+        long mask = Long.highestOneBit(Cuboid.getBaseCuboidId(cubeDesc));
+        int[][] cuboidColumns = new int[cuboidIds.length][];
+        HyperLogLogPlusCounter[] counters = new HyperLogLogPlusCounter[cuboidIds.length];
+        for (int i = 0; i < cuboidIds.length; i++) {
+            cuboidColumns[i] = new int[Long.bitCount(cuboidIds[i])];
+            for (int j = 0, position = 0; j < nRowKey; j++) {
+                if ((cuboidIds[i] & (mask >> j)) != 0)
+                    cuboidColumns[i][position++] = j;
+            }
+            counters[i] = new HyperLogLogPlusCounter(precision);
+        }
+
+        HashFunction hf = Hashing.murmur3_32();
+        ByteArray[] rowHashcodes = new ByteArray[nRowKey];
+        for (int i = 0; i < nRowKey; i++) {
+            rowHashcodes[i] = new ByteArray();
+        }
+
+        long t = System.nanoTime();
+        for (String[] row : rows) {
+            for (int i = 0; i < nRowKey; i++) {
+                Hasher hc = hf.newHasher();
+                rowHashcodes[i].set(hc.putString(row[i]).hash().asBytes());
+            }
+            for (int i = 0; i < cuboidColumns.length; i++) {
+                Hasher hc = hf.newHasher();
+                for (int position = 0; position < cuboidColumns[i].length; position++) {
+                    hc.putBytes(rowHashcodes[cuboidColumns[i][position]].array());
+                }
+                counters[i].add(hc.hash().asBytes());
+            }
+        }
+        t = System.nanoTime() - t;
+        consume(counters);
+        return t;
+    }
+
+    private long collectByCollector() {
+        CuboidStatsCollector collector = new CuboidStatsCollector(cubeDesc, precision);
+
+        long t = System.nanoTime();
+        for (String[] row : rows) {
+            collector.addRow(row);
+        }
+        t = System.nanoTime() - t;
+        consume(collector.getCounters());
+        return t;
+    }
+
+    private void consume(HyperLogLogPlusCounter[] counters) {
+        if (counters[0].getCountEstimate() <= 0)
+            throw new IllegalStateException();
+    }
+
+    private int calcSpeed(long nanos) {
+        double sec = (double) nanos / 1e9;
+        return (int) (N / sec / 1000);
+    }
+}
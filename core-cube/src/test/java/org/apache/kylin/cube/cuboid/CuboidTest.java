@@ -19,6 +19,10 @@
 package org.apache.kylin.cube.cuboid;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeDescManager;
@@ -194,4 +198,24 @@ public class CuboidTest extends LocalFileMetadataTestCase {
         cuboid = Cuboid.findById(cube, toLong("10111111"));
         assertEquals(toLong("11111111"), cuboid.getId());
     }
+
+    @Test
+    public void testFindValidCandidates() {
+        CubeDesc cube = getTestKylinCubeWithoutSellerLeftJoin();
+        long baseCuboidId = Cuboid.getBaseCuboidId(cube);
+        assertEquals(Collections.singletonList(baseCuboidId), Cuboid.findValidCandidates(cube, baseCuboidId));
+
+        for (long cuboidId = 1; cuboidId < baseCuboidId; cuboidId++) {
+            List<Long> candidates = Cuboid.findValidCandidates(cube, cuboidId);
+            assertTrue(candidates.contains(Cuboid.translateToValidCuboid(cube, cuboidId)));
+            for (long candidate : candidates) {
+                assertTrue(Cuboid.isValid(cube, candidate));
+                assertEquals(cuboidId, candidate & cuboidId);
+
+                Cuboid cuboid = Cuboid.findById(cube, cuboidId, candidate);
+                assertEquals(candidate, cuboid.getId());
+                assertEquals(cuboidId, cuboid.getInputID());
+            }
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements. See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.dict.DictionaryGenerator;
+import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class InMemCubeBuilderTest extends LocalFileMetadataTestCase {
+
+    private static final String FLAT_TABLE = LOCALMETA_TEST_DATA + "/data/flatten_data_for_without_slr_left_join.csv";
+
+    private CubeDesc desc;
+    private List<List<String>> rows;
+    private Map<TblColRef, Dictionary<String>> dictionaryMap;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        desc = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_left_join_empty").getDescriptor();
+
+        rows = Lists.newArrayList();
+        for (String line : FileUtils.readLines(new File(FLAT_TABLE), "UTF-8")) {
+            rows.add(Arrays.asList(line.trim().split(",")));
+        }
+        dictionaryMap = buildDictionaries();
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSameCuboidsAsSpanningParents() throws Exception {
+        ConcurrentNavigableMap<Long, CuboidResult> expected = build(true);
+        ConcurrentNavigableMap<Long, CuboidResult> actual = build(false);
+        Assert.assertEquals(new CuboidScheduler(desc).getCuboidCount(), expected.size());
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+
+        // measures aggregated in the base cuboid only are not defined beyond it, whichever parent
+        List<MeasureDesc> measures = desc.getMeasures();
+        boolean[] aggrMask = new boolean[measures.size()];
+        for (int i = 0; i < measures.size(); i++) {
+            aggrMask[i] = !measures.get(i).getFunction().getMeasureType().onlyAggrInBaseCuboid();
+        }
+
+        try {
+            for (long cuboidId : expected.keySet()) {
+                Assert.assertEquals("cuboid " + cuboidId, expected.get(cuboidId).nRows, actual.get(cuboidId).nRows);
+                Assert.assertEquals("cuboid " + cuboidId, toStrings(expected.get(cuboidId), aggrMask), toStrings(actual.get(cuboidId), aggrMask));
+            }
+        } finally {
+            close(expected);
+            close(actual);
+        }
+    }
+
+    private ConcurrentNavigableMap<Long, CuboidResult> build(boolean spanningParentOnly) throws IOException, InterruptedException {
+        InMemCubeBuilder cubeBuilder = new InMemCubeBuilder(desc, dictionaryMap);
+        cubeBuilder.setConcurrentThreads(4);
+        cubeBuilder.setSpanningParentOnly(spanningParentOnly);
+
+        // every row twice, so that the base cuboid aggregates too
+        ArrayBlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(rows.size() * 2 + 1);
+        for (int i = 0; i < 2; i++) {
+            for (List<String> row : rows) {
+                queue.put(row);
+            }
+        }
+        queue.put(Collections.<String> emptyList());
+        return cubeBuilder.build(queue);
+    }
+
+    // the bytes of each record in rowkey order, measures not aggregated beyond the base cuboid are left out
+    private List<String> toStrings(CuboidResult cuboid, boolean[] aggrMask) throws IOException {
+        ImmutableBitSet columns = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(cuboid.cuboidId, aggrMask.length).getFirst();
+        int nDims = columns.trueBitCount();
+        int nColumns = nDims + aggrMask.length;
+
+        List<String> result = Lists.newArrayList();
+        IGTScanner scanner = cuboid.table.scan(new GTScanRequest(cuboid.table.getInfo(), null, null, null));
+        try {
+            for (GTRecord record : scanner) {
+                StringBuilder buf = new StringBuilder();
+                for (int i = 0; i < nColumns; i++) {
+                    if (i >= nDims && !aggrMask[i - nDims])
+                        continue;
+                    ByteArray bytes = record.get(i);
+                    buf.append(bytes.length()).append(':').append(new String(bytes.array(), bytes.offset(), bytes.length(), "ISO-8859-1"));
+                }
+                result.add(buf.toString());
+            }
+        } finally {
+            scanner.close();
+        }
+        return result;
+    }
+
+    private void close(ConcurrentNavigableMap<Long, CuboidResult> cuboids) throws IOException {
+        for (CuboidResult cuboid : cuboids.values()) {
+            cuboid.table.close();
+        }
+    }
+
+    private Map<TblColRef, Dictionary<String>> buildDictionaries() throws IOException {
+        Map<TblColRef, Dictionary<String>> result = Maps.newHashMap();
+        CubeJoinedFlatTableDesc flatTableDesc = new CubeJoinedFlatTableDesc(desc, null);
+
+        List<TblColRef> columns = Cuboid.getBaseCuboid(desc).getColumns();
+        for (int c = 0; c < columns.size(); c++) {
+            TblColRef col = columns.get(c);
+            if (desc.getRowkey().isUseDictionary(col)) {
+                result.put(col, buildDictionary(col, flatTableDesc.getRowKeyColumnIndexes()[c]));
+            }
+        }
+
+        for (int m = 0; m < desc.getMeasures().size(); m++) {
+            FunctionDesc func = desc.getMeasures().get(m).getFunction();
+            List<TblColRef> dictCols = func.getMeasureType().getColumnsNeedDictionary(func);
+            List<TblColRef> paramCols = func.getParameter().getColRefs();
+            for (int i = 0; i < paramCols.size(); i++) {
+                if (dictCols.contains(paramCols.get(i))) {
+                    result.put(paramCols.get(i), buildDictionary(paramCols.get(i), flatTableDesc.getMeasureColumnIndexes()[m][i]));
+                }
+            }
+        }
+        return result;
+    }
+
+    private Dictionary<String> buildDictionary(TblColRef col, int flatTableIndex) throws IOException {
+        List<byte[]> values = Lists.newArrayList();
+        for (List<String> row : rows) {
+            values.add(Bytes.toBytes(row.get(flatTableIndex)));
+        }
+        return DictionaryGenerator.buildDictionary(col.getType(), new IterableDictionaryValueEnumerator(values));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements. See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.kylin.cube.inmemcubing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.common.util.MemoryBudgetController.MemoryConsumer;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OffHeapMemDiskStoreTest extends LocalFileMetadataTestCase {
+
+    final GTInfo info = UnitTestSupport.advancedInfo();
+    final List<GTRecord> data = UnitTestSupport.mockupData(info, 1000000); // converts to about 34 MB data
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testAllInMemory() throws IOException {
+        MemoryBudgetController budgetCtrl = new MemoryBudgetController(50, true);
+        OffHeapMemDiskStore store = new OffHeapMemDiskStore(info, budgetCtrl);
+        verifyWriteAndRead(new GridTable(info, store));
+
+        assertEquals(0, store.getDiskReadBytes());
+        assertEquals(0, store.getSpillBytes());
+        assertEquals(store.length(), store.getMemReadBytes());
+        store.close();
+        assertEquals(0, budgetCtrl.getTotalReservedMB());
+    }
+
+    @Test
+    public void testAllOnDisk() throws IOException {
+        OffHeapMemDiskStore store = new OffHeapMemDiskStore(info, MemoryBudgetController.ZERO_BUDGET);
+        verifyWriteAndRead(new GridTable(info, store));
+
+        assertEquals(0, store.getMemReadBytes());
+        assertEquals(store.length(), store.getDiskReadBytes());
+        store.close();
+    }
+
+    @Test
+    public void testSpillToFreeUpBudget() throws IOException {
+        MemoryBudgetController budgetCtrl = new MemoryBudgetController(20, true);
+        OffHeapMemDiskStore store1 = new OffHeapMemDiskStore(info, budgetCtrl);
+        OffHeapMemDiskStore store2 = new OffHeapMemDiskStore(info, budgetCtrl);
+        GridTable table1 = new GridTable(info, store1);
+        GridTable table2 = new GridTable(info, store2);
+
+        // the second table takes budget from the first, which must spill its head chunks
+        verifyWriteAndRead(table1);
+        verifyWriteAndRead(table2);
+        assertTrue(store1.getSpillBytes() > 0);
+        assertTrue(store1.getSpillMBPerSecond() > 0);
+        assertTrue(budgetCtrl.getTotalReservedMB() <= budgetCtrl.getTotalBudgetMB());
+
+        // what is spilled reads back from disk
+        verifyRead(table1);
+        assertTrue(store1.getDiskReadBytes() > 0);
+
+        table1.close();
+        table2.close();
+        assertEquals(0, budgetCtrl.getTotalReservedMB());
+    }
+
+    @Test
+    public void testMultiThreadRead() throws IOException, InterruptedException {
+        MemoryBudgetController budgetCtrl = new MemoryBudgetController(20, true);
+        final GridTable table = new GridTable(info, new OffHeapMemDiskStore(info, budgetCtrl));
+        verifyWriteAndRead(table);
+
+        int nThreads = 5;
+        final Throwable[] errors = new Throwable[nThreads];
+        Thread[] t = new Thread[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            final int id = i;
+            t[i] = new Thread() {
+                public void run() {
+                    try {
+                        verifyRead(table);
+                    } catch (Throwable ex) {
+                        errors[id] = ex;
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (int i = 0; i < nThreads; i++) {
+            t[i].join();
+            assertEquals(null, errors[i]);
+        }
+        table.close();
+    }
+
+    @Test
+    public void testSpillFreesNativeMemory() throws IOException, InterruptedException {
+        MemoryBudgetController budgetCtrl = new MemoryBudgetController(50, true);
+        OffHeapMemDiskStore store = new OffHeapMemDiskStore(info, budgetCtrl);
+        final GridTable table = new GridTable(info, store);
+        verifyWriteAndRead(table);
+        assertEquals(0, store.getSpillBytes());
+
+        // a reader keeps going while all chunks are spilled under it, at most the chunk it is on stays in memory
+        final Throwable[] error = new Throwable[1];
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < 3; i++) {
+                        verifyRead(table);
+                    }
+                } catch (Throwable ex) {
+                    error[0] = ex;
+                }
+            }
+        };
+        reader.start();
+
+        long directBefore = directMemoryUsed();
+        MemoryConsumer other = new MemoryConsumer() {
+            @Override
+            public int freeUp(int mb) {
+                return 0;
+            }
+        };
+        budgetCtrl.reserve(other, 50);
+        assertEquals(store.length(), store.getSpillBytes());
+        assertTrue(directBefore - directMemoryUsed() >= 25 * MemoryBudgetController.ONE_MB);
+
+        reader.join();
+        assertEquals(null, error[0]);
+        budgetCtrl.reserve(other, 0);
+        table.close();
+    }
+
+    private long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName()))
+                return pool.getMemoryUsed();
+        }
+        throw new IllegalStateException();
+    }
+
+    private void verifyWriteAndRead(GridTable table) throws IOException {
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data) {
+            builder.write(r);
+        }
+        builder.close();
+
+        verifyRead(table);
+    }
+
+    private void verifyRead(GridTable table) throws IOException {
+        IGTScanner scanner = table.scan(new GTScanRequest(info, null, null, null));
+        int i = 0;
+        for (GTRecord r : scanner) {
+            assertEquals(data.get(i++), r);
+        }
+        scanner.close();
+        assertEquals(data.size(), i);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.cube.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.measure.hllc.HyperLogLogPlusCounter;
+import org.apache.kylin.metadata.MetadataManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CuboidStatsCollectorTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        MetadataManager.clearCache();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    private CubeDesc getCubeDesc() {
+        return CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_without_slr_desc");
+    }
+
+    @Test
+    public void testAllCuboidsCollected() {
+        CubeDesc cubeDesc = getCubeDesc();
+        CuboidStatsCollector collector = new CuboidStatsCollector(cubeDesc, 14);
+
+        List<Long> expected = new CuboidScheduler(cubeDesc).getAllCuboidIds();
+        Set<Long> actual = new HashSet<Long>();
+        for (long cuboidId : collector.getCuboidIds()) {
+            assertTrue(actual.add(cuboidId));
+        }
+        assertEquals(new HashSet<Long>(expected), actual);
+        assertEquals(Cuboid.getBaseCuboidId(cubeDesc), collector.getCuboidIds()[0]);
+    }
+
+    @Test
+    public void testEstimates() {
+        CubeDesc cubeDesc = getCubeDesc();
+        int nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
+        long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+        CuboidStatsCollector collector = new CuboidStatsCollector(cubeDesc, 14);
+
+        Random rand = new Random(42);
+        List<String[]> rows = Lists.newArrayList();
+        String[] values = new String[nRowKey];
+        for (int r = 0; r < 20000; r++) {
+            String[] row = new String[nRowKey];
+            for (int i = 0; i < nRowKey; i++) {
+                int cardinality = i % 3 == 0 ? 5 : (i % 3 == 1 ? 40 : 3000);
+                int v = rand.nextInt(cardinality);
+                // same values in different columns, and nulls, must still be told apart
+                row[i] = v == 0 ? null : String.valueOf(v);
+                values[i] = row[i];
+            }
+            rows.add(row);
+            collector.addRow(values);
+        }
+
+        long[] cuboidIds = collector.getCuboidIds();
+        HyperLogLogPlusCounter[] counters = collector.getCounters();
+        for (int c = 0; c < cuboidIds.length; c++) {
+            Set<String> exact = new HashSet<String>();
+            for (String[] row : rows) {
+                StringBuilder key = new StringBuilder();
+                long mask = Long.highestOneBit(baseCuboidId);
+                for (int i = 0; i < nRowKey; i++, mask >>= 1) {
+                    if ((cuboidIds[c] & mask) != 0) {
+                        key.append(row[i]).append('|');
+                    }
+                }
+                exact.add(key.toString());
+            }
+            long estimate = counters[c].getCountEstimate();
+            double error = Math.abs(estimate - exact.size()) / (double) exact.size();
+            assertTrue("cuboid " + cuboidIds[c] + " estimated " + estimate + " for " + exact.size(), error < 0.05);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -142,4 +143,132 @@ public class AggregationCacheSpillTest extends LocalFileMetadataTestCase {
         assertEquals(10, count);
         scanner.close();
     }
+
+    @Test
+    public void testHashAggregationCacheSpill() throws IOException {
+        GTScanRequest scanRequest = new GTScanRequest(INFO, null, new ImmutableBitSet(0, 3), new ImmutableBitSet(0, 3), new ImmutableBitSet(3, 6), new String[] { "SUM", "SUM", "COUNT_DISTINCT" }, null, true, 0.5);
+        scanRequest.setHashAggrCache(true);
+
+        GTAggregateScanner scanner = new GTAggregateScanner(new ListScanner(TEST_DATA), scanRequest);
+
+        int count = 0;
+        GTRecord last = null;
+        for (GTRecord record : scanner) {
+            assertNotNull(record);
+            Object[] returnRecord = record.getValues();
+            assertEquals(20, ((LongMutable) returnRecord[3]).get());
+            assertEquals(21, ((BigDecimal) returnRecord[4]).longValue());
+            if (last != null)
+                assertTrue(last.compareTo(record) <= 0);
+            last = record.copy();
+            count++;
+        }
+        assertEquals(DATA_CARDINALITY, count);
+        assertTrue(scanner.getNumOfSpills() > 0);
+        scanner.close();
+    }
+
+    @Test
+    public void testHashAggregationCacheInMem() throws IOException {
+        GTScanRequest scanRequest = new GTScanRequest(INFO, null, new ImmutableBitSet(0, 3), new ImmutableBitSet(1, 3), new ImmutableBitSet(3, 6), new String[] { "SUM", "SUM", "COUNT_DISTINCT" }, null, true, 0.5);
+        scanRequest.setHashAggrCache(true);
+
+        GTAggregateScanner scanner = new GTAggregateScanner(new ListScanner(TEST_DATA), scanRequest);
+
+        int count = 0;
+        for (GTRecord record : scanner) {
+            assertNotNull(record);
+            Object[] returnRecord = record.getValues();
+            assertEquals(80000, ((LongMutable) returnRecord[3]).get());
+            assertEquals(84000, ((BigDecimal) returnRecord[4]).longValue());
+            count++;
+        }
+        assertEquals(10, count);
+        assertEquals(0, scanner.getNumOfSpills());
+        scanner.close();
+    }
+
+    @Test
+    public void testHashAggregationPrimitiveMinMax() throws IOException {
+        GTScanRequest scanRequest = new GTScanRequest(INFO, null, new ImmutableBitSet(0, 3), new ImmutableBitSet(1, 3), new ImmutableBitSet(3, 4), new String[] { "MAX" }, null, true, 0);
+        scanRequest.setHashAggrCache(true);
+
+        GTAggregateScanner scanner = new GTAggregateScanner(new ListScanner(TEST_DATA), scanRequest);
+
+        int count = 0;
+        for (GTRecord record : scanner) {
+            assertEquals(10, ((LongMutable) record.getValues()[3]).get());
+            count++;
+        }
+        assertEquals(10, count);
+        scanner.close();
+    }
+
+    @Test
+    public void testStreamAggregation() throws IOException {
+        List<GTRecord> sortedData = Lists.newArrayList(TEST_DATA);
+        Collections.sort(sortedData);
+
+        // group by column 0 is a prefix of primary key
+        GTScanRequest scanRequest = new GTScanRequest(INFO, null, new ImmutableBitSet(0, 1), new ImmutableBitSet(0, 1), new ImmutableBitSet(3, 6), new String[] { "SUM", "SUM", "COUNT_DISTINCT" }, null, true, 0.5);
+
+        GTAggregateScanner streamScanner = new GTAggregateScanner(new ListScanner(sortedData), scanRequest, true);
+        assertTrue(streamScanner.isStreamAggregation());
+        List<String> streamResult = Lists.newArrayList();
+        long sum = 0;
+        for (GTRecord record : streamScanner) {
+            streamResult.add(record.toString(record.getInfo().getAllColumns()));
+            sum += ((LongMutable) record.getValues()[3]).get();
+        }
+        assertEquals(0, streamScanner.getNumOfSpills());
+        streamScanner.close();
+
+        GTAggregateScanner scanner = new GTAggregateScanner(new ListScanner(sortedData), scanRequest, false);
+        assertFalse(scanner.isStreamAggregation());
+        List<String> result = Lists.newArrayList();
+        for (GTRecord record : scanner) {
+            result.add(record.toString(record.getInfo().getAllColumns()));
+        }
+        scanner.close();
+
+        assertEquals(DATA_CARDINALITY / 10 * 4, streamResult.size());
+        assertEquals(10L * DATA_CARDINALITY * DATA_REPLICATION, sum);
+        assertEquals(result, streamResult);
+    }
+
+    @Test
+    public void testStreamAggregationNotPrefix() throws IOException {
+        GTScanRequest scanRequest = new GTScanRequest(INFO, null, new ImmutableBitSet(0, 3), new ImmutableBitSet(1, 3), new ImmutableBitSet(3, 6), new String[] { "SUM", "SUM", "COUNT_DISTINCT" }, null, true, 0.5);
+
+        GTAggregateScanner scanner = new GTAggregateScanner(new ListScanner(TEST_DATA), scanRequest, true);
+        assertFalse(scanner.isStreamAggregation());
+        scanner.close();
+    }
+
+    static class ListScanner implements IGTScanner {
+        final List<GTRecord> data;
+
+        ListScanner(List<GTRecord> data) {
+            this.data = data;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return INFO;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return data.iterator();
+        }
+    }
 }
\ No newline at end of file
@@ -324,27 +324,60 @@ public class DictGridTableTest  extends LocalFileMetadataTestCase {
         LogicalTupleFilter filter = and(fComp1, fComp2);
 
         FilterResultCache.ENABLED = false;
-        testFilterScannerPerfInner(table, info, filter);
+        testFilterScannerPerfInner(table, info, filter, false);
         FilterResultCache.ENABLED = true;
-        testFilterScannerPerfInner(table, info, filter);
+        testFilterScannerPerfInner(table, info, filter, false);
         FilterResultCache.ENABLED = false;
-        testFilterScannerPerfInner(table, info, filter);
+        testFilterScannerPerfInner(table, info, filter, false);
         FilterResultCache.ENABLED = true;
-        testFilterScannerPerfInner(table, info, filter);
+        testFilterScannerPerfInner(table, info, filter, false);
+        testFilterScannerPerfInner(table, info, filter, true);
+        testFilterScannerPerfInner(table, info, filter, true);
+    }
+
+    @Test
+    public void verifyCompiledFilter() throws IOException {
+        GTInfo info = table.getInfo();
+
+        List<TupleFilter> filters = Lists.newArrayList();
+        filters.add(compare(info.colRef(0), FilterOperatorEnum.GTE, enc(info, 0, "2015-01-15")));
+        filters.add(compare(info.colRef(0), FilterOperatorEnum.NEQ, enc(info, 0, "2015-01-15")));
+        filters.add(compare(info.colRef(1), FilterOperatorEnum.IN, enc(info, 1, "10"), enc(info, 1, "30")));
+        filters.add(compare(info.colRef(2), FilterOperatorEnum.NOTIN, enc(info, 2, "Dong"), enc(info, 2, "Xu"), enc(info, 2, "Yang")));
+        filters.add(or(compare(info.colRef(1), FilterOperatorEnum.LT, enc(info, 1, "30")), not(compare(info.colRef(2), FilterOperatorEnum.EQ, enc(info, 2, "Luke")))));
+        filters.add(and(compare(info.colRef(0), FilterOperatorEnum.LTE, enc(info, 0, "2015-01-16")), compare(info.colRef(2), FilterOperatorEnum.IN, enc(info, 2, "George"), enc(info, 2, "Jason"))));
+
+        for (TupleFilter filter : filters) {
+            GTScanRequest req = new GTScanRequest(info, null, null, filter);
+            List<String> expected = scanToStrings(table, req, false);
+            List<String> actual = scanToStrings(table, req, true);
+            assertEquals(filter.toString(), expected, actual);
+            assertTrue(expected.size() > 0);
+        }
+    }
+
+    private List<String> scanToStrings(GridTable table, GTScanRequest req, boolean compileFilter) throws IOException {
+        List<String> result = Lists.newArrayList();
+        IGTScanner scanner = new GTFilterScanner(table.getStore().scan(req), req, compileFilter);
+        for (GTRecord r : scanner) {
+            result.add(r.toString());
+        }
+        scanner.close();
+        return result;
     }
 
     @SuppressWarnings("unused")
-    private void testFilterScannerPerfInner(GridTable table, GTInfo info, LogicalTupleFilter filter) throws IOException {
+    private void testFilterScannerPerfInner(GridTable table, GTInfo info, LogicalTupleFilter filter, boolean compileFilter) throws IOException {
         long start = System.currentTimeMillis();
         GTScanRequest req = new GTScanRequest(info, null, null, filter);
-        IGTScanner scanner = table.scan(req);
+        IGTScanner scanner = new GTFilterScanner(table.getStore().scan(req), req, compileFilter);
         int i = 0;
         for (GTRecord r : scanner) {
             i++;
         }
         scanner.close();
         long end = System.currentTimeMillis();
-        System.out.println((end - start) + "ms with filter cache enabled=" + FilterResultCache.ENABLED + ", " + i + " rows");
+        System.out.println((end - start) + "ms with filter cache enabled=" + FilterResultCache.ENABLED + ", filter compiled=" + compileFilter + ", " + i + " rows");
     }
 
     @Test
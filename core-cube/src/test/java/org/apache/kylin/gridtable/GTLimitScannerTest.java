@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.metadata.datatype.LongMutable;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class GTLimitScannerTest extends LocalFileMetadataTestCase {
+
+    final static int ROWS = 100;
+
+    static GridTable table;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+
+        GTInfo info = UnitTestSupport.basicInfo();
+        table = new GridTable(info, new GTSimpleMemStore(info));
+
+        // metric values are shuffled against the primary key order
+        GTBuilder builder = table.rebuild();
+        for (int i = 0; i < ROWS; i++) {
+            int v = (i * 37) % ROWS;
+            builder.write(new GTRecord(info).setValues(String.format("%03d", i), "Yang", "Food", new LongMutable(v), new BigDecimal(v)));
+        }
+        builder.close();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        GTScanRequest req = new GTScanRequest(table.getInfo(), null, null, null);
+        req.setStorageLimit(10);
+
+        List<Object[]> result = scan(req);
+        assertEquals(10, result.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.format("%03d", i), result.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void testLimitLargerThanData() throws IOException {
+        GTScanRequest req = new GTScanRequest(table.getInfo(), null, null, null);
+        req.setStorageLimit(ROWS * 2);
+
+        assertEquals(ROWS, scan(req).size());
+    }
+
+    @Test
+    public void testTopDescending() throws IOException {
+        GTScanRequest req = new GTScanRequest(table.getInfo(), null, null, null);
+        req.setStorageLimit(5);
+        req.setStorageOrder(3, true);
+
+        List<Object[]> result = scan(req);
+        assertEquals(5, result.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ROWS - 1 - i, ((LongMutable) result.get(i)[3]).get());
+        }
+    }
+
+    @Test
+    public void testTopAscending() throws IOException {
+        GTScanRequest req = new GTScanRequest(table.getInfo(), null, null, null);
+        req.setStorageLimit(5);
+        req.setStorageOrder(4, false);
+
+        List<Object[]> result = scan(req);
+        assertEquals(5, result.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(new BigDecimal(i), result.get(i)[4]);
+        }
+    }
+
+    private List<Object[]> scan(GTScanRequest req) throws IOException {
+        List<Object[]> result = Lists.newArrayList();
+        IGTScanner scanner = table.scan(req);
+        for (GTRecord r : scanner) {
+            Object[] values = r.getValues();
+            // LongMutable is reused by the serializer
+            values[3] = new LongMutable(((LongMutable) values[3]).get());
+            result.add(values);
+        }
+        scanner.close();
+        return result;
+    }
+}
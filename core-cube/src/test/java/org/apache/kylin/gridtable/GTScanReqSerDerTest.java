@@ -98,6 +98,51 @@ public class GTScanReqSerDerTest extends LocalFileMetadataTestCase {
         this.compareTwoGTInfo(info, sInfo);
     }
 
+    @Test
+    public void testScanRequestStorageLimit() {
+        GTInfo info = UnitTestSupport.basicInfo();
+        GTScanRequest req = newScanRequest(info);
+        req.setStorageLimit(100);
+        req.setStorageOrder(3, false);
+        GTScanRequest.serializer.serialize(req, buffer);
+        buffer.flip();
+
+        GTScanRequest sReq = GTScanRequest.serializer.deserialize(buffer);
+        Assert.assertTrue(sReq.hasStorageLimit());
+        Assert.assertEquals(100, sReq.getStorageLimit());
+        Assert.assertTrue(sReq.hasStorageOrder());
+        Assert.assertEquals(3, sReq.getStorageOrderColumn());
+        Assert.assertFalse(sReq.isStorageOrderDescending());
+
+        buffer.clear();
+        GTScanRequest.serializer.serialize(newScanRequest(info), buffer);
+        buffer.flip();
+
+        sReq = GTScanRequest.serializer.deserialize(buffer);
+        Assert.assertFalse(sReq.hasStorageLimit());
+        Assert.assertFalse(sReq.hasStorageOrder());
+    }
+
+    @Test
+    public void testScanRequestWithoutInfo() {
+        GTInfo info = UnitTestSupport.basicInfo();
+        GTScanRequest req = newScanRequest(info);
+        req.setStorageLimit(100);
+        GTScanRequest.serializeWithoutInfo(req, buffer);
+        buffer.flip();
+
+        GTScanRequest sReq = GTScanRequest.deserializeWithInfo(info, buffer);
+        Assert.assertSame(info, sReq.getInfo());
+        Assert.assertEquals(req.getColumns(), sReq.getColumns());
+        Assert.assertEquals(req.getAggrGroupBy(), sReq.getAggrGroupBy());
+        Assert.assertEquals(100, sReq.getStorageLimit());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    private GTScanRequest newScanRequest(GTInfo info) {
+        return new GTScanRequest(info, null, new ImmutableBitSet(0, 3), new ImmutableBitSet(0, 3), new ImmutableBitSet(3, 5), new String[] { "SUM", "SUM" }, null, false, 0);
+    }
+
     private void compareTwoGTInfo(GTInfo info, GTInfo sInfo) {
         Assert.assertEquals(info.tableName, sInfo.tableName);
         Assert.assertEquals(info.primaryKey, sInfo.primaryKey);
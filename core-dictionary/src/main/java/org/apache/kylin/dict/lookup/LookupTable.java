@@ -99,7 +99,7 @@ abstract public class LookupTable<T extends Comparable<T>> {
         ArrayList<T> result = new ArrayList<T>();
         int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
-        for (T[] row : data.values()) {
+        for (T[] row : getAllRows()) {
             if (values.contains(row[colIdx]))
                 result.add(row[returnIdx]);
         }
@@ -111,7 +111,7 @@ abstract public class LookupTable<T extends Comparable<T>> {
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
         T returnBegin = null;
         T returnEnd = null;
-        for (T[] row : data.values()) {
+        for (T[] row : getAllRows()) {
             if (between(beginValue, row[colIdx], endValue)) {
                 T returnValue = row[returnIdx];
                 if (returnBegin == null || returnValue.compareTo(returnBegin) < 0) {
@@ -132,7 +132,7 @@ abstract public class LookupTable<T extends Comparable<T>> {
         int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
         Set<T> result = Sets.newHashSetWithExpectedSize(values.size());
-        for (T[] row : data.values()) {
+        for (T[] row : getAllRows()) {
             if (values.contains(row[colIdx])) {
                 result.add(row[returnIdx]);
             }
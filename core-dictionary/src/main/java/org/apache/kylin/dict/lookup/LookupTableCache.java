@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference counted cache of lookup tables, so segments and queries on the same snapshot share
+ * one index. A table is pinned while anyone holds a reference; released tables stay around and
+ * are evicted in LRU order once the total size goes beyond the budget.
+ */
+public class LookupTableCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupTableCache.class);
+
+    public interface Loader {
+        SnapshotLookupTable load() throws IOException;
+    }
+
+    private static class Entry {
+        final String key;
+        final SnapshotLookupTable table;
+        int refCount;
+        boolean invalidated;
+
+        Entry(String key, SnapshotLookupTable table) {
+            this.key = key;
+            this.table = table;
+        }
+    }
+
+    private final long maxSizeInBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true); // access order
+    private final IdentityHashMap<LookupStringTable, Entry> tableToEntry = new IdentityHashMap<LookupStringTable, Entry>();
+    private long sizeInBytes = 0;
+
+    public LookupTableCache(long maxSizeInBytes) {
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Returns the cached table of the key, or loads one. Each call must be paired with a {@link #release(LookupStringTable)}.
+     */
+    public SnapshotLookupTable acquire(String key, Loader loader) throws IOException {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.refCount++;
+                return entry.table;
+            }
+        }
+
+        // load outside the lock, a big table takes a while; the first one loaded wins a race
+        SnapshotLookupTable table = loader.load();
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, table);
+                entries.put(key, entry);
+                tableToEntry.put(table, entry);
+                sizeInBytes += table.getSizeInBytes();
+                logger.info("Cached lookup table " + key + ", " + table.getRowCount() + " rows, " + table.getSizeInBytes() + " bytes, " + sizeInBytes + " bytes in total");
+            }
+            entry.refCount++;
+            evict();
+            return entry.table;
+        }
+    }
+
+    public synchronized void release(LookupStringTable table) {
+        Entry entry = tableToEntry.get(table);
+        if (entry == null || entry.refCount <= 0)
+            throw new IllegalStateException("Releasing a lookup table not acquired from the cache: " + table);
+
+        entry.refCount--;
+        if (entry.invalidated) {
+            if (entry.refCount == 0)
+                tableToEntry.remove(table);
+        } else {
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (sizeInBytes > maxSizeInBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.refCount > 0)
+                continue;
+
+            it.remove();
+            tableToEntry.remove(entry.table);
+            sizeInBytes -= entry.table.getSizeInBytes();
+            logger.info("Evicted lookup table " + entry.key + ", " + sizeInBytes + " bytes left");
+        }
+    }
+
+    /**
+     * Drops the tables of keys starting with the prefix, e.g. when the snapshot behind is rebuilt.
+     * Tables still in use are no longer handed out, and forgotten once released.
+     */
+    public synchronized void invalidate(String keyPrefix) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.key.startsWith(keyPrefix)) {
+                it.remove();
+                sizeInBytes -= entry.table.getSizeInBytes();
+                if (entry.refCount == 0)
+                    tableToEntry.remove(entry.table);
+                else
+                    entry.invalidated = true;
+            }
+        }
+    }
+
+    /**
+     * Drops the tables nobody references.
+     */
+    public synchronized void clear() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.refCount == 0) {
+                it.remove();
+                tableToEntry.remove(entry.table);
+                sizeInBytes -= entry.table.getSizeInBytes();
+            }
+        }
+    }
+
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized int getRefCount(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? 0 : entry.refCount;
+    }
+}
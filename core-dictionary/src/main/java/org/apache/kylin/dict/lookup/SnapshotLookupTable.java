@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.metadata.model.TableDesc;
+
+/**
+ * A lookup table that reads the snapshot in its dictionary encoded form: the cells are the int
+ * ids kept by the snapshot, the dictionary of the snapshot serves as the string pool (with
+ * its id to value cache), and the PK index is an open addressing hash table of row numbers. Rows
+ * are decoded on access.
+ * <p>
+ * Much smaller than the hash map of string arrays in LookupStringTable, so it can be shared
+ * across segments and queries, see {@link LookupTableCache}.
+ */
+public class SnapshotLookupTable extends LookupStringTable {
+
+    // assigned in init(), which runs in the super constructor, so no field initializers here
+    private SnapshotTable snapshot;
+    private Dictionary<String> dict;
+    private int nRows;
+    private int nCols;
+    private int[] keyIndex;
+    private int[] slots; // row number + 1, 0 for empty
+    private long sizeInBytes;
+
+    public SnapshotLookupTable(TableDesc tableDesc, String[] keyColumns, SnapshotTable snapshot) throws IOException {
+        super(tableDesc, keyColumns, snapshot);
+    }
+
+    @Override
+    protected void init() throws IOException {
+        snapshot = (SnapshotTable) table;
+        dict = snapshot.getDictionary();
+        nRows = snapshot.getRowCount();
+        nCols = snapshot.getColumnCount();
+
+        keyIndex = new int[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyIndex[i] = tableDesc.findColumnByName(keyColumns[i]).getZeroBasedIndex();
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(nRows, 1) * 2 - 1) << 1;
+        slots = new int[capacity];
+        String[] key = new String[keyIndex.length];
+        for (int r = 0; r < nRows; r++) {
+            for (int i = 0; i < keyIndex.length; i++) {
+                key[i] = dict.getValueFromId(snapshot.getCellId(r, keyIndex[i]));
+            }
+            int slot = findSlot(key);
+            if (slots[slot] != 0)
+                throw new IllegalStateException("Dup key found, key=" + toString(key) + ", value1=" + toString(decodeRow(slots[slot] - 1)) + ", value2=" + toString(decodeRow(r)));
+            slots[slot] = r + 1;
+        }
+
+        // the snapshot counts too, it can't be freed while the index is in use
+        sizeInBytes = 4L * capacity + snapshot.getSizeInBytes();
+    }
+
+    /**
+     * Returns the slot holding the key, or the empty slot where it would be. The key is hashed by its
+     * strings rather than ids, so a value missing from the dictionary is just a miss.
+     */
+    private int findSlot(String[] key) {
+        int h = 1;
+        for (String v : key) {
+            h = 31 * h + (v == null ? 0 : v.hashCode());
+        }
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+
+        int mask = slots.length - 1;
+        for (int slot = h & mask;; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            if (row < 0 || keyEquals(row, key))
+                return slot;
+        }
+    }
+
+    private boolean keyEquals(int row, String[] key) {
+        for (int i = 0; i < keyIndex.length; i++) {
+            String v = dict.getValueFromId(snapshot.getCellId(row, keyIndex[i]));
+            if (v == null ? key[i] != null : !v.equals(key[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private String[] decodeRow(int row) {
+        String[] result = new String[nCols];
+        for (int c = 0; c < nCols; c++) {
+            result[c] = dict.getValueFromId(snapshot.getCellId(row, c));
+        }
+        return result;
+    }
+
+    SnapshotTable getSnapshot() {
+        return snapshot;
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public int getRowCount() {
+        return nRows;
+    }
+
+    @Override
+    public String[] getRow(Array<String> key) {
+        if (nRows == 0)
+            return null;
+
+        int row = slots[findSlot(key.data)] - 1;
+        return row < 0 ? null : decodeRow(row);
+    }
+
+    @Override
+    public Collection<String[]> getAllRows() {
+        return new AbstractCollection<String[]>() {
+            @Override
+            public Iterator<String[]> iterator() {
+                return new Iterator<String[]>() {
+                    int row = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return row < nRows;
+                    }
+
+                    @Override
+                    public String[] next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        return decodeRow(row++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return nRows;
+            }
+        };
+    }
+
+    @Override
+    public void dump() {
+        for (int r = 0; r < nRows; r++) {
+            String[] row = decodeRow(r);
+            String[] key = new String[keyIndex.length];
+            for (int i = 0; i < keyIndex.length; i++) {
+                key[i] = row[keyIndex[i]];
+            }
+            System.out.println(toString(key) + " => " + toString(row));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotLookupTable [path=" + table + ", rows=" + nRows + ", bytes=" + sizeInBytes + "]";
+    }
+}
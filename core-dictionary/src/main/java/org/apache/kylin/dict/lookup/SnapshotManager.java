@@ -21,8 +21,11 @@ package org.apache.kylin.dict.lookup;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.NavigableSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.metadata.MetadataManager;
@@ -32,6 +35,15 @@ import org.apache.kylin.source.ReadableTable.TableSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * @author yangli9
  */
@@ -56,36 +68,99 @@ public class SnapshotManager {
         return r;
     }
 
+    public static void clearCache() {
+        SERVICE_CACHE.clear();
+    }
+
     // ============================================================================
 
     private KylinConfig config;
-    private ConcurrentHashMap<String, SnapshotTable> snapshotCache; // resource
+    private Cache<String, SnapshotTable> snapshotCache; // resource path ==> SnapshotTable, weighed by bytes
 
-    // path ==>
-    // SnapshotTable
+    private LookupTableCache lookupTableCache;
 
     private SnapshotManager(KylinConfig config) {
         this.config = config;
-        snapshotCache = new ConcurrentHashMap<String, SnapshotTable>();
+        // a single segment, otherwise guava splits the weight limit across segments and evicts any snapshot heavier than one
+        this.snapshotCache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(config.getTableSnapshotCacheMaxSize()).weigher(new Weigher<String, SnapshotTable>() {
+            @Override
+            public int weigh(String key, SnapshotTable value) {
+                return (int) Math.min(Integer.MAX_VALUE, value.getSizeInBytes());
+            }
+        }).removalListener(new RemovalListener<String, SnapshotTable>() {
+            @Override
+            public void onRemoval(RemovalNotification<String, SnapshotTable> notification) {
+                if (notification.wasEvicted()) {
+                    logger.info("Evicted snapshot " + notification.getKey() + " of " + notification.getValue().getSizeInBytes() + " bytes, " + getCacheStats());
+                    // the lookup tables on it would keep the snapshot in memory, let them go once released
+                    lookupTableCache.invalidate(lookupTableKeyPrefix(notification.getKey()));
+                }
+            }
+        }).recordStats().build();
+        this.lookupTableCache = new LookupTableCache(config.getLookupTableCacheMaxSize());
     }
 
     public void wipeoutCache() {
-        snapshotCache.clear();
+        snapshotCache.invalidateAll();
+        lookupTableCache.clear();
     }
 
-    public SnapshotTable getSnapshotTable(String resourcePath) throws IOException {
-        SnapshotTable r = snapshotCache.get(resourcePath);
-        if (r == null) {
-            r = load(resourcePath, true);
-            snapshotCache.put(resourcePath, r);
+    /**
+     * Hit, miss and eviction counts of the snapshot cache.
+     */
+    public CacheStats getCacheStats() {
+        return snapshotCache.stats();
+    }
+
+    /**
+     * Returns the lookup table of a snapshot indexed by the key columns, shared with other callers.
+     * Must be paired with a {@link #releaseLookupTable(LookupStringTable)}.
+     */
+    public LookupStringTable acquireLookupTable(final String resourcePath, final TableDesc tableDesc, final String[] keyColumns) throws IOException {
+        String key = lookupTableKeyPrefix(resourcePath) + StringUtils.join(keyColumns, ",");
+        SnapshotLookupTable table = lookupTableCache.acquire(key, new LookupTableCache.Loader() {
+            @Override
+            public SnapshotLookupTable load() throws IOException {
+                return new SnapshotLookupTable(tableDesc, keyColumns, getSnapshotTable(resourcePath));
+            }
+        });
+
+        // the snapshot may be evicted before the table got cached, don't let the table keep it beyond this use
+        if (snapshotCache.asMap().get(resourcePath) != table.getSnapshot()) {
+            lookupTableCache.invalidate(lookupTableKeyPrefix(resourcePath));
+        }
+        return table;
+    }
+
+    public void releaseLookupTable(LookupStringTable table) {
+        lookupTableCache.release(table);
+    }
+
+    private String lookupTableKeyPrefix(String resourcePath) {
+        return resourcePath + "#";
+    }
+
+    public SnapshotTable getSnapshotTable(final String resourcePath) throws IOException {
+        try {
+            return snapshotCache.get(resourcePath, new Callable<SnapshotTable>() {
+                @Override
+                public SnapshotTable call() throws Exception {
+                    return load(resourcePath, true);
+                }
+            });
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw new RuntimeException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
         }
-        return r;
     }
 
     public void removeSnapshot(String resourcePath) throws IOException {
         ResourceStore store = MetadataManager.getInstance(this.config).getStore();
         store.deleteResource(resourcePath);
-        snapshotCache.remove(resourcePath);
+        snapshotCache.invalidate(resourcePath);
+        lookupTableCache.invalidate(lookupTableKeyPrefix(resourcePath));
     }
 
     public SnapshotTable buildSnapshot(ReadableTable table, TableDesc tableDesc) throws IOException {
@@ -119,6 +194,7 @@ public class SnapshotManager {
 
         save(snapshot);
         snapshotCache.put(snapshot.getResourcePath(), snapshot);
+        lookupTableCache.invalidate(lookupTableKeyPrefix(snapshot.getResourcePath()));
 
         return snapshot;
     }
@@ -20,6 +20,7 @@ package org.apache.kylin.dict.lookup;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -28,7 +29,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.util.Dictionary;
@@ -54,8 +56,13 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
     @JsonProperty("useDictionary")
     private boolean useDictionary;
 
-    private ArrayList<int[]> rowIndices;
+    // dictionary ids of all cells row by row, in one flat array;
+    // on heap rather than in a direct buffer, whose native memory is freed only by GC and may still be read after eviction
+    private int nRows;
+    private int nCols;
+    private int[] cells;
     private Dictionary<String> dict;
+    private long sizeInBytes = -1;
 
     // default constructor for JSON serialization
     public SnapshotTable() {
@@ -107,7 +114,24 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
             IOUtils.closeQuietly(reader);
         }
 
-        this.rowIndices = allRowIndices;
+        setRows(allRowIndices);
+    }
+
+    private void setRows(List<int[]> rows) {
+        allocate(rows.size(), rows.isEmpty() ? 0 : rows.get(0).length);
+        for (int r = 0; r < nRows; r++) {
+            int[] row = rows.get(r);
+            for (int c = 0; c < nCols; c++) {
+                cells[r * nCols + c] = row[c];
+            }
+        }
+    }
+
+    private void allocate(int nRows, int nCols) {
+        this.nRows = nRows;
+        this.nCols = nCols;
+        this.cells = new int[nRows * nCols];
+        this.sizeInBytes = -1;
     }
 
     public String getResourcePath() {
@@ -127,15 +151,14 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
             @Override
             public boolean next() throws IOException {
                 i++;
-                return i < rowIndices.size();
+                return i < nRows;
             }
 
             @Override
             public String[] getRow() {
-                int[] rowIndex = rowIndices.get(i);
-                String[] row = new String[rowIndex.length];
+                String[] row = new String[nCols];
                 for (int x = 0; x < row.length; x++) {
-                    row[x] = dict.getValueFromId(rowIndex[x]);
+                    row[x] = dict.getValueFromId(getCellId(i, x));
                 }
                 return row;
             }
@@ -146,6 +169,42 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
         };
     }
 
+    Dictionary<String> getDictionary() {
+        return dict;
+    }
+
+    int getRowCount() {
+        return nRows;
+    }
+
+    int getColumnCount() {
+        return nCols;
+    }
+
+    int getCellId(int row, int col) {
+        return cells[row * nCols + col];
+    }
+
+    /**
+     * Bytes of the rows and the dictionary.
+     */
+    public long getSizeInBytes() {
+        if (sizeInBytes < 0) {
+            long size = 4L * nRows * nCols;
+            if (nRows > 0) {
+                CountingOutputStream counter = new CountingOutputStream(new NullOutputStream());
+                try {
+                    dict.write(new DataOutputStream(counter));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e); // does not happen
+                }
+                size += counter.getByteCount();
+            }
+            sizeInBytes = size;
+        }
+        return sizeInBytes;
+    }
+
     @Override
     public TableSignature getSignature() throws IOException {
         return signature;
@@ -158,10 +217,10 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
      */
     @Override
     public int hashCode() {
-        int[] parts = new int[this.rowIndices.size()];
-        for (int i = 0; i < parts.length; ++i)
-            parts[i] = Arrays.hashCode(this.rowIndices.get(i));
-        return Arrays.hashCode(parts);
+        int h = 1;
+        for (int i = 0, n = nRows * nCols; i < n; ++i)
+            h = 31 * h + cells[i];
+        return h;
     }
 
     @Override
@@ -173,13 +232,11 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
         if (this.dict.equals(that.dict) == false)
             return false;
 
-        //compare row by row
-        if (this.rowIndices.size() != that.rowIndices.size())
+        //compare cell by cell
+        if (this.nRows != that.nRows || this.nCols != that.nCols)
+            return false;
+        if (Arrays.equals(this.cells, that.cells) == false)
             return false;
-        for (int i = 0; i < this.rowIndices.size(); ++i) {
-            if (!ArrayUtils.isEquals(this.rowIndices.get(i), that.rowIndices.get(i)))
-                return false;
-        }
 
         return true;
     }
@@ -195,26 +252,25 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
     }
 
     void writeData(DataOutput out) throws IOException {
-        out.writeInt(rowIndices.size());
-        if (rowIndices.size() > 0) {
-            int n = rowIndices.get(0).length;
+        out.writeInt(nRows);
+        if (nRows > 0) {
+            int n = nCols;
             out.writeInt(n);
 
             if (this.useDictionary == true) {
                 dict.write(out);
-                for (int i = 0; i < rowIndices.size(); i++) {
-                    int[] row = rowIndices.get(i);
+                for (int i = 0; i < nRows; i++) {
                     for (int j = 0; j < n; j++) {
-                        out.writeInt(row[j]);
+                        out.writeInt(getCellId(i, j));
                     }
                 }
 
             } else {
-                for (int i = 0; i < rowIndices.size(); i++) {
-                    int[] row = rowIndices.get(i);
+                for (int i = 0; i < nRows; i++) {
                     for (int j = 0; j < n; j++) {
+                        String value = dict.getValueFromId(getCellId(i, j));
                         // NULL_STR is tricky, but we don't want to break the current snapshots
-                        out.writeUTF(dict.getValueFromId(row[j]) == null ? NULL_STR : dict.getValueFromId(row[j]));
+                        out.writeUTF(value == null ? NULL_STR : value);
                     }
                 }
             }
@@ -225,18 +281,14 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
         int rowNum = in.readInt();
         if (rowNum > 0) {
             int n = in.readInt();
-            rowIndices = new ArrayList<int[]>(rowNum);
 
             if (this.useDictionary == true) {
                 this.dict = new TrieDictionary<String>();
                 dict.readFields(in);
 
-                for (int i = 0; i < rowNum; i++) {
-                    int[] row = new int[n];
-                    this.rowIndices.add(row);
-                    for (int j = 0; j < n; j++) {
-                        row[j] = in.readInt();
-                    }
+                allocate(rowNum, n);
+                for (int i = 0, cnt = rowNum * n; i < cnt; i++) {
+                    cells[i] = in.readInt();
                 }
             } else {
                 List<String[]> rows = new ArrayList<String[]>(rowNum);
@@ -255,16 +307,16 @@ public class SnapshotTable extends RootPersistentEntity implements ReadableTable
                     }
                 }
                 this.dict = b.build(0);
-                for (String[] row : rows) {
-                    int[] rowIndex = new int[n];
+                allocate(rowNum, n);
+                for (int r = 0; r < rowNum; r++) {
+                    String[] row = rows.get(r);
                     for (int i = 0; i < n; i++) {
-                        rowIndex[i] = dict.getIdFromValue(row[i]);
+                        cells[r * n + i] = dict.getIdFromValue(row[i]);
                     }
-                    this.rowIndices.add(rowIndex);
                 }
             }
         } else {
-            rowIndices = new ArrayList<int[]>();
+            allocate(0, 0);
             dict = new TrieDictionary<String>();
         }
     }
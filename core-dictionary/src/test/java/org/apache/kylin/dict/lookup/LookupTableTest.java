@@ -18,12 +18,14 @@
 
 package org.apache.kylin.dict.lookup;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.metadata.MetadataManager;
@@ -37,6 +39,10 @@ import org.junit.Test;
  */
 public class LookupTableTest extends LocalFileMetadataTestCase {
 
+    private static final String TABLE_NAME = "EDW.TEST_CAL_DT";
+    private static final String[] PK_COLS = new String[] { "CAL_DT" };
+    private static final String SNAPSHOT_PATH = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
+
     private KylinConfig config = null;
 
     private LookupTable<String> lookupTable;
@@ -98,16 +104,91 @@ public class LookupTableTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testSnapshotLookupTable() throws Exception {
+        SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(SNAPSHOT_PATH);
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc(TABLE_NAME);
+        SnapshotLookupTable compact = new SnapshotLookupTable(tableDesc, PK_COLS, snapshot);
+
+        Assert.assertEquals(lookupTable.getAllRows().size(), compact.getAllRows().size());
+        Assert.assertTrue(compact.getSizeInBytes() > 0);
+        for (String[] row : lookupTable.getAllRows()) {
+            String[] key = new String[] { row[tableDesc.findColumnByName("CAL_DT").getZeroBasedIndex()] };
+            Assert.assertArrayEquals(row, compact.getRow(new Array<String>(key)));
+        }
+        Assert.assertNull(compact.getRow(new Array<String>(new String[] { "1900-01-01" })));
+        Assert.assertNull(compact.getRow(new Array<String>(new String[] { "not a date" })));
+
+        Set<String> values = new HashSet<String>();
+        values.add("2012-01-24");
+        values.add("2012-12-30");
+        Assert.assertEquals(lookupTable.mapValues("CAL_DT", values, "YEAR_BEG_DT"), compact.mapValues("CAL_DT", values, "YEAR_BEG_DT"));
+        Assert.assertEquals(lookupTable.mapRange("CAL_DT", "2012-01-24", "2012-12-30", "QTR_BEG_DT"), compact.mapRange("CAL_DT", "2012-01-24", "2012-12-30", "QTR_BEG_DT"));
+    }
+
+    @Test
+    public void testLookupTableCache() throws Exception {
+        SnapshotManager snapshotMgr = getSnapshotManager();
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc(TABLE_NAME);
+
+        LookupStringTable t1 = snapshotMgr.acquireLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS);
+        LookupStringTable t2 = snapshotMgr.acquireLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS);
+        Assert.assertSame(t1, t2);
+        snapshotMgr.releaseLookupTable(t1);
+        snapshotMgr.releaseLookupTable(t2);
+
+        try {
+            snapshotMgr.releaseLookupTable(t1);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // released more than acquired
+        }
+
+        // a zero budget keeps only the pinned tables
+        LookupTableCache cache = new LookupTableCache(0);
+        final SnapshotTable snapshot = snapshotMgr.getSnapshotTable(SNAPSHOT_PATH);
+        final TableDesc desc = tableDesc;
+        LookupTableCache.Loader loader = new LookupTableCache.Loader() {
+            @Override
+            public SnapshotLookupTable load() throws IOException {
+                return new SnapshotLookupTable(desc, PK_COLS, snapshot);
+            }
+        };
+        LookupStringTable t3 = cache.acquire("cal_dt", loader);
+        Assert.assertTrue(cache.contains("cal_dt"));
+        Assert.assertEquals(1, cache.getRefCount("cal_dt"));
+        cache.release(t3);
+        Assert.assertFalse(cache.contains("cal_dt"));
+        Assert.assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testSnapshotEvictionReleasesLookupTable() throws Exception {
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc(TABLE_NAME);
+
+        // a snapshot cache too small for any snapshot, lookup tables must not keep the evicted ones
+        config.setProperty("kylin.table.snapshot.cache.max.size", "1");
+        SnapshotManager.clearCache();
+        SnapshotManager snapshotMgr = getSnapshotManager();
+
+        LookupStringTable t1 = snapshotMgr.acquireLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS);
+        Assert.assertNotNull(t1.getRow(new Array<String>(new String[] { "2012-01-24" })));
+        snapshotMgr.releaseLookupTable(t1);
+        Assert.assertTrue(snapshotMgr.getCacheStats().evictionCount() > 0);
+
+        LookupStringTable t2 = snapshotMgr.acquireLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS);
+        Assert.assertNotSame(t1, t2);
+        snapshotMgr.releaseLookupTable(t2);
+        SnapshotManager.clearCache();
+    }
+
     public LookupTable<String> initLookupTable() throws Exception {
 
         MetadataManager metaMgr = MetadataManager.getInstance(config);
 
-        String tableName = "EDW.TEST_CAL_DT";
-        String[] pkCols = new String[] { "CAL_DT" };
-        String snapshotResPath = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
-        SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
-        TableDesc tableDesc = metaMgr.getTableDesc(tableName);
-        LookupTable<String> lt = new LookupStringTable(tableDesc, pkCols, snapshot);
+        SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(SNAPSHOT_PATH);
+        TableDesc tableDesc = metaMgr.getTableDesc(TABLE_NAME);
+        LookupTable<String> lt = new LookupStringTable(tableDesc, PK_COLS, snapshot);
 
         System.out.println(lt);
 
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.source.ReadableTable.TableReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+public class SnapshotTableTest extends LocalFileMetadataTestCase {
+
+    private static final String SNAPSHOT_PATH = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+    }
+
+    @After
+    public void tearDown() {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSerializeRoundTrip() throws Exception {
+        SnapshotTable snapshot = SnapshotManager.getInstance(KylinConfig.getInstanceFromEnv()).getSnapshotTable(SNAPSHOT_PATH);
+        Assert.assertTrue(snapshot.getRowCount() > 0);
+        Assert.assertTrue(snapshot.getSizeInBytes() > 4L * snapshot.getRowCount() * snapshot.getColumnCount());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotTableSerializer.FULL_SERIALIZER.serialize(snapshot, new DataOutputStream(bytes));
+        SnapshotTable copy = SnapshotTableSerializer.FULL_SERIALIZER.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assert.assertEquals(snapshot, copy);
+        Assert.assertEquals(snapshot.hashCode(), copy.hashCode());
+        Assert.assertEquals(snapshot.getSizeInBytes(), copy.getSizeInBytes());
+
+        List<String[]> rows = readAll(snapshot);
+        List<String[]> copyRows = readAll(copy);
+        Assert.assertEquals(rows.size(), copyRows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Assert.assertArrayEquals(rows.get(i), copyRows.get(i));
+        }
+    }
+
+    @Test
+    public void testCacheStats() throws Exception {
+        SnapshotManager snapshotMgr = SnapshotManager.getInstance(KylinConfig.getInstanceFromEnv());
+        snapshotMgr.wipeoutCache();
+        CacheStats before = snapshotMgr.getCacheStats();
+
+        SnapshotTable s1 = snapshotMgr.getSnapshotTable(SNAPSHOT_PATH);
+        SnapshotTable s2 = snapshotMgr.getSnapshotTable(SNAPSHOT_PATH);
+        Assert.assertSame(s1, s2);
+
+        CacheStats stats = snapshotMgr.getCacheStats().minus(before);
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.hitCount());
+    }
+
+    @Test
+    public void testLargeSnapshotStaysCached() throws Exception {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        long size = SnapshotManager.getInstance(config).getSnapshotTable(SNAPSHOT_PATH).getSizeInBytes();
+
+        // the snapshot takes half of the budget, more than the default concurrency level of guava would give it
+        config.setProperty("kylin.table.snapshot.cache.max.size", String.valueOf(size * 2));
+        SnapshotManager.clearCache();
+        SnapshotManager snapshotMgr = SnapshotManager.getInstance(config);
+
+        SnapshotTable s1 = snapshotMgr.getSnapshotTable(SNAPSHOT_PATH);
+        SnapshotTable s2 = snapshotMgr.getSnapshotTable(SNAPSHOT_PATH);
+        Assert.assertSame(s1, s2);
+
+        CacheStats stats = snapshotMgr.getCacheStats();
+        Assert.assertEquals(0, stats.evictionCount());
+        Assert.assertEquals(1, stats.hitCount());
+    }
+
+    private List<String[]> readAll(SnapshotTable snapshot) throws Exception {
+        List<String[]> rows = new ArrayList<String[]>();
+        TableReader reader = snapshot.getReader();
+        while (reader.next()) {
+            rows.add(reader.getRow());
+        }
+        reader.close();
+        return rows;
+    }
+}
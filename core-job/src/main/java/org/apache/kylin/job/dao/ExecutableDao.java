@@ -23,18 +23,21 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
+import org.apache.kylin.common.restclient.Broadcaster;
 import org.apache.kylin.job.exception.PersistentException;
 import org.apache.kylin.metadata.MetadataManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  */
@@ -45,8 +48,13 @@ public class ExecutableDao {
     private static final Logger logger = LoggerFactory.getLogger(ExecutableDao.class);
     private static final ConcurrentHashMap<KylinConfig, ExecutableDao> CACHE = new ConcurrentHashMap<KylinConfig, ExecutableDao>();
 
+    private final KylinConfig config;
     private ResourceStore store;
 
+    // status of top level jobs, loaded on first use and kept up to date by writes here and broadcast from other servers,
+    // the jobs created or deleted by other servers are also picked up by syncStateIndexJobIds()
+    private volatile JobStateIndex stateIndex;
+
     public static ExecutableDao getInstance(KylinConfig config) {
         ExecutableDao r = CACHE.get(config);
         if (r == null) {
@@ -63,6 +71,7 @@ public class ExecutableDao {
 
     private ExecutableDao(KylinConfig config) {
         logger.info("Using metadata url: " + config);
+        this.config = config;
         this.store = MetadataManager.getInstance(config).getStore();
     }
 
@@ -147,6 +156,100 @@ public class ExecutableDao {
         }
     }
 
+    public List<String> getJobIds(String status) throws PersistentException {
+        return getStateIndex().getJobIds(status);
+    }
+
+    private JobStateIndex getStateIndex() throws PersistentException {
+        if (stateIndex == null) {
+            synchronized (this) {
+                if (stateIndex == null) {
+                    stateIndex = loadStateIndex();
+                }
+            }
+        }
+        return stateIndex;
+    }
+
+    private JobStateIndex loadStateIndex() throws PersistentException {
+        long startTime = System.currentTimeMillis();
+        JobStateIndex index = new JobStateIndex();
+        for (String jobId : getJobIds()) {
+            index.putJob(jobId, new ExecutableOutputPO().getStatus());
+        }
+        for (ExecutableOutputPO output : getJobOutputs()) {
+            if (index.containsJob(output.getUuid())) {
+                index.putJob(output.getUuid(), output.getStatus());
+            }
+        }
+        logger.info("Loaded status of " + index.getJobIds().size() + " jobs in " + (System.currentTimeMillis() - startTime) + " ms");
+        return index;
+    }
+
+    /**
+     * Reload the status of all jobs from the store.
+     */
+    public void reloadStateIndex() throws PersistentException {
+        synchronized (this) {
+            stateIndex = loadStateIndex();
+        }
+    }
+
+    /**
+     * Adds the jobs created by other servers to the state index as READY and drops the deleted ones, by listing the
+     * job IDs in the store. Unlike reloadStateIndex(), no job output is read.
+     */
+    public void syncStateIndexJobIds() throws PersistentException {
+        JobStateIndex index = getStateIndex();
+        synchronized (this) {
+            Set<String> jobIds = Sets.newHashSet(getJobIds());
+            for (String jobId : index.getJobIds()) {
+                if (!jobIds.contains(jobId)) {
+                    index.removeJob(jobId);
+                }
+            }
+            for (String jobId : jobIds) {
+                if (!index.containsJob(jobId)) {
+                    index.putJob(jobId, new ExecutableOutputPO().getStatus());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reload the status of one job from the store, after another server changed it. Does nothing if the state index
+     * is not loaded yet, since it will read the latest status when it is.
+     */
+    public void reloadJobStateLocal(String uuid) throws PersistentException {
+        JobStateIndex index = stateIndex;
+        if (index == null) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                if (store.exists(pathOfJob(uuid))) {
+                    index.putJob(uuid, getJobOutput(uuid).getStatus());
+                } else {
+                    index.removeJob(uuid);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("error reload job state:" + uuid, e);
+            throw new PersistentException(e);
+        }
+    }
+
+    public void removeJobStateLocal(String uuid) throws PersistentException {
+        JobStateIndex index = stateIndex;
+        if (index != null) {
+            index.removeJob(uuid);
+        }
+    }
+
+    private void broadcastJobState(Broadcaster.EVENT event, String uuid) {
+        Broadcaster.getInstance(config).queue(Broadcaster.TYPE.EXECUTE_OUTPUT.getType(), event.getType(), uuid);
+    }
+
     public ExecutablePO getJob(String uuid) throws PersistentException {
         try {
             return readJobResource(pathOfJob(uuid));
@@ -161,7 +264,12 @@ public class ExecutableDao {
             if (getJob(job.getUuid()) != null) {
                 throw new IllegalArgumentException("job id:" + job.getUuid() + " already exists");
             }
-            writeJobResource(pathOfJob(job), job);
+            JobStateIndex index = getStateIndex();
+            synchronized (this) {
+                writeJobResource(pathOfJob(job), job);
+                index.putJob(job.getUuid(), new ExecutableOutputPO().getStatus());
+            }
+            broadcastJobState(Broadcaster.EVENT.CREATE, job.getUuid());
             return job;
         } catch (IOException e) {
             logger.error("error save job:" + job.getUuid(), e);
@@ -171,7 +279,15 @@ public class ExecutableDao {
 
     public void deleteJob(String uuid) throws PersistentException {
         try {
-            store.deleteResource(pathOfJob(uuid));
+            JobStateIndex index = getStateIndex();
+            boolean removed;
+            synchronized (this) {
+                store.deleteResource(pathOfJob(uuid));
+                removed = index.removeJob(uuid);
+            }
+            if (removed) {
+                broadcastJobState(Broadcaster.EVENT.DROP, uuid);
+            }
         } catch (IOException e) {
             logger.error("error delete job:" + uuid, e);
             throw new PersistentException(e);
@@ -196,7 +312,15 @@ public class ExecutableDao {
     public void addJobOutput(ExecutableOutputPO output) throws PersistentException {
         try {
             output.setLastModified(0);
-            writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
+            JobStateIndex index = getStateIndex();
+            boolean changed;
+            synchronized (this) {
+                writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
+                changed = index.updateStatus(output.getUuid(), output.getStatus());
+            }
+            if (changed) {
+                broadcastJobState(Broadcaster.EVENT.UPDATE, output.getUuid());
+            }
         } catch (IOException e) {
             logger.error("error update job output id:" + output.getUuid(), e);
             throw new PersistentException(e);
@@ -205,8 +329,16 @@ public class ExecutableDao {
 
     public void updateJobOutput(ExecutableOutputPO output) throws PersistentException {
         try {
-            final long ts = writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
-            output.setLastModified(ts);
+            JobStateIndex index = getStateIndex();
+            boolean changed;
+            synchronized (this) {
+                final long ts = writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
+                output.setLastModified(ts);
+                changed = index.updateStatus(output.getUuid(), output.getStatus());
+            }
+            if (changed) {
+                broadcastJobState(Broadcaster.EVENT.UPDATE, output.getUuid());
+            }
         } catch (IOException e) {
             logger.error("error update job output id:" + output.getUuid(), e);
             throw new PersistentException(e);
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.job.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In memory index of the status of top level jobs, so jobs of a status can be listed without reading every job output.
+ * Outputs of sub tasks are not indexed.
+ */
+class JobStateIndex {
+
+    private final Map<String, String> statusOfJob = Maps.newHashMap();
+    private final Map<String, Set<String>> jobsOfStatus = Maps.newHashMap();
+
+    synchronized void putJob(String jobId, String status) {
+        removeJob(jobId);
+        statusOfJob.put(jobId, status);
+        Set<String> jobs = jobsOfStatus.get(status);
+        if (jobs == null) {
+            jobs = Sets.newHashSet();
+            jobsOfStatus.put(status, jobs);
+        }
+        jobs.add(jobId);
+    }
+
+    /**
+     * @return true if the status of a top level job is changed
+     */
+    synchronized boolean updateStatus(String jobId, String status) {
+        String oldStatus = statusOfJob.get(jobId);
+        if (oldStatus == null || oldStatus.equals(status)) {
+            return false;
+        }
+        putJob(jobId, status);
+        return true;
+    }
+
+    synchronized boolean removeJob(String jobId) {
+        String oldStatus = statusOfJob.remove(jobId);
+        if (oldStatus == null) {
+            return false;
+        }
+        jobsOfStatus.get(oldStatus).remove(jobId);
+        return true;
+    }
+
+    synchronized boolean containsJob(String jobId) {
+        return statusOfJob.containsKey(jobId);
+    }
+
+    synchronized List<String> getJobIds() {
+        return Lists.newArrayList(statusOfJob.keySet());
+    }
+
+    synchronized List<String> getJobIds(String status) {
+        Set<String> jobs = jobsOfStatus.get(status);
+        return jobs == null ? Lists.<String> newArrayList() : Lists.newArrayList(jobs);
+    }
+}
@@ -74,6 +74,9 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
         synchronized public void run() {
             try {
                 // logger.debug("Job Fetcher is running...");
+                // jobs created by other servers are found by listing job ids, not relying on broadcast
+                executableManager.syncJobStateIndexJobIds();
+
                 Map<String, Executable> runningJobs = context.getRunningJobs();
                 if (runningJobs.size() >= jobEngineConfig.getMaxConcurrentJobLimit()) {
                     logger.warn("There are too many jobs running, Job Fetch will wait until next schedule time");
@@ -81,15 +84,17 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
                 }
 
                 int nRunning = 0, nReady = 0, nOthers = 0;
-                for (final String id : executableManager.getAllJobIds()) {
+                for (final String id : executableManager.getAllJobIds(ExecutableState.READY)) {
                     if (runningJobs.containsKey(id)) {
                         // logger.debug("Job id:" + id + " is already running");
                         nRunning++;
                         continue;
                     }
+                    // double check, the index may lag behind a change made by another server
                     final Output output = executableManager.getOutput(id);
                     if ((output.getState() != ExecutableState.READY)) {
                         // logger.debug("Job id:" + id + " not runnable");
+                        executableManager.reloadJobStateLocal(id);
                         nOthers++;
                         continue;
                     }
@@ -208,6 +208,54 @@ public class ExecutableManager {
         }
     }
 
+    /**
+     * Returns the IDs of top level jobs in the given state, from an in memory index instead of reading every job output.
+     */
+    public List<String> getAllJobIds(ExecutableState state) {
+        try {
+            return executableDao.getJobIds(state.toString());
+        } catch (PersistentException e) {
+            logger.error("error get Job Ids of state " + state, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void reloadJobStateIndex() {
+        try {
+            executableDao.reloadStateIndex();
+        } catch (PersistentException e) {
+            logger.error("error reload job states", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void syncJobStateIndexJobIds() {
+        try {
+            executableDao.syncStateIndexJobIds();
+        } catch (PersistentException e) {
+            logger.error("error sync job ids", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void reloadJobStateLocal(String jobId) {
+        try {
+            executableDao.reloadJobStateLocal(jobId);
+        } catch (PersistentException e) {
+            logger.error("error reload job state:" + jobId, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void removeJobStateLocal(String jobId) {
+        try {
+            executableDao.removeJobStateLocal(jobId);
+        } catch (PersistentException e) {
+            logger.error("error remove job state:" + jobId, e);
+            throw new RuntimeException(e);
+        }
+    }
+
     public void updateAllRunningJobsToError() {
         try {
             final List<ExecutableOutputPO> jobOutputs = executableDao.getJobOutputs();
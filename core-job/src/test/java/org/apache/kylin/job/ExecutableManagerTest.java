@@ -22,10 +22,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.job.dao.ExecutableDao;
+import org.apache.kylin.job.dao.ExecutablePO;
 import org.apache.kylin.job.exception.IllegalStateTranferException;
 import org.apache.kylin.job.execution.AbstractExecutable;
 import org.apache.kylin.job.execution.ChainedExecutable;
@@ -113,6 +118,50 @@ public class ExecutableManagerTest extends LocalFileMetadataTestCase {
         service.updateJobOutput(job.getId(), ExecutableState.STOPPED, null, null);
     }
 
+    @Test
+    public void testJobStateIndex() throws Exception {
+        DefaultChainedExecutable job = new DefaultChainedExecutable();
+        job.addTask(new SucceedTestExecutable());
+        SucceedTestExecutable another = new SucceedTestExecutable();
+        service.addJob(job);
+        service.addJob(another);
+
+        // sub tasks are not indexed
+        assertEquals(2, service.getAllJobIds(ExecutableState.READY).size());
+        assertTrue(service.getAllJobIds(ExecutableState.RUNNING).isEmpty());
+
+        service.updateJobOutput(job.getId(), ExecutableState.RUNNING, null, null);
+        service.updateJobOutput(job.getTasks().get(0).getId(), ExecutableState.RUNNING, null, null);
+        assertEquals(Collections.singletonList(another.getId()), service.getAllJobIds(ExecutableState.READY));
+        assertEquals(Collections.singletonList(job.getId()), service.getAllJobIds(ExecutableState.RUNNING));
+
+        service.reloadJobStateIndex();
+        assertEquals(Collections.singletonList(another.getId()), service.getAllJobIds(ExecutableState.READY));
+        assertEquals(Collections.singletonList(job.getId()), service.getAllJobIds(ExecutableState.RUNNING));
+
+        service.deleteJob(another.getId());
+        assertTrue(service.getAllJobIds(ExecutableState.READY).isEmpty());
+    }
+
+    @Test
+    public void testSyncJobStateIndexJobIds() throws Exception {
+        SucceedTestExecutable job = new SucceedTestExecutable();
+        service.addJob(job);
+        assertEquals(Collections.singletonList(job.getId()), service.getAllJobIds(ExecutableState.READY));
+
+        // another server creates a job and deletes one, without any broadcast
+        ResourceStore store = ResourceStore.getStore(KylinConfig.getInstanceFromEnv());
+        ExecutablePO other = new ExecutablePO();
+        other.setUuid("sync-test-job");
+        other.setType(SucceedTestExecutable.class.getName());
+        store.putResource(ExecutableDao.pathOfJob(other.getUuid()), other, new JsonSerializer<ExecutablePO>(ExecutablePO.class));
+        store.deleteResource(ExecutableDao.pathOfJob(job.getId()));
+        assertEquals(Collections.singletonList(job.getId()), service.getAllJobIds(ExecutableState.READY));
+
+        service.syncJobStateIndexJobIds();
+        assertEquals(Collections.singletonList(other.getUuid()), service.getAllJobIds(ExecutableState.READY));
+    }
+
     private static void assertJobEqual(Executable one, Executable another) {
         assertEquals(one.getClass(), another.getClass());
         assertEquals(one.getId(), another.getId());
@@ -71,6 +71,14 @@ abstract public class MeasureAggregator<V> implements Serializable {
 
     abstract public void aggregate(V value);
 
+    /**
+     * Aggregate a value straight from its serialized bytes without decoding it into an object, and return
+     * the number of bytes read. Only called when MeasureType.supportsPrimitiveAggregation() returns true.
+     */
+    public int aggregateSerialized(byte[] bytes, int offset) {
+        throw new UnsupportedOperationException();
+    }
+
     abstract public V getState();
 
     // get an estimate of memory consumption UPPER BOUND
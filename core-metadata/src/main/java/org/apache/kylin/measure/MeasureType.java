@@ -70,6 +70,11 @@ abstract public class MeasureType<T> {
     
     /** Return a MeasureAggregator which does aggregation. */
     abstract public MeasureAggregator<T> newAggregator();
+
+    /** Return true if the MeasureAggregator can aggregate serialized values directly, see MeasureAggregator.aggregateSerialized(). */
+    public boolean supportsPrimitiveAggregation() {
+        return false;
+    }
  
     /** Some special measures need dictionary to encode column values for optimal storage. TopN is an example. */
     public List<TblColRef> getColumnsNeedDictionary(FunctionDesc functionDesc) {
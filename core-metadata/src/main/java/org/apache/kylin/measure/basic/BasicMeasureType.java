@@ -24,6 +24,9 @@ import org.apache.kylin.measure.MeasureIngester;
 import org.apache.kylin.measure.MeasureType;
 import org.apache.kylin.measure.MeasureTypeFactory;
 import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.apache.kylin.metadata.datatype.DoubleSerializer;
+import org.apache.kylin.metadata.datatype.LongSerializer;
 import org.apache.kylin.metadata.model.FunctionDesc;
 
 @SuppressWarnings("rawtypes")
@@ -123,6 +126,21 @@ public class BasicMeasureType extends MeasureType {
         throw new IllegalArgumentException("No aggregator for func '" + funcName + "' and return type '" + dataType + "'");
     }
 
+    @Override
+    public boolean supportsPrimitiveAggregation() {
+        // the long aggregators read vlong written by LongSerializer, the double aggregators read what DoubleSerializer writes
+        if (dataType == null || !(isSum() || isCount() || isMax() || isMin()))
+            return false;
+
+        Class<?> serializer = DataTypeSerializer.getImplementation(dataType);
+        if (dataType.isIntegerFamily())
+            return serializer == LongSerializer.class;
+        else if (dataType.isNumberFamily() && !dataType.isDecimal())
+            return serializer == DoubleSerializer.class;
+        else
+            return false;
+    }
+
     private boolean isSum() {
         return FunctionDesc.FUNC_SUM.equals(funcName);
     }
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
 
@@ -41,6 +42,16 @@ public class DoubleMaxAggregator extends MeasureAggregator<DoubleMutable> {
             max.set(value.get());
     }
 
+    @Override
+    public int aggregateSerialized(byte[] bytes, int offset) {
+        double value = Bytes.toDouble(bytes, offset);
+        if (max == null)
+            max = new DoubleMutable(value);
+        else if (max.get() < value)
+            max.set(value);
+        return Bytes.SIZEOF_DOUBLE;
+    }
+
     @Override
     public DoubleMutable getState() {
         return max;
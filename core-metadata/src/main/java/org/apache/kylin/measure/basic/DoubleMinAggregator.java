@@ -18,6 +18,7 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
 
@@ -41,6 +42,16 @@ public class DoubleMinAggregator extends MeasureAggregator<DoubleMutable> {
             min.set(value.get());
     }
 
+    @Override
+    public int aggregateSerialized(byte[] bytes, int offset) {
+        double value = Bytes.toDouble(bytes, offset);
+        if (min == null)
+            min = new DoubleMutable(value);
+        else if (min.get() > value)
+            min.set(value);
+        return Bytes.SIZEOF_DOUBLE;
+    }
+
     @Override
     public DoubleMutable getState() {
         return min;
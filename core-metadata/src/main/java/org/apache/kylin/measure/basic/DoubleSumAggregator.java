@@ -18,6 +18,7 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
 
@@ -38,6 +39,12 @@ public class DoubleSumAggregator extends MeasureAggregator<DoubleMutable> {
         sum.set(sum.get() + value.get());
     }
 
+    @Override
+    public int aggregateSerialized(byte[] bytes, int offset) {
+        sum.set(sum.get() + Bytes.toDouble(bytes, offset));
+        return Bytes.SIZEOF_DOUBLE;
+    }
+
     @Override
     public DoubleMutable getState() {
         return sum;
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.metadata.datatype.LongMutable;
 
@@ -41,6 +42,16 @@ public class LongMinAggregator extends MeasureAggregator<LongMutable> {
             min.set(value.get());
     }
 
+    @Override
+    public int aggregateSerialized(byte[] bytes, int offset) {
+        long value = BytesUtil.readVLong(bytes, offset);
+        if (min == null)
+            min = new LongMutable(value);
+        else if (min.get() > value)
+            min.set(value);
+        return BytesUtil.peekVLongLength(bytes, offset);
+    }
+
     @Override
     public LongMutable getState() {
         return min;
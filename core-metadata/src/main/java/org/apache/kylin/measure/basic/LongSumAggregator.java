@@ -18,6 +18,7 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.metadata.datatype.LongMutable;
 
@@ -38,6 +39,12 @@ public class LongSumAggregator extends MeasureAggregator<LongMutable> {
         sum.set(sum.get() + value.get());
     }
 
+    @Override
+    public int aggregateSerialized(byte[] bytes, int offset) {
+        sum.set(sum.get() + BytesUtil.readVLong(bytes, offset));
+        return BytesUtil.peekVLongLength(bytes, offset);
+    }
+
     @Override
     public LongMutable getState() {
         return sum;
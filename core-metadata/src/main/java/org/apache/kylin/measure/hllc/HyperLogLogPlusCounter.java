@@ -96,6 +96,11 @@ public class HyperLogLogPlusCounter implements Serializable, Comparable<HyperLog
         add(hashFunc.hashBytes(value, offset, length).asLong());
     }
 
+    /** Adds a value that is already hashed into a well mixed 64 bits long, bypassing the hash function */
+    public void addHashDirectly(long hash) {
+        add(hash);
+    }
+
     protected void add(long hash) {
         int bucketMask = m - 1;
         int bucket = (int) (hash & bucketMask);
@@ -55,6 +55,10 @@ abstract public class DataTypeSerializer<T> implements BytesSerializer<T> {
         implementations.put(dataTypeName, impl);
     }
 
+    public static Class<?> getImplementation(DataType type) {
+        return implementations.get(type.getName());
+    }
+
     public static DataTypeSerializer<?> create(String dataType) {
         return create(DataType.getType(dataType));
     }
@@ -99,6 +99,11 @@ public class Tuple implements ITuple {
         values[idx] = objectValue;
     }
 
+    /** set a dimension value that is already converted by {@link #convertOptiqCellValue(String, String)} */
+    public void setConvertedDimensionValue(int idx, Object objectValue) {
+        values[idx] = objectValue;
+    }
+
     public void setMeasureValue(String fieldName, Object fieldValue) {
         setMeasureValue(info.getFieldIndex(fieldName), fieldValue);
     }
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.measure.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.MeasureTypeFactory;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class BasicAggregatorTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSupportsPrimitiveAggregation() {
+        assertTrue(MeasureTypeFactory.create("SUM", DataType.getType("bigint")).supportsPrimitiveAggregation());
+        assertTrue(MeasureTypeFactory.create("COUNT", DataType.getType("bigint")).supportsPrimitiveAggregation());
+        assertTrue(MeasureTypeFactory.create("MIN", DataType.getType("integer")).supportsPrimitiveAggregation());
+        assertTrue(MeasureTypeFactory.create("MAX", DataType.getType("double")).supportsPrimitiveAggregation());
+        assertFalse(MeasureTypeFactory.create("SUM", DataType.getType("decimal(19,4)")).supportsPrimitiveAggregation());
+        assertFalse(MeasureTypeFactory.create("SUM", DataType.getType("long8")).supportsPrimitiveAggregation());
+        assertFalse(MeasureTypeFactory.create("COUNT_DISTINCT", DataType.getType("hllc(10)")).supportsPrimitiveAggregation());
+    }
+
+    @Test
+    public void testAggregateSerialized() {
+        String[] funcs = { "SUM", "MIN", "MAX", "COUNT" };
+        String[] types = { "bigint", "integer", "double" };
+        Random rand = new Random(7);
+
+        for (String func : funcs) {
+            for (String type : types) {
+                if (func.equals("COUNT") && !type.equals("bigint"))
+                    continue;
+
+                DataType dataType = DataType.getType(type);
+                DataTypeSerializer serializer = DataTypeSerializer.create(dataType);
+                MeasureAggregator byObject = MeasureAggregator.create(func, dataType);
+                MeasureAggregator bySerialized = MeasureAggregator.create(func, dataType);
+
+                // values packed one after another, like measures in a row
+                ByteBuffer buf = ByteBuffer.allocate(1000 * serializer.maxLength());
+                for (int i = 0; i < 1000; i++) {
+                    long v = rand.nextInt(2000000) - 1000000;
+                    Object value = serializer.valueOf(type.equals("double") ? String.valueOf(v / 100.0) : String.valueOf(v));
+                    serializer.serialize(value, buf);
+                    byObject.aggregate(value);
+                }
+
+                int offset = 0;
+                for (int i = 0; i < 1000; i++) {
+                    offset += bySerialized.aggregateSerialized(buf.array(), offset);
+                }
+
+                assertEquals(buf.position(), offset);
+                assertEquals(func + " " + type, byObject.getState(), bySerialized.getState());
+            }
+        }
+    }
+}
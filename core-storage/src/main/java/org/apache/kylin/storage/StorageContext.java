@@ -18,9 +18,13 @@
 
 package org.apache.kylin.storage;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.metadata.model.FunctionDesc;
 
 import com.google.common.collect.Range;
 
@@ -35,7 +39,9 @@ public class StorageContext {
     private int threshold;
     private int limit;
     private int offset;
+    private boolean hasLimit;
     private boolean hasSort;
+    private int sortCount;
     private boolean acceptPartialResult;
 
     private boolean exactAggregation;
@@ -48,6 +54,14 @@ public class StorageContext {
 
     private Range<Long> reusedPeriod;
 
+    // limit and optional ordering metric pushed down to storage
+    private int storageLimit;
+    private FunctionDesc storageOrderMetric;
+    private boolean storageOrderDescending;
+
+    // segment name -> milliseconds spent on scanning the segment, may be updated by multiple threads
+    private Map<String, Long> segmentScanTimes;
+
     public StorageContext() {
         this.threshold = DEFAULT_THRESHOLD;
         this.limit = DEFAULT_THRESHOLD;
@@ -61,6 +75,9 @@ public class StorageContext {
 
         this.acceptPartialResult = false;
         this.partialResultReturned = false;
+
+        this.storageLimit = Integer.MAX_VALUE;
+        this.segmentScanTimes = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
     }
 
     public String getConnUrl() {
@@ -85,6 +102,14 @@ public class StorageContext {
 
     public void setLimit(int l) {
         this.limit = l;
+        this.hasLimit = true;
+    }
+
+    /**
+     * @return true if the query has a LIMIT clause, otherwise the limit is just the default threshold
+     */
+    public boolean hasLimit() {
+        return this.hasLimit;
     }
 
     public int getOffset() {
@@ -103,14 +128,22 @@ public class StorageContext {
         return this.enableLimit;
     }
 
+    /**
+     * called once for each ORDER BY column
+     */
     public void markSort() {
         this.hasSort = true;
+        this.sortCount++;
     }
 
     public boolean hasSort() {
         return this.hasSort;
     }
 
+    public int getSortCount() {
+        return this.sortCount;
+    }
+
     public void setCuboid(Cuboid c) {
         cuboid = c;
     }
@@ -166,4 +199,33 @@ public class StorageContext {
     public void setReusedPeriod(Range<Long> reusedPeriod) {
         this.reusedPeriod = reusedPeriod;
     }
+
+    public int getStorageLimit() {
+        return storageLimit;
+    }
+
+    public void setStorageLimit(int storageLimit) {
+        this.storageLimit = storageLimit;
+    }
+
+    public FunctionDesc getStorageOrderMetric() {
+        return storageOrderMetric;
+    }
+
+    public boolean isStorageOrderDescending() {
+        return storageOrderDescending;
+    }
+
+    public void setStorageOrder(FunctionDesc metric, boolean descending) {
+        this.storageOrderMetric = metric;
+        this.storageOrderDescending = descending;
+    }
+
+    public void addSegmentScanTime(String segment, long millis) {
+        segmentScanTimes.put(segment, millis);
+    }
+
+    public Map<String, Long> getSegmentScanTimes() {
+        return segmentScanTimes;
+    }
 }
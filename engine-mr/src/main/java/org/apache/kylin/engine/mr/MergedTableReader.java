@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.engine.mr;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.source.ReadableTable.TableReader;
+
+/**
+ * Merges readers of sorted runs into one reader in sorted order. Rows compare column by column, by the
+ * UTF-8 bytes of the values, which is the order map reduce sorts them in. Equal rows are returned once.
+ */
+public class MergedTableReader implements TableReader {
+
+    private final List<TableReader> readers;
+    private final PriorityQueue<Head> heads;
+    private String[] curRow;
+    private byte[][] lastRowBytes;
+
+    private static class Head {
+        final TableReader reader;
+        String[] row;
+        byte[][] rowBytes;
+
+        Head(TableReader reader) {
+            this.reader = reader;
+        }
+
+        boolean advance() throws IOException {
+            if (!reader.next()) {
+                return false;
+            }
+            row = reader.getRow();
+            rowBytes = new byte[row.length][];
+            for (int i = 0; i < row.length; i++) {
+                rowBytes[i] = row[i] == null ? null : Bytes.toBytes(row[i]);
+            }
+            return true;
+        }
+    }
+
+    private static final Comparator<Head> HEAD_COMPARATOR = new Comparator<Head>() {
+        @Override
+        public int compare(Head h1, Head h2) {
+            return compareRows(h1.rowBytes, h2.rowBytes);
+        }
+    };
+
+    private static int compareRows(byte[][] r1, byte[][] r2) {
+        for (int i = 0; i < r1.length && i < r2.length; i++) {
+            if (r1[i] == null || r2[i] == null) {
+                if (r1[i] != r2[i]) {
+                    return r1[i] == null ? -1 : 1;
+                }
+                continue;
+            }
+            int comp = Bytes.compareTo(r1[i], r2[i]);
+            if (comp != 0) {
+                return comp;
+            }
+        }
+        return r1.length - r2.length;
+    }
+
+    public MergedTableReader(List<TableReader> readers) throws IOException {
+        this.readers = readers;
+        this.heads = new PriorityQueue<Head>(Math.max(1, readers.size()), HEAD_COMPARATOR);
+        for (TableReader reader : readers) {
+            Head head = new Head(reader);
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            String[] row = head.row;
+            byte[][] rowBytes = head.rowBytes;
+            if (head.advance()) {
+                heads.add(head);
+            }
+            if (lastRowBytes == null || compareRows(lastRowBytes, rowBytes) != 0) {
+                curRow = row;
+                lastRowBytes = rowBytes;
+                return true;
+            }
+        }
+        curRow = null;
+        return false;
+    }
+
+    @Override
+    public String[] getRow() {
+        return curRow;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (TableReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.engine.mr;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A folder of sorted runs, e.g. the distinct values of a column from several reducers, read as one table
+ * in sorted order.
+ */
+public class SortedRunsDFSTable extends DFSFileTable {
+
+    public SortedRunsDFSTable(String path, int nColumns) {
+        super(path, nColumns);
+    }
+
+    @Override
+    public TableReader getReader() throws IOException {
+        FileSystem fs = HadoopUtil.getFileSystem(path);
+        FileStatus[] runs = fs.listStatus(new Path(path));
+        Arrays.sort(runs);
+
+        List<TableReader> readers = Lists.newArrayListWithCapacity(runs.length);
+        try {
+            for (FileStatus run : runs) {
+                if (run.isFile()) {
+                    readers.add(new DFSFileTableReader(run.getPath().toString(), delim, nColumns));
+                }
+            }
+        } catch (IOException e) {
+            for (TableReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        return new MergedTableReader(readers);
+    }
+
+    /**
+     * @return whether the path is a folder of sorted runs rather than a single file
+     */
+    public static boolean isSortedRuns(String path) throws IOException {
+        FileSystem fs = HadoopUtil.getFileSystem(path);
+        return fs.exists(new Path(path)) && fs.getFileStatus(new Path(path)).isDirectory();
+    }
+}
@@ -72,6 +72,7 @@ public class CubeStatsReader {
     final CubeSegment seg;
     final int samplingPercentage;
     final double mapperOverlapRatioOfFirstBuild; // only makes sense for the first build, is meaningless after merge
+    final int hashVersion; // see CuboidStatsCollector.HASH_VERSION
     final Map<Long, HyperLogLogPlusCounter> cuboidRowEstimatesHLL;
 
     public CubeStatsReader(CubeSegment cubeSegment, KylinConfig kylinConfig) throws IOException {
@@ -89,6 +90,7 @@ public class CubeStatsReader {
 
             int percentage = 100;
             double mapperOverlapRatio = 0;
+            int version = 0;
             Map<Long, HyperLogLogPlusCounter> counterMap = Maps.newHashMap();
 
             LongWritable key = (LongWritable) ReflectionUtils.newInstance(reader.getKeyClass(), hadoopConf);
@@ -98,6 +100,8 @@ public class CubeStatsReader {
                     percentage = Bytes.toInt(value.getBytes());
                 } else if (key.get() == -1) {
                     mapperOverlapRatio = Bytes.toDouble(value.getBytes());
+                } else if (key.get() == -2) {
+                    version = Bytes.toInt(value.getBytes());
                 } else {
                     HyperLogLogPlusCounter hll = new HyperLogLogPlusCounter(kylinConfig.getCubeStatsHLLPrecision());
                     ByteArray byteArray = new ByteArray(value.getBytes());
@@ -109,6 +113,7 @@ public class CubeStatsReader {
             this.seg = cubeSegment;
             this.samplingPercentage = percentage;
             this.mapperOverlapRatioOfFirstBuild = mapperOverlapRatio;
+            this.hashVersion = version;
             this.cuboidRowEstimatesHLL = counterMap;
 
         } finally {
@@ -143,6 +148,10 @@ public class CubeStatsReader {
         return mapperOverlapRatioOfFirstBuild;
     }
 
+    public int getHashVersion() {
+        return hashVersion;
+    }
+
     public static Map<Long, Long> getCuboidRowCountMapFromSampling(Map<Long, HyperLogLogPlusCounter> hllcMap, int samplingPercentage) {
         Map<Long, Long> cuboidRowCountMap = Maps.newHashMap();
         for (Map.Entry<Long, HyperLogLogPlusCounter> entry : hllcMap.entrySet()) {
@@ -18,12 +18,15 @@
 
 package org.apache.kylin.engine.mr.steps;
 
+import java.io.IOException;
+
 import org.apache.commons.cli.Options;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.cube.cli.DictionaryGeneratorCLI;
 import org.apache.kylin.dict.DistinctColumnValuesProvider;
 import org.apache.kylin.engine.mr.DFSFileTable;
+import org.apache.kylin.engine.mr.SortedRunsDFSTable;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.source.ReadableTable;
@@ -56,7 +59,16 @@ public class CreateDictionaryJob extends AbstractHadoopJob {
             DictionaryGeneratorCLI.processSegment(config, cubeName, segmentName, new DistinctColumnValuesProvider() {
                 @Override
                 public ReadableTable getDistinctValuesFor(TblColRef col) {
-                    return new DFSFileTable(factColumnsInputPath + "/" + col.getName(), -1);
+                    String path = factColumnsInputPath + "/" + col.getName();
+                    try {
+                        // an ultra high cardinality column comes in sorted runs from several reducers
+                        if (SortedRunsDFSTable.isSortedRuns(path)) {
+                            return new SortedRunsDFSTable(path, -1);
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to check distinct values of " + col + " at " + path, e);
+                    }
+                    return new DFSFileTable(path, -1);
                 }
             });
         } catch (Exception e) {
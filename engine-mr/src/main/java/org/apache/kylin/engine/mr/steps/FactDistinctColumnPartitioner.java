@@ -18,15 +18,18 @@
 
 package org.apache.kylin.engine.mr.steps;
 
+import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.engine.mr.common.BatchConstants;
 
 /**
  */
-public class FactDistinctColumnPartitioner extends Partitioner<Text, Text> {
+public class FactDistinctColumnPartitioner extends Partitioner<Text, Text> implements Configurable {
     private Configuration conf;
+    private FactDistinctColumnsReducerMapping reducerMapping;
 
     @Override
     public int getPartition(Text key, Text value, int numReduceTasks) {
@@ -36,9 +39,21 @@ public class FactDistinctColumnPartitioner extends Partitioner<Text, Text> {
             return numReduceTasks - 1;
         } else {
             int colIndex = BytesUtil.readUnsigned(key.getBytes(), 0, 1);
-            return colIndex;
+            return reducerMapping.getReducerForValue(colIndex, key.getBytes(), 1, key.getLength() - 1);
         }
 
     }
 
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        // the column count only matters for jobs without the mapping, which have one reducer per column
+        this.reducerMapping = FactDistinctColumnsReducerMapping.parse(conf.get(BatchConstants.CFG_FACT_DISTINCT_COLUMN_REDUCERS), 256);
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
 }
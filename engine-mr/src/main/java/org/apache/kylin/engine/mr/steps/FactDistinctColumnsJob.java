@@ -82,12 +82,14 @@ public class FactDistinctColumnsJob extends AbstractHadoopJob {
             job.getConfiguration().set(BatchConstants.CFG_STATISTICS_ENABLED, statistics_enabled);
             job.getConfiguration().set(BatchConstants.CFG_STATISTICS_OUTPUT, statistics_output);
             job.getConfiguration().set(BatchConstants.CFG_STATISTICS_SAMPLING_PERCENT, statistics_sampling_percent);
+            FactDistinctColumnsReducerMapping reducerMapping = FactDistinctColumnsReducerMapping.create(cube.getDescriptor(), columnsNeedDict, cube.getConfig().getFactDistinctUHCReducerCount());
+            job.getConfiguration().set(BatchConstants.CFG_FACT_DISTINCT_COLUMN_REDUCERS, reducerMapping.toString());
             logger.info("Starting: " + job.getJobName());
 
             setJobClasspath(job, cube.getConfig());
 
             setupMapper(cube.getSegment(segmentName, SegmentStatusEnum.NEW));
-            setupReducer(output, "true".equalsIgnoreCase(statistics_enabled) ? columnsNeedDict.size() + 1 : columnsNeedDict.size());
+            setupReducer(output, "true".equalsIgnoreCase(statistics_enabled) ? reducerMapping.getColumnReducerCount() + 1 : reducerMapping.getColumnReducerCount());
 
             attachKylinPropsAndMetadata(cube, job.getConfiguration());
 
@@ -61,6 +61,7 @@ public class FactDistinctColumnsReducer extends KylinReducer<Text, Text, NullWri
     private int samplingPercentage;
     private List<ByteArray> colValues;
     private TblColRef col = null;
+    private int run = -1; // index of the sorted run written by this reducer, -1 if the column has only one reducer
     private boolean isStatistics = false;
     private boolean outputTouched = false;
     private KylinConfig cubeConfig;
@@ -92,7 +93,12 @@ public class FactDistinctColumnsReducer extends KylinReducer<Text, Text, NullWri
         } else {
             // col
             isStatistics = false;
-            col = columnList.get(taskId);
+            FactDistinctColumnsReducerMapping reducerMapping = FactDistinctColumnsReducerMapping.parse(conf.get(BatchConstants.CFG_FACT_DISTINCT_COLUMN_REDUCERS), columnList.size());
+            int colIndex = reducerMapping.getColumnOfReducer(taskId);
+            col = columnList.get(colIndex);
+            if (reducerMapping.getReducerCountOfColumn(colIndex) > 1) {
+                run = reducerMapping.getRunOfReducer(taskId);
+            }
             colValues = Lists.newArrayList();
         }
     }
@@ -135,7 +141,8 @@ public class FactDistinctColumnsReducer extends KylinReducer<Text, Text, NullWri
         final Configuration conf = context.getConfiguration();
         final FileSystem fs = FileSystem.get(conf);
         final String outputPath = conf.get(BatchConstants.CFG_OUTPUT_PATH);
-        final Path outputFile = new Path(outputPath, col.getName());
+        // the sorted runs of a column spread over reducers go to a folder, to be merged by SortedRunsDFSTable
+        final Path outputFile = run < 0 ? new Path(outputPath, col.getName()) : new Path(new Path(outputPath, col.getName()), String.valueOf(run));
 
         FSDataOutputStream out = null;
         try {
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+
+/**
+ * Which reducers of the fact distinct columns job take the values of which column. Most columns go to one
+ * reducer, an ultra high cardinality column is spread over several reducers by the hash of the values,
+ * each writing a sorted run of its own. The reducers come in column order, then the one for statistics, if any.
+ */
+public class FactDistinctColumnsReducerMapping {
+
+    private final int[] reducersOfColumn;
+    private final int[] firstReducerOfColumn;
+    private final int[] columnOfReducer;
+
+    public FactDistinctColumnsReducerMapping(int[] reducersOfColumn) {
+        this.reducersOfColumn = reducersOfColumn;
+        this.firstReducerOfColumn = new int[reducersOfColumn.length];
+        int total = 0;
+        for (int i = 0; i < reducersOfColumn.length; i++) {
+            firstReducerOfColumn[i] = total;
+            total += reducersOfColumn[i];
+        }
+        this.columnOfReducer = new int[total];
+        for (int i = 0; i < reducersOfColumn.length; i++) {
+            for (int j = 0; j < reducersOfColumn[i]; j++) {
+                columnOfReducer[firstReducerOfColumn[i] + j] = i;
+            }
+        }
+    }
+
+    /**
+     * The shard by columns, usually of ultra high cardinality, get uhcReducers reducers each.
+     */
+    public static FactDistinctColumnsReducerMapping create(CubeDesc cubeDesc, List<TblColRef> factDictCols, int uhcReducers) {
+        int[] reducersOfColumn = new int[factDictCols.size()];
+        for (int i = 0; i < reducersOfColumn.length; i++) {
+            reducersOfColumn[i] = 1;
+            for (RowKeyColDesc rowKeyCol : cubeDesc.getRowkey().getRowKeyColumns()) {
+                if (rowKeyCol.isShardBy() && rowKeyCol.getColRef().equals(factDictCols.get(i))) {
+                    reducersOfColumn[i] = Math.max(1, uhcReducers);
+                }
+            }
+        }
+        return new FactDistinctColumnsReducerMapping(reducersOfColumn);
+    }
+
+    public static FactDistinctColumnsReducerMapping parse(String str, int columnCount) {
+        if (StringUtils.isEmpty(str)) {
+            // jobs submitted before the mapping existed have one reducer per column
+            int[] reducersOfColumn = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                reducersOfColumn[i] = 1;
+            }
+            return new FactDistinctColumnsReducerMapping(reducersOfColumn);
+        }
+
+        String[] parts = StringUtils.split(str, ',');
+        int[] reducersOfColumn = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            reducersOfColumn[i] = Integer.parseInt(parts[i]);
+        }
+        return new FactDistinctColumnsReducerMapping(reducersOfColumn);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < reducersOfColumn.length; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append(reducersOfColumn[i]);
+        }
+        return buf.toString();
+    }
+
+    /** reducers for all the columns, not counting the one for statistics */
+    public int getColumnReducerCount() {
+        return columnOfReducer.length;
+    }
+
+    public int getReducerCountOfColumn(int col) {
+        return reducersOfColumn[col];
+    }
+
+    public int getColumnOfReducer(int reducerId) {
+        return columnOfReducer[reducerId];
+    }
+
+    /** index among the reducers of the same column */
+    public int getRunOfReducer(int reducerId) {
+        return reducerId - firstReducerOfColumn[columnOfReducer[reducerId]];
+    }
+
+    public int getReducerForValue(int col, byte[] value, int offset, int length) {
+        int n = reducersOfColumn[col];
+        if (n == 1) {
+            return firstReducerOfColumn[col];
+        }
+        return firstReducerOfColumn[col] + (Bytes.hashCode(value, offset, length) & Integer.MAX_VALUE) % n;
+    }
+}
@@ -20,23 +20,17 @@ package org.apache.kylin.engine.mr.steps;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Collection;
-import java.util.List;
+import java.util.HashSet;
 
 import org.apache.hadoop.io.Text;
 import org.apache.kylin.measure.BufferedMeasureEncoder;
 import org.apache.kylin.measure.hllc.HyperLogLogPlusCounter;
-import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.cube.util.CuboidStatsCollector;
 import org.apache.kylin.engine.mr.common.BatchConstants;
 
-import com.google.common.collect.Lists;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
-
 /**
  */
 public class FactDistinctHiveColumnsMapper<KEYIN> extends FactDistinctColumnsMapperBase<KEYIN, Object> {
@@ -44,14 +38,13 @@ public class FactDistinctHiveColumnsMapper<KEYIN> extends FactDistinctColumnsMap
     protected boolean collectStatistics = false;
     protected CuboidScheduler cuboidScheduler = null;
     protected int nRowKey;
-    private Integer[][] allCuboidsBitSet = null;
-    private HyperLogLogPlusCounter[] allCuboidsHLL = null;
-    private Long[] cuboidIds;
-    private HashFunction hf = null;
+    private CuboidStatsCollector statsCollector = null;
     private int rowCount = 0;
     private int samplingPercentage;
-    private ByteArray[] row_hashcodes = null;
     private ByteBuffer keyBuffer;
+    private DistinctValues distinctValues = null; // values written by this mapper, per dictionary column
+    private long valueCount = 0;
+    private long writtenValueCount = 0;
     private static final Text EMPTY_TEXT = new Text();
     public static final byte MARK_FOR_HLL = (byte) 0xFF;
 
@@ -59,50 +52,16 @@ public class FactDistinctHiveColumnsMapper<KEYIN> extends FactDistinctColumnsMap
     protected void setup(Context context) throws IOException {
         super.setup(context);
         keyBuffer = ByteBuffer.allocate(4096);
+        int cacheMB = cubeDesc.getConfig().getFactDistinctMapperCacheMB();
+        if (cacheMB > 0 && factDictCols.size() > 0) {
+            distinctValues = new DistinctValues(factDictCols.size(), (long) cacheMB * 1024 * 1024 / factDictCols.size());
+        }
         collectStatistics = Boolean.parseBoolean(context.getConfiguration().get(BatchConstants.CFG_STATISTICS_ENABLED));
         if (collectStatistics) {
             samplingPercentage = Integer.parseInt(context.getConfiguration().get(BatchConstants.CFG_STATISTICS_SAMPLING_PERCENT));
             cuboidScheduler = new CuboidScheduler(cubeDesc);
             nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
-
-            List<Long> cuboidIdList = Lists.newArrayList();
-            List<Integer[]> allCuboidsBitSetList = Lists.newArrayList();
-            addCuboidBitSet(baseCuboidId, allCuboidsBitSetList, cuboidIdList);
-
-            allCuboidsBitSet = allCuboidsBitSetList.toArray(new Integer[cuboidIdList.size()][]);
-            cuboidIds = cuboidIdList.toArray(new Long[cuboidIdList.size()]);
-
-            allCuboidsHLL = new HyperLogLogPlusCounter[cuboidIds.length];
-            for (int i = 0; i < cuboidIds.length; i++) {
-                allCuboidsHLL[i] = new HyperLogLogPlusCounter(cubeDesc.getConfig().getCubeStatsHLLPrecision());
-            }
-
-            hf = Hashing.murmur3_32();
-            row_hashcodes = new ByteArray[nRowKey];
-            for (int i = 0; i < nRowKey; i++) {
-                row_hashcodes[i] = new ByteArray();
-            }
-        }
-    }
-
-    private void addCuboidBitSet(long cuboidId, List<Integer[]> allCuboidsBitSet, List<Long> allCuboids) {
-        allCuboids.add(cuboidId);
-        Integer[] indice = new Integer[Long.bitCount(cuboidId)];
-
-        long mask = Long.highestOneBit(baseCuboidId);
-        int position = 0;
-        for (int i = 0; i < nRowKey; i++) {
-            if ((mask & cuboidId) > 0) {
-                indice[position] = i;
-                position++;
-            }
-            mask = mask >> 1;
-        }
-
-        allCuboidsBitSet.add(indice);
-        Collection<Long> children = cuboidScheduler.getSpanningCuboid(cuboidId);
-        for (Long childId : children) {
-            addCuboidBitSet(childId, allCuboidsBitSet, allCuboids);
+            statsCollector = new CuboidStatsCollector(cubeDesc, cubeDesc.getConfig().getCubeStatsHLLPrecision());
         }
     }
 
@@ -115,6 +74,12 @@ public class FactDistinctHiveColumnsMapper<KEYIN> extends FactDistinctColumnsMap
                 if (fieldValue == null)
                     continue;
 
+                valueCount++;
+                if (distinctValues != null && !distinctValues.add(i, fieldValue)) {
+                    continue;
+                }
+
+                writtenValueCount++;
                 keyBuffer.clear();
                 keyBuffer.put(Bytes.toBytes(i)[3]); // one byte is enough
                 keyBuffer.put(Bytes.toBytes(fieldValue));
@@ -126,42 +91,70 @@ public class FactDistinctHiveColumnsMapper<KEYIN> extends FactDistinctColumnsMap
         }
 
         if (collectStatistics && rowCount < samplingPercentage) {
-            putRowKeyToHLL(row);
+            statsCollector.addRow(row, intermediateTableDesc.getRowKeyColumnIndexes());
         }
 
         if (rowCount++ == 100)
             rowCount = 0;
     }
 
-    private void putRowKeyToHLL(String[] row) {
-
-        //generate hash for each row key column
-        for (int i = 0; i < nRowKey; i++) {
-            Hasher hc = hf.newHasher();
-            String colValue = row[intermediateTableDesc.getRowKeyColumnIndexes()[i]];
-            if (colValue != null) {
-                row_hashcodes[i].set(hc.putString(colValue).hash().asBytes());
-            } else {
-                row_hashcodes[i].set(hc.putInt(0).hash().asBytes());
+    /**
+     * The values written by a mapper per column, each column holds up to a share of the memory.
+     */
+    static class DistinctValues {
+        private final HashSet<String>[] values;
+        private final long[] valuesBytes;
+        private final long maxValuesBytes;
+        private int flushCount = 0;
+
+        @SuppressWarnings("unchecked")
+        DistinctValues(int nColumns, long maxValuesBytes) {
+            this.values = new HashSet[nColumns];
+            this.valuesBytes = new long[nColumns];
+            this.maxValuesBytes = maxValuesBytes;
+            for (int i = 0; i < nColumns; i++) {
+                values[i] = new HashSet<String>();
             }
         }
 
-        // user the row key column hash to get a consolidated hash for each cuboid
-        for (int i = 0, n = allCuboidsBitSet.length; i < n; i++) {
-            Hasher hc = hf.newHasher();
-            for (int position = 0; position < allCuboidsBitSet[i].length; position++) {
-                hc.putBytes(row_hashcodes[allCuboidsBitSet[i][position]].array());
+        /**
+         * @return false if the value has been written by this mapper
+         */
+        boolean add(int col, String value) {
+            if (!values[col].add(value)) {
+                return false;
+            }
+            // string of 2 bytes per char, plus the string and hash set entry overhead
+            valuesBytes[col] += 2 * value.length() + 80;
+            if (valuesBytes[col] > maxValuesBytes) {
+                // high cardinality column, start over and leave the rest of duplicates to the combiner
+                values[col] = new HashSet<String>();
+                valuesBytes[col] = 0;
+                flushCount++;
             }
+            return true;
+        }
 
-            allCuboidsHLL[i].add(hc.hash().asBytes());
+        int getFlushCount() {
+            return flushCount;
         }
     }
 
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
+        // the ratio of the two tells how many shuffle records the map side distinct saves
+        context.getCounter(BatchConstants.MAPREDUCE_COUNTER_GROUP_NAME, "Column values read").increment(valueCount);
+        context.getCounter(BatchConstants.MAPREDUCE_COUNTER_GROUP_NAME, "Column values written").increment(writtenValueCount);
+        if (distinctValues != null) {
+            context.getCounter(BatchConstants.MAPREDUCE_COUNTER_GROUP_NAME, "Distinct value cache flushes").increment(distinctValues.getFlushCount());
+            distinctValues = null;
+        }
+
         if (collectStatistics) {
             ByteBuffer hllBuf = ByteBuffer.allocate(BufferedMeasureEncoder.DEFAULT_BUFFER_SIZE);
             // output each cuboid's hll to reducer, key is 0 - cuboidId
+            long[] cuboidIds = statsCollector.getCuboidIds();
+            HyperLogLogPlusCounter[] allCuboidsHLL = statsCollector.getCounters();
             HyperLogLogPlusCounter hll;
             for (int i = 0; i < cuboidIds.length; i++) {
                 hll = allCuboidsHLL[i];
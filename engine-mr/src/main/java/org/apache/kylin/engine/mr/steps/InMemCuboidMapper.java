@@ -40,6 +40,7 @@ import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.inmemcubing.DoggedCubeBuilder;
+import org.apache.kylin.cube.inmemcubing.InMemCubeBuilderInputEncoder;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.engine.mr.ByteArrayWritable;
 import org.apache.kylin.engine.mr.IMRInput.IMRTableInputFormat;
@@ -64,6 +65,7 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
 
     private int counter;
     private BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(64);
+    private InMemCubeBuilderInputEncoder inputEncoder; // null when the cube builder encodes the rows
     private Future<?> future;
 
     @Override
@@ -94,9 +96,28 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
 
         DoggedCubeBuilder cubeBuilder = new DoggedCubeBuilder(cube.getDescriptor(), dictionaryMap);
         cubeBuilder.setReserveMemoryMB(calculateReserveMB(context.getConfiguration()));
+        cubeBuilder.setOffHeapStoreBudgetMB(config.getCubingInMemOffHeapBudgetMB());
 
         ExecutorService executorService = Executors.newSingleThreadExecutor();
-        future = executorService.submit(cubeBuilder.buildAsRunnable(queue, new MapContextGTRecordWriter(context, cubeDesc, cubeSegment)));
+        MapContextGTRecordWriter writer = new MapContextGTRecordWriter(context, cubeDesc, cubeSegment);
+        int encoderThreads = config.getCubingInMemEncoderThreads();
+        if (encoderThreads > 0) {
+            logger.info("Encode input rows on " + encoderThreads + " threads");
+            inputEncoder = new InMemCubeBuilderInputEncoder(cubeDesc, dictionaryMap, encoderThreads);
+            final Runnable build = cubeBuilder.buildFromEncodedAsRunnable(inputEncoder.getOutput(), writer);
+            future = executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        build.run();
+                    } finally {
+                        inputEncoder.abort(); // no more input is taken
+                    }
+                }
+            });
+        } else {
+            future = executorService.submit(cubeBuilder.buildAsRunnable(queue, writer));
+        }
 
     }
 
@@ -115,25 +136,32 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
         String[] row = flatTableInputFormat.parseMapperInput(record);
         List<String> rowAsList = Arrays.asList(row);
 
+        boolean accepted = inputEncoder != null ? inputEncoder.write(rowAsList) : offer(rowAsList);
+        if (accepted) {
+            counter++;
+            if (counter % BatchConstants.NORMAL_RECORD_LOG_THRESHOLD == 0) {
+                logger.info("Handled " + counter + " records!");
+            }
+        }
+    }
+
+    private boolean offer(List<String> row) throws InterruptedException {
         while (!future.isDone()) {
-            if (queue.offer(rowAsList, 1, TimeUnit.SECONDS)) {
-                counter++;
-                if (counter % BatchConstants.NORMAL_RECORD_LOG_THRESHOLD == 0) {
-                    logger.info("Handled " + counter + " records!");
-                }
-                break;
+            if (queue.offer(row, 1, TimeUnit.SECONDS)) {
+                return true;
             }
         }
+        return false;
     }
 
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
         logger.info("Totally handled " + counter + " records!");
 
-        while (!future.isDone()) {
-            if (queue.offer(Collections.<String> emptyList(), 1, TimeUnit.SECONDS)) {
-                break;
-            }
+        if (inputEncoder != null) {
+            inputEncoder.finish();
+        } else {
+            offer(Collections.<String> emptyList());
         }
 
         try {
@@ -23,6 +23,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -50,6 +51,7 @@ import org.apache.kylin.job.execution.ExecuteResult;
 import org.apache.kylin.measure.hllc.HyperLogLogPlusCounter;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class MergeStatisticsStep extends AbstractExecutable {
 
@@ -72,6 +74,7 @@ public class MergeStatisticsStep extends AbstractExecutable {
         try {
 
             int averageSamplingPercentage = 0;
+            Set<Integer> hashVersions = Sets.newTreeSet();
             for (String segmentId : CubingExecutableUtil.getMergingSegmentIds(this.getParams())) {
                 String fileKey = CubeSegment.getStatisticsResourcePath(CubingExecutableUtil.getCubeName(this.getParams()), segmentId);
                 InputStream is = rs.getResource(fileKey).inputStream;
@@ -92,8 +95,11 @@ public class MergeStatisticsStep extends AbstractExecutable {
                     reader = new SequenceFile.Reader(fs, new Path(tempFile.getAbsolutePath()), conf);
                     LongWritable key = (LongWritable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
                     BytesWritable value = (BytesWritable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+                    int hashVersion = 0; // statistics of older builds have no version
                     while (reader.next(key, value)) {
-                        if (key.get() == 0l) {
+                        if (key.get() == -2) {
+                            hashVersion = Bytes.toInt(value.getBytes());
+                        } else if (key.get() == 0l) {
                             // sampling percentage;
                             averageSamplingPercentage += Bytes.toInt(value.getBytes());
                         } else if (key.get() > 0) {
@@ -108,6 +114,7 @@ public class MergeStatisticsStep extends AbstractExecutable {
                             }
                         }
                     }
+                    hashVersions.add(hashVersion);
                 } catch (Exception e) {
                     e.printStackTrace();
                     throw e;
@@ -118,7 +125,13 @@ public class MergeStatisticsStep extends AbstractExecutable {
                 }
             }
             averageSamplingPercentage = averageSamplingPercentage / CubingExecutableUtil.getMergingSegmentIds(this.getParams()).size();
-            CuboidStatsUtil.writeCuboidStatistics(conf, new Path(CubingExecutableUtil.getMergedStatisticsPath(this.getParams())), cuboidHLLMap, averageSamplingPercentage);
+            if (hashVersions.size() > 1) {
+                // counters of different hashing share no hash values, rows in several segments are counted once per hashing
+                logger.warn("Merging cuboid statistics of hash versions " + hashVersions + ", row counts of the merged segment are overestimated, up to " + hashVersions.size() + " times");
+            }
+            // once mixed, the counters keep the older hashing, later merges should know it
+            int mergedHashVersion = hashVersions.isEmpty() ? 0 : hashVersions.iterator().next();
+            CuboidStatsUtil.writeCuboidStatistics(conf, new Path(CubingExecutableUtil.getMergedStatisticsPath(this.getParams())), cuboidHLLMap, averageSamplingPercentage, 0, mergedHashVersion);
             Path statisticsFilePath = new Path(CubingExecutableUtil.getMergedStatisticsPath(this.getParams()), BatchConstants.CFG_STATISTICS_CUBOID_ESTIMATION_FILENAME);
             FileSystem fs = statisticsFilePath.getFileSystem(conf);
             FSDataInputStream is = fs.open(statisticsFilePath);
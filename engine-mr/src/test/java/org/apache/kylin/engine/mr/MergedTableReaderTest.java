@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.engine.mr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.source.ReadableTable.TableReader;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class MergedTableReaderTest {
+
+    @Test
+    public void testMerge() throws IOException {
+        List<TableReader> runs = Lists.newArrayList();
+        runs.add(run("a", "d", "x"));
+        runs.add(run());
+        runs.add(run("b", "c", "d", "\u00e9"));
+        runs.add(run("Z", "e"));
+
+        MergedTableReader reader = new MergedTableReader(runs);
+        List<String> values = Lists.newArrayList();
+        while (reader.next()) {
+            values.add(reader.getRow()[0]);
+        }
+        reader.close();
+
+        // in UTF-8 byte order, duplicates returned once
+        assertEquals(Arrays.asList("Z", "a", "b", "c", "d", "e", "x", "\u00e9"), values);
+    }
+
+    @Test
+    public void testNoRuns() throws IOException {
+        MergedTableReader reader = new MergedTableReader(Lists.<TableReader> newArrayList());
+        assertEquals(false, reader.next());
+        reader.close();
+    }
+
+    private TableReader run(String... values) {
+        final Iterator<String> it = Arrays.asList(values).iterator();
+        return new TableReader() {
+            String[] row;
+
+            @Override
+            public boolean next() throws IOException {
+                row = it.hasNext() ? new String[] { it.next() } : null;
+                return row != null;
+            }
+
+            @Override
+            public String[] getRow() {
+                return row;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        };
+    }
+}
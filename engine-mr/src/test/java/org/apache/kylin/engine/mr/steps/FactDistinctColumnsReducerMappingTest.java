@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.engine.mr.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kylin.common.util.Bytes;
+import org.junit.Test;
+
+public class FactDistinctColumnsReducerMappingTest {
+
+    @Test
+    public void testMapping() {
+        FactDistinctColumnsReducerMapping mapping = FactDistinctColumnsReducerMapping.parse("1,3,1", 3);
+        assertEquals("1,3,1", mapping.toString());
+        assertEquals(5, mapping.getColumnReducerCount());
+
+        int[] columns = { 0, 1, 1, 1, 2 };
+        int[] runs = { 0, 0, 1, 2, 0 };
+        for (int i = 0; i < columns.length; i++) {
+            assertEquals(columns[i], mapping.getColumnOfReducer(i));
+            assertEquals(runs[i], mapping.getRunOfReducer(i));
+        }
+
+        byte[] value = Bytes.toBytes("some value");
+        assertEquals(0, mapping.getReducerForValue(0, value, 0, value.length));
+        assertEquals(4, mapping.getReducerForValue(2, value, 0, value.length));
+        boolean[] used = new boolean[5];
+        for (int i = 0; i < 100; i++) {
+            byte[] v = Bytes.toBytes("v" + i);
+            int reducer = mapping.getReducerForValue(1, v, 0, v.length);
+            assertTrue(reducer >= 1 && reducer <= 3);
+            used[reducer] = true;
+        }
+        assertTrue(used[1] && used[2] && used[3]);
+    }
+
+    @Test
+    public void testWithoutMapping() {
+        FactDistinctColumnsReducerMapping mapping = FactDistinctColumnsReducerMapping.parse(null, 4);
+        assertEquals(4, mapping.getColumnReducerCount());
+        assertEquals(3, mapping.getColumnOfReducer(3));
+        byte[] value = Bytes.toBytes("x");
+        assertEquals(2, mapping.getReducerForValue(2, value, 0, value.length));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.apache.kylin.engine.mr.steps.FactDistinctHiveColumnsMapper.DistinctValues;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class FactDistinctHiveColumnsMapperTest {
+
+    @Test
+    public void testRepeatedValuesWrittenOnce() {
+        DistinctValues distinctValues = new DistinctValues(2, 1024 * 1024);
+
+        assertTrue(distinctValues.add(0, "a"));
+        assertTrue(distinctValues.add(0, "b"));
+        assertFalse(distinctValues.add(0, "a"));
+        assertFalse(distinctValues.add(0, "b"));
+
+        // columns are apart, the same value of another column is still written
+        assertTrue(distinctValues.add(1, "a"));
+        assertFalse(distinctValues.add(1, "a"));
+
+        assertEquals(0, distinctValues.getFlushCount());
+    }
+
+    @Test
+    public void testNoValueLostOnFlush() {
+        // room for about 10 values of 1 char in a column
+        DistinctValues distinctValues = new DistinctValues(2, 10 * 82);
+
+        Set<String> written = Sets.newHashSet();
+        int writtenCount = 0;
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                String value = String.valueOf((char) ('0' + i % 75));
+                if (distinctValues.add(0, value)) {
+                    written.add(value);
+                    writtenCount++;
+                }
+            }
+        }
+
+        // every distinct value is written, even the one that fills the column's share
+        assertEquals(75, written.size());
+        assertTrue(distinctValues.getFlushCount() > 0);
+        // values are written again after a flush, the combiner drops those duplicates
+        assertTrue(writtenCount > 75);
+
+        // the other column is not flushed
+        assertTrue(distinctValues.add(1, "x"));
+        assertFalse(distinctValues.add(1, "x"));
+    }
+}
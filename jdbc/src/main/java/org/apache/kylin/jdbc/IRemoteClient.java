@@ -49,8 +49,8 @@ public interface IRemoteClient extends Closeable {
     public KMetaProject retrieveMetaData(String project) throws IOException;
 
     /**
-     * Execute query remotely and get back result.
+     * Execute query remotely and get back result. A positive fetchSize hints how many rows to transfer at a time.
      */
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues) throws IOException;
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, int fetchSize) throws IOException;
 
 }
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.jdbc;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Date;
@@ -25,6 +26,7 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -293,8 +295,15 @@ public class KylinClient implements IRemoteClient {
         return new KMetaColumn(columnStub.getTABLE_CAT(), columnStub.getTABLE_SCHEM(), columnStub.getTABLE_NAME(), columnStub.getCOLUMN_NAME(), columnStub.getDATA_TYPE(), columnStub.getTYPE_NAME(), columnStub.getCOLUMN_SIZE(), columnStub.getDECIMAL_DIGITS(), columnStub.getNUM_PREC_RADIX(), columnStub.getNULLABLE(), columnStub.getCHAR_OCTET_LENGTH(), columnStub.getORDINAL_POSITION(), columnStub.getIS_NULLABLE());
     }
 
+    private boolean isStreaming() {
+        return Boolean.parseBoolean(connProps.getProperty("stream", "false"));
+    }
+
     @Override
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues) throws IOException {
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, int fetchSize) throws IOException {
+
+        if (isStreaming())
+            return executeKylinStreamQuery(sql, convertParameters(params, paramValues), fetchSize);
 
         SQLResponseStub queryResp = executeKylinQuery(sql, convertParameters(params, paramValues));
         if (queryResp.getIsException())
@@ -320,7 +329,66 @@ public class KylinClient implements IRemoteClient {
     }
 
     private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params) throws IOException {
-        String url = baseUrl() + "/kylin/api/query";
+        PostMethod post = postKylinQuery(baseUrl() + "/kylin/api/query", null, sql, params);
+
+        if (post.getStatusCode() != 200 && post.getStatusCode() != 201) {
+            throw asIOException(post);
+        }
+
+        return jsonMapper.readValue(post.getResponseBodyAsStream(), SQLResponseStub.class);
+    }
+
+    private QueryResult executeKylinStreamQuery(String sql, List<StatementParameter> params, int fetchSize) throws IOException {
+        String queryString = fetchSize > 0 ? "fetchSize=" + fetchSize : null;
+        final PostMethod post = postKylinQuery(baseUrl() + "/kylin/api/query/stream", queryString, sql, params);
+
+        if (post.getStatusCode() != 200 && post.getStatusCode() != 201) {
+            try {
+                throw asIOException(post);
+            } finally {
+                post.releaseConnection();
+            }
+        }
+
+        final StreamingResultReader reader;
+        try {
+            reader = new StreamingResultReader(post.getResponseBodyAsStream(), jsonMapper);
+        } catch (IOException e) {
+            post.abort();
+            post.releaseConnection();
+            throw e;
+        }
+        reader.setOnClose(releaseOnClose(reader, post));
+
+        List<ColumnMetaData> metas = convertColumnMeta(reader.getHeader());
+        reader.setColumnMetas(metas);
+
+        Iterable<Object> iterable = new Iterable<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return reader;
+            }
+        };
+        return new QueryResult(metas, iterable);
+    }
+
+    /**
+     * Releases the connection of a streaming query once its result is closed. If the result is closed before its
+     * end, e.g. the ResultSet is closed early, the request is aborted so that the server stops streaming the rest.
+     */
+    static Closeable releaseOnClose(final StreamingResultReader reader, final HttpMethodBase method) {
+        return new Closeable() {
+            @Override
+            public void close() throws IOException {
+                // don't drain the rest of a big result nobody will read
+                if (!reader.isEnded())
+                    method.abort();
+                method.releaseConnection();
+            }
+        };
+    }
+
+    private PostMethod postKylinQuery(String url, String queryString, String sql, List<StatementParameter> params) throws IOException {
         String project = conn.getProject();
 
         QueryRequest request = null;
@@ -335,6 +403,8 @@ public class KylinClient implements IRemoteClient {
         request.setProject(project);
 
         PostMethod post = new PostMethod(url);
+        if (queryString != null)
+            post.setQueryString(queryString);
         addHttpHeaders(post);
 
         String postBody = jsonMapper.writeValueAsString(request);
@@ -343,12 +413,7 @@ public class KylinClient implements IRemoteClient {
         post.setRequestEntity(requestEntity);
 
         httpClient.executeMethod(post);
-
-        if (post.getStatusCode() != 200 && post.getStatusCode() != 201) {
-            throw asIOException(post);
-        }
-
-        return jsonMapper.readValue(post.getResponseBodyAsStream(), SQLResponseStub.class);
+        return post;
     }
 
     private List<ColumnMetaData> convertColumnMeta(SQLResponseStub queryResp) {
@@ -59,7 +59,7 @@ public class KylinResultSet extends AvaticaResultSet {
         IRemoteClient client = ((KylinConnection) statement.connection).getRemoteClient();
         QueryResult result;
         try {
-            result = client.executeQuery(sql, params, paramValues);
+            result = client.executeQuery(sql, params, paramValues, statement.getFetchSize());
         } catch (IOException e) {
             throw new SQLException(e);
         }
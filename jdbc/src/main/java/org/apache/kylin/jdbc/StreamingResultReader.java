@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.jdbc;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the frames written by org.apache.kylin.rest.util.StreamingResultWriter. Only one block of
+ * rows is held at a time, the next block is read from the stream when the current one is consumed.
+ */
+public class StreamingResultReader implements Iterator<Object>, Closeable {
+
+    public static final byte FRAME_HEADER = 'H';
+    public static final byte FRAME_ROWS = 'R';
+    public static final byte FRAME_END = 'E';
+    public static final byte FRAME_ERROR = 'X';
+
+    private final DataInputStream in;
+    private final ObjectMapper jsonMapper;
+    private final SQLResponseStub header;
+
+    private Closeable onClose;
+    private List<ColumnMetaData> metas;
+    private List<Object> block = new ArrayList<Object>();
+    private int blockPos = 0;
+    private SQLResponseStub stats;
+    private boolean ended = false;
+    private boolean closed = false;
+
+    /**
+     * Reads the header right away, the rows are read lazily.
+     */
+    public StreamingResultReader(InputStream in, ObjectMapper jsonMapper) throws IOException {
+        this.in = new DataInputStream(in);
+        this.jsonMapper = jsonMapper;
+
+        byte frame = this.in.readByte();
+        if (frame == FRAME_ERROR) {
+            throw new IOException(readString());
+        }
+        if (frame != FRAME_HEADER) {
+            throw new IOException("Expect header frame but got " + (char) frame);
+        }
+        this.header = readJson();
+    }
+
+    /**
+     * Called once the stream is ended or closed, e.g. to release the connection.
+     */
+    public void setOnClose(Closeable onClose) {
+        this.onClose = onClose;
+    }
+
+    /**
+     * Whether the stream is read till its last frame, otherwise closing abandons the rest.
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    public SQLResponseStub getHeader() {
+        return header;
+    }
+
+    /**
+     * The column metas to convert values with, must be set before iterating.
+     */
+    public void setColumnMetas(List<ColumnMetaData> metas) {
+        this.metas = metas;
+    }
+
+    /**
+     * The stats of the query, available once all rows are read.
+     */
+    public SQLResponseStub getStats() {
+        return stats;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (blockPos < block.size())
+            return true;
+        if (closed)
+            return false;
+
+        try {
+            readBlock();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new IllegalStateException("Failed to read query result", e);
+        }
+        return blockPos < block.size();
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        Object row = block.get(blockPos);
+        block.set(blockPos++, null);
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void readBlock() throws IOException {
+        block.clear();
+        blockPos = 0;
+
+        byte frame = in.readByte();
+        switch (frame) {
+        case FRAME_ROWS:
+            int n = readVInt();
+            int columnCount = metas.size();
+            for (int i = 0; i < n; i++) {
+                Object[] row = new Object[columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    row[c] = KylinClient.wrapObject(readValue(), metas.get(c).type.id);
+                }
+                block.add(row);
+            }
+            break;
+        case FRAME_END:
+            stats = readJson();
+            ended = true;
+            close();
+            break;
+        case FRAME_ERROR:
+            String message = readString();
+            ended = true;
+            close();
+            throw new IOException(message);
+        default:
+            throw new IOException("Unknown frame " + (char) frame);
+        }
+    }
+
+    private String readValue() throws IOException {
+        int len = readVInt() - 1;
+        if (len < 0)
+            return null;
+
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private SQLResponseStub readJson() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return jsonMapper.readValue(bytes, SQLResponseStub.class);
+    }
+
+    private int readVInt() throws IOException {
+        int i = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            i |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return i;
+        }
+        throw new IOException("Malformed vint");
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        if (onClose != null)
+            onClose.close();
+    }
+}
@@ -19,6 +19,8 @@
 package org.apache.kylin.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -71,6 +73,38 @@ public class DriverTest {
         conn.close();
     }
     
+    @Test
+    public void testStreamingResultSetClosedEarly() throws SQLException {
+        Driver driver = new DummyDriver();
+        Properties info = new Properties();
+        info.put("stream", "true");
+        Connection conn = driver.connect("jdbc:kylin://test_url/test_db", info);
+
+        Statement state = conn.createStatement();
+        ResultSet resultSet = state.executeQuery("select * from test_table");
+        assertTrue(resultSet.next());
+        assertEquals("foo", resultSet.getString(1));
+        assertFalse(DummyClient.lastStreamRequest.isAborted());
+
+        // closing before the end aborts the request, so the server stops streaming
+        resultSet.close();
+        assertTrue(DummyClient.lastStreamRequest.isAborted());
+
+        // read to the end, the request is complete and not aborted
+        resultSet = state.executeQuery("select * from test_table");
+        int count = 0;
+        while (resultSet.next()) {
+            assertEquals("tool", resultSet.getString(3));
+            count++;
+        }
+        assertEquals(10, count);
+        resultSet.close();
+        assertFalse(DummyClient.lastStreamRequest.isAborted());
+
+        state.close();
+        conn.close();
+    }
+
     @Test
     public void testStatementWithQuestionMask() throws SQLException {
         Driver driver = new DummyDriver();
@@ -18,25 +18,38 @@
 
 package org.apache.kylin.jdbc;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.kylin.jdbc.KylinMeta.KMetaCatalog;
 import org.apache.kylin.jdbc.KylinMeta.KMetaColumn;
 import org.apache.kylin.jdbc.KylinMeta.KMetaProject;
 import org.apache.kylin.jdbc.KylinMeta.KMetaSchema;
 import org.apache.kylin.jdbc.KylinMeta.KMetaTable;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  */
 public class DummyClient implements IRemoteClient {
 
+    /** the request of the last streaming query, to check whether it is aborted */
+    static PostMethod lastStreamRequest;
+
+    private final boolean streaming;
+
     public DummyClient(KylinConnection conn) {
+        this.streaming = Boolean.parseBoolean(conn.getConnectionProperties().getProperty("stream", "false"));
     }
 
     @Override
@@ -63,7 +76,7 @@ public class DummyClient implements IRemoteClient {
     }
 
     @Override
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues) throws IOException {
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, int fetchSize) throws IOException {
         List<Object> data = new ArrayList<Object>();
         Object[] row = new Object[] { "foo", "bar", "tool" };
         data.add(row);
@@ -73,9 +86,54 @@ public class DummyClient implements IRemoteClient {
         meta.add(ColumnMetaData.dummy(ColumnMetaData.scalar(Types.VARCHAR, "varchar", Rep.STRING), true));
         meta.add(ColumnMetaData.dummy(ColumnMetaData.scalar(Types.VARCHAR, "varchar", Rep.STRING), true));
 
+        if (streaming)
+            return streamQueryResult(meta, data, 10);
+
         return new QueryResult(meta, data);
     }
 
+    /**
+     * Streams the rows the given times, one row a block, in the frames of StreamingResultReader.
+     */
+    private QueryResult streamQueryResult(List<ColumnMetaData> meta, List<Object> data, int times) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(StreamingResultReader.FRAME_HEADER);
+        writeString(out, "{}");
+        for (int i = 0; i < times; i++) {
+            for (Object row : data) {
+                out.writeByte(StreamingResultReader.FRAME_ROWS);
+                out.writeByte(1);
+                for (Object value : (Object[]) row) {
+                    byte[] valueBytes = ((String) value).getBytes("UTF-8");
+                    out.writeByte(valueBytes.length + 1);
+                    out.write(valueBytes);
+                }
+            }
+        }
+        out.writeByte(StreamingResultReader.FRAME_END);
+        writeString(out, "{}");
+        out.flush();
+
+        final StreamingResultReader reader = new StreamingResultReader(new ByteArrayInputStream(bytes.toByteArray()), new ObjectMapper());
+        reader.setColumnMetas(meta);
+        lastStreamRequest = new PostMethod("http://test_url/kylin/api/query/stream");
+        reader.setOnClose(KylinClient.releaseOnClose(reader, lastStreamRequest));
+
+        return new QueryResult(meta, new Iterable<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return reader;
+            }
+        });
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes("UTF-8");
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
     @Override
     public void close() throws IOException {
     }
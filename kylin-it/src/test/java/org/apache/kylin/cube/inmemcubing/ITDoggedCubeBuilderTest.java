@@ -21,6 +21,7 @@
 package org.apache.kylin.cube.inmemcubing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -115,6 +116,48 @@ public class ITDoggedCubeBuilderTest extends LocalFileMetadataTestCase {
         inmemResult.file.delete();
     }
 
+    @Test
+    public void testEncodedInput() throws Exception {
+
+        ArrayBlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(INPUT_ROWS + 1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        long randSeed = System.currentTimeMillis();
+
+        DoggedCubeBuilder doggedBuilder = new DoggedCubeBuilder(cube.getDescriptor(), dictionaryMap);
+        doggedBuilder.setConcurrentThreads(THREADS);
+        doggedBuilder.setSplitRowThreshold(SPLIT_ROWS);
+        FileRecordWriter encodedResult = new FileRecordWriter();
+
+        {
+            InMemCubeBuilderInputEncoder encoder = new InMemCubeBuilderInputEncoder(cube.getDescriptor(), dictionaryMap, THREADS);
+            Future<?> future = executorService.submit(doggedBuilder.buildFromEncodedAsRunnable(encoder.getOutput(), encodedResult));
+            ITInMemCubeBuilderTest.feedData(cube, flatTable, queue, INPUT_ROWS, randSeed);
+            for (List<String> row : queue) {
+                if (!row.isEmpty())
+                    assertTrue(encoder.write(row));
+            }
+            queue.clear();
+            assertTrue(encoder.finish());
+            future.get();
+            encodedResult.close();
+        }
+
+        InMemCubeBuilder inmemBuilder = new InMemCubeBuilder(cube.getDescriptor(), dictionaryMap);
+        inmemBuilder.setConcurrentThreads(THREADS);
+        FileRecordWriter inmemResult = new FileRecordWriter();
+
+        {
+            Future<?> future = executorService.submit(inmemBuilder.buildAsRunnable(queue, inmemResult));
+            ITInMemCubeBuilderTest.feedData(cube, flatTable, queue, INPUT_ROWS, randSeed);
+            future.get();
+            inmemResult.close();
+        }
+
+        fileCompare(encodedResult.file, inmemResult.file);
+        encodedResult.file.delete();
+        inmemResult.file.delete();
+    }
+
     private void fileCompare(File file, File file2) throws IOException {
         BufferedReader r1 = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
         BufferedReader r2 = new BufferedReader(new InputStreamReader(new FileInputStream(file2), "UTF-8"));
@@ -23,33 +23,43 @@ package org.apache.kylin.cube.inmemcubing;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
 import org.apache.kylin.dict.DictionaryGenerator;
 import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
+import org.apache.kylin.gridtable.GTAggregateScanner;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.MeasureDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -93,6 +103,78 @@ public class ITInMemCubeBuilderTest extends LocalFileMetadataTestCase {
                 LOCALMETA_TEST_DATA + "/data/kylin_intermediate_ssb_19920101000000_19920201000000.csv", 1000, 1);
     }
 
+    @Test
+    public void testCuboidsMatchBaseCuboid() throws Exception {
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        this.cube = CubeManager.getInstance(kylinConfig).getCube("test_kylin_cube_without_slr_left_join_empty");
+        this.flatTable = LOCALMETA_TEST_DATA + "/data/flatten_data_for_without_slr_left_join.csv";
+        this.dictionaryMap = getDictionaryMap(cube, flatTable);
+        CubeDesc desc = cube.getDescriptor();
+        int nRows = 10000;
+
+        // cuboids are built from the smallest built parent by several threads, each must still equal the base aggregated
+        InMemCubeBuilder cubeBuilder = new InMemCubeBuilder(desc, dictionaryMap);
+        cubeBuilder.setConcurrentThreads(4);
+        ArrayBlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(nRows + 1);
+        feedData(cube, flatTable, queue, nRows, 1);
+        ConcurrentNavigableMap<Long, CuboidResult> result = cubeBuilder.build(queue);
+
+        long baseCuboidId = Cuboid.getBaseCuboidId(desc);
+        CuboidResult base = result.get(baseCuboidId);
+        Assert.assertEquals(new CuboidScheduler(desc).getCuboidCount(), result.size());
+
+        List<MeasureDesc> measures = desc.getMeasures();
+        String[] aggrFuncs = new String[measures.size()];
+        boolean[] aggrMask = new boolean[measures.size()];
+        for (int i = 0; i < measures.size(); i++) {
+            aggrFuncs[i] = measures.get(i).getFunction().getExpression();
+            aggrMask[i] = !measures.get(i).getFunction().getMeasureType().onlyAggrInBaseCuboid();
+        }
+
+        for (CuboidResult cuboid : result.values()) {
+            if (cuboid.cuboidId == baseCuboidId)
+                continue;
+
+            Pair<ImmutableBitSet, ImmutableBitSet> columns = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(baseCuboidId, cuboid.cuboidId, measures.size());
+            GTScanRequest req = new GTScanRequest(base.table.getInfo(), null, null, columns.getFirst(), columns.getSecond(), aggrFuncs, null, true, 0);
+            GTAggregateScanner expectedScanner = (GTAggregateScanner) base.table.scan(req);
+            expectedScanner.setAggrMask(aggrMask);
+            List<String> expected = toStrings(expectedScanner, columns.getFirst().or(columns.getSecond()), aggrMask);
+
+            Pair<ImmutableBitSet, ImmutableBitSet> cuboidColumns = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(cuboid.cuboidId, measures.size());
+            IGTScanner actualScanner = cuboid.table.scan(new GTScanRequest(cuboid.table.getInfo(), null, null, null));
+            List<String> actual = toStrings(actualScanner, cuboidColumns.getFirst().or(cuboidColumns.getSecond()), aggrMask);
+
+            Assert.assertEquals("cuboid " + cuboid.cuboidId, expected, actual);
+        }
+
+        for (CuboidResult cuboid : result.values()) {
+            cuboid.table.close();
+        }
+    }
+
+    // the bytes of the given columns per record, measures not aggregated beyond the base cuboid are left out
+    private List<String> toStrings(IGTScanner scanner, ImmutableBitSet columns, boolean[] aggrMask) throws IOException {
+        int nDims = columns.trueBitCount() - aggrMask.length;
+        List<String> result = Lists.newArrayList();
+        try {
+            for (GTRecord record : scanner) {
+                StringBuilder buf = new StringBuilder();
+                for (int i = 0; i < columns.trueBitCount(); i++) {
+                    if (i >= nDims && !aggrMask[i - nDims])
+                        continue;
+                    ByteArray bytes = record.get(columns.trueBitAt(i));
+                    buf.append(bytes.length()).append(':').append(new String(bytes.array(), bytes.offset(), bytes.length(), "ISO-8859-1"));
+                }
+                result.add(buf.toString());
+            }
+        } finally {
+            scanner.close();
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     public void testBuild(String cubeName, String flatTable, int nInpRows, int nThreads) throws Exception {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
         CubeManager cubeManager = CubeManager.getInstance(kylinConfig);
@@ -39,6 +39,8 @@ import org.apache.kylin.storage.hybrid.HybridInstance;
  */
 public class LookupTableEnumerator implements Enumerator<Object[]> {
 
+    private final CubeManager cubeMgr;
+    private LookupStringTable table;
     private final Collection<String[]> allRows;
     private final List<ColumnDesc> colDescs;
     private final Object[] current;
@@ -66,8 +68,8 @@ public class LookupTableEnumerator implements Enumerator<Object[]> {
         if (dim == null)
             throw new IllegalStateException("No dimension with derived columns found for lookup table " + lookupTableName + ", cube desc " + cube.getDescriptor());
 
-        CubeManager cubeMgr = CubeManager.getInstance(cube.getConfig());
-        LookupStringTable table = cubeMgr.getLookupTable(cube.getLatestReadySegment(), dim);
+        this.cubeMgr = CubeManager.getInstance(cube.getConfig());
+        this.table = cubeMgr.getLookupTable(cube.getLatestReadySegment(), dim);
         this.allRows = table.getAllRows();
 
         OLAPTable olapTable = (OLAPTable) olapContext.firstTableScan.getOlapTable();
@@ -108,6 +110,10 @@ public class LookupTableEnumerator implements Enumerator<Object[]> {
 
     @Override
     public void close() {
+        if (table != null) {
+            cubeMgr.releaseLookupTable(table);
+            table = null;
+        }
     }
 
 }
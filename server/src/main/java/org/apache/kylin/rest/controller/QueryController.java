@@ -35,6 +35,7 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.rest.constant.Constant;
+import org.apache.kylin.rest.exception.ForbiddenException;
 import org.apache.kylin.rest.exception.InternalErrorException;
 import org.apache.kylin.rest.model.Query;
 import org.apache.kylin.rest.model.SelectedColumnMeta;
@@ -46,6 +47,7 @@ import org.apache.kylin.rest.request.SaveSqlRequest;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.service.QueryService;
 import org.apache.kylin.rest.util.QueryUtil;
+import org.apache.kylin.rest.util.StreamingResultWriter;
 import org.apache.kylin.storage.exception.ScanOutOfLimitException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +59,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.supercsv.io.CsvListWriter;
 import org.supercsv.io.ICsvListWriter;
@@ -101,6 +104,21 @@ public class QueryController extends BasicController {
         return doQueryWithCache(sqlRequest);
     }
 
+    /**
+     * Stream the query result in blocks of fetchSize rows, see {@link StreamingResultWriter} for the format.
+     */
+    @RequestMapping(value = "/query/stream", method = RequestMethod.POST)
+    @ResponseBody
+    public void streamQuery(@RequestBody SQLRequest sqlRequest, @RequestParam(value = "fetchSize", required = false) Integer fetchSize, HttpServletResponse response) {
+        doStreamQuery(sqlRequest, fetchSize, response);
+    }
+
+    @RequestMapping(value = "/query/stream/prestate", method = RequestMethod.POST)
+    @ResponseBody
+    public void streamPrepareQuery(@RequestBody PrepareSqlRequest sqlRequest, @RequestParam(value = "fetchSize", required = false) Integer fetchSize, HttpServletResponse response) {
+        doStreamQuery(sqlRequest, fetchSize, response);
+    }
+
     @RequestMapping(value = "/saved_queries", method = RequestMethod.POST)
     @ResponseBody
     public void saveQuery(@RequestBody SaveSqlRequest sqlRequest) throws IOException {
@@ -174,15 +192,7 @@ public class QueryController extends BasicController {
             logger.info("Using project: " + project);
             logger.info("The original query:  " + sql);
 
-            String serverMode = KylinConfig.getInstanceFromEnv().getServerMode();
-            if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase()) || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
-                throw new InternalErrorException("Query is not allowed in " + serverMode + " mode.");
-            }
-
-            if (!sql.toLowerCase().contains("select")) {
-                logger.debug("Directly return exception as not supported");
-                throw new InternalErrorException("Not Supported SQL.");
-            }
+            checkQueryAllowed(sql);
 
             long startTime = System.currentTimeMillis();
 
@@ -230,6 +240,93 @@ public class QueryController extends BasicController {
         }
     }
 
+    private void doStreamQuery(SQLRequest sqlRequest, Integer fetchSize, HttpServletResponse response) {
+        try {
+            BackdoorToggles.setToggles(sqlRequest.getBackdoorToggles());
+
+            String sql = sqlRequest.getSql();
+            String project = sqlRequest.getProject();
+            logger.info("Using project: " + project);
+            logger.info("The original query (streaming):  " + sql);
+
+            checkQueryAllowed(sql);
+
+            long startTime = System.currentTimeMillis();
+
+            response.setContentType("application/octet-stream");
+            int rowsPerBlock = fetchSize != null && fetchSize > 0 ? fetchSize : KylinConfig.getInstanceFromEnv().getQueryStreamFetchSize();
+            final StreamingResultWriter writer = new StreamingResultWriter(response.getOutputStream(), rowsPerBlock);
+
+            // the streamed rows are never materialized, so only reads the cache but never fills it
+            SQLResponse sqlResponse = searchQueryInCache(sqlRequest);
+            try {
+                if (null == sqlResponse) {
+                    sqlResponse = queryService.query(sqlRequest, new QueryService.ResultHandler() {
+                        @Override
+                        public void onStart(List<SelectedColumnMeta> columnMetas, String cube) throws IOException {
+                            checkQueryAuth(cube);
+                            writer.writeHeader(columnMetas, cube);
+                        }
+
+                        @Override
+                        public void onRow(List<String> row) throws IOException {
+                            writer.writeRow(row);
+                        }
+                    });
+                } else if (!sqlResponse.getIsException()) {
+                    checkQueryAuth(sqlResponse);
+                    writer.writeHeader(sqlResponse.getColumnMetas(), sqlResponse.getCube());
+                    for (List<String> row : sqlResponse.getResults()) {
+                        writer.writeRow(row);
+                    }
+                }
+                sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+                logger.info("Stats of streamed SQL response: isException: {}, duration: {}, total scan count {}, row count {}", //
+                        new String[] { String.valueOf(sqlResponse.getIsException()), String.valueOf(sqlResponse.getDuration()), String.valueOf(sqlResponse.getTotalScanCount()), String.valueOf(writer.getRowCount()) });
+
+            } catch (AccessDeniedException e) {
+                // checked before the header is written, so the client still gets a 403 instead of a 500
+                throw new ForbiddenException(e.getMessage());
+            } catch (Throwable e) { // calcite may throw AssertError
+                logger.error("Exception when execute sql", e);
+                String errMsg = QueryUtil.makeErrorMsgUserFriendly(e);
+
+                sqlResponse = new SQLResponse(null, null, 0, true, errMsg);
+            }
+
+            queryService.logQuery(sqlRequest, sqlResponse);
+
+            if (sqlResponse.getIsException()) {
+                // before the header the normal error response still works
+                if (!writer.isStarted())
+                    throw new InternalErrorException(sqlResponse.getExceptionMessage());
+                writer.writeError(sqlResponse.getExceptionMessage());
+            } else {
+                SQLResponse stats = new SQLResponse(null, null, sqlResponse.getCube(), sqlResponse.getAffectedRowCount(), false, null, sqlResponse.isPartial());
+                stats.setTotalScanCount(sqlResponse.getTotalScanCount());
+                stats.setDuration(sqlResponse.getDuration());
+                writer.writeEnd(stats);
+            }
+
+        } catch (IOException e) {
+            logger.error("Failed to stream query result", e);
+        } finally {
+            BackdoorToggles.cleanToggles();
+        }
+    }
+
+    private void checkQueryAllowed(String sql) {
+        String serverMode = KylinConfig.getInstanceFromEnv().getServerMode();
+        if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase()) || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
+            throw new InternalErrorException("Query is not allowed in " + serverMode + " mode.");
+        }
+
+        if (!sql.toLowerCase().contains("select")) {
+            logger.debug("Directly return exception as not supported");
+            throw new InternalErrorException("Not Supported SQL.");
+        }
+    }
+
     private SQLResponse searchQueryInCache(SQLRequest sqlRequest) {
         SQLResponse response = null;
         Cache exceptionCache = cacheManager.getCache(EXCEPTION_QUERY_CACHE);
@@ -253,8 +350,14 @@ public class QueryController extends BasicController {
     }
 
     private void checkQueryAuth(SQLResponse sqlResponse) throws AccessDeniedException {
-        if (!sqlResponse.getIsException() && KylinConfig.getInstanceFromEnv().isQuerySecureEnabled()) {
-            CubeInstance cubeInstance = this.queryService.getCubeManager().getCube(sqlResponse.getCube());
+        if (!sqlResponse.getIsException()) {
+            checkQueryAuth(sqlResponse.getCube());
+        }
+    }
+
+    private void checkQueryAuth(String cube) throws AccessDeniedException {
+        if (KylinConfig.getInstanceFromEnv().isQuerySecureEnabled()) {
+            CubeInstance cubeInstance = this.queryService.getCubeManager().getCube(cube);
             queryService.checkAuthorization(cubeInstance);
         }
     }
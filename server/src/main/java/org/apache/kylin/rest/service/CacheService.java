@@ -50,6 +50,7 @@ import org.apache.kylin.metadata.realization.RealizationType;
 import org.apache.kylin.query.enumerator.OLAPQuery;
 import org.apache.kylin.query.schema.OLAPSchemaFactory;
 import org.apache.kylin.rest.controller.QueryController;
+import org.apache.kylin.rest.util.PooledDataSource;
 import org.apache.kylin.source.kafka.KafkaConfigManager;
 import org.apache.kylin.storage.hbase.HBaseConnection;
 import org.apache.kylin.storage.hybrid.HybridManager;
@@ -126,13 +127,48 @@ public class CacheService extends BasicService {
             throw new IllegalArgumentException("removeOLAPDataSource: project name not given");
 
         project = ProjectInstance.getNormalizedProjectName(project);
-        olapDataSources.remove(project);
+        closeOLAPDataSource(olapDataSources.remove(project));
     }
 
     public static void removeAllOLAPDataSources() {
         // brutal, yet simplest way
         logger.info("removeAllOLAPDataSources is called.");
-        olapDataSources.clear();
+        for (String project : olapDataSources.keySet()) {
+            closeOLAPDataSource(olapDataSources.remove(project));
+        }
+    }
+
+    /**
+     * Removes the data sources of the projects using a table, data model or external filter, as their pooled
+     * connections hold a schema built from the old metadata.
+     */
+    private void removeOLAPDataSources(Broadcaster.TYPE cacheType, String cacheKey) {
+        for (ProjectInstance prj : getProjectManager().listAllProjects()) {
+            boolean uses;
+            switch (cacheType) {
+            case TABLE:
+                uses = prj.containsTable(cacheKey);
+                break;
+            case DATA_MODEL:
+                uses = prj.containsModel(cacheKey);
+                break;
+            case EXTERNAL_FILTER:
+                uses = prj.getExtFilters().contains(cacheKey);
+                break;
+            default:
+                throw new IllegalArgumentException("invalid cacheType:" + cacheType);
+            }
+            if (uses) {
+                removeOLAPDataSource(prj.getName());
+            }
+        }
+    }
+
+    private static void closeOLAPDataSource(DataSource ds) {
+        // pooled connections still hold the schema of the old metadata
+        if (ds instanceof PooledDataSource) {
+            ((PooledDataSource) ds).close();
+        }
     }
 
     public DataSource getOLAPDataSource(String project) {
@@ -158,9 +194,13 @@ public class CacheService extends BasicService {
             ds.setDriverClassName(Driver.class.getName());
             ds.setUrl("jdbc:calcite:model=" + modelJson.getAbsolutePath());
 
-            ret = olapDataSources.putIfAbsent(project, ds);
+            int poolSize = getConfig().getQueryConnectionPoolSize();
+            DataSource newDs = poolSize > 0 ? new PooledDataSource(ds, poolSize) : ds;
+            ret = olapDataSources.putIfAbsent(project, newDs);
             if (ret == null) {
-                ret = ds;
+                ret = newDs;
+            } else {
+                closeOLAPDataSource(newDs);
             }
         }
         return ret;
@@ -199,16 +239,22 @@ public class CacheService extends BasicService {
                 getMetadataManager().reloadTableCache(cacheKey);
                 IIDescManager.clearCache();
                 CubeDescManager.clearCache();
+                removeOLAPDataSources(cacheType, cacheKey);
                 break;
             case EXTERNAL_FILTER:
                 getMetadataManager().reloadExtFilter(cacheKey);
                 IIDescManager.clearCache();
                 CubeDescManager.clearCache();
+                removeOLAPDataSources(cacheType, cacheKey);
                 break;
             case DATA_MODEL:
                 getMetadataManager().reloadDataModelDesc(cacheKey);
                 IIDescManager.clearCache();
                 CubeDescManager.clearCache();
+                removeOLAPDataSources(cacheType, cacheKey);
+                break;
+            case EXECUTE_OUTPUT:
+                getExecutableManager().reloadJobStateLocal(cacheKey);
                 break;
             case ALL:
                 DictionaryManager.clearCache();
@@ -223,6 +269,7 @@ public class CacheService extends BasicService {
                 KafkaConfigManager.clearCache();
                 StreamingManager.clearCache();
                 HBaseConnection.clearConnCache();
+                getExecutableManager().reloadJobStateIndex();
 
                 cleanAllDataCache();
                 removeAllOLAPDataSources();
@@ -271,6 +318,10 @@ public class CacheService extends BasicService {
                 throw new UnsupportedOperationException(log);
             case DATA_MODEL:
                 getMetadataManager().removeModelCache(cacheKey);
+                removeOLAPDataSources(cacheType, cacheKey);
+                break;
+            case EXECUTE_OUTPUT:
+                getExecutableManager().removeJobStateLocal(cacheKey);
                 break;
             default:
                 throw new RuntimeException("invalid cacheType:" + cacheType);
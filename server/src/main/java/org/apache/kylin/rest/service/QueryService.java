@@ -114,10 +114,18 @@ public class QueryService extends BasicService {
     }
 
     public SQLResponse query(SQLRequest sqlRequest) throws Exception {
+        return query(sqlRequest, null);
+    }
+
+    /**
+     * Execute the query and hand the rows to the handler as they are read, the returned response
+     * carries no results then. With a null handler the rows are collected into the response.
+     */
+    public SQLResponse query(SQLRequest sqlRequest, ResultHandler handler) throws Exception {
         try {
             badQueryDetector.queryStart(Thread.currentThread(), sqlRequest);
 
-            return queryWithSqlMassage(sqlRequest);
+            return queryWithSqlMassage(sqlRequest, handler);
 
         } finally {
             badQueryDetector.queryEnd(Thread.currentThread());
@@ -251,14 +259,33 @@ public class QueryService extends BasicService {
         logger.info(stringBuilder.toString());
     }
 
+    /**
+     * Receives the rows of a query one by one, instead of having them materialized in a SQLResponse.
+     */
+    public interface ResultHandler {
+
+        /**
+         * Called once the statement is executed, before any row.
+         */
+        void onStart(List<SelectedColumnMeta> columnMetas, String cube) throws IOException;
+
+        void onRow(List<String> row) throws IOException;
+    }
+
     @PreAuthorize(Constant.ACCESS_HAS_ROLE_ADMIN + " or hasPermission(#cube, 'ADMINISTRATION') or hasPermission(#cube, 'MANAGEMENT')" + " or hasPermission(#cube, 'OPERATION') or hasPermission(#cube, 'READ')")
     public void checkAuthorization(CubeInstance cube) throws AccessDeniedException {
     }
 
-    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest) throws Exception {
+    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest, ResultHandler handler) throws Exception {
         SQLResponse fakeResponse = QueryUtil.tableauIntercept(sqlRequest.getSql());
         if (null != fakeResponse) {
             logger.debug("Return fake response, is exception? " + fakeResponse.getIsException());
+            if (handler != null && !fakeResponse.getIsException()) {
+                handler.onStart(fakeResponse.getColumnMetas(), fakeResponse.getCube());
+                for (List<String> row : fakeResponse.getResults()) {
+                    handler.onRow(row);
+                }
+            }
             return fakeResponse;
         }
 
@@ -271,7 +298,7 @@ public class QueryService extends BasicService {
         parameters.put(OLAPContext.PRM_ACCEPT_PARTIAL_RESULT, String.valueOf(sqlRequest.isAcceptPartial()));
         OLAPContext.setParameters(parameters);
 
-        return execute(correctedSql, sqlRequest);
+        return execute(correctedSql, sqlRequest, handler);
 
     }
 
@@ -338,12 +365,12 @@ public class QueryService extends BasicService {
      * @return
      * @throws Exception
      */
-    private SQLResponse execute(String sql, SQLRequest sqlRequest) throws Exception {
+    private SQLResponse execute(String sql, SQLRequest sqlRequest, ResultHandler handler) throws Exception {
         Connection conn = null;
         Statement stat = null;
         ResultSet resultSet = null;
 
-        List<List<String>> results = Lists.newArrayList();
+        List<List<String>> results = handler == null ? Lists.<List<String>> newArrayList() : null;
         List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
 
         try {
@@ -351,6 +378,7 @@ public class QueryService extends BasicService {
 
             if (sqlRequest instanceof PrepareSqlRequest) {
                 PreparedStatement preparedState = conn.prepareStatement(sql);
+                stat = preparedState;
 
                 for (int i = 0; i < ((PrepareSqlRequest) sqlRequest).getParams().length; i++) {
                     setParam(preparedState, i + 1, ((PrepareSqlRequest) sqlRequest).getParams()[i]);
@@ -370,6 +398,10 @@ public class QueryService extends BasicService {
                 columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
             }
 
+            if (handler != null) {
+                handler.onStart(columnMetas, getRealizationName());
+            }
+
             // fill in results
             while (resultSet.next()) {
                 List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
@@ -377,7 +409,11 @@ public class QueryService extends BasicService {
                     oneRow.add((resultSet.getString(i + 1)));
                 }
 
-                results.add(oneRow);
+                if (handler != null) {
+                    handler.onRow(oneRow);
+                } else {
+                    results.add(oneRow);
+                }
             }
         } finally {
             close(resultSet, stat, conn);
@@ -386,6 +422,7 @@ public class QueryService extends BasicService {
         boolean isPartialResult = false;
         String cube = "";
         StringBuilder sb = new StringBuilder("Scan count for each storageContext: ");
+        StringBuilder timeSb = new StringBuilder("Segment scan time (ms) for each storageContext: ");
         long totalScanCount = 0;
         if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
             for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
@@ -394,10 +431,12 @@ public class QueryService extends BasicService {
                     cube = ctx.realization.getName();
                     totalScanCount += ctx.storageContext.getTotalScanCount();
                     sb.append(ctx.storageContext.getTotalScanCount() + ",");
+                    timeSb.append(ctx.storageContext.getSegmentScanTimes() + ",");
                 }
             }
         }
         logger.info(sb.toString());
+        logger.info(timeSb.toString());
 
         SQLResponse response = new SQLResponse(columnMetas, results, cube, 0, false, null, isPartialResult);
         response.setTotalScanCount(totalScanCount);
@@ -405,6 +444,18 @@ public class QueryService extends BasicService {
         return response;
     }
 
+    private String getRealizationName() {
+        String cube = "";
+        if (OLAPContext.getThreadLocalContexts() != null) {
+            for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
+                if (ctx.realization != null) {
+                    cube = ctx.realization.getName();
+                }
+            }
+        }
+        return cube;
+    }
+
     /**
      * @param preparedState
      * @param param
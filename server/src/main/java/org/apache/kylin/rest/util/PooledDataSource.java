@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.rest.util;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps closed connections of a data source for reuse, so that a query does not pay for opening a new
+ * calcite connection, which reads the model and builds the OLAP schema every time.
+ *
+ * Once the pool is closed, idle connections are closed and borrowed ones are closed when returned.
+ * Statements left open by the borrower are closed when the connection is returned.
+ */
+public class PooledDataSource implements DataSource {
+
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private final DataSource target;
+    private final BlockingQueue<Connection> idleConnections;
+    private volatile boolean closed = false;
+
+    /**
+     * @param maxIdle how many returned connections are kept, more are really closed
+     */
+    public PooledDataSource(DataSource target, int maxIdle) {
+        this.target = target;
+        this.idleConnections = new LinkedBlockingQueue<Connection>(maxIdle);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection conn;
+        while ((conn = idleConnections.poll()) != null) {
+            if (!conn.isClosed()) {
+                return borrow(conn);
+            }
+        }
+        return borrow(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target.getConnection(username, password); // not pooled, as the idle ones may belong to another user
+    }
+
+    private Connection borrow(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new BorrowedConnection(conn));
+    }
+
+    private void giveBack(Connection conn) throws SQLException {
+        if (closed || conn.isClosed() || !idleConnections.offer(conn)) {
+            conn.close();
+        }
+        // the pool may be closed while the connection was being offered
+        if (closed && idleConnections.remove(conn)) {
+            conn.close();
+        }
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public void close() {
+        closed = true;
+        Connection conn;
+        while ((conn = idleConnections.poll()) != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.warn("failed to close pooled connection", e);
+            }
+        }
+    }
+
+    private class BorrowedConnection implements InvocationHandler {
+        private final Connection conn;
+        private final List<Statement> statements = Lists.newArrayList();
+        private boolean returned = false;
+
+        BorrowedConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!returned) {
+                    returned = true;
+                    closeStatements();
+                    giveBack(conn);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return returned || conn.isClosed();
+            }
+            if (returned) {
+                throw new SQLException("Connection is closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            if (result instanceof Statement) {
+                statements.add((Statement) result);
+            }
+            return result;
+        }
+
+        private void closeStatements() {
+            for (Statement stmt : statements) {
+                try {
+                    if (!stmt.isClosed()) {
+                        stmt.close();
+                    }
+                } catch (SQLException e) {
+                    logger.warn("failed to close statement of pooled connection", e);
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.rest.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.JsonUtil;
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+import org.apache.kylin.rest.response.SQLResponse;
+
+/**
+ * Writes query results as a stream of frames, so rows leave the server as soon as they are read.
+ * 
+ * <pre>
+ * 'H' int(len) json           header, a SQLResponse carrying column metas and cube
+ * 'R' vint(n) row * n         a block of rows, each column is vint(len + 1) utf8, vint 0 for null
+ * 'E' int(len) json           end of result, a SQLResponse carrying the query stats
+ * 'X' int(len) utf8           error after the header is sent
+ * </pre>
+ * 
+ * The rows are flushed every fetchSize rows, which makes the chunks of a chunked HTTP response.
+ * Keep in sync with org.apache.kylin.jdbc.StreamingResultReader.
+ */
+public class StreamingResultWriter {
+
+    public static final byte FRAME_HEADER = 'H';
+    public static final byte FRAME_ROWS = 'R';
+    public static final byte FRAME_END = 'E';
+    public static final byte FRAME_ERROR = 'X';
+
+    private final DataOutputStream out;
+    private final int fetchSize;
+    private final ByteArrayOutputStream rowBuffer = new ByteArrayOutputStream(64 * 1024);
+
+    private int columnCount = -1;
+    private int pendingRows = 0;
+    private long rowCount = 0;
+
+    public StreamingResultWriter(OutputStream out, int fetchSize) {
+        if (fetchSize <= 0)
+            throw new IllegalArgumentException("fetchSize must be positive, but is " + fetchSize);
+
+        this.out = new DataOutputStream(out);
+        this.fetchSize = fetchSize;
+    }
+
+    public boolean isStarted() {
+        return columnCount >= 0;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void writeHeader(List<SelectedColumnMeta> columnMetas, String cube) throws IOException {
+        if (isStarted())
+            throw new IllegalStateException("header is already written");
+
+        columnCount = columnMetas.size();
+        writeJson(FRAME_HEADER, new SQLResponse(columnMetas, null, cube, 0, false, null));
+        out.flush();
+    }
+
+    public void writeRow(List<String> row) throws IOException {
+        if (!isStarted())
+            throw new IllegalStateException("header is not written yet");
+        if (row.size() != columnCount)
+            throw new IllegalArgumentException("expect " + columnCount + " columns, but got " + row.size());
+
+        for (String value : row) {
+            if (value == null) {
+                writeVInt(rowBuffer, 0);
+            } else {
+                byte[] bytes = Bytes.toBytes(value);
+                writeVInt(rowBuffer, bytes.length + 1);
+                rowBuffer.write(bytes);
+            }
+        }
+        rowCount++;
+
+        if (++pendingRows >= fetchSize) {
+            flushRows();
+        }
+    }
+
+    /**
+     * Ends the stream, the response should carry no results but only the stats of the query.
+     */
+    public void writeEnd(SQLResponse stats) throws IOException {
+        flushRows();
+        writeJson(FRAME_END, stats);
+        out.flush();
+    }
+
+    public void writeError(String message) throws IOException {
+        // a partial block is useless as the client fails anyway
+        rowBuffer.reset();
+        pendingRows = 0;
+
+        byte[] bytes = Bytes.toBytes(message == null ? "" : message);
+        out.writeByte(FRAME_ERROR);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    private void flushRows() throws IOException {
+        if (pendingRows == 0)
+            return;
+
+        out.writeByte(FRAME_ROWS);
+        writeVInt(out, pendingRows);
+        rowBuffer.writeTo(out);
+        out.flush();
+
+        rowBuffer.reset();
+        pendingRows = 0;
+    }
+
+    private void writeJson(byte frame, SQLResponse response) throws IOException {
+        byte[] bytes = JsonUtil.writeValueAsBytes(response);
+        out.writeByte(frame);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVInt(OutputStream out, int i) throws IOException {
+        while ((i & ~0x7F) != 0) {
+            out.write((i & 0x7F) | 0x80);
+            i >>>= 7;
+        }
+        out.write(i);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.rest.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PooledDataSourceTest {
+
+    @Test
+    public void testReuse() throws SQLException {
+        List<boolean[]> opened = Lists.newArrayList();
+        PooledDataSource pool = new PooledDataSource(fakeDataSource(opened), 1);
+
+        Connection c1 = pool.getConnection();
+        c1.close();
+        Assert.assertTrue(c1.isClosed());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        Connection c2 = pool.getConnection();
+        Connection c3 = pool.getConnection();
+        Assert.assertEquals(2, opened.size());
+        Assert.assertFalse(c2.isClosed());
+
+        c2.close();
+        c3.close();
+        c3.close();
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertFalse(opened.get(0)[0]);
+        Assert.assertTrue(opened.get(1)[0]); // over max idle, really closed
+
+        try {
+            c2.createStatement();
+            Assert.fail("a returned connection must not be used");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testClose() throws SQLException {
+        List<boolean[]> opened = Lists.newArrayList();
+        PooledDataSource pool = new PooledDataSource(fakeDataSource(opened), 4);
+
+        Connection c1 = pool.getConnection();
+        Connection c2 = pool.getConnection();
+        c1.close();
+        pool.close();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertTrue(opened.get(0)[0]);
+
+        c2.close();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertTrue(opened.get(1)[0]);
+    }
+
+    @Test
+    public void testStatementsClosedOnReturn() throws SQLException {
+        List<boolean[]> opened = Lists.newArrayList();
+        List<boolean[]> statements = Lists.newArrayList();
+        PooledDataSource pool = new PooledDataSource(fakeDataSource(opened, statements), 1);
+
+        Connection c1 = pool.getConnection();
+        Statement s1 = c1.createStatement();
+        c1.createStatement();
+        s1.close();
+        Assert.assertTrue(statements.get(0)[0]);
+        Assert.assertFalse(statements.get(1)[0]);
+
+        c1.close();
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertFalse(opened.get(0)[0]);
+        Assert.assertTrue(statements.get(1)[0]); // left open by the borrower
+    }
+
+    private DataSource fakeDataSource(final List<boolean[]> opened) {
+        return fakeDataSource(opened, Lists.<boolean[]> newArrayList());
+    }
+
+    /** each connection or statement opened records whether it is closed in the list */
+    private DataSource fakeDataSource(final List<boolean[]> opened, final List<boolean[]> statements) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (!method.getName().equals("getConnection")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                final boolean[] closed = new boolean[1];
+                opened.add(closed);
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("close")) {
+                            closed[0] = true;
+                            return null;
+                        }
+                        if (method.getName().equals("isClosed")) {
+                            return closed[0];
+                        }
+                        if (method.getName().equals("createStatement")) {
+                            return fakeCloseable(Statement.class, statements);
+                        }
+                        return null;
+                    }
+                });
+            }
+        });
+    }
+
+    private Object fakeCloseable(Class<?> iface, List<boolean[]> opened) {
+        final boolean[] closed = new boolean[1];
+        opened.add(closed);
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { iface }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("close")) {
+                    closed[0] = true;
+                    return null;
+                }
+                if (method.getName().equals("isClosed")) {
+                    return closed[0];
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.rest.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.kylin.jdbc.StreamingResultReader;
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StreamingResultWriterTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamingResultWriter writer = new StreamingResultWriter(bytes, 2);
+        writer.writeHeader(columnMetas(), "test_cube");
+        for (int i = 0; i < 5; i++) {
+            writer.writeRow(Arrays.asList("row" + i, i % 2 == 0 ? null : String.valueOf(i)));
+        }
+        SQLResponse stats = new SQLResponse(null, null, "test_cube", 0, false, null, false);
+        stats.setTotalScanCount(100);
+        writer.writeEnd(stats);
+        Assert.assertEquals(5, writer.getRowCount());
+
+        StreamingResultReader reader = new StreamingResultReader(new ByteArrayInputStream(bytes.toByteArray()), new ObjectMapper());
+        Assert.assertEquals(2, reader.getHeader().getColumnMetas().size());
+        Assert.assertEquals("test_cube", reader.getHeader().getCube());
+        reader.setColumnMetas(readerMetas());
+
+        List<Object[]> rows = new ArrayList<Object[]>();
+        while (reader.hasNext()) {
+            rows.add((Object[]) reader.next());
+        }
+        Assert.assertTrue(reader.isEnded());
+        Assert.assertEquals(100, reader.getStats().getTotalScanCount());
+        Assert.assertEquals(5, rows.size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("row" + i, rows.get(i)[0]);
+            Assert.assertEquals(i % 2 == 0 ? null : i, rows.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void testErrorAfterHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamingResultWriter writer = new StreamingResultWriter(bytes, 10);
+        writer.writeHeader(columnMetas(), "test_cube");
+        writer.writeRow(Arrays.asList("row0", "0"));
+        writer.writeError("scan out of limit");
+
+        StreamingResultReader reader = new StreamingResultReader(new ByteArrayInputStream(bytes.toByteArray()), new ObjectMapper());
+        reader.setColumnMetas(readerMetas());
+        try {
+            reader.hasNext();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("scan out of limit", e.getCause().getMessage());
+        }
+    }
+
+    private List<SelectedColumnMeta> columnMetas() {
+        List<SelectedColumnMeta> metas = new ArrayList<SelectedColumnMeta>();
+        metas.add(new SelectedColumnMeta(false, false, false, false, 1, false, 0, "NAME", "NAME", null, null, null, 0, 0, Types.VARCHAR, "VARCHAR", true, false, false));
+        metas.add(new SelectedColumnMeta(false, false, false, false, 1, true, 0, "CNT", "CNT", null, null, null, 0, 0, Types.INTEGER, "INTEGER", true, false, false));
+        return metas;
+    }
+
+    private List<ColumnMetaData> readerMetas() {
+        List<ColumnMetaData> metas = new ArrayList<ColumnMetaData>();
+        metas.add(ColumnMetaData.dummy(ColumnMetaData.scalar(Types.VARCHAR, "VARCHAR", Rep.STRING), true));
+        metas.add(ColumnMetaData.dummy(ColumnMetaData.scalar(Types.INTEGER, "INTEGER", Rep.INTEGER), true));
+        return metas;
+    }
+}
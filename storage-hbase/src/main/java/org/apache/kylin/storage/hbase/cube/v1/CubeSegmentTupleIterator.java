@@ -334,6 +334,7 @@ public class CubeSegmentTupleIterator implements ITupleIterator {
         logger.info("Closing CubeSegmentTupleIterator");
         closeScanner();
         closeTable();
+        tupleConverter.close();
     }
 
     protected void flushScanCountDelta() {
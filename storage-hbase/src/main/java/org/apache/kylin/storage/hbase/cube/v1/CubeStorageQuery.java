@@ -360,7 +360,12 @@ public class CubeStorageQuery implements IStorageQuery {
         CubeManager cubeMgr = CubeManager.getInstance(this.cubeInstance.getConfig());
         CubeSegment seg = cubeInstance.getLatestReadySegment();
         LookupStringTable lookup = cubeMgr.getLookupTable(seg, hostInfo.dimension);
-        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, compf);
+        Pair<TupleFilter, Boolean> translated;
+        try {
+            translated = DerivedFilterTranslator.translate(lookup, hostInfo, compf);
+        } finally {
+            cubeMgr.releaseLookupTable(lookup);
+        }
         TupleFilter translatedFilter = translated.getFirst();
         boolean loosened = translated.getSecond();
         if (loosened) {
@@ -33,6 +33,7 @@ import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.kv.RowKeyDecoder;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.cube.model.DimensionDesc;
 import org.apache.kylin.dict.lookup.LookupStringTable;
 import org.apache.kylin.measure.MeasureType;
 import org.apache.kylin.metadata.model.FunctionDesc;
@@ -53,6 +54,7 @@ public class CubeTupleConverter {
     final RowKeyDecoder rowKeyDecoder;
     final List<RowValueDecoder> rowValueDecoders;
     final List<IDerivedColumnFiller> derivedColFillers;
+    final List<LookupStringTable> usedLookupTables;
     final int[] dimensionTupleIdx;
     final int[][] metricsMeasureIdx;
     final int[][] metricsTupleIdx;
@@ -69,6 +71,7 @@ public class CubeTupleConverter {
         this.rowKeyDecoder = new RowKeyDecoder(this.cubeSeg);
         this.rowValueDecoders = rowValueDecoders;
         this.derivedColFillers = Lists.newArrayList();
+        this.usedLookupTables = Lists.newArrayList();
 
         List<TblColRef> dimCols = cuboid.getColumns();
 
@@ -194,6 +197,23 @@ public class CubeTupleConverter {
         }
     }
 
+    /**
+     * Releases the lookup tables used to fill derived columns.
+     */
+    public void close() {
+        CubeManager cubeMgr = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig());
+        for (LookupStringTable lookupTable : usedLookupTables) {
+            cubeMgr.releaseLookupTable(lookupTable);
+        }
+        usedLookupTables.clear();
+    }
+
+    private LookupStringTable getLookupTable(CubeSegment cubeSeg, DimensionDesc dim) {
+        LookupStringTable lookupTable = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig()).getLookupTable(cubeSeg, dim);
+        usedLookupTables.add(lookupTable);
+        return lookupTable;
+    }
+
     private interface IDerivedColumnFiller {
         public void fillDerivedColumns(List<String> rowValues, Tuple tuple);
     }
@@ -220,8 +240,7 @@ public class CubeTupleConverter {
         switch (deriveInfo.type) {
         case LOOKUP:
             return new IDerivedColumnFiller() {
-                CubeManager cubeMgr = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig());
-                LookupStringTable lookupTable = cubeMgr.getLookupTable(cubeSeg, deriveInfo.dimension);
+                LookupStringTable lookupTable = getLookupTable(cubeSeg, deriveInfo.dimension);
                 int[] derivedColIdx = initDerivedColIdx();
                 Array<String> lookupKey = new Array<String>(new String[hostColIdx.length]);
 
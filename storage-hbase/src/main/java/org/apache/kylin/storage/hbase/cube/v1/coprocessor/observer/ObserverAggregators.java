@@ -178,6 +178,14 @@ public class ObserverAggregators {
                 continue;
             }
 
+            if (col.allPrimitive) {
+                // aggregate straight from the cell bytes, no decoding into objects
+                int offset = cell.getValueOffset();
+                for (int j = 0; j < col.nMeasures; j++)
+                    offset += measureAggrs[i++].aggregateSerialized(cell.getValueArray(), offset);
+                continue;
+            }
+
             ByteBuffer input = ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
 
             col.measureCodec.decode(input, col.measureValues);
@@ -243,6 +251,7 @@ public class ObserverAggregators {
 
         final BufferedMeasureEncoder measureCodec;
         final Object[] measureValues;
+        final boolean allPrimitive; // all measures can aggregate from serialized bytes
 
         public HCol(byte[] bFamily, byte[] bQualifier, String[] funcNames, String[] dataTypes) {
             this.family = bFamily;
@@ -254,6 +263,12 @@ public class ObserverAggregators {
 
             this.measureCodec = new BufferedMeasureEncoder(dataTypes);
             this.measureValues = new Object[nMeasures];
+
+            boolean allPrimitive = true;
+            for (int i = 0; i < nMeasures; i++) {
+                allPrimitive = allPrimitive && MeasureTypeFactory.create(funcNames[i], DataType.getType(dataTypes[i])).supportsPrimitiveAggregation();
+            }
+            this.allPrimitive = allPrimitive;
         }
 
         @Override
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.apache.kylin.engine.mr.common.CubeStatsReader;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+
+/**
+ * Picks the scan cuboid by the row counts estimated in segment statistics.
+ * 
+ * Among the valid cuboids able to answer a query (one per aggregation group, see {@link Cuboid#findValidCandidates(CubeDesc, long)}),
+ * the one with the fewest estimated rows summed over the queried segments wins. How narrow the scan ranges are
+ * depends on the filter columns leading the rowkey of a cuboid, which the row counts do not tell. So a candidate
+ * is only taken when as many filter columns lead its rowkey as lead the rowkey of the cuboid picked by the static
+ * aggregation group rule. Falls back to the static rule when statistics are missing.
+ */
+public class CostBasedCuboidChooser {
+
+    private static final Logger logger = LoggerFactory.getLogger(CostBasedCuboidChooser.class);
+
+    private static final Map<Long, Long> NO_STATS = Collections.emptyMap();
+
+    // segment statistics resource path & build time -> cuboid ID -> estimated rows
+    private static final Cache<String, Map<Long, Long>> STATS_CACHE = CacheBuilder.newBuilder().maximumSize(10000).build();
+
+    /**
+     * @param filterColumns the columns in the filter of the query, derived columns translated to their host columns
+     */
+    public static Cuboid choose(Cuboid cuboid, Collection<TblColRef> filterColumns, List<CubeSegment> segments) {
+        if (segments.isEmpty() || Cuboid.findValidCandidates(cuboid.getCubeDesc(), cuboid.getInputID()).size() <= 1) {
+            return cuboid;
+        }
+
+        List<Map<Long, Long>> segmentEstimates = Lists.newArrayListWithCapacity(segments.size());
+        for (CubeSegment segment : segments) {
+            Map<Long, Long> estimates = getRowEstimates(segment);
+            if (estimates == NO_STATS) {
+                return cuboid;
+            }
+            segmentEstimates.add(estimates);
+        }
+
+        long filterMask = 0;
+        for (RowKeyColDesc rowKeyCol : cuboid.getCubeDesc().getRowkey().getRowKeyColumns()) {
+            if (filterColumns.contains(rowKeyCol.getColRef())) {
+                filterMask |= 1L << rowKeyCol.getBitIndex();
+            }
+        }
+        return choose(cuboid, filterMask, segmentEstimates);
+    }
+
+    /**
+     * @param filterMask the bits of the filter columns in a cuboid ID
+     * @param segmentEstimates cuboid ID -> estimated rows, for each queried segment
+     */
+    static Cuboid choose(Cuboid cuboid, long filterMask, List<Map<Long, Long>> segmentEstimates) {
+        CubeDesc cubeDesc = cuboid.getCubeDesc();
+        List<Long> candidates = Cuboid.findValidCandidates(cubeDesc, cuboid.getInputID());
+        if (candidates.size() <= 1 || segmentEstimates.isEmpty()) {
+            return cuboid;
+        }
+
+        long[] rows = new long[candidates.size()];
+        for (Map<Long, Long> estimates : segmentEstimates) {
+            for (int i = 0; i < rows.length; i++) {
+                Long estimate = estimates.get(candidates.get(i));
+                if (estimate == null) {
+                    return cuboid;
+                }
+                rows[i] += estimate;
+            }
+        }
+
+        int nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
+        int best = candidates.indexOf(cuboid.getId());
+        int minFilterPrefix = filterPrefixLength(cuboid.getId(), filterMask, nRowKey);
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] < rows[best] && filterPrefixLength(candidates.get(i), filterMask, nRowKey) >= minFilterPrefix) {
+                best = i;
+            }
+        }
+        if (candidates.get(best) == cuboid.getId()) {
+            return cuboid;
+        }
+
+        logger.info("Cuboid " + candidates.get(best) + " (" + rows[best] + " estimated rows) is chosen over " + cuboid.getId() + " (" + rows[candidates.indexOf(cuboid.getId())] + " estimated rows)");
+        return Cuboid.findById(cubeDesc, cuboid.getInputID(), candidates.get(best));
+    }
+
+    /**
+     * Counts the filter columns leading the rowkey of a cuboid. The first rowkey column has the highest bit.
+     */
+    static int filterPrefixLength(long cuboidId, long filterMask, int nRowKey) {
+        int length = 0;
+        for (int bit = nRowKey - 1; bit >= 0; bit--) {
+            long mask = 1L << bit;
+            if ((cuboidId & mask) == 0) {
+                continue;
+            }
+            if ((filterMask & mask) == 0) {
+                break;
+            }
+            length++;
+        }
+        return length;
+    }
+
+    private static Map<Long, Long> getRowEstimates(final CubeSegment segment) {
+        final String statsPath = segment.getStatisticsResourcePath();
+        try {
+            return STATS_CACHE.get(statsPath + "@" + segment.getLastBuildTime(), new Callable<Map<Long, Long>>() {
+                @Override
+                public Map<Long, Long> call() throws Exception {
+                    return loadRowEstimates(segment, statsPath);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Map<Long, Long> loadRowEstimates(CubeSegment segment, String statsPath) {
+        try {
+            if (!ResourceStore.getStore(segment.getConfig()).exists(statsPath)) {
+                logger.info("No statistics for segment " + segment);
+                return NO_STATS;
+            }
+            return new CubeStatsReader(segment, segment.getConfig()).getCuboidRowEstimatesHLL();
+        } catch (Exception e) {
+            logger.warn("Failed to load statistics of segment " + segment, e);
+            return NO_STATS;
+        }
+    }
+}
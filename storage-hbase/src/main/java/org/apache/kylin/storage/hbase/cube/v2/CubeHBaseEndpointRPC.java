@@ -41,6 +41,7 @@ import org.apache.hadoop.hbase.ipc.BlockingRpcCallback;
 import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
@@ -57,6 +58,7 @@ import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.storage.hbase.HBaseConnection;
 import org.apache.kylin.storage.hbase.common.coprocessor.CoprocessorBehavior;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.CubeVisitCache;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest.IntList;
@@ -67,6 +69,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
@@ -78,18 +82,29 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
     private static ExecutorService executorService = new LoggableCachedThreadPool();
 
+    // digests of the kylin properties and GTInfos that have been sent to region servers in full
+    private static final Cache<ByteArray, Boolean> sentDigests = CacheBuilder.newBuilder().maximumSize(10000).build();
+
+    /**
+     * Row blocks returned by the endpoint, a region may return any number of blocks (over several paged calls)
+     * and is done after {@link #regionFinished()}. The iterator ends when all expected regions are done.
+     */
     static class ExpectedSizeIterator implements Iterator<byte[]> {
 
+        private static final byte[] REGION_END = new byte[0];
+
         BlockingQueue<byte[]> queue;
 
         int expectedSize;
         int current = 0;
+        byte[] next = null;
         long timeout;
         long timeoutTS;
+        volatile boolean closed = false;
 
-        public ExpectedSizeIterator(int expectedSize) {
+        public ExpectedSizeIterator(int expectedSize, int queueCapacity) {
             this.expectedSize = expectedSize;
-            this.queue = new ArrayBlockingQueue<byte[]>(expectedSize);
+            this.queue = new ArrayBlockingQueue<byte[]>(Math.max(expectedSize, queueCapacity));
 
             this.timeout = HBaseConnection.getCurrentHBaseConfiguration().getInt(HConstants.HBASE_RPC_TIMEOUT_KEY, HConstants.DEFAULT_HBASE_RPC_TIMEOUT);
             this.timeout *= KylinConfig.getInstanceFromEnv().getCubeVisitTimeoutTimes();
@@ -107,16 +122,29 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
         @Override
         public boolean hasNext() {
-            return (current < expectedSize);
+            while (next == null && current < expectedSize) {
+                byte[] polled = poll();
+                if (polled == REGION_END) {
+                    current++;
+                } else {
+                    next = polled;
+                }
+            }
+            return next != null;
         }
 
         @Override
         public byte[] next() {
-            if (current >= expectedSize) {
+            if (!hasNext()) {
                 throw new IllegalStateException("Won't have more data");
             }
+            byte[] ret = next;
+            next = null;
+            return ret;
+        }
+
+        private byte[] poll() {
             try {
-                current++;
                 long tsRemaining = this.timeoutTS - System.currentTimeMillis();
                 if (tsRemaining < 0) {
                     throw new RuntimeException("Timeout visiting cube!");
@@ -140,12 +168,30 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
         public void append(byte[] data) {
             try {
-                queue.put(data);
+                // blocks the endpoint callback, and thus the next page of the region, until the consumer catches up
+                while (!closed && !queue.offer(data, 100, TimeUnit.MILLISECONDS)) {
+                    if (System.currentTimeMillis() > timeoutTS) {
+                        throw new RuntimeException("Timeout visiting cube!");
+                    }
+                }
             } catch (InterruptedException e) {
                 throw new RuntimeException("error when waiting queue", e);
             }
         }
 
+        public void regionFinished() {
+            append(REGION_END);
+        }
+
+        public void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
         public long getTimeout() {
             return timeout;
         }
@@ -153,15 +199,17 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
     static class EndpointResultsAsGTScanner implements IGTScanner {
         private GTInfo info;
-        private Iterator<byte[]> blocks;
+        private ExpectedSizeIterator blocks;
         private ImmutableBitSet columns;
         private int totalScannedCount;
+        private boolean compressed;
 
-        public EndpointResultsAsGTScanner(GTInfo info, Iterator<byte[]> blocks, ImmutableBitSet columns, int totalScannedCount) {
+        public EndpointResultsAsGTScanner(GTInfo info, ExpectedSizeIterator blocks, ImmutableBitSet columns, int totalScannedCount, boolean compressed) {
             this.info = info;
             this.blocks = blocks;
             this.columns = columns;
             this.totalScannedCount = totalScannedCount;
+            this.compressed = compressed;
         }
 
         @Override
@@ -176,7 +224,8 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
         @Override
         public void close() throws IOException {
-            //do nothing
+            // stop the pending endpoint calls from queuing more blocks
+            blocks.close();
         }
 
         @Override
@@ -193,7 +242,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         @Override
                         public boolean hasNext() {
                             if (inputBuffer == null) {
-                                inputBuffer = ByteBuffer.wrap(input);
+                                inputBuffer = ByteBuffer.wrap(decompress(input));
                                 oneRecord = new GTRecord(info);
                             }
 
@@ -214,6 +263,17 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                 }
             }));
         }
+
+        private byte[] decompress(byte[] block) {
+            if (!compressed) {
+                return block;
+            }
+            try {
+                return CompressionUtils.decompress(block);
+            } catch (IOException | DataFormatException e) {
+                throw new RuntimeException("Error when decompressing", e);
+            }
+        }
     }
 
     public CubeHBaseEndpointRPC(CubeSegment cubeSeg, Cuboid cuboid, GTInfo fullGTInfo) {
@@ -276,8 +336,21 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
             hbaseColumnsToGTIntList.add(IntList.newBuilder().addAllInts(list).build());
         }
 
-        //TODO: raw scan can be constructed at region side to reduce traffic
-        List<RawScan> rawScans = preparedHBaseScans(scanRequest.getGTScanRanges(), selectedColBlocks);
+        // KylinConfig: use env instance instead of CubeSegment, because KylinConfig will share among queries
+        // for different cubes until redeployment of coprocessor jar.
+        final KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        final boolean rawScanInRegion = kylinConfig.isQueryEndpointRawScanInRegion();
+        final boolean payloadCache = kylinConfig.isQueryEndpointPayloadCacheEnabled();
+
+        // raw scans built at region side save sending every scan range and fuzzy key to every region,
+        // only one template scan with the hbase columns goes along, the region plans the ranges from the filter
+        List<RawScan> rawScans;
+        int scanRangeCount = scanRequest.getGTScanRanges().size();
+        if (rawScanInRegion) {
+            rawScans = Lists.newArrayList(preparedHBaseScanTemplate(selectedColBlocks));
+        } else {
+            rawScans = preparedHBaseScans(scanRequest.getGTScanRanges(), selectedColBlocks);
+        }
         int rawScanBufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
         while (true) {
             try {
@@ -294,15 +367,24 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                 rawScanBufferSize *= 4;
             }
         }
-        scanRequest.setGTScanRanges(Lists.<GTScanRange> newArrayList());//since raw scans are sent to coprocessor, we don't need to duplicate sending it
+        scanRequest.setGTScanRanges(Lists.<GTScanRange> newArrayList());//since raw scans are sent or planned by coprocessor, we don't need to duplicate sending it
 
+        ByteString scanRequestWithoutInfoByteString = null;
+        byte[] gtInfoDigest = null;
         int scanRequestBufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
         while (true) {
             try {
+                // same as GTScanRequest.serializer, but keeps where the GTInfo ends
                 ByteBuffer buffer = ByteBuffer.allocate(scanRequestBufferSize);
-                GTScanRequest.serializer.serialize(scanRequest, buffer);
+                GTInfo.serializer.serialize(scanRequest.getInfo(), buffer);
+                int infoLength = buffer.position();
+                GTScanRequest.serializeWithoutInfo(scanRequest, buffer);
                 buffer.flip();
                 scanRequestByteString = HBaseZeroCopyByteString.wrap(buffer.array(), buffer.position(), buffer.limit());
+                scanRequestWithoutInfoByteString = HBaseZeroCopyByteString.wrap(buffer.array(), infoLength, buffer.limit() - infoLength);
+                if (payloadCache) {
+                    gtInfoDigest = CubeVisitCache.digest(buffer.array(), 0, infoLength);
+                }
                 break;
             } catch (BufferOverflowException boe) {
                 logger.info("Buffer size {} cannot hold the scan request, resizing to 4 times", scanRequestBufferSize);
@@ -312,20 +394,27 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
         logger.debug("Serialized scanRequestBytes {} bytes, rawScanBytesString {} bytes", scanRequestByteString.size(), rawScanByteString.size());
 
-        logger.info("The scan {} for segment {} is as below with {} separate raw scans, shard part of start/end key is set to 0", Integer.toHexString(System.identityHashCode(scanRequest)), cubeSeg, rawScans.size());
-        for (RawScan rs : rawScans) {
-            logScan(rs, cubeSeg.getStorageLocationIdentifier());
+        if (rawScanInRegion) {
+            logger.info("The scan {} for segment {} has {} scan ranges, they and the raw scans will be planned at region side", Integer.toHexString(System.identityHashCode(scanRequest)), cubeSeg, scanRangeCount);
+        } else {
+            logger.info("The scan {} for segment {} is as below with {} separate raw scans, shard part of start/end key is set to 0", Integer.toHexString(System.identityHashCode(scanRequest)), cubeSeg, rawScans.size());
+            for (RawScan rs : rawScans) {
+                logScan(rs, cubeSeg.getStorageLocationIdentifier());
+            }
         }
 
-        logger.debug("Submitting rpc to {} shards starting from shard {}, scan range count {}", shardNum, cuboidBaseShard, rawScans.size());
+        logger.debug("Submitting rpc to {} shards starting from shard {}, scan range count {}", shardNum, cuboidBaseShard, scanRangeCount);
+
+        final boolean compressionResult = kylinConfig.getCompressionResult();
+        final int rowBlockSize = kylinConfig.getQueryEndpointRowBlockSize();
+        final long pageSize = kylinConfig.getQueryEndpointPageSize();
+        final int parallelism = kylinConfig.getQueryEndpointParallelism();
 
         final AtomicInteger totalScannedCount = new AtomicInteger(0);
-        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(shardNum);
+        // about two pages of row blocks can be buffered before the endpoint calls are held back
+        final int queueCapacity = rowBlockSize > 0 && pageSize > 0 ? (int) Math.min(2 * pageSize / rowBlockSize, 1024) : 0;
+        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(shardNum, queueCapacity);
 
-        // KylinConfig: use env instance instead of CubeSegment, because KylinConfig will share among queries
-        // for different cubes until redeployment of coprocessor jar.
-        final KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
-        final boolean compressionResult = kylinConfig.getCompressionResult();
         final CubeVisitProtos.CubeVisitRequest.Builder builder = CubeVisitProtos.CubeVisitRequest.newBuilder();
         builder.setGtScanRequest(scanRequestByteString).setHbaseRawScan(rawScanByteString);
         for (IntList intList : hbaseColumnsToGTIntList) {
@@ -335,72 +424,161 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         builder.setBehavior(toggle);
         builder.setStartTime(System.currentTimeMillis());
         builder.setTimeout(epResultItr.getTimeout());
-        builder.setKylinProperties(kylinConfig.getConfigAsString());
+        String kylinProperties = kylinConfig.getConfigAsString();
+        builder.setKylinProperties(kylinProperties);
+        if (rawScanInRegion) {
+            builder.setCuboidId(cuboid.getId());
+        }
+        if (rowBlockSize > 0) {
+            builder.setRowBlockSize(rowBlockSize);
+            builder.setPageSize(pageSize);
+        }
+        if (parallelism > 1) {
+            builder.setParallelism(parallelism);
+        }
+        final CubeVisitRequest fullRequest = builder.build();
+
+        // leave out what the region servers have probably cached, a region server that has not will ask for the full request
+        CubeVisitRequest request = fullRequest;
+        CubeVisitRequest fallbackRequest = null;
+        ByteArray kylinPropertiesKey = null;
+        ByteArray gtInfoKey = null;
+        if (payloadCache) {
+            kylinPropertiesKey = new ByteArray(CubeVisitCache.digest(kylinProperties));
+            gtInfoKey = new ByteArray(gtInfoDigest);
+            if (sentDigests.getIfPresent(kylinPropertiesKey) != null) {
+                builder.setKylinProperties("").setKylinPropertiesDigest(HBaseZeroCopyByteString.wrap(kylinPropertiesKey.array()));
+            }
+            if (sentDigests.getIfPresent(gtInfoKey) != null) {
+                builder.setGtScanRequest(scanRequestWithoutInfoByteString).setGtInfoDigest(HBaseZeroCopyByteString.wrap(gtInfoKey.array()));
+            }
+            if (builder.hasKylinPropertiesDigest() || builder.hasGtInfoDigest()) {
+                request = builder.build();
+                fallbackRequest = fullRequest;
+                logger.debug("Sending {} bytes of scan request instead of {} bytes, the rest is cached by region servers", request.getSerializedSize(), fullRequest.getSerializedSize());
+            }
+        }
 
+        final String logHeader = "<sub-thread for GTScanRequest " + Integer.toHexString(System.identityHashCode(scanRequest)) + "> ";
         for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-
-                    final String logHeader = "<sub-thread for GTScanRequest " + Integer.toHexString(System.identityHashCode(scanRequest)) + "> ";
-                    final boolean[] abnormalFinish = new boolean[1];
-
-                    try {
-                        HTableInterface table = conn.getTable(cubeSeg.getStorageLocationIdentifier(), HBaseConnection.getCoprocessorPool());
-
-                        final CubeVisitRequest request = builder.build();
-                        final byte[] startKey = epRange.getFirst();
-                        final byte[] endKey = epRange.getSecond();
-
-                        table.coprocessorService(CubeVisitService.class, startKey, endKey, //
-                                new Batch.Call<CubeVisitService, CubeVisitResponse>() {
-                                    public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
-                                        ServerRpcController controller = new ServerRpcController();
-                                        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
-                                        rowsService.visitCube(controller, request, rpcCallback);
-                                        CubeVisitResponse response = rpcCallback.get();
-                                        if (controller.failedOnException()) {
-                                            throw controller.getFailedOn();
-                                        }
-                                        return response;
+            executorService.submit(new EndpointVisitTask(logHeader, conn, request, fallbackRequest, epRange.getFirst(), epRange.getSecond(), epResultItr, totalScannedCount));
+        }
+        if (payloadCache) {
+            // the full payload has gone to every region of the cuboid at least once
+            sentDigests.put(kylinPropertiesKey, Boolean.TRUE);
+            sentDigests.put(gtInfoKey, Boolean.TRUE);
+        }
+
+        return new EndpointResultsAsGTScanner(fullGTInfo, epResultItr, scanRequest.getColumns(), totalScannedCount.get(), compressionResult);
+    }
+
+    /**
+     * Visits the regions from startKey to endKey (both inclusive). A region that returns a resume key
+     * has more rows, its next page is visited by a new task, so that the pages of a big region are
+     * fetched one after another while the earlier ones are being consumed. A region that answers with a cache
+     * miss is visited again with the full request.
+     */
+    private class EndpointVisitTask implements Runnable {
+
+        private final String logHeader;
+        private final HConnection conn;
+        private final CubeVisitRequest request;
+        private final CubeVisitRequest fullRequest;
+        private final byte[] startKey;
+        private final byte[] endKey;
+        private final ExpectedSizeIterator epResultItr;
+        private final AtomicInteger totalScannedCount;
+
+        /**
+         * @param fullRequest the request with full payload, in case request leaves out some of it; null if request is full
+         */
+        EndpointVisitTask(String logHeader, HConnection conn, CubeVisitRequest request, CubeVisitRequest fullRequest, byte[] startKey, byte[] endKey, ExpectedSizeIterator epResultItr, AtomicInteger totalScannedCount) {
+            this.logHeader = logHeader;
+            this.conn = conn;
+            this.request = request;
+            this.fullRequest = fullRequest;
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.epResultItr = epResultItr;
+            this.totalScannedCount = totalScannedCount;
+        }
+
+        @Override
+        public void run() {
+            if (epResultItr.isClosed()) {
+                return;
+            }
+
+            final boolean[] abnormalFinish = new boolean[1];
+
+            try {
+                HTableInterface table = conn.getTable(cubeSeg.getStorageLocationIdentifier(), HBaseConnection.getCoprocessorPool());
+
+                table.coprocessorService(CubeVisitService.class, startKey, endKey, //
+                        new Batch.Call<CubeVisitService, CubeVisitResponse>() {
+                            public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
+                                ServerRpcController controller = new ServerRpcController();
+                                BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
+                                rowsService.visitCube(controller, request, rpcCallback);
+                                CubeVisitResponse response = rpcCallback.get();
+                                if (controller.failedOnException()) {
+                                    throw controller.getFailedOn();
+                                }
+                                return response;
+                            }
+                        }, new Batch.Callback<CubeVisitResponse>() {
+                            @Override
+                            public void update(byte[] region, byte[] row, CubeVisitResponse result) {
+                                if (region == null)
+                                    return;
+
+                                if (result.getCacheMiss()) {
+                                    if (fullRequest == null) {
+                                        throw new IllegalStateException(logHeader + "Cache miss reported for a full request");
                                     }
-                                }, new Batch.Callback<CubeVisitResponse>() {
-                                    @Override
-                                    public void update(byte[] region, byte[] row, CubeVisitResponse result) {
-                                        if (region == null)
-                                            return;
-
-                                        totalScannedCount.addAndGet(result.getStats().getScannedRowCount());
-                                        logger.info(logHeader + getStatsString(region, result));
-
-                                        if (result.getStats().getNormalComplete() != 1) {
-                                            abnormalFinish[0] = true;
-                                            return;
-                                        }
-                                        try {
-                                            if (compressionResult) {
-                                                epResultItr.append(CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows())));
-                                            } else {
-                                                epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
-                                            }
-                                        } catch (IOException | DataFormatException e) {
-                                            throw new RuntimeException(logHeader + "Error when decompressing", e);
-                                        }
+                                    // the region may start before the visited range
+                                    byte[] key = Bytes.compareTo(row, startKey) > 0 ? row : startKey;
+                                    logger.info(logHeader + "Region server of shard " + BytesUtil.toHex(region) + " has not cached the request payload, resending in full");
+                                    executorService.submit(new EndpointVisitTask(logHeader, conn, fullRequest, null, key, key, epResultItr, totalScannedCount));
+                                    return;
+                                }
+
+                                totalScannedCount.addAndGet(result.getStats().getScannedRowCount());
+                                logger.info(logHeader + getStatsString(region, result));
+
+                                if (result.getStats().getNormalComplete() != 1) {
+                                    abnormalFinish[0] = true;
+                                    return;
+                                }
+
+                                if (result.getCompressedRowBlocksCount() > 0) {
+                                    for (ByteString block : result.getCompressedRowBlocksList()) {
+                                        epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(block));
                                     }
-                                });
+                                } else if (!result.getCompressedRows().isEmpty()) {
+                                    // a region server that does not know about row blocks
+                                    epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
+                                }
+
+                                if (result.hasResumeKey()) {
+                                    byte[] resumeKey = HBaseZeroCopyByteString.zeroCopyGetBytes(result.getResumeKey());
+                                    CubeVisitRequest nextPage = request.toBuilder().setResumeKey(result.getResumeKey()).build();
+                                    CubeVisitRequest fullNextPage = fullRequest == null ? null : fullRequest.toBuilder().setResumeKey(result.getResumeKey()).build();
+                                    executorService.submit(new EndpointVisitTask(logHeader, conn, nextPage, fullNextPage, resumeKey, resumeKey, epResultItr, totalScannedCount));
+                                } else {
+                                    epResultItr.regionFinished();
+                                }
+                            }
+                        });
 
-                    } catch (Throwable throwable) {
-                        throw new RuntimeException(logHeader + "Error when visiting cubes by endpoint", throwable);
-                    }
+            } catch (Throwable throwable) {
+                throw new RuntimeException(logHeader + "Error when visiting cubes by endpoint", throwable);
+            }
 
-                    if (abnormalFinish[0]) {
-                        throw new RuntimeException(logHeader + "The coprocessor thread stopped itself due to scan timeout, failing current query...");
-                    }
-                }
-            });
+            if (abnormalFinish[0]) {
+                throw new RuntimeException(logHeader + "The coprocessor thread stopped itself due to scan timeout, failing current query...");
+            }
         }
-
-        return new EndpointResultsAsGTScanner(fullGTInfo, epResultItr, scanRequest.getColumns(), totalScannedCount.get());
     }
 
     private String getStatsString(byte[] region, CubeVisitResponse result) {
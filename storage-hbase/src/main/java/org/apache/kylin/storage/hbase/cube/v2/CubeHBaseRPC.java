@@ -119,6 +119,15 @@ public abstract class CubeHBaseRPC implements IGTStorage {
         return new RawScan(start, end, selectedColumns, hbaseFuzzyKeys, hbaseCaching, hbaseMaxResultSize);
     }
 
+    /**
+     * a scan without keys, carrying what is common to all the raw scans of a request
+     */
+    protected RawScan preparedHBaseScanTemplate(ImmutableBitSet selectedColBlocks) {
+        KylinConfig config = cubeSeg.getCubeDesc().getConfig();
+        List<Pair<byte[], byte[]>> noFuzzyKeys = Collections.emptyList();
+        return new RawScan(null, null, makeHBaseColumns(selectedColBlocks), noFuzzyKeys, config.getHBaseScanCacheRows(), config.getHBaseScanMaxResultSize());
+    }
+
     protected List<RawScan> preparedHBaseScans(List<GTScanRange> ranges, ImmutableBitSet selectedColBlocks) {
         List<RawScan> allRawScans = Lists.newArrayList();
         for (GTScanRange range : ranges) {
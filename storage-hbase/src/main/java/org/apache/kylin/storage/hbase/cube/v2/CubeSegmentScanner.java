@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.Set;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.dict.BuildInFunctionTransformer;
@@ -37,6 +38,7 @@ import org.apache.kylin.metadata.filter.ITupleFilterTransformer;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,13 +47,15 @@ public class CubeSegmentScanner implements IGTScanner {
     private static final Logger logger = LoggerFactory.getLogger(CubeSegmentScanner.class);
 
     final CubeSegment cubeSeg;
-    final ScannerWorker scanner;
+    final ScannerWorker scanner; // null if the result is from SegmentResultCache
+    final IGTScanner cachedScanner;
     final Cuboid cuboid;
 
     final GTScanRequest scanRequest;
+    final ByteArray cacheKey; // null if not to be cached
 
     public CubeSegmentScanner(CubeSegment cubeSeg, Cuboid cuboid, Set<TblColRef> dimensions, Set<TblColRef> groups, //
-            Collection<FunctionDesc> metrics, TupleFilter filter, boolean allowPreAggregate) {
+            Collection<FunctionDesc> metrics, TupleFilter filter, boolean allowPreAggregate, StorageContext context) {
         this.cuboid = cuboid;
         this.cubeSeg = cubeSeg;
 
@@ -67,17 +71,65 @@ public class CubeSegmentScanner implements IGTScanner {
             throw new RuntimeException(e);
         }
         scanRequest = scanRangePlanner.planScanRequest(allowPreAggregate);
-        scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest);
+        if (scanRequest != null && context.getStorageLimit() != Integer.MAX_VALUE) {
+            FunctionDesc orderMetric = context.getStorageOrderMetric();
+            int orderColumn = orderMetric == null ? -1 : cuboid.getCuboidToGridTableMapping().getIndexOf(orderMetric);
+            if (orderMetric != null && orderColumn < 0) {
+                // can't order in storage, and a plain limit would be wrong
+                logger.warn("Storage order metric " + orderMetric + " not found in " + cuboid + ", storage limit skipped");
+            } else {
+                scanRequest.setStorageLimit(context.getStorageLimit());
+                if (orderColumn >= 0)
+                    scanRequest.setStorageOrder(orderColumn, context.isStorageOrderDescending());
+            }
+        }
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        if (scanRequest != null && SegmentResultCache.isEnabled(config)) {
+            // must be taken before the scan request is sent, which may change it
+            cacheKey = SegmentResultCache.keyOf(cubeSeg, cuboid, scanRequest);
+            cachedScanner = SegmentResultCache.get(config, cacheKey, scanRequest.getInfo(), scanRequest.getColumns());
+        } else {
+            cacheKey = null;
+            cachedScanner = null;
+        }
+
+        if (cachedScanner != null) {
+            logger.info("Segment {} result is from cache", cubeSeg);
+            scanner = null;
+        } else {
+            scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest);
+        }
+    }
+
+    // for test, scans the given records as if they were from SegmentResultCache
+    CubeSegmentScanner(CubeSegment cubeSeg, Cuboid cuboid, IGTScanner cachedScanner) {
+        this.cubeSeg = cubeSeg;
+        this.cuboid = cuboid;
+        this.scanRequest = null;
+        this.cacheKey = null;
+        this.cachedScanner = cachedScanner;
+        this.scanner = null;
     }
 
     @Override
     public Iterator<GTRecord> iterator() {
+        if (cachedScanner != null) {
+            return cachedScanner.iterator();
+        }
+        if (cacheKey != null) {
+            return SegmentResultCache.caching(KylinConfig.getInstanceFromEnv(), cacheKey, scanRequest.getColumns(), scanner.iterator());
+        }
         return scanner.iterator();
     }
 
     @Override
     public void close() throws IOException {
-        scanner.close();
+        if (scanner != null) {
+            scanner.close();
+        } else {
+            cachedScanner.close();
+        }
     }
 
     @Override
@@ -87,7 +139,7 @@ public class CubeSegmentScanner implements IGTScanner {
 
     @Override
     public int getScannedRowCount() {
-        return scanner.getScannedRowCount();
+        return scanner == null ? cachedScanner.getScannedRowCount() : scanner.getScannedRowCount();
     }
 
 }
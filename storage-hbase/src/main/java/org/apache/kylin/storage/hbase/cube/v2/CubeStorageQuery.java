@@ -24,6 +24,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
@@ -93,7 +94,11 @@ public class CubeStorageQuery implements IStorageQuery {
         Set<TblColRef> dimensionsD = new LinkedHashSet<TblColRef>();
         dimensionsD.addAll(groupsD);
         dimensionsD.addAll(otherDimsD);
+        List<CubeSegment> readySegments = cubeInstance.getSegments(SegmentStatusEnum.READY);
         Cuboid cuboid = Cuboid.identifyCuboid(cubeDesc,dimensionsD, metrics);
+        if (cubeInstance.getConfig().isQueryCuboidCostBasedEnabled()) {
+            cuboid = CostBasedCuboidChooser.choose(cuboid, expandDerived(sqlDigest.filterColumns, Sets.<TblColRef> newHashSet()), readySegments);
+        }
         context.setCuboid(cuboid);
 
         // isExactAggregation? meaning: tuples returned from storage requires no further aggregation in query engine
@@ -107,23 +112,28 @@ public class CubeStorageQuery implements IStorageQuery {
         //actually even if the threshold is set, it will not be used in this query engine
         setThreshold(dimensionsD, metrics, context); // set cautious threshold to prevent out of memory
 
-        setLimit(filter, context);
+        setLimit(filter, sqlDigest, readySegments.size(), context);
 
         List<CubeSegmentScanner> scanners = Lists.newArrayList();
-        for (CubeSegment cubeSeg : cubeInstance.getSegments(SegmentStatusEnum.READY)) {
+        for (CubeSegment cubeSeg : readySegments) {
             CubeSegmentScanner scanner;
             if (cubeSeg.getInputRecords() == 0) {
                 logger.warn("cube segment {} input record is 0, " +
                         "it may caused by kylin failed to the job counter " +
                         "as the hadoop history server wasn't running", cubeSeg);
             }
-            scanner = new CubeSegmentScanner(cubeSeg, cuboid, dimensionsD, groupsD, metrics, filterD, !isExactAggregation);
+            scanner = new CubeSegmentScanner(cubeSeg, cuboid, dimensionsD, groupsD, metrics, filterD, !isExactAggregation, context);
             scanners.add(scanner);
         }
 
         if (scanners.isEmpty())
             return ITupleIterator.EMPTY_TUPLE_ITERATOR;
 
+        KylinConfig config = cubeInstance.getConfig();
+        int parallelism = config.getQuerySegmentScanParallelism();
+        if (parallelism > 1 && scanners.size() > 1) {
+            return new ParallelCubeTupleIterator(scanners, cuboid, dimensionsD, metrics, returnTupleInfo, context, parallelism, config.getQuerySegmentScanQueueSize());
+        }
         return new SequentialCubeTupleIterator(scanners, cuboid, dimensionsD, metrics, returnTupleInfo, context);
     }
 
@@ -290,7 +300,12 @@ public class CubeStorageQuery implements IStorageQuery {
         CubeManager cubeMgr = CubeManager.getInstance(this.cubeInstance.getConfig());
         CubeSegment seg = cubeInstance.getLatestReadySegment();
         LookupStringTable lookup = cubeMgr.getLookupTable(seg, hostInfo.dimension);
-        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, compf);
+        Pair<TupleFilter, Boolean> translated;
+        try {
+            translated = DerivedFilterTranslator.translate(lookup, hostInfo, compf);
+        } finally {
+            cubeMgr.releaseLookupTable(lookup);
+        }
         TupleFilter translatedFilter = translated.getFirst();
         boolean loosened = translated.getSecond();
         if (loosened) {
@@ -350,7 +365,7 @@ public class CubeStorageQuery implements IStorageQuery {
         }
     }
 
-    private void setLimit(TupleFilter filter, StorageContext context) {
+    private void setLimit(TupleFilter filter, SQLDigest sqlDigest, int segmentCount, StorageContext context) {
         boolean goodAggr = context.isExactAggregation();
         boolean goodFilter = filter == null || (TupleFilter.isEvaluableRecursively(filter) && context.isCoprocessorEnabled());
         boolean goodSort = context.hasSort() == false;
@@ -358,6 +373,34 @@ public class CubeStorageQuery implements IStorageQuery {
             logger.info("Enable limit " + context.getLimit());
             context.enableLimit();
         }
+
+        // push the limit down to storage only if the query asks for one, the default limit is just a threshold
+        if (!goodAggr || !goodFilter || !context.hasLimit())
+            return;
+
+        int storageLimit = (int) Math.min(Integer.MAX_VALUE, (long) context.getLimit() + context.getOffset());
+        if (goodSort) {
+            logger.info("Push down storage limit " + storageLimit);
+            context.setStorageLimit(storageLimit);
+        } else if (context.getSortCount() == 1 && sqlDigest.sortMeasures.size() == 1) {
+            FunctionDesc func = sqlDigest.sortMeasures.iterator().next().getFunction();
+            boolean descending = sqlDigest.sortOrders.iterator().next() == SQLDigest.OrderEnum.DESCENDING;
+            if (isGoodStorageOrder(func, descending, segmentCount)) {
+                logger.info("Push down storage top " + storageLimit + " by " + func + (descending ? " desc" : " asc"));
+                context.setStorageLimit(storageLimit);
+                context.setStorageOrder(func, descending);
+            }
+        }
+    }
+
+    // each segment keeps its own top groups, which is only correct if a group's final value could not
+    // rank higher than its best value of any single segment
+    private boolean isGoodStorageOrder(FunctionDesc func, boolean descending, int segmentCount) {
+        if (!(func.isSum() || func.isCount() || func.isMax() || func.isMin()))
+            return false;
+        if (segmentCount <= 1)
+            return true;
+        return (func.isMax() && descending) || (func.isMin() && !descending);
     }
 
     private void notifyBeforeStorageQuery(SQLDigest sqlDigest) {
@@ -18,20 +18,24 @@
 
 package org.apache.kylin.storage.hbase.cube.v2;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.gridtable.CuboidToGridTableMapping;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.cube.model.DimensionDesc;
 import org.apache.kylin.dict.lookup.LookupStringTable;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTCodeSystem;
 import org.apache.kylin.measure.MeasureType;
 import org.apache.kylin.measure.MeasureType.IAdvMeasureFiller;
 import org.apache.kylin.metadata.model.FunctionDesc;
@@ -51,6 +55,7 @@ public class CubeTupleConverter {
     final Cuboid cuboid;
     final TupleInfo tupleInfo;
     final List<IDerivedColumnFiller> derivedColFillers;
+    final List<LookupStringTable> usedLookupTables;
 
     final int[] gtColIdx;
     final int[] tupleIdx;
@@ -62,12 +67,18 @@ public class CubeTupleConverter {
     
     final int nSelectedDims;
 
+    // per dimension, encoded value -> decoded value, so each distinct value is decoded and converted only once
+    final List<Map<ByteArray, DecodedValue>> dimDecodeCaches;
+    final int dimDecodeCacheSize;
+    final BitSet derivedHostDims;
+
     public CubeTupleConverter(CubeSegment cubeSeg, Cuboid cuboid, //
             Set<TblColRef> selectedDimensions, Set<FunctionDesc> selectedMetrics, TupleInfo returnTupleInfo) {
         this.cubeSeg = cubeSeg;
         this.cuboid = cuboid;
         this.tupleInfo = returnTupleInfo;
         this.derivedColFillers = Lists.newArrayList();
+        this.usedLookupTables = Lists.newArrayList();
 
         List<TblColRef> cuboidDims = cuboid.getColumns();
         CuboidToGridTableMapping mapping = cuboid.getCuboidToGridTableMapping();
@@ -83,6 +94,13 @@ public class CubeTupleConverter {
         advMeasureFillers = Lists.newArrayListWithCapacity(1);
         advMeasureIndexInGTValues = Lists.newArrayListWithCapacity(1);
         
+        dimDecodeCaches = Lists.newArrayListWithCapacity(nSelectedDims);
+        for (int i = 0; i < nSelectedDims; i++) {
+            dimDecodeCaches.add(Maps.<ByteArray, DecodedValue> newHashMap());
+        }
+        dimDecodeCacheSize = cubeSeg.getConfig().getQueryDimensionDecodeCacheSize();
+        derivedHostDims = new BitSet(nSelectedDims);
+
         int iii = 0;
 
         // pre-calculate dimension index mapping to tuple
@@ -143,18 +161,24 @@ public class CubeTupleConverter {
 
     public List<IAdvMeasureFiller> translateResult(GTRecord record, Tuple tuple) {
 
-        record.getValues(gtColIdx, gtValues);
-
-        // dimensions
+        // dimensions, decoded only when the tuple or a derived column needs them
         for (int i = 0; i < nSelectedDims; i++) {
             int ti = tupleIdx[i];
+            if (ti < 0 && !derivedHostDims.get(i)) {
+                continue;
+            }
+            DecodedValue decoded = decodeDimension(record, i);
+            gtValues[i] = decoded.string;
             if (ti >= 0) {
-                tuple.setDimensionValue(ti, toString(gtValues[i]));
+                tuple.setConvertedDimensionValue(ti, decoded.value);
             }
         }
 
         // measures
+        IGTCodeSystem codeSystem = record.getInfo().getCodeSystem();
         for (int i = nSelectedDims; i < gtColIdx.length; i++) {
+            ByteArray code = record.get(gtColIdx[i]);
+            gtValues[i] = code.array() == null ? null : codeSystem.decodeColumnValue(gtColIdx[i], code.asBuffer());
             int ti = tupleIdx[i];
             if (ti >= 0 && measureTypes[i] != null) {
                 measureTypes[i].fillTupleSimply(tuple, ti, gtValues[i]);
@@ -178,6 +202,57 @@ public class CubeTupleConverter {
         }
     }
 
+    private DecodedValue decodeDimension(GTRecord record, int i) {
+        ByteArray code = record.get(gtColIdx[i]);
+        if (code.array() == null) {
+            return DecodedValue.NULL;
+        }
+
+        Map<ByteArray, DecodedValue> cache = dimDecodeCaches.get(i);
+        DecodedValue decoded = cache.get(code);
+        if (decoded == null) {
+            String string = toString(record.getInfo().getCodeSystem().decodeColumnValue(gtColIdx[i], code.asBuffer()));
+            int ti = tupleIdx[i];
+            Object value = ti >= 0 ? Tuple.convertOptiqCellValue(string, tupleInfo.getDataTypeName(ti)) : null;
+            decoded = new DecodedValue(string, value);
+
+            // a high cardinality dimension stops filling its cache, values beyond the limit are decoded each time
+            if (cache.size() < dimDecodeCacheSize) {
+                cache.put(code.copy(), decoded);
+            }
+        }
+        return decoded;
+    }
+
+    private static class DecodedValue {
+        static final DecodedValue NULL = new DecodedValue(null, null);
+
+        final String string; // as kept in the dictionary, used for derived column lookup
+        final Object value; // as typed in the tuple
+
+        DecodedValue(String string, Object value) {
+            this.string = string;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Releases the lookup tables used to fill derived columns.
+     */
+    public void close() {
+        CubeManager cubeMgr = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig());
+        for (LookupStringTable lookupTable : usedLookupTables) {
+            cubeMgr.releaseLookupTable(lookupTable);
+        }
+        usedLookupTables.clear();
+    }
+
+    private LookupStringTable getLookupTable(CubeSegment cubeSeg, DimensionDesc dim) {
+        LookupStringTable lookupTable = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig()).getLookupTable(cubeSeg, dim);
+        usedLookupTables.add(lookupTable);
+        return lookupTable;
+    }
+
     private interface IDerivedColumnFiller {
         public void fillDerivedColumns(Object[] gtValues, Tuple tuple);
     }
@@ -201,11 +276,15 @@ public class CubeTupleConverter {
         if ((allHostsPresent && needCopyDerived) == false)
             return null;
 
+        for (int i = 0; i < hostTmpIdx.length; i++) {
+            if (hostTmpIdx[i] < nSelectedDims)
+                derivedHostDims.set(hostTmpIdx[i]);
+        }
+
         switch (deriveInfo.type) {
         case LOOKUP:
             return new IDerivedColumnFiller() {
-                CubeManager cubeMgr = CubeManager.getInstance(cubeSeg.getCubeInstance().getConfig());
-                LookupStringTable lookupTable = cubeMgr.getLookupTable(cubeSeg, deriveInfo.dimension);
+                LookupStringTable lookupTable = getLookupTable(cubeSeg, deriveInfo.dimension);
                 int[] derivedColIdx = initDerivedColIdx();
                 Array<String> lookupKey = new Array<String>(new String[hostTmpIdx.length]);
 
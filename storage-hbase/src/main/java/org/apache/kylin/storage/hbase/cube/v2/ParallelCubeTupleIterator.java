@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Scans the segments concurrently on a thread pool shared by all queries, and returns the tuples in the order
+ * records arrive. One query takes at most "parallelism" threads of the pool, each of them scans segments one by one. A bounded queue between the scanning threads and the caller holds back a fast
+ * segment when the caller can't keep up.
+ * <p/>
+ * Tuples of the same group may come from different segments, they are aggregated by the query engine
+ * just like the sequential case.
+ */
+public class ParallelCubeTupleIterator extends SequentialCubeTupleIterator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelCubeTupleIterator.class);
+
+    static final int BATCH_SIZE = 1000;
+
+    private static ExecutorService scanPool;
+
+    private final List<CubeSegmentScanner> scanners;
+    private final CubeTupleConverter[] converters;
+    private final BlockingQueue<RecordBatch> queue;
+    private final AtomicInteger nextSegment = new AtomicInteger(0); // segments below it are claimed by a worker or by close()
+    private final List<Future<?>> workers;
+
+    private volatile boolean closed = false;
+    private int remainingSegments;
+    private RecordBatch curBatch;
+    private int curBatchIndex;
+
+    public ParallelCubeTupleIterator(List<CubeSegmentScanner> scanners, Cuboid cuboid, Set<TblColRef> selectedDimensions, //
+            Set<FunctionDesc> selectedMetrics, TupleInfo returnTupleInfo, StorageContext context, int parallelism, int queueSize) {
+        super(Collections.<CubeSegmentScanner> emptyList(), cuboid, selectedDimensions, selectedMetrics, returnTupleInfo, context);
+        this.scanners = scanners;
+        this.converters = new CubeTupleConverter[scanners.size()];
+        this.queue = new ArrayBlockingQueue<RecordBatch>(queueSize);
+        this.remainingSegments = scanners.size();
+
+        int threads = Math.max(1, Math.min(parallelism, scanners.size()));
+        logger.info("Scan {} segments with {} threads", scanners.size(), threads);
+        ExecutorService pool = getScanPool(KylinConfig.getInstanceFromEnv());
+        this.workers = Lists.newArrayListWithCapacity(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(new SegmentScanWorker()));
+        }
+    }
+
+    private static synchronized ExecutorService getScanPool(KylinConfig config) {
+        if (scanPool == null) {
+            int threads = config.getQuerySegmentScanThreads();
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+            tpe.allowCoreThreadTimeOut(true);
+
+            logger.info("Creating segment scan thread pool with {} threads", threads);
+            scanPool = tpe;
+        }
+        return scanPool;
+    }
+
+    @Override
+    protected GTRecord nextRecord() {
+        while (curBatch == null || curBatchIndex >= curBatch.records.size()) {
+            curBatch = null;
+            if (remainingSegments == 0)
+                return null;
+
+            RecordBatch batch = takeBatch();
+            if (batch.error != null) {
+                throw new RuntimeException("Error when scanning segment " + scanners.get(batch.segmentIndex).cubeSeg, batch.error);
+            }
+            if (batch.isEnd()) {
+                remainingSegments--;
+                continue;
+            }
+
+            curBatch = batch;
+            curBatchIndex = 0;
+            curTupleConverter = getConverter(batch.segmentIndex);
+        }
+        return curBatch.records.get(curBatchIndex++);
+    }
+
+    private RecordBatch takeBatch() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when waiting for segment scan results", e);
+        }
+    }
+
+    private CubeTupleConverter getConverter(int segmentIndex) {
+        if (converters[segmentIndex] == null) {
+            converters[segmentIndex] = new CubeTupleConverter(scanners.get(segmentIndex).cubeSeg, cuboid, selectedDimensions, selectedMetrics, tupleInfo);
+        }
+        return converters[segmentIndex];
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        // stop the running scans, they close their own scanners; then close the scanners never started
+        for (Future<?> worker : workers) {
+            worker.cancel(true);
+        }
+        int i;
+        while ((i = nextSegment.getAndIncrement()) < scanners.size()) {
+            close(scanners.get(i));
+        }
+        queue.clear();
+
+        for (CubeTupleConverter converter : converters) {
+            if (converter != null)
+                converter.close();
+        }
+
+        super.close();
+    }
+
+    private class SegmentScanWorker implements Runnable {
+
+        @Override
+        public void run() {
+            int i;
+            while (!closed && (i = nextSegment.getAndIncrement()) < scanners.size()) {
+                scan(i, scanners.get(i));
+            }
+        }
+
+        private void scan(int segmentIndex, CubeSegmentScanner scanner) {
+            long startTime = System.currentTimeMillis();
+            Throwable error = null;
+            try {
+                // records from the scanner are reused, batch up copies of them
+                ImmutableBitSet columns = scanner.scanRequest == null ? null : scanner.scanRequest.getColumns();
+                List<GTRecord> records = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                for (GTRecord record : scanner) {
+                    if (closed)
+                        return;
+
+                    records.add(columns == null ? record.copy() : record.copy(columns));
+                    if (records.size() == BATCH_SIZE) {
+                        put(new RecordBatch(segmentIndex, records, null));
+                        records = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                    }
+                }
+                if (!records.isEmpty()) {
+                    put(new RecordBatch(segmentIndex, records, null));
+                }
+            } catch (Throwable e) {
+                logger.error("Error when scanning segment " + scanner.cubeSeg, e);
+                error = e;
+            } finally {
+                close(scanner);
+                long millis = System.currentTimeMillis() - startTime;
+                context.addSegmentScanTime(scanner.cubeSeg.toString(), millis);
+                logger.info("Segment {} scanned in {} ms", scanner.cubeSeg, millis);
+                put(new RecordBatch(segmentIndex, null, error));
+            }
+        }
+
+        // blocks when the queue is full, gives up once the iterator is closed
+        private void put(RecordBatch batch) {
+            try {
+                while (!closed) {
+                    if (queue.offer(batch, 100, TimeUnit.MILLISECONDS))
+                        return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class RecordBatch {
+        final int segmentIndex;
+        final List<GTRecord> records; // null marks the end of a segment
+        final Throwable error;
+
+        RecordBatch(int segmentIndex, List<GTRecord> records, Throwable error) {
+            this.segmentIndex = segmentIndex;
+            this.records = records;
+            this.error = error;
+        }
+
+        boolean isEnd() {
+            return records == null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.gridtable.GTScanRangePlanner;
+import org.apache.kylin.gridtable.GTScanRequest;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Builds the hbase raw scans of a cuboid from the filter of GTScanRequest, using nothing but the GTInfo,
+ * so that neither the scan ranges nor the fuzzy keys need to be shipped with every endpoint request.
+ *
+ * The keys are the same as CubeHBaseRPC builds with the row key encoders, with the shard part left
+ * as 0, to be filled by the region.
+ */
+public class RawScanPlanner {
+
+    private final ImmutableBitSet primaryKey;
+    private final int[] keyColumnLengths;
+    private final byte[] cuboidIdBytes;
+    private final int headerLength;
+    private final int bodyLength;
+
+    public RawScanPlanner(GTInfo info, long cuboidId, int rowkeyPreambleSize) {
+        this.primaryKey = info.getPrimaryKey();
+        this.keyColumnLengths = new int[primaryKey.trueBitCount()];
+        int len = 0;
+        for (int i = 0; i < keyColumnLengths.length; i++) {
+            keyColumnLengths[i] = info.getCodeSystem().maxCodeLength(primaryKey.trueBitAt(i));
+            len += keyColumnLengths[i];
+        }
+        this.bodyLength = len;
+        this.cuboidIdBytes = Bytes.toBytes(cuboidId);
+        this.headerLength = rowkeyPreambleSize;
+    }
+
+    /**
+     * Plans the scan ranges and fuzzy keys from the filter of the request, the same way GTScanRangePlanner does
+     * on the query server. The time range of the segment is unknown here, so the ranges are not pruned by it,
+     * which costs nothing as the htable holds no row of other segments.
+     * 
+     * @param template provides the hbase columns, caching and max result size of all the scans
+     */
+    public List<RawScan> planRawScans(GTScanRequest scanReq, RawScan template) {
+        GTInfo info = scanReq.getInfo();
+        List<GTScanRange> ranges = new GTScanRangePlanner(info, null, null, scanReq.getFilterPushDown()).planScanRanges();
+        if (ranges.isEmpty()) {
+            // the query server saw rows to scan, so scan the whole cuboid and leave it to the filter
+            ranges = Lists.newArrayList(new GTScanRange(new GTRecord(info), new GTRecord(info)));
+        }
+        return planRawScans(ranges, template);
+    }
+
+    /**
+     * @param template provides the hbase columns, caching and max result size of all the scans
+     */
+    public List<RawScan> planRawScans(List<GTScanRange> ranges, RawScan template) {
+        List<RawScan> ret = Lists.newArrayListWithCapacity(ranges.size());
+        for (GTScanRange range : ranges) {
+            byte[] start = encodeKey(range.pkStart, RowConstants.ROWKEY_LOWER_BYTE);
+            byte[] end = encodeKey(range.pkEnd, RowConstants.ROWKEY_UPPER_BYTE);
+            end = Arrays.copyOf(end, end.length + 1);//append extra 0 to the end key to make it inclusive while scanning
+
+            ret.add(new RawScan(start, end, template.hbaseColumns, translateFuzzyKeys(range.fuzzyKeys), template.hbaseCaching, template.hbaseMaxResultSize));
+        }
+        return ret;
+    }
+
+    /**
+     * Divides the raw scans of a region into at most parallelism groups that can be visited concurrently.
+     * When there are fewer scans than groups, the bounded scans are first split evenly by key. The groups
+     * are contiguous and keep the order of the scans, so that sorted scans give groups in key order.
+     */
+    public static List<List<RawScan>> partitionRawScans(List<RawScan> rawScans, int parallelism) {
+        if (rawScans.isEmpty()) {
+            return Collections.singletonList(rawScans);
+        }
+
+        List<RawScan> scans = rawScans;
+        if (scans.size() < parallelism) {
+            int piecesPerScan = (parallelism + scans.size() - 1) / scans.size();
+            scans = Lists.newArrayList();
+            for (RawScan rawScan : rawScans) {
+                scans.addAll(splitByKey(rawScan, piecesPerScan));
+            }
+        }
+
+        int groupCount = Math.min(parallelism, scans.size());
+        List<List<RawScan>> ret = Lists.newArrayListWithCapacity(groupCount);
+        int from = 0;
+        for (int i = 0; i < groupCount; i++) {
+            int to = (int) ((long) scans.size() * (i + 1) / groupCount);
+            ret.add(Lists.newArrayList(scans.subList(from, to)));
+            from = to;
+        }
+        return ret;
+    }
+
+    /**
+     * Drops the raw scans, or the leading part of a raw scan, visited by previous pages. The row
+     * of resumeKey itself has been returned, so the visit continues from the smallest row after it.
+     */
+    public static List<RawScan> skipVisitedRows(List<RawScan> rawScans, byte[] resumeKey) {
+        byte[] resumeFrom = Bytes.add(resumeKey, new byte[] { 0 });
+        List<RawScan> ret = Lists.newArrayList();
+        for (RawScan rawScan : rawScans) {
+            if (rawScan.endKey != null && Bytes.compareTo(rawScan.endKey, resumeFrom) <= 0) {
+                continue;
+            }
+            if (rawScan.startKey == null || Bytes.compareTo(rawScan.startKey, resumeFrom) < 0) {
+                RawScan resumed = new RawScan(rawScan);
+                resumed.startKey = resumeFrom;
+                rawScan = resumed;
+            }
+            ret.add(rawScan);
+        }
+        return ret;
+    }
+
+    private static List<RawScan> splitByKey(RawScan rawScan, int pieces) {
+        if (pieces < 2 || rawScan.startKey == null || rawScan.endKey == null) {
+            return Collections.singletonList(rawScan);
+        }
+
+        byte[][] bounds;
+        try {
+            bounds = Bytes.split(rawScan.startKey, rawScan.endKey, pieces - 1);
+        } catch (IllegalArgumentException e) {
+            bounds = null; // e.g. a single row, whose end key is the start key plus a 0
+        }
+        if (bounds == null) {
+            return Collections.singletonList(rawScan); // too narrow to split
+        }
+
+        List<RawScan> ret = Lists.newArrayListWithCapacity(pieces);
+        for (int i = 0; i < pieces; i++) {
+            RawScan piece = new RawScan(rawScan);
+            piece.startKey = bounds[i];
+            piece.endKey = bounds[i + 1];
+            ret.add(piece);
+        }
+        return ret;
+    }
+
+    private List<Pair<byte[], byte[]>> translateFuzzyKeys(List<GTRecord> fuzzyKeys) {
+        if (fuzzyKeys == null || fuzzyKeys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Pair<byte[], byte[]>> ret = Lists.newArrayListWithCapacity(fuzzyKeys.size());
+        for (GTRecord fuzzyKey : fuzzyKeys) {
+            ret.add(Pair.newPair(encodeKey(fuzzyKey, RowConstants.BYTE_ZERO), encodeFuzzyMask(fuzzyKey)));
+        }
+        return ret;
+    }
+
+    /** shard (if any) as 0, then cuboid id, then primary key columns with blank filling the null ones */
+    private byte[] encodeKey(GTRecord record, byte blank) {
+        byte[] buf = new byte[headerLength + bodyLength];
+        record.exportColumns(primaryKey, new ByteArray(buf, headerLength, 0), blank);
+        System.arraycopy(cuboidIdBytes, 0, buf, headerLength - RowConstants.ROWKEY_CUBOIDID_LEN, RowConstants.ROWKEY_CUBOIDID_LEN);
+        return buf;
+    }
+
+    /** 1 for the bytes to ignore: the shard and the null columns */
+    private byte[] encodeFuzzyMask(GTRecord record) {
+        byte[] buf = new byte[headerLength + bodyLength];
+        Arrays.fill(buf, 0, headerLength - RowConstants.ROWKEY_CUBOIDID_LEN, RowConstants.BYTE_ONE);
+        int pos = headerLength;
+        for (int i = 0; i < keyColumnLengths.length; i++) {
+            byte fill = record.get(primaryKey.trueBitAt(i)).array() != null ? RowConstants.BYTE_ZERO : RowConstants.BYTE_ONE;
+            Arrays.fill(buf, pos, pos + keyColumnLengths[i], fill);
+            pos += keyColumnLengths[i];
+        }
+        return buf;
+    }
+}
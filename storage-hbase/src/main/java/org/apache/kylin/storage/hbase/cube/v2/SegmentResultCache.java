@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesSerializer;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Caches the records a READY segment returns for a scan request. The data of a READY segment never
+ * changes, so later queries with the same request on the segment reuse the records, and a query over
+ * many segments only visits the segments not cached yet, like the newly appended ones. The records of
+ * cached and fresh segments are aggregated together by the query engine the same as before.
+ *
+ * A result is only cached when it is read to the end and is no bigger than the max entry size.
+ */
+public class SegmentResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentResultCache.class);
+
+    private static Cache<ByteArray, CachedResult> cache;
+
+    private static class CachedResult {
+        final byte[] data;
+        final int recordCount;
+
+        CachedResult(byte[] data, int recordCount) {
+            this.data = data;
+            this.recordCount = recordCount;
+        }
+    }
+
+    private static synchronized Cache<ByteArray, CachedResult> getCache(KylinConfig config) {
+        if (cache == null) {
+            cache = CacheBuilder.newBuilder().maximumWeight(config.getQuerySegmentCacheMaxSize()).weigher(new Weigher<ByteArray, CachedResult>() {
+                @Override
+                public int weigh(ByteArray key, CachedResult value) {
+                    return value.data.length;
+                }
+            }).build();
+        }
+        return cache;
+    }
+
+    /**
+     * Whether the results of the current query can be cached. Not if the backdoor toggles change the coprocessor
+     * behavior or the shards to scan, which makes the segment return only part of its records.
+     */
+    public static boolean isEnabled(KylinConfig config) {
+        return config.isQuerySegmentCacheEnabled() && !BackdoorToggles.getDisableCache() //
+                && BackdoorToggles.getCoprocessorBehavior() == null && BackdoorToggles.getShardAssignment() == null;
+    }
+
+    /**
+     * The key of a scan request on a segment, the segment is identified by its uuid and last build time,
+     * so a refreshed segment never hits the result of the old one.
+     */
+    public static ByteArray keyOf(CubeSegment cubeSeg, Cuboid cuboid, GTScanRequest scanRequest) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        md.update(Bytes.toBytes(cubeSeg.getCubeInstance().getName()));
+        md.update(Bytes.toBytes(cubeSeg.getUuid()));
+        md.update(Bytes.toBytes(cubeSeg.getLastBuildTime()));
+        md.update(Bytes.toBytes(cuboid.getId()));
+
+        // the GTInfo is decided by the segment and cuboid
+        int bufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
+        while (true) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+                GTScanRequest.serializeWithoutInfo(scanRequest, buffer);
+                md.update(buffer.array(), 0, buffer.position());
+                break;
+            } catch (BufferOverflowException boe) {
+                bufferSize *= 4;
+            }
+        }
+        return new ByteArray(md.digest());
+    }
+
+    /**
+     * @return null if not cached
+     */
+    public static IGTScanner get(KylinConfig config, ByteArray key, GTInfo info, ImmutableBitSet columns) {
+        CachedResult result = getCache(config).getIfPresent(key);
+        if (result == null) {
+            return null;
+        }
+        return new CachedResultScanner(info, columns, result);
+    }
+
+    /**
+     * Returns an iterator the same as the given one, which caches the records once they are iterated to the end.
+     */
+    public static Iterator<GTRecord> caching(KylinConfig config, ByteArray key, ImmutableBitSet columns, Iterator<GTRecord> input) {
+        return new CachingIterator(getCache(config), key, columns, config.getQuerySegmentCacheMaxEntrySize(), input);
+    }
+
+    private static class CachingIterator implements Iterator<GTRecord> {
+        private final Cache<ByteArray, CachedResult> cache;
+        private final ByteArray key;
+        private final ImmutableBitSet columns;
+        private final int maxEntrySize;
+        private final Iterator<GTRecord> input;
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BytesSerializer.SERIALIZE_BUFFER_SIZE);
+        private int recordCount = 0;
+        private boolean done = false;
+
+        CachingIterator(Cache<ByteArray, CachedResult> cache, ByteArray key, ImmutableBitSet columns, int maxEntrySize, Iterator<GTRecord> input) {
+            this.cache = cache;
+            this.key = key;
+            this.columns = columns;
+            this.maxEntrySize = maxEntrySize;
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = input.hasNext();
+            if (!hasNext && !done) {
+                done = true;
+                if (buffer != null) {
+                    byte[] data = new byte[buffer.position()];
+                    System.arraycopy(buffer.array(), 0, data, 0, data.length);
+                    cache.put(key, new CachedResult(data, recordCount));
+                    buffer = null;
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public GTRecord next() {
+            GTRecord record = input.next();
+            if (buffer != null) {
+                append(record);
+            }
+            return record;
+        }
+
+        private void append(GTRecord record) {
+            int size = record.sizeOf(columns);
+            if (buffer.position() + size > maxEntrySize) {
+                // too big to cache, give up
+                buffer = null;
+                return;
+            }
+            if (buffer.remaining() < size) {
+                int newCapacity = Math.min(Math.max(buffer.capacity() * 2, buffer.position() + size), maxEntrySize);
+                ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+                buffer.flip();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+            }
+            record.exportColumns(columns, buffer);
+            recordCount++;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CachedResultScanner implements IGTScanner {
+        private final GTInfo info;
+        private final ImmutableBitSet columns;
+        private final CachedResult result;
+
+        CachedResultScanner(GTInfo info, ImmutableBitSet columns, CachedResult result) {
+            this.info = info;
+            this.columns = columns;
+            this.result = result;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return new Iterator<GTRecord>() {
+                private final ByteBuffer buffer = ByteBuffer.wrap(result.data);
+                private final GTRecord record = new GTRecord(info);
+                private int count = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return count < result.recordCount;
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    record.loadColumns(columns, buffer);
+                    count++;
+                    return record;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
 
     protected CubeSegmentScanner curScanner;
     protected Iterator<GTRecord> curRecordIterator;
+    protected long curScannerStartTime;
     protected CubeTupleConverter curTupleConverter;
     protected Tuple next;
     
@@ -89,29 +90,10 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
         }
 
         // get the next GTRecord
-        if (curScanner == null) {
-            if (scannerIterator.hasNext()) {
-                curScanner = scannerIterator.next();
-                curRecordIterator = curScanner.iterator();
-                if (curRecordIterator.hasNext()) {
-                    //if the segment does not has any tuples, don't bother to create a converter
-                    curTupleConverter = new CubeTupleConverter(curScanner.cubeSeg, cuboid, selectedDimensions, selectedMetrics, tupleInfo);
-                }
-            } else {
-                return false;
-            }
-        }
-        if (curRecordIterator.hasNext() == false) {
-            close(curScanner);
-            curScanner = null;
-            curRecordIterator = null;
-            curTupleConverter = null;
-            return hasNext();
-        }
+        GTRecord curRecord = nextRecord();
+        if (curRecord == null)
+            return false;
 
-        // now we have a GTRecord
-        GTRecord curRecord = curRecordIterator.next();
-        
         // translate into tuple
         advMeasureFillers = curTupleConverter.translateResult(curRecord, tuple);
 
@@ -137,6 +119,36 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
     }
     
 
+    /**
+     * Returns the next GTRecord and points curTupleConverter to the segment it comes from, or null if no more.
+     */
+    protected GTRecord nextRecord() {
+        if (curScanner == null) {
+            if (scannerIterator.hasNext()) {
+                curScanner = scannerIterator.next();
+                curScannerStartTime = System.currentTimeMillis();
+                curRecordIterator = curScanner.iterator();
+                if (curRecordIterator.hasNext()) {
+                    //if the segment does not has any tuples, don't bother to create a converter
+                    curTupleConverter = new CubeTupleConverter(curScanner.cubeSeg, cuboid, selectedDimensions, selectedMetrics, tupleInfo);
+                }
+            } else {
+                return null;
+            }
+        }
+        if (curRecordIterator.hasNext() == false) {
+            context.addSegmentScanTime(curScanner.cubeSeg.toString(), System.currentTimeMillis() - curScannerStartTime);
+            close(curScanner);
+            curScanner = null;
+            curRecordIterator = null;
+            if (curTupleConverter != null)
+                curTupleConverter.close();
+            curTupleConverter = null;
+            return nextRecord();
+        }
+        return curRecordIterator.next();
+    }
+
     @Override
     public ITuple next() {
         // fetch next record
@@ -168,6 +180,8 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
 
         if (curScanner != null)
             close(curScanner);
+        if (curTupleConverter != null)
+            curTupleConverter.close();
 
         while (scannerIterator.hasNext()) {
             close(scannerIterator.next());
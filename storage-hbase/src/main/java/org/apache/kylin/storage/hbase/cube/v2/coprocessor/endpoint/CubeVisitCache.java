@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.gridtable.GTInfo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Region server wide cache of the parsed KylinConfig and GTInfo of CubeVisitRequest, keyed by the md5
+ * of their serialized form. A request carrying only the digests is answered with cacheMiss if any of
+ * them is not found here, and the client resends the full payload.
+ */
+public class CubeVisitCache {
+
+    private static final int KYLIN_CONFIG_CACHE_SIZE = 16;
+    // GTInfo may carry dictionaries, so the cache is bounded by the serialized size, which underestimates
+    // the in-memory size of the parsed objects; keep the budget well below the heap to spare
+    private static final long GTINFO_CACHE_MAX_SERIALIZED_BYTES = 128L * 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Cache<ByteArray, KylinConfig> kylinConfigs = CacheBuilder.newBuilder().maximumSize(KYLIN_CONFIG_CACHE_SIZE).build();
+
+    private static final Cache<ByteArray, SizedGTInfo> gtInfos = CacheBuilder.newBuilder().maximumWeight(GTINFO_CACHE_MAX_SERIALIZED_BYTES).weigher(new Weigher<ByteArray, SizedGTInfo>() {
+        @Override
+        public int weigh(ByteArray key, SizedGTInfo value) {
+            return value.size;
+        }
+    }).build();
+
+    private static class SizedGTInfo {
+        final GTInfo info;
+        final int size; // serialized
+
+        SizedGTInfo(GTInfo info, int size) {
+            this.info = info;
+            this.size = size;
+        }
+    }
+
+    public static byte[] digest(byte[] bytes, int offset, int length) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update(bytes, offset, length);
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static byte[] digest(String kylinProperties) {
+        byte[] bytes = kylinProperties.getBytes(UTF8);
+        return digest(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return null if not cached
+     */
+    public static KylinConfig getKylinConfig(byte[] digest) {
+        return kylinConfigs.getIfPresent(new ByteArray(digest));
+    }
+
+    /**
+     * Parses the kylin properties, unless the same properties are cached already.
+     */
+    public static KylinConfig loadKylinConfig(String kylinProperties) {
+        ByteArray key = new ByteArray(digest(kylinProperties));
+        KylinConfig config = kylinConfigs.getIfPresent(key);
+        if (config == null) {
+            config = KylinConfig.createKylinConfigFromInputStream(IOUtils.toInputStream(kylinProperties));
+            kylinConfigs.put(key, config);
+        }
+        return config;
+    }
+
+    /**
+     * @return null if not cached
+     */
+    public static GTInfo getGTInfo(byte[] digest) {
+        SizedGTInfo cached = gtInfos.getIfPresent(new ByteArray(digest));
+        return cached == null ? null : cached.info;
+    }
+
+    /**
+     * Reads a GTInfo from the buffer (which must be backed by an array), and caches it by the md5 of the bytes read.
+     */
+    public static GTInfo loadGTInfo(ByteBuffer in) {
+        int start = in.position();
+        GTInfo info = GTInfo.serializer.deserialize(in);
+        int size = in.position() - start;
+        gtInfos.put(new ByteArray(digest(in.array(), in.arrayOffset() + start, size)), new SizedGTInfo(info, size));
+        return info;
+    }
+}
@@ -26,14 +26,23 @@ import java.net.InetAddress;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
-import org.apache.commons.lang.mutable.MutableBoolean;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.Coprocessor;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.client.Scan;
@@ -47,8 +56,12 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.CompressionUtils;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.gridtable.GTAggregateScanner;
+import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.IGTScanner;
@@ -62,6 +75,7 @@ import org.apache.kylin.storage.hbase.cube.v2.CellListIterator;
 import org.apache.kylin.storage.hbase.cube.v2.CubeHBaseRPC;
 import org.apache.kylin.storage.hbase.cube.v2.HBaseReadonlyStore;
 import org.apache.kylin.storage.hbase.cube.v2.RawScan;
+import org.apache.kylin.storage.hbase.cube.v2.RawScanPlanner;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest.IntList;
 import org.apache.kylin.storage.hbase.cube.v2.filter.MassInValueProviderFactoryImpl;
@@ -71,6 +85,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.HBaseZeroCopyByteString;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
@@ -85,6 +100,10 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
     //TODO limit memory footprint
     private static final int MEMORY_LIMIT = 500 * 1024 * 1024;
 
+    // threads shared by all the regions of the region server, so that queries visiting regions in parallel can not overload it,
+    // kept for the life of the region server (daemon threads) since other regions may use it while one region closes
+    private static final int PARALLEL_VISIT_THREADS = Runtime.getRuntime().availableProcessors();
+
     private RegionCoprocessorEnvironment env;
 
     private long serviceStartTime;
@@ -141,6 +160,291 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         }
     }
 
+    /**
+     * Concatenates the rows of some raw scans, gives up when the endpoint call times out or the scan is aborted.
+     * Each partition of a region has one of its own, so the progress of a partition is tracked here.
+     */
+    static class TimedCellListIterator implements CellListIterator {
+        private final List<InnerScannerAsIterator> cellListsForeachRawScan;
+        private final Iterator<List<Cell>> allCellLists;
+        private final long startTime;
+        private final long timeout;
+
+        private volatile boolean normalComplete = true;
+        private volatile boolean aborted = false;
+        private Cell lastVisitedCell;
+        private int counter = 0;
+
+        public TimedCellListIterator(List<InnerScannerAsIterator> cellListsForeachRawScan, long startTime, long timeout) {
+            this.cellListsForeachRawScan = cellListsForeachRawScan;
+            this.allCellLists = Iterators.concat(cellListsForeachRawScan.iterator());
+            this.startTime = startTime;
+            this.timeout = timeout;
+        }
+
+        /** false if the scan gave up because of timeout */
+        public boolean isNormalComplete() {
+            return normalComplete;
+        }
+
+        public Cell getLastVisitedCell() {
+            return lastVisitedCell;
+        }
+
+        /** makes the scan end at the next row, can be called from another thread */
+        public void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (CellListIterator closeable : cellListsForeachRawScan) {
+                closeable.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (aborted) {
+                return false;
+            }
+            if (counter % 1000 == 1) {
+                if (System.currentTimeMillis() - startTime > timeout) {
+                    normalComplete = false;
+                    logger.error("scanner aborted because timeout");
+                    return false;
+                }
+            }
+
+            if (counter % 100000 == 1) {
+                logger.info("Scanned " + counter + " rows.");
+            }
+            counter++;
+            return allCellLists.hasNext();
+        }
+
+        @Override
+        public List<Cell> next() {
+            List<Cell> cells = allCellLists.next();
+            lastVisitedCell = cells.get(0);
+            return cells;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns the rows aggregated by each partition of a region one after another, to be merged by another aggregation.
+     */
+    static class PartitionResultsScanner implements IGTScanner {
+        private final GTInfo info;
+        private final List<IGTScanner> partitionScanners;
+        private final List<Iterator<GTRecord>> partitionResults;
+
+        public PartitionResultsScanner(GTInfo info, List<IGTScanner> partitionScanners, List<Iterator<GTRecord>> partitionResults) {
+            this.info = info;
+            this.partitionScanners = partitionScanners;
+            this.partitionResults = partitionResults;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            int count = 0;
+            for (IGTScanner scanner : partitionScanners) {
+                count += scanner.getScannedRowCount();
+            }
+            return count;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return Iterators.concat(partitionResults.iterator());
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (IGTScanner scanner : partitionScanners) {
+                IOUtils.closeQuietly(scanner);
+            }
+        }
+    }
+
+    // created by the class loader on first use, which makes it visible to all the threads safely without locking
+    private static class ParallelVisitPoolHolder {
+        static final ExecutorService POOL = Executors.newFixedThreadPool(PARALLEL_VISIT_THREADS, new DaemonThreadFactory());
+    }
+
+    static ExecutorService getParallelVisitPool() {
+        return ParallelVisitPoolHolder.POOL;
+    }
+
+    /**
+     * Aggregates one partition of a region on a pool thread. The region scanners of the partition are opened by the
+     * handler thread, which must not close them while the task is still reading, see {@link #cancel()}.
+     */
+    private static class PartitionTask implements Callable<Iterator<GTRecord>> {
+        final HRegion region;
+        final TimedCellListIterator input;
+        final IGTScanner scanner;
+        final AtomicBoolean claimed = new AtomicBoolean(false); // by the task when it starts, or by cancel() before that
+        final CountDownLatch done = new CountDownLatch(1);
+
+        PartitionTask(HRegion region, TimedCellListIterator input, IGTScanner scanner) {
+            this.region = region;
+            this.input = input;
+            this.scanner = scanner;
+        }
+
+        @Override
+        public Iterator<GTRecord> call() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                return null; // cancelled before start
+            }
+            try {
+                region.startRegionOperation();
+                try {
+                    return scanner.iterator();
+                } finally {
+                    region.closeRegionOperation();
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Stops the task, and returns only when it no longer reads the region scanners.
+         */
+        void cancel() {
+            input.abort();
+            if (claimed.compareAndSet(false, true)) {
+                return; // never started
+            }
+
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Aggregates each partition of the region in a thread of its own, then merges the partial results. The partitions
+     * and the final merge share the aggregation memory of the request.
+     */
+    private IGTScanner aggregateInParallel(HRegion region, List<TimedCellListIterator> partitionInputs, CubeVisitProtos.CubeVisitRequest request, ByteBuffer scanReqBody, GTScanRequest scanReq, List<Pair<byte[], byte[]>> hbaseColumns, List<List<Integer>> hbaseColumnsToGT) throws IOException {
+        scanReq.setAggrCacheGB(scanReq.getAggrCacheGB() / (partitionInputs.size() + 1));
+
+        List<IGTScanner> partitionScanners = Lists.newArrayListWithCapacity(partitionInputs.size());
+        boolean succeeded = false;
+        try {
+            for (TimedCellListIterator partitionInput : partitionInputs) {
+                GTScanRequest partitionReq = copyScanRequest(scanReqBody, scanReq);
+                IGTStore store = new HBaseReadonlyStore(partitionInput, partitionReq, hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize());
+                // not streamed, so that iterator() returns only after the whole partition is aggregated
+                partitionScanners.add(partitionReq.decorateScanner(store.scan(partitionReq), true, true, false));
+            }
+            succeeded = true;
+        } finally {
+            if (!succeeded) {
+                for (IGTScanner scanner : partitionScanners) {
+                    IOUtils.closeQuietly(scanner);
+                }
+            }
+        }
+        return aggregatePartitions(region, partitionInputs, partitionScanners, scanReq);
+    }
+
+    /**
+     * Iterates each partition scanner on the pool, and merges their results by the aggregation of the request. The
+     * partition scanners are closed along with the returned scanner, or before this method throws. The first failed
+     * partition cancels the others right away.
+     */
+    static IGTScanner aggregatePartitions(HRegion region, List<TimedCellListIterator> partitionInputs, List<IGTScanner> partitionScanners, GTScanRequest scanReq) throws IOException {
+        List<PartitionTask> tasks = Lists.newArrayListWithCapacity(partitionScanners.size());
+        CompletionService<Iterator<GTRecord>> completionService = new ExecutorCompletionService<Iterator<GTRecord>>(getParallelVisitPool());
+        boolean succeeded = false;
+        try {
+            for (int i = 0; i < partitionScanners.size(); i++) {
+                PartitionTask task = new PartitionTask(region, partitionInputs.get(i), partitionScanners.get(i));
+                tasks.add(task);
+                completionService.submit(task);
+            }
+
+            // in the order they complete, the merge does not depend on the order
+            List<Iterator<GTRecord>> partitionResults = Lists.newArrayListWithCapacity(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                partitionResults.add(completionService.take().get());
+            }
+            succeeded = true;
+            return new GTAggregateScanner(new PartitionResultsScanner(scanReq.getInfo(), partitionScanners, partitionResults), scanReq);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while aggregating partitions of the region", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Error when aggregating a partition of the region", e.getCause());
+        } finally {
+            if (!succeeded) {
+                cancelPartitions(tasks, partitionScanners);
+            }
+        }
+    }
+
+    /**
+     * Each partition needs a scan request of its own, as the filters keep the values of the row being evaluated.
+     * The copies are deserialized from the request body that follows the GTInfo, sharing the parsed GTInfo.
+     */
+    private GTScanRequest copyScanRequest(ByteBuffer scanReqBody, GTScanRequest scanReq) {
+        GTScanRequest copy = GTScanRequest.deserializeWithInfo(scanReq.getInfo(), scanReqBody.duplicate());
+        copy.setAggrCacheGB(scanReq.getAggrCacheGB());
+        return copy;
+    }
+
+    /**
+     * Stops all the partitions and waits until none of them reads the region any more, only then the region scanners
+     * can be closed.
+     */
+    private static void cancelPartitions(List<PartitionTask> tasks, List<IGTScanner> partitionScanners) {
+        for (PartitionTask task : tasks) {
+            task.input.abort();
+        }
+        for (PartitionTask task : tasks) {
+            task.cancel();
+        }
+        for (IGTScanner scanner : partitionScanners) {
+            IOUtils.closeQuietly(scanner);
+        }
+    }
+
+    private static boolean isNormalComplete(List<TimedCellListIterator> partitionInputs) {
+        for (TimedCellListIterator input : partitionInputs) {
+            if (!input.isNormalComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void updateRawScanByCurrentRegion(RawScan rawScan, HRegion region, int shardLength) {
         if (shardLength == 0) {
             return;
@@ -150,6 +454,64 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         Bytes.putBytes(rawScan.endKey, 0, regionStartKey, 0, shardLength);
     }
 
+    /**
+     * Also makes the config of the request the env instance, which the gridtable code of the region server reads,
+     * whether the config was parsed or found in cache.
+     * 
+     * @return null if the request carries only the digest and the config is not cached
+     */
+    private KylinConfig loadKylinConfig(CubeVisitProtos.CubeVisitRequest request) {
+        KylinConfig config;
+        if (request.hasKylinPropertiesDigest()) {
+            config = CubeVisitCache.getKylinConfig(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getKylinPropertiesDigest()));
+        } else {
+            config = CubeVisitCache.loadKylinConfig(request.getKylinProperties());
+        }
+        if (config != null) {
+            KylinConfig.setKylinConfigInEnv(config);
+        }
+        return config;
+    }
+
+    /**
+     * Reads the GTInfo ahead of the scan request in the input, if it is sent rather than its digest.
+     * 
+     * @return null if the request carries only the digest and the GTInfo is not cached
+     */
+    private GTInfo loadGTInfo(CubeVisitProtos.CubeVisitRequest request, ByteBuffer in) {
+        if (request.hasGtInfoDigest()) {
+            return CubeVisitCache.getGTInfo(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getGtInfoDigest()));
+        }
+        return CubeVisitCache.loadGTInfo(in);
+    }
+
+    private CubeVisitProtos.CubeVisitResponse cacheMissResponse() throws IOException {
+        return CubeVisitProtos.CubeVisitResponse.newBuilder().//
+                setCacheMiss(true).//
+                setCompressedRows(ByteString.EMPTY).//
+                setStats(CubeVisitProtos.CubeVisitResponse.Stats.newBuilder().//
+                        setScannedRowCount(0).//
+                        setAggregatedRowCount(0).//
+                        setServiceStartTime(serviceStartTime).//
+                        setServiceEndTime(System.currentTimeMillis()).//
+                        setHostname(InetAddress.getLocalHost().getHostName()).//
+                        setEtcMsg("cache miss").//
+                        setNormalComplete(1).build())
+                .//
+                build();
+    }
+
+    private List<RawScan> deserializeRawScans(ByteBuffer in, GTScanRequest scanReq, CubeVisitProtos.CubeVisitRequest request) {
+        List<RawScan> sent = deserializeRawScans(in);
+        if (!request.hasCuboidId()) {
+            return sent;
+        }
+
+        // only a template scan is sent, plan the scan ranges and raw scans from the filter here
+        RawScanPlanner planner = new RawScanPlanner(scanReq.getInfo(), request.getCuboidId(), request.getRowkeyPreambleSize());
+        return planner.planRawScans(scanReq, sent.get(0));
+    }
+
     private List<RawScan> deserializeRawScans(ByteBuffer in) {
         int rawScanCount = BytesUtil.readVInt(in);
         List<RawScan> ret = Lists.newArrayList();
@@ -160,6 +522,25 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         return ret;
     }
 
+    /**
+     * All raw scans fall in the shard of current region, if they are also sorted and disjoint,
+     * the concatenated rows come in rowkey order.
+     */
+    private boolean isInRowkeyOrder(List<RawScan> rawScans) {
+        for (int i = 1; i < rawScans.size(); i++) {
+            if (Bytes.compareTo(rawScans.get(i - 1).endKey, rawScans.get(i).startKey) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteString cutRowBlock(ByteArrayOutputStream outputStream, boolean compress) throws IOException {
+        byte[] block = outputStream.toByteArray();
+        outputStream.reset();
+        return HBaseZeroCopyByteString.wrap(compress ? CompressionUtils.compress(block) : block);
+    }
+
     private void appendProfileInfo(StringBuilder sb, String info) {
         if (info != null) {
             sb.append(info);
@@ -183,19 +564,23 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             region = env.getRegion();
             region.startRegionOperation();
 
-            // if user change kylin.properties on kylin server, need to manually redeploy coprocessor jar to update KylinConfig of Env.
-            KylinConfig.setKylinConfigFromInputStream(IOUtils.toInputStream(request.getKylinProperties()));
-            KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
-
             debugGitTag = region.getTableDesc().getValue(IRealizationConstants.HTableGitTag);
 
-            final GTScanRequest scanReq = GTScanRequest.serializer.deserialize(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getGtScanRequest())));
+            // config and GTInfo come from the region server wide cache when the request carries their digests
+            final KylinConfig kylinConfig = loadKylinConfig(request);
+            ByteBuffer scanReqIn = ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getGtScanRequest()));
+            GTInfo gtInfo = kylinConfig == null ? null : loadGTInfo(request, scanReqIn);
+            if (gtInfo == null) {
+                done.run(cacheMissResponse());
+                return;
+            }
+            final ByteBuffer scanReqBody = scanReqIn.slice(); // for the copies of the scan request, if any
+            final GTScanRequest scanReq = GTScanRequest.deserializeWithInfo(gtInfo, scanReqIn);
             List<List<Integer>> hbaseColumnsToGT = Lists.newArrayList();
             for (IntList intList : request.getHbaseColumnsToGTList()) {
                 hbaseColumnsToGT.add(intList.getIntsList());
             }
             CoprocessorBehavior behavior = CoprocessorBehavior.valueOf(request.getBehavior());
-            final List<RawScan> hbaseRawScans = deserializeRawScans(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getHbaseRawScan())));
 
             appendProfileInfo(sb, "start latency: " + (this.serviceStartTime - request.getStartTime()));
 
@@ -206,23 +591,45 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                 }
             });
 
-            final List<InnerScannerAsIterator> cellListsForeachRawScan = Lists.newArrayList();
+            final List<RawScan> hbaseRawScans = deserializeRawScans(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getHbaseRawScan())), scanReq, request);
 
             for (RawScan hbaseRawScan : hbaseRawScans) {
                 if (request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN > 0) {
                     //if has shard, fill region shard to raw scan start/end
                     updateRawScanByCurrentRegion(hbaseRawScan, region, request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN);
                 }
+            }
+            final boolean inRowkeyOrder = isInRowkeyOrder(hbaseRawScans);
+            final List<Pair<byte[], byte[]>> hbaseColumns = hbaseRawScans.get(0).hbaseColumns;
 
-                Scan scan = CubeHBaseRPC.buildScan(hbaseRawScan);
-                RegionScanner innerScanner = region.getScanner(scan);
-                regionScanners.add(innerScanner);
-
-                InnerScannerAsIterator cellListIterator = new InnerScannerAsIterator(innerScanner);
-                cellListsForeachRawScan.add(cellListIterator);
+            List<RawScan> rawScansToVisit = hbaseRawScans;
+            if (request.hasResumeKey()) {
+                rawScansToVisit = RawScanPlanner.skipVisitedRows(hbaseRawScans, HBaseZeroCopyByteString.zeroCopyGetBytes(request.getResumeKey()));
+                appendProfileInfo(sb, "resumed " + rawScansToVisit.size() + " of " + hbaseRawScans.size() + " raw scans");
             }
 
-            final Iterator<List<Cell>> allCellLists = Iterators.concat(cellListsForeachRawScan.iterator());
+            // a region can be visited by several threads when the rows are aggregated in the region and nothing depends on the visiting order
+            boolean doAggr = behavior.ordinal() >= CoprocessorBehavior.SCAN_FILTER_AGGR.ordinal();
+            int parallelism = request.hasParallelism() ? Math.min(request.getParallelism(), PARALLEL_VISIT_THREADS) : 1;
+            boolean parallel = parallelism > 1 && doAggr && scanReq.isAllowPreAggregation() && scanReq.hasAggregation() && !scanReq.hasStorageLimit();
+            List<List<RawScan>> partitions = parallel ? RawScanPlanner.partitionRawScans(rawScansToVisit, parallelism) : Collections.singletonList(rawScansToVisit);
+
+            final long startTime = this.serviceStartTime;
+            final long timeout = request.getTimeout();
+
+            List<TimedCellListIterator> partitionInputs = Lists.newArrayListWithCapacity(partitions.size());
+            for (List<RawScan> partition : partitions) {
+                List<InnerScannerAsIterator> cellListsForeachRawScan = Lists.newArrayList();
+                for (RawScan hbaseRawScan : partition) {
+                    Scan scan = CubeHBaseRPC.buildScan(hbaseRawScan);
+                    RegionScanner innerScanner = region.getScanner(scan);
+                    regionScanners.add(innerScanner);
+
+                    InnerScannerAsIterator cellListIterator = new InnerScannerAsIterator(innerScanner);
+                    cellListsForeachRawScan.add(cellListIterator);
+                }
+                partitionInputs.add(new TimedCellListIterator(cellListsForeachRawScan, startTime, timeout));
+            }
 
             if (behavior.ordinal() < CoprocessorBehavior.SCAN.ordinal()) {
                 //this is only for CoprocessorBehavior.RAW_SCAN case to profile hbase scan speed
@@ -240,55 +647,31 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                 scanReq.setAggrCacheGB(0); // disable mem check if so told
             }
 
-            final MutableBoolean scanNormalComplete = new MutableBoolean(true);
-            final long startTime = this.serviceStartTime;
-            final long timeout = request.getTimeout();
-
-            final CellListIterator cellListIterator = new CellListIterator() {
-
-                int counter = 0;
-
-                @Override
-                public void close() throws IOException {
-                    for (CellListIterator closeable : cellListsForeachRawScan) {
-                        closeable.close();
-                    }
-                }
-
-                @Override
-                public boolean hasNext() {
-                    if (counter % 1000 == 1) {
-                        if (System.currentTimeMillis() - startTime > timeout) {
-                            scanNormalComplete.setValue(false);
-                            logger.error("scanner aborted because timeout");
-                            return false;
-                        }
-                    }
-
-                    if (counter % 100000 == 1) {
-                        logger.info("Scanned " + counter + " rows.");
-                    }
-                    counter++;
-                    return allCellLists.hasNext();
-                }
-
-                @Override
-                public List<Cell> next() {
-                    return allCellLists.next();
-                }
-
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-            };
-
-            IGTStore store = new HBaseReadonlyStore(cellListIterator, scanReq, hbaseRawScans.get(0).hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize());
+            IGTScanner finalScanner;
+            if (partitionInputs.size() > 1) {
+                finalScanner = aggregateInParallel(region, partitionInputs, request, scanReqBody, scanReq, hbaseColumns, hbaseColumnsToGT);
+                appendProfileInfo(sb, "aggregated " + partitionInputs.size() + " partitions in parallel");
+            } else {
+                IGTStore store = new HBaseReadonlyStore(partitionInputs.get(0), scanReq, hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize());
+                IGTScanner rawScanner = store.scan(scanReq);
+                finalScanner = scanReq.decorateScanner(rawScanner, //
+                        behavior.ordinal() >= CoprocessorBehavior.SCAN_FILTER.ordinal(), //
+                        doAggr, //
+                        inRowkeyOrder);
+            }
 
-            IGTScanner rawScanner = store.scan(scanReq);
-            IGTScanner finalScanner = scanReq.decorateScanner(rawScanner, //
-                    behavior.ordinal() >= CoprocessorBehavior.SCAN_FILTER.ordinal(), //
-                    behavior.ordinal() >= CoprocessorBehavior.SCAN_FILTER_AGGR.ordinal());
+            // output is cut into independently compressed blocks, so neither side needs one big array for the whole region
+            final int rowBlockSize = request.hasRowBlockSize() ? request.getRowBlockSize() : 0;
+            // a page can only end between two hbase rows when every output row comes from the rows visited so far,
+            // i.e. rows are visited by one thread in rowkey order and there is no aggregation or limit in the region
+            boolean pageable = rowBlockSize > 0 && partitionInputs.size() == 1 && inRowkeyOrder && !scanReq.hasStorageLimit() && !(doAggr && scanReq.isAllowPreAggregation() && scanReq.hasAggregation());
+            final long pageSize = pageable && request.hasPageSize() ? request.getPageSize() : 0;
+            // without paging the whole output of the region is held in memory until the response is sent
+            final long maxUnpagedBytes = pageSize > 0 ? 0 : kylinConfig.getQueryEndpointMaxUnpagedBytes();
+            boolean outputTooLarge = false;
+            List<ByteString> rowBlocks = Lists.newArrayList();
+            long outputBytes = 0;
+            byte[] resumeKey = null;
 
             ByteBuffer buffer = ByteBuffer.allocate(BufferedMeasureEncoder.DEFAULT_BUFFER_SIZE);
 
@@ -296,7 +679,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             int finalRowCount = 0;
             for (GTRecord oneRecord : finalScanner) {
 
-                if (!scanNormalComplete.booleanValue()) {
+                if (!isNormalComplete(partitionInputs)) {
                     logger.error("aggregate iterator aborted because input iterator aborts");
                     break;
                 }
@@ -318,22 +701,49 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
                 outputStream.write(buffer.array(), 0, buffer.position());
                 finalRowCount++;
+                outputBytes += buffer.position();
+
+                if (rowBlockSize > 0 && outputStream.size() >= rowBlockSize) {
+                    rowBlocks.add(cutRowBlock(outputStream, kylinConfig.getCompressionResult()));
+                }
+                if (pageSize > 0 && outputBytes >= pageSize) {
+                    resumeKey = CellUtil.cloneRow(partitionInputs.get(0).getLastVisitedCell());
+                    break;
+                }
+                if (maxUnpagedBytes > 0 && outputBytes > maxUnpagedBytes) {
+                    outputTooLarge = true;
+                    break;
+                }
             }
             finalScanner.close();
+            if (outputTooLarge) {
+                throw new IOException("The output of region " + region.getRegionNameAsString() + " exceeds " + maxUnpagedBytes + " bytes and can not be paged as it is aggregated or limited in the region, " //
+                        + "narrow down the query or raise kylin.query.endpoint.max.unpaged.bytes");
+            }
+            final boolean scanNormalComplete = isNormalComplete(partitionInputs);
 
             appendProfileInfo(sb, "agg done");
 
             //outputStream.close() is not necessary
             byte[] compressedAllRows;
-            if (scanNormalComplete.booleanValue()) {
-                allRows = outputStream.toByteArray();
-            } else {
-                allRows = new byte[0];
-            }
-            if (!kylinConfig.getCompressionResult()) {
-                compressedAllRows = allRows;
+            if (rowBlockSize > 0) {
+                if (!scanNormalComplete) {
+                    rowBlocks.clear();
+                } else if (outputStream.size() > 0) {
+                    rowBlocks.add(cutRowBlock(outputStream, kylinConfig.getCompressionResult()));
+                }
+                compressedAllRows = new byte[0];
             } else {
-                compressedAllRows = CompressionUtils.compress(allRows);
+                if (scanNormalComplete) {
+                    allRows = outputStream.toByteArray();
+                } else {
+                    allRows = new byte[0];
+                }
+                if (!kylinConfig.getCompressionResult()) {
+                    compressedAllRows = allRows;
+                } else {
+                    compressedAllRows = CompressionUtils.compress(allRows);
+                }
             }
 
             appendProfileInfo(sb, "compress done");
@@ -347,6 +757,10 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             sb.append(" debugGitTag:" + debugGitTag);
 
             CubeVisitProtos.CubeVisitResponse.Builder responseBuilder = CubeVisitProtos.CubeVisitResponse.newBuilder();
+            responseBuilder.addAllCompressedRowBlocks(rowBlocks);
+            if (resumeKey != null && scanNormalComplete) {
+                responseBuilder.setResumeKey(HBaseZeroCopyByteString.wrap(resumeKey));
+            }
             done.run(responseBuilder.//
                     setCompressedRows(HBaseZeroCopyByteString.wrap(compressedAllRows)).//too many array copies 
                     setStats(CubeVisitProtos.CubeVisitResponse.Stats.newBuilder().//
@@ -359,7 +773,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                             setFreeSwapSpaceSize(freeSwapSpaceSize).//
                             setHostname(InetAddress.getLocalHost().getHostName()).// 
                             setEtcMsg(sb.toString()).//
-                            setNormalComplete(scanNormalComplete.booleanValue() ? 1 : 0).build())
+                            setNormalComplete(scanNormalComplete ? 1 : 0).build())
                     .//
                     build());
 
@@ -143,6 +143,108 @@ public final class CubeVisitProtos {
      */
     com.google.protobuf.ByteString
         getKylinPropertiesBytes();
+
+    // optional int32 rowBlockSize = 9;
+    /**
+     * <code>optional int32 rowBlockSize = 9;</code>
+     *
+     * <pre>
+     *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+     * </pre>
+     */
+    boolean hasRowBlockSize();
+    /**
+     * <code>optional int32 rowBlockSize = 9;</code>
+     *
+     * <pre>
+     *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+     * </pre>
+     */
+    int getRowBlockSize();
+
+    // optional int64 pageSize = 10;
+    /**
+     * <code>optional int64 pageSize = 10;</code>
+     *
+     * <pre>
+     *when positive, stop after about this many bytes and return a resumeKey
+     * </pre>
+     */
+    boolean hasPageSize();
+    /**
+     * <code>optional int64 pageSize = 10;</code>
+     *
+     * <pre>
+     *when positive, stop after about this many bytes and return a resumeKey
+     * </pre>
+     */
+    long getPageSize();
+
+    // optional bytes resumeKey = 11;
+    /**
+     * <code>optional bytes resumeKey = 11;</code>
+     *
+     * <pre>
+     *continue a paged visit after this hbase row
+     * </pre>
+     */
+    boolean hasResumeKey();
+    /**
+     * <code>optional bytes resumeKey = 11;</code>
+     *
+     * <pre>
+     *continue a paged visit after this hbase row
+     * </pre>
+     */
+    com.google.protobuf.ByteString getResumeKey();
+
+    // optional int64 cuboidId = 12;
+    /**
+     * <code>optional int64 cuboidId = 12;</code>
+     *
+     * <pre>
+     *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+     * </pre>
+     */
+    boolean hasCuboidId();
+    /**
+     * <code>optional int64 cuboidId = 12;</code>
+     *
+     * <pre>
+     *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+     * </pre>
+     */
+    long getCuboidId();
+
+    // optional bytes kylinPropertiesDigest = 13;
+    /**
+     * <code>optional bytes kylinPropertiesDigest = 13;</code>
+     */
+    boolean hasKylinPropertiesDigest();
+    /**
+     * <code>optional bytes kylinPropertiesDigest = 13;</code>
+     */
+    com.google.protobuf.ByteString getKylinPropertiesDigest();
+
+    // optional bytes gtInfoDigest = 14;
+    /**
+     * <code>optional bytes gtInfoDigest = 14;</code>
+     */
+    boolean hasGtInfoDigest();
+    /**
+     * <code>optional bytes gtInfoDigest = 14;</code>
+     */
+    com.google.protobuf.ByteString getGtInfoDigest();
+
+    // optional int32 parallelism = 15;
+    /**
+     * <code>optional int32 parallelism = 15;</code>
+     */
+    boolean hasParallelism();
+    /**
+     * <code>optional int32 parallelism = 15;</code>
+     */
+    int getParallelism();
   }
   /**
    * Protobuf type {@code CubeVisitRequest}
@@ -238,6 +340,41 @@ public final class CubeVisitProtos {
               kylinProperties_ = input.readBytes();
               break;
             }
+            case 72: {
+              bitField0_ |= 0x00000080;
+              rowBlockSize_ = input.readInt32();
+              break;
+            }
+            case 80: {
+              bitField0_ |= 0x00000100;
+              pageSize_ = input.readInt64();
+              break;
+            }
+            case 90: {
+              bitField0_ |= 0x00000200;
+              resumeKey_ = input.readBytes();
+              break;
+            }
+            case 96: {
+              bitField0_ |= 0x00000400;
+              cuboidId_ = input.readInt64();
+              break;
+            }
+            case 106: {
+              bitField0_ |= 0x00000800;
+              kylinPropertiesDigest_ = input.readBytes();
+              break;
+            }
+            case 114: {
+              bitField0_ |= 0x00001000;
+              gtInfoDigest_ = input.readBytes();
+              break;
+            }
+            case 120: {
+              bitField0_ |= 0x00002000;
+              parallelism_ = input.readInt32();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -1015,6 +1152,150 @@ public final class CubeVisitProtos {
       }
     }
 
+    // optional int32 rowBlockSize = 9;
+    public static final int ROWBLOCKSIZE_FIELD_NUMBER = 9;
+    private int rowBlockSize_;
+    /**
+     * <code>optional int32 rowBlockSize = 9;</code>
+     *
+     * <pre>
+     *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+     * </pre>
+     */
+    public boolean hasRowBlockSize() {
+      return ((bitField0_ & 0x00000080) == 0x00000080);
+    }
+    /**
+     * <code>optional int32 rowBlockSize = 9;</code>
+     *
+     * <pre>
+     *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+     * </pre>
+     */
+    public int getRowBlockSize() {
+      return rowBlockSize_;
+    }
+
+    // optional int64 pageSize = 10;
+    public static final int PAGESIZE_FIELD_NUMBER = 10;
+    private long pageSize_;
+    /**
+     * <code>optional int64 pageSize = 10;</code>
+     *
+     * <pre>
+     *when positive, stop after about this many bytes and return a resumeKey
+     * </pre>
+     */
+    public boolean hasPageSize() {
+      return ((bitField0_ & 0x00000100) == 0x00000100);
+    }
+    /**
+     * <code>optional int64 pageSize = 10;</code>
+     *
+     * <pre>
+     *when positive, stop after about this many bytes and return a resumeKey
+     * </pre>
+     */
+    public long getPageSize() {
+      return pageSize_;
+    }
+
+    // optional bytes resumeKey = 11;
+    public static final int RESUMEKEY_FIELD_NUMBER = 11;
+    private com.google.protobuf.ByteString resumeKey_;
+    /**
+     * <code>optional bytes resumeKey = 11;</code>
+     *
+     * <pre>
+     *continue a paged visit after this hbase row
+     * </pre>
+     */
+    public boolean hasResumeKey() {
+      return ((bitField0_ & 0x00000200) == 0x00000200);
+    }
+    /**
+     * <code>optional bytes resumeKey = 11;</code>
+     *
+     * <pre>
+     *continue a paged visit after this hbase row
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getResumeKey() {
+      return resumeKey_;
+    }
+
+    // optional int64 cuboidId = 12;
+    public static final int CUBOIDID_FIELD_NUMBER = 12;
+    private long cuboidId_;
+    /**
+     * <code>optional int64 cuboidId = 12;</code>
+     *
+     * <pre>
+     *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+     * </pre>
+     */
+    public boolean hasCuboidId() {
+      return ((bitField0_ & 0x00000400) == 0x00000400);
+    }
+    /**
+     * <code>optional int64 cuboidId = 12;</code>
+     *
+     * <pre>
+     *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+     * </pre>
+     */
+    public long getCuboidId() {
+      return cuboidId_;
+    }
+
+    // optional bytes kylinPropertiesDigest = 13;
+    public static final int KYLINPROPERTIESDIGEST_FIELD_NUMBER = 13;
+    private com.google.protobuf.ByteString kylinPropertiesDigest_;
+    /**
+     * <code>optional bytes kylinPropertiesDigest = 13;</code>
+     */
+    public boolean hasKylinPropertiesDigest() {
+      return ((bitField0_ & 0x00000800) == 0x00000800);
+    }
+    /**
+     * <code>optional bytes kylinPropertiesDigest = 13;</code>
+     */
+    public com.google.protobuf.ByteString getKylinPropertiesDigest() {
+      return kylinPropertiesDigest_;
+    }
+
+    // optional bytes gtInfoDigest = 14;
+    public static final int GTINFODIGEST_FIELD_NUMBER = 14;
+    private com.google.protobuf.ByteString gtInfoDigest_;
+    /**
+     * <code>optional bytes gtInfoDigest = 14;</code>
+     */
+    public boolean hasGtInfoDigest() {
+      return ((bitField0_ & 0x00001000) == 0x00001000);
+    }
+    /**
+     * <code>optional bytes gtInfoDigest = 14;</code>
+     */
+    public com.google.protobuf.ByteString getGtInfoDigest() {
+      return gtInfoDigest_;
+    }
+
+    // optional int32 parallelism = 15;
+    public static final int PARALLELISM_FIELD_NUMBER = 15;
+    private int parallelism_;
+    /**
+     * <code>optional int32 parallelism = 15;</code>
+     */
+    public boolean hasParallelism() {
+      return ((bitField0_ & 0x00002000) == 0x00002000);
+    }
+    /**
+     * <code>optional int32 parallelism = 15;</code>
+     */
+    public int getParallelism() {
+      return parallelism_;
+    }
+
     private void initFields() {
       behavior_ = "";
       gtScanRequest_ = com.google.protobuf.ByteString.EMPTY;
@@ -1024,6 +1305,13 @@ public final class CubeVisitProtos {
       startTime_ = 0L;
       timeout_ = 0L;
       kylinProperties_ = "";
+      rowBlockSize_ = 0;
+      pageSize_ = 0L;
+      resumeKey_ = com.google.protobuf.ByteString.EMPTY;
+      cuboidId_ = 0L;
+      kylinPropertiesDigest_ = com.google.protobuf.ByteString.EMPTY;
+      gtInfoDigest_ = com.google.protobuf.ByteString.EMPTY;
+      parallelism_ = 0;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -1089,6 +1377,27 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000040) == 0x00000040)) {
         output.writeBytes(8, getKylinPropertiesBytes());
       }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        output.writeInt32(9, rowBlockSize_);
+      }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        output.writeInt64(10, pageSize_);
+      }
+      if (((bitField0_ & 0x00000200) == 0x00000200)) {
+        output.writeBytes(11, resumeKey_);
+      }
+      if (((bitField0_ & 0x00000400) == 0x00000400)) {
+        output.writeInt64(12, cuboidId_);
+      }
+      if (((bitField0_ & 0x00000800) == 0x00000800)) {
+        output.writeBytes(13, kylinPropertiesDigest_);
+      }
+      if (((bitField0_ & 0x00001000) == 0x00001000)) {
+        output.writeBytes(14, gtInfoDigest_);
+      }
+      if (((bitField0_ & 0x00002000) == 0x00002000)) {
+        output.writeInt32(15, parallelism_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -1130,6 +1439,34 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(8, getKylinPropertiesBytes());
       }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(9, rowBlockSize_);
+      }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(10, pageSize_);
+      }
+      if (((bitField0_ & 0x00000200) == 0x00000200)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(11, resumeKey_);
+      }
+      if (((bitField0_ & 0x00000400) == 0x00000400)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(12, cuboidId_);
+      }
+      if (((bitField0_ & 0x00000800) == 0x00000800)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(13, kylinPropertiesDigest_);
+      }
+      if (((bitField0_ & 0x00001000) == 0x00001000)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(14, gtInfoDigest_);
+      }
+      if (((bitField0_ & 0x00002000) == 0x00002000)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(15, parallelism_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -1190,6 +1527,41 @@ public final class CubeVisitProtos {
         result = result && getKylinProperties()
             .equals(other.getKylinProperties());
       }
+      result = result && (hasRowBlockSize() == other.hasRowBlockSize());
+      if (hasRowBlockSize()) {
+        result = result && (getRowBlockSize()
+            == other.getRowBlockSize());
+      }
+      result = result && (hasPageSize() == other.hasPageSize());
+      if (hasPageSize()) {
+        result = result && (getPageSize()
+            == other.getPageSize());
+      }
+      result = result && (hasResumeKey() == other.hasResumeKey());
+      if (hasResumeKey()) {
+        result = result && getResumeKey()
+            .equals(other.getResumeKey());
+      }
+      result = result && (hasCuboidId() == other.hasCuboidId());
+      if (hasCuboidId()) {
+        result = result && (getCuboidId()
+            == other.getCuboidId());
+      }
+      result = result && (hasKylinPropertiesDigest() == other.hasKylinPropertiesDigest());
+      if (hasKylinPropertiesDigest()) {
+        result = result && getKylinPropertiesDigest()
+            .equals(other.getKylinPropertiesDigest());
+      }
+      result = result && (hasGtInfoDigest() == other.hasGtInfoDigest());
+      if (hasGtInfoDigest()) {
+        result = result && getGtInfoDigest()
+            .equals(other.getGtInfoDigest());
+      }
+      result = result && (hasParallelism() == other.hasParallelism());
+      if (hasParallelism()) {
+        result = result && (getParallelism()
+            == other.getParallelism());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -1235,6 +1607,34 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + KYLINPROPERTIES_FIELD_NUMBER;
         hash = (53 * hash) + getKylinProperties().hashCode();
       }
+      if (hasRowBlockSize()) {
+        hash = (37 * hash) + ROWBLOCKSIZE_FIELD_NUMBER;
+        hash = (53 * hash) + getRowBlockSize();
+      }
+      if (hasPageSize()) {
+        hash = (37 * hash) + PAGESIZE_FIELD_NUMBER;
+        hash = (53 * hash) + hashLong(getPageSize());
+      }
+      if (hasResumeKey()) {
+        hash = (37 * hash) + RESUMEKEY_FIELD_NUMBER;
+        hash = (53 * hash) + getResumeKey().hashCode();
+      }
+      if (hasCuboidId()) {
+        hash = (37 * hash) + CUBOIDID_FIELD_NUMBER;
+        hash = (53 * hash) + hashLong(getCuboidId());
+      }
+      if (hasKylinPropertiesDigest()) {
+        hash = (37 * hash) + KYLINPROPERTIESDIGEST_FIELD_NUMBER;
+        hash = (53 * hash) + getKylinPropertiesDigest().hashCode();
+      }
+      if (hasGtInfoDigest()) {
+        hash = (37 * hash) + GTINFODIGEST_FIELD_NUMBER;
+        hash = (53 * hash) + getGtInfoDigest().hashCode();
+      }
+      if (hasParallelism()) {
+        hash = (37 * hash) + PARALLELISM_FIELD_NUMBER;
+        hash = (53 * hash) + getParallelism();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -1365,6 +1765,20 @@ public final class CubeVisitProtos {
         bitField0_ = (bitField0_ & ~0x00000040);
         kylinProperties_ = "";
         bitField0_ = (bitField0_ & ~0x00000080);
+        rowBlockSize_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000100);
+        pageSize_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000200);
+        resumeKey_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000400);
+        cuboidId_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000800);
+        kylinPropertiesDigest_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00001000);
+        gtInfoDigest_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00002000);
+        parallelism_ = 0;
+        bitField0_ = (bitField0_ & ~0x00004000);
         return this;
       }
 
@@ -1430,6 +1844,34 @@ public final class CubeVisitProtos {
           to_bitField0_ |= 0x00000040;
         }
         result.kylinProperties_ = kylinProperties_;
+        if (((from_bitField0_ & 0x00000100) == 0x00000100)) {
+          to_bitField0_ |= 0x00000080;
+        }
+        result.rowBlockSize_ = rowBlockSize_;
+        if (((from_bitField0_ & 0x00000200) == 0x00000200)) {
+          to_bitField0_ |= 0x00000100;
+        }
+        result.pageSize_ = pageSize_;
+        if (((from_bitField0_ & 0x00000400) == 0x00000400)) {
+          to_bitField0_ |= 0x00000200;
+        }
+        result.resumeKey_ = resumeKey_;
+        if (((from_bitField0_ & 0x00000800) == 0x00000800)) {
+          to_bitField0_ |= 0x00000400;
+        }
+        result.cuboidId_ = cuboidId_;
+        if (((from_bitField0_ & 0x00001000) == 0x00001000)) {
+          to_bitField0_ |= 0x00000800;
+        }
+        result.kylinPropertiesDigest_ = kylinPropertiesDigest_;
+        if (((from_bitField0_ & 0x00002000) == 0x00002000)) {
+          to_bitField0_ |= 0x00001000;
+        }
+        result.gtInfoDigest_ = gtInfoDigest_;
+        if (((from_bitField0_ & 0x00004000) == 0x00004000)) {
+          to_bitField0_ |= 0x00002000;
+        }
+        result.parallelism_ = parallelism_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -1497,6 +1939,27 @@ public final class CubeVisitProtos {
           kylinProperties_ = other.kylinProperties_;
           onChanged();
         }
+        if (other.hasRowBlockSize()) {
+          setRowBlockSize(other.getRowBlockSize());
+        }
+        if (other.hasPageSize()) {
+          setPageSize(other.getPageSize());
+        }
+        if (other.hasResumeKey()) {
+          setResumeKey(other.getResumeKey());
+        }
+        if (other.hasCuboidId()) {
+          setCuboidId(other.getCuboidId());
+        }
+        if (other.hasKylinPropertiesDigest()) {
+          setKylinPropertiesDigest(other.getKylinPropertiesDigest());
+        }
+        if (other.hasGtInfoDigest()) {
+          setGtInfoDigest(other.getGtInfoDigest());
+        }
+        if (other.hasParallelism()) {
+          setParallelism(other.getParallelism());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -2137,32 +2600,336 @@ public final class CubeVisitProtos {
         return this;
       }
       /**
-       * <code>required string kylinProperties = 8;</code>
-       *
-       * <pre>
-       * kylin properties
-       * </pre>
+       * <code>required string kylinProperties = 8;</code>
+       *
+       * <pre>
+       * kylin properties
+       * </pre>
+       */
+      public Builder clearKylinProperties() {
+        bitField0_ = (bitField0_ & ~0x00000080);
+        kylinProperties_ = getDefaultInstance().getKylinProperties();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required string kylinProperties = 8;</code>
+       *
+       * <pre>
+       * kylin properties
+       * </pre>
+       */
+      public Builder setKylinPropertiesBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000080;
+        kylinProperties_ = value;
+        onChanged();
+        return this;
+      }
+
+      // optional int32 rowBlockSize = 9;
+      private int rowBlockSize_ ;
+      /**
+       * <code>optional int32 rowBlockSize = 9;</code>
+       *
+       * <pre>
+       *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+       * </pre>
+       */
+      public boolean hasRowBlockSize() {
+        return ((bitField0_ & 0x00000100) == 0x00000100);
+      }
+      /**
+       * <code>optional int32 rowBlockSize = 9;</code>
+       *
+       * <pre>
+       *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+       * </pre>
+       */
+      public int getRowBlockSize() {
+        return rowBlockSize_;
+      }
+      /**
+       * <code>optional int32 rowBlockSize = 9;</code>
+       *
+       * <pre>
+       *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+       * </pre>
+       */
+      public Builder setRowBlockSize(int value) {
+        bitField0_ |= 0x00000100;
+        rowBlockSize_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 rowBlockSize = 9;</code>
+       *
+       * <pre>
+       *when positive, rows are returned in blocks of about this many bytes, each compressed on its own
+       * </pre>
+       */
+      public Builder clearRowBlockSize() {
+        bitField0_ = (bitField0_ & ~0x00000100);
+        rowBlockSize_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional int64 pageSize = 10;
+      private long pageSize_ ;
+      /**
+       * <code>optional int64 pageSize = 10;</code>
+       *
+       * <pre>
+       *when positive, stop after about this many bytes and return a resumeKey
+       * </pre>
+       */
+      public boolean hasPageSize() {
+        return ((bitField0_ & 0x00000200) == 0x00000200);
+      }
+      /**
+       * <code>optional int64 pageSize = 10;</code>
+       *
+       * <pre>
+       *when positive, stop after about this many bytes and return a resumeKey
+       * </pre>
+       */
+      public long getPageSize() {
+        return pageSize_;
+      }
+      /**
+       * <code>optional int64 pageSize = 10;</code>
+       *
+       * <pre>
+       *when positive, stop after about this many bytes and return a resumeKey
+       * </pre>
+       */
+      public Builder setPageSize(long value) {
+        bitField0_ |= 0x00000200;
+        pageSize_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int64 pageSize = 10;</code>
+       *
+       * <pre>
+       *when positive, stop after about this many bytes and return a resumeKey
+       * </pre>
+       */
+      public Builder clearPageSize() {
+        bitField0_ = (bitField0_ & ~0x00000200);
+        pageSize_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      // optional bytes resumeKey = 11;
+      private com.google.protobuf.ByteString resumeKey_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes resumeKey = 11;</code>
+       *
+       * <pre>
+       *continue a paged visit after this hbase row
+       * </pre>
+       */
+      public boolean hasResumeKey() {
+        return ((bitField0_ & 0x00000400) == 0x00000400);
+      }
+      /**
+       * <code>optional bytes resumeKey = 11;</code>
+       *
+       * <pre>
+       *continue a paged visit after this hbase row
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getResumeKey() {
+        return resumeKey_;
+      }
+      /**
+       * <code>optional bytes resumeKey = 11;</code>
+       *
+       * <pre>
+       *continue a paged visit after this hbase row
+       * </pre>
+       */
+      public Builder setResumeKey(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000400;
+        resumeKey_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes resumeKey = 11;</code>
+       *
+       * <pre>
+       *continue a paged visit after this hbase row
+       * </pre>
+       */
+      public Builder clearResumeKey() {
+        bitField0_ = (bitField0_ & ~0x00000400);
+        resumeKey_ = getDefaultInstance().getResumeKey();
+        onChanged();
+        return this;
+      }
+
+      // optional int64 cuboidId = 12;
+      private long cuboidId_ ;
+      /**
+       * <code>optional int64 cuboidId = 12;</code>
+       *
+       * <pre>
+       *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+       * </pre>
+       */
+      public boolean hasCuboidId() {
+        return ((bitField0_ & 0x00000800) == 0x00000800);
+      }
+      /**
+       * <code>optional int64 cuboidId = 12;</code>
+       *
+       * <pre>
+       *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+       * </pre>
+       */
+      public long getCuboidId() {
+        return cuboidId_;
+      }
+      /**
+       * <code>optional int64 cuboidId = 12;</code>
+       *
+       * <pre>
+       *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+       * </pre>
+       */
+      public Builder setCuboidId(long value) {
+        bitField0_ |= 0x00000800;
+        cuboidId_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int64 cuboidId = 12;</code>
+       *
+       * <pre>
+       *when set, raw scans are built in region from the ranges of gtScanRequest, hbaseRawScan holds one scan as the template
+       * </pre>
+       */
+      public Builder clearCuboidId() {
+        bitField0_ = (bitField0_ & ~0x00000800);
+        cuboidId_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      // optional bytes kylinPropertiesDigest = 13;
+      private com.google.protobuf.ByteString kylinPropertiesDigest_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes kylinPropertiesDigest = 13;</code>
+       */
+      public boolean hasKylinPropertiesDigest() {
+        return ((bitField0_ & 0x00001000) == 0x00001000);
+      }
+      /**
+       * <code>optional bytes kylinPropertiesDigest = 13;</code>
+       */
+      public com.google.protobuf.ByteString getKylinPropertiesDigest() {
+        return kylinPropertiesDigest_;
+      }
+      /**
+       * <code>optional bytes kylinPropertiesDigest = 13;</code>
+       */
+      public Builder setKylinPropertiesDigest(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00001000;
+        kylinPropertiesDigest_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes kylinPropertiesDigest = 13;</code>
+       */
+      public Builder clearKylinPropertiesDigest() {
+        bitField0_ = (bitField0_ & ~0x00001000);
+        kylinPropertiesDigest_ = getDefaultInstance().getKylinPropertiesDigest();
+        onChanged();
+        return this;
+      }
+
+      // optional bytes gtInfoDigest = 14;
+      private com.google.protobuf.ByteString gtInfoDigest_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes gtInfoDigest = 14;</code>
+       */
+      public boolean hasGtInfoDigest() {
+        return ((bitField0_ & 0x00002000) == 0x00002000);
+      }
+      /**
+       * <code>optional bytes gtInfoDigest = 14;</code>
+       */
+      public com.google.protobuf.ByteString getGtInfoDigest() {
+        return gtInfoDigest_;
+      }
+      /**
+       * <code>optional bytes gtInfoDigest = 14;</code>
+       */
+      public Builder setGtInfoDigest(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00002000;
+        gtInfoDigest_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes gtInfoDigest = 14;</code>
+       */
+      public Builder clearGtInfoDigest() {
+        bitField0_ = (bitField0_ & ~0x00002000);
+        gtInfoDigest_ = getDefaultInstance().getGtInfoDigest();
+        onChanged();
+        return this;
+      }
+
+      // optional int32 parallelism = 15;
+      private int parallelism_ ;
+      /**
+       * <code>optional int32 parallelism = 15;</code>
+       */
+      public boolean hasParallelism() {
+        return ((bitField0_ & 0x00004000) == 0x00004000);
+      }
+      /**
+       * <code>optional int32 parallelism = 15;</code>
        */
-      public Builder clearKylinProperties() {
-        bitField0_ = (bitField0_ & ~0x00000080);
-        kylinProperties_ = getDefaultInstance().getKylinProperties();
+      public int getParallelism() {
+        return parallelism_;
+      }
+      /**
+       * <code>optional int32 parallelism = 15;</code>
+       */
+      public Builder setParallelism(int value) {
+        bitField0_ |= 0x00004000;
+        parallelism_ = value;
         onChanged();
         return this;
       }
       /**
-       * <code>required string kylinProperties = 8;</code>
-       *
-       * <pre>
-       * kylin properties
-       * </pre>
+       * <code>optional int32 parallelism = 15;</code>
        */
-      public Builder setKylinPropertiesBytes(
-          com.google.protobuf.ByteString value) {
-        if (value == null) {
-    throw new NullPointerException();
-  }
-  bitField0_ |= 0x00000080;
-        kylinProperties_ = value;
+      public Builder clearParallelism() {
+        bitField0_ = (bitField0_ & ~0x00004000);
+        parallelism_ = 0;
         onChanged();
         return this;
       }
@@ -2204,6 +2971,60 @@ public final class CubeVisitProtos {
      * <code>required .CubeVisitResponse.Stats stats = 2;</code>
      */
     org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.StatsOrBuilder getStatsOrBuilder();
+
+    // repeated bytes compressedRowBlocks = 3;
+    /**
+     * <code>repeated bytes compressedRowBlocks = 3;</code>
+     *
+     * <pre>
+     *row blocks when the request asks for rowBlockSize
+     * </pre>
+     */
+    java.util.List<com.google.protobuf.ByteString> getCompressedRowBlocksList();
+    /**
+     * <code>repeated bytes compressedRowBlocks = 3;</code>
+     *
+     * <pre>
+     *row blocks when the request asks for rowBlockSize
+     * </pre>
+     */
+    int getCompressedRowBlocksCount();
+    /**
+     * <code>repeated bytes compressedRowBlocks = 3;</code>
+     *
+     * <pre>
+     *row blocks when the request asks for rowBlockSize
+     * </pre>
+     */
+    com.google.protobuf.ByteString getCompressedRowBlocks(int index);
+
+    // optional bytes resumeKey = 4;
+    /**
+     * <code>optional bytes resumeKey = 4;</code>
+     *
+     * <pre>
+     *the last hbase row visited, set when the region has more to return
+     * </pre>
+     */
+    boolean hasResumeKey();
+    /**
+     * <code>optional bytes resumeKey = 4;</code>
+     *
+     * <pre>
+     *the last hbase row visited, set when the region has more to return
+     * </pre>
+     */
+    com.google.protobuf.ByteString getResumeKey();
+
+    // optional bool cacheMiss = 5;
+    /**
+     * <code>optional bool cacheMiss = 5;</code>
+     */
+    boolean hasCacheMiss();
+    /**
+     * <code>optional bool cacheMiss = 5;</code>
+     */
+    boolean getCacheMiss();
   }
   /**
    * Protobuf type {@code CubeVisitResponse}
@@ -2274,6 +3095,24 @@ public final class CubeVisitProtos {
               bitField0_ |= 0x00000002;
               break;
             }
+            case 26: {
+              if (!((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+                compressedRowBlocks_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+                mutable_bitField0_ |= 0x00000004;
+              }
+              compressedRowBlocks_.add(input.readBytes());
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000004;
+              resumeKey_ = input.readBytes();
+              break;
+            }
+            case 40: {
+              bitField0_ |= 0x00000008;
+              cacheMiss_ = input.readBool();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -2282,6 +3121,9 @@ public final class CubeVisitProtos {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e.getMessage()).setUnfinishedMessage(this);
       } finally {
+        if (((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+          compressedRowBlocks_ = java.util.Collections.unmodifiableList(compressedRowBlocks_);
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -3778,9 +4620,87 @@ public final class CubeVisitProtos {
       return stats_;
     }
 
+    // repeated bytes compressedRowBlocks = 3;
+    public static final int COMPRESSEDROWBLOCKS_FIELD_NUMBER = 3;
+    private java.util.List<com.google.protobuf.ByteString> compressedRowBlocks_;
+    /**
+     * <code>repeated bytes compressedRowBlocks = 3;</code>
+     *
+     * <pre>
+     *row blocks when the request asks for rowBlockSize
+     * </pre>
+     */
+    public java.util.List<com.google.protobuf.ByteString>
+        getCompressedRowBlocksList() {
+      return compressedRowBlocks_;
+    }
+    /**
+     * <code>repeated bytes compressedRowBlocks = 3;</code>
+     *
+     * <pre>
+     *row blocks when the request asks for rowBlockSize
+     * </pre>
+     */
+    public int getCompressedRowBlocksCount() {
+      return compressedRowBlocks_.size();
+    }
+    /**
+     * <code>repeated bytes compressedRowBlocks = 3;</code>
+     *
+     * <pre>
+     *row blocks when the request asks for rowBlockSize
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getCompressedRowBlocks(int index) {
+      return compressedRowBlocks_.get(index);
+    }
+
+    // optional bytes resumeKey = 4;
+    public static final int RESUMEKEY_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString resumeKey_;
+    /**
+     * <code>optional bytes resumeKey = 4;</code>
+     *
+     * <pre>
+     *the last hbase row visited, set when the region has more to return
+     * </pre>
+     */
+    public boolean hasResumeKey() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bytes resumeKey = 4;</code>
+     *
+     * <pre>
+     *the last hbase row visited, set when the region has more to return
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getResumeKey() {
+      return resumeKey_;
+    }
+
+    // optional bool cacheMiss = 5;
+    public static final int CACHEMISS_FIELD_NUMBER = 5;
+    private boolean cacheMiss_;
+    /**
+     * <code>optional bool cacheMiss = 5;</code>
+     */
+    public boolean hasCacheMiss() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional bool cacheMiss = 5;</code>
+     */
+    public boolean getCacheMiss() {
+      return cacheMiss_;
+    }
+
     private void initFields() {
       compressedRows_ = com.google.protobuf.ByteString.EMPTY;
       stats_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.Stats.getDefaultInstance();
+      compressedRowBlocks_ = java.util.Collections.emptyList();
+      resumeKey_ = com.google.protobuf.ByteString.EMPTY;
+      cacheMiss_ = false;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -3808,6 +4728,15 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000002) == 0x00000002)) {
         output.writeMessage(2, stats_);
       }
+      for (int i = 0; i < compressedRowBlocks_.size(); i++) {
+        output.writeBytes(3, compressedRowBlocks_.get(i));
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(4, resumeKey_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBool(5, cacheMiss_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -3825,6 +4754,23 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(2, stats_);
       }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < compressedRowBlocks_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(compressedRowBlocks_.get(i));
+        }
+        size += dataSize;
+        size += 1 * getCompressedRowBlocksList().size();
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, resumeKey_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(5, cacheMiss_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -3858,6 +4804,18 @@ public final class CubeVisitProtos {
         result = result && getStats()
             .equals(other.getStats());
       }
+      result = result && getCompressedRowBlocksList()
+          .equals(other.getCompressedRowBlocksList());
+      result = result && (hasResumeKey() == other.hasResumeKey());
+      if (hasResumeKey()) {
+        result = result && getResumeKey()
+            .equals(other.getResumeKey());
+      }
+      result = result && (hasCacheMiss() == other.hasCacheMiss());
+      if (hasCacheMiss()) {
+        result = result && (getCacheMiss()
+            == other.getCacheMiss());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -3879,6 +4837,18 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + STATS_FIELD_NUMBER;
         hash = (53 * hash) + getStats().hashCode();
       }
+      if (getCompressedRowBlocksCount() > 0) {
+        hash = (37 * hash) + COMPRESSEDROWBLOCKS_FIELD_NUMBER;
+        hash = (53 * hash) + getCompressedRowBlocksList().hashCode();
+      }
+      if (hasResumeKey()) {
+        hash = (37 * hash) + RESUMEKEY_FIELD_NUMBER;
+        hash = (53 * hash) + getResumeKey().hashCode();
+      }
+      if (hasCacheMiss()) {
+        hash = (37 * hash) + CACHEMISS_FIELD_NUMBER;
+        hash = (53 * hash) + hashBoolean(getCacheMiss());
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -3997,6 +4967,12 @@ public final class CubeVisitProtos {
           statsBuilder_.clear();
         }
         bitField0_ = (bitField0_ & ~0x00000002);
+        compressedRowBlocks_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        resumeKey_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        cacheMiss_ = false;
+        bitField0_ = (bitField0_ & ~0x00000010);
         return this;
       }
 
@@ -4037,6 +5013,19 @@ public final class CubeVisitProtos {
         } else {
           result.stats_ = statsBuilder_.build();
         }
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          compressedRowBlocks_ = java.util.Collections.unmodifiableList(compressedRowBlocks_);
+          bitField0_ = (bitField0_ & ~0x00000004);
+        }
+        result.compressedRowBlocks_ = compressedRowBlocks_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.resumeKey_ = resumeKey_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.cacheMiss_ = cacheMiss_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -4059,6 +5048,22 @@ public final class CubeVisitProtos {
         if (other.hasStats()) {
           mergeStats(other.getStats());
         }
+        if (!other.compressedRowBlocks_.isEmpty()) {
+          if (compressedRowBlocks_.isEmpty()) {
+            compressedRowBlocks_ = other.compressedRowBlocks_;
+            bitField0_ = (bitField0_ & ~0x00000004);
+          } else {
+            ensureCompressedRowBlocksIsMutable();
+            compressedRowBlocks_.addAll(other.compressedRowBlocks_);
+          }
+          onChanged();
+        }
+        if (other.hasResumeKey()) {
+          setResumeKey(other.getResumeKey());
+        }
+        if (other.hasCacheMiss()) {
+          setCacheMiss(other.getCacheMiss());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -4247,6 +5252,191 @@ public final class CubeVisitProtos {
         return statsBuilder_;
       }
 
+      // repeated bytes compressedRowBlocks = 3;
+      private java.util.List<com.google.protobuf.ByteString> compressedRowBlocks_ = java.util.Collections.emptyList();
+      private void ensureCompressedRowBlocksIsMutable() {
+        if (!((bitField0_ & 0x00000004) == 0x00000004)) {
+          compressedRowBlocks_ = new java.util.ArrayList<com.google.protobuf.ByteString>(compressedRowBlocks_);
+          bitField0_ |= 0x00000004;
+         }
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public java.util.List<com.google.protobuf.ByteString>
+          getCompressedRowBlocksList() {
+        return java.util.Collections.unmodifiableList(compressedRowBlocks_);
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public int getCompressedRowBlocksCount() {
+        return compressedRowBlocks_.size();
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getCompressedRowBlocks(int index) {
+        return compressedRowBlocks_.get(index);
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public Builder setCompressedRowBlocks(
+          int index, com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureCompressedRowBlocksIsMutable();
+        compressedRowBlocks_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public Builder addCompressedRowBlocks(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureCompressedRowBlocksIsMutable();
+        compressedRowBlocks_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public Builder addAllCompressedRowBlocks(
+          java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
+        ensureCompressedRowBlocksIsMutable();
+        super.addAll(values, compressedRowBlocks_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes compressedRowBlocks = 3;</code>
+       *
+       * <pre>
+       *row blocks when the request asks for rowBlockSize
+       * </pre>
+       */
+      public Builder clearCompressedRowBlocks() {
+        compressedRowBlocks_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        onChanged();
+        return this;
+      }
+
+      // optional bytes resumeKey = 4;
+      private com.google.protobuf.ByteString resumeKey_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes resumeKey = 4;</code>
+       *
+       * <pre>
+       *the last hbase row visited, set when the region has more to return
+       * </pre>
+       */
+      public boolean hasResumeKey() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bytes resumeKey = 4;</code>
+       *
+       * <pre>
+       *the last hbase row visited, set when the region has more to return
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getResumeKey() {
+        return resumeKey_;
+      }
+      /**
+       * <code>optional bytes resumeKey = 4;</code>
+       *
+       * <pre>
+       *the last hbase row visited, set when the region has more to return
+       * </pre>
+       */
+      public Builder setResumeKey(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        resumeKey_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes resumeKey = 4;</code>
+       *
+       * <pre>
+       *the last hbase row visited, set when the region has more to return
+       * </pre>
+       */
+      public Builder clearResumeKey() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        resumeKey_ = getDefaultInstance().getResumeKey();
+        onChanged();
+        return this;
+      }
+
+      // optional bool cacheMiss = 5;
+      private boolean cacheMiss_ ;
+      /**
+       * <code>optional bool cacheMiss = 5;</code>
+       */
+      public boolean hasCacheMiss() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional bool cacheMiss = 5;</code>
+       */
+      public boolean getCacheMiss() {
+        return cacheMiss_;
+      }
+      /**
+       * <code>optional bool cacheMiss = 5;</code>
+       */
+      public Builder setCacheMiss(boolean value) {
+        bitField0_ |= 0x00000010;
+        cacheMiss_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bool cacheMiss = 5;</code>
+       */
+      public Builder clearCacheMiss() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        cacheMiss_ = false;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:CubeVisitResponse)
     }
 
@@ -4521,26 +5711,32 @@ public final class CubeVisitProtos {
     java.lang.String[] descriptorData = {
       "\npstorage-hbase/src/main/java/org/apache" +
       "/kylin/storage/hbase/cube/v2/coprocessor" +
-      "/endpoint/protobuf/CubeVisit.proto\"\370\001\n\020C" +
+      "/endpoint/protobuf/CubeVisit.proto\"\217\003\n\020C" +
       "ubeVisitRequest\022\020\n\010behavior\030\001 \002(\t\022\025\n\rgtS" +
       "canRequest\030\002 \002(\014\022\024\n\014hbaseRawScan\030\003 \002(\014\022\032" +
       "\n\022rowkeyPreambleSize\030\004 \002(\005\0223\n\020hbaseColum" +
       "nsToGT\030\005 \003(\0132\031.CubeVisitRequest.IntList\022" +
       "\021\n\tstartTime\030\006 \002(\003\022\017\n\007timeout\030\007 \002(\003\022\027\n\017k" +
-      "ylinProperties\030\010 \002(\t\032\027\n\007IntList\022\014\n\004ints\030" +
-      "\001 \003(\005\"\321\002\n\021CubeVisitResponse\022\026\n\016compresse",
-      "dRows\030\001 \002(\014\022\'\n\005stats\030\002 \002(\0132\030.CubeVisitRe" +
-      "sponse.Stats\032\372\001\n\005Stats\022\030\n\020serviceStartTi" +
-      "me\030\001 \001(\003\022\026\n\016serviceEndTime\030\002 \001(\003\022\027\n\017scan" +
-      "nedRowCount\030\003 \001(\005\022\032\n\022aggregatedRowCount\030" +
-      "\004 \001(\005\022\025\n\rsystemCpuLoad\030\005 \001(\001\022\036\n\026freePhys" +
-      "icalMemorySize\030\006 \001(\001\022\031\n\021freeSwapSpaceSiz" +
-      "e\030\007 \001(\001\022\020\n\010hostname\030\010 \001(\t\022\016\n\006etcMsg\030\t \001(" +
-      "\t\022\026\n\016normalComplete\030\n \001(\0052F\n\020CubeVisitSe" +
-      "rvice\0222\n\tvisitCube\022\021.CubeVisitRequest\032\022." +
-      "CubeVisitResponseB`\nEorg.apache.kylin.st",
-      "orage.hbase.cube.v2.coprocessor.endpoint" +
-      ".generatedB\017CubeVisitProtosH\001\210\001\001\240\001\001"
+      "ylinProperties\030\010 \002(\t\022\024\n\014rowBlockSize\030\t \001" +
+      "(\005\022\020\n\010pageSize\030\n \001(\003\022\021\n\tresumeKey\030\013 \001(\014\022",
+      "\020\n\010cuboidId\030\014 \001(\003\022\035\n\025kylinPropertiesDige" +
+      "st\030\r \001(\014\022\024\n\014gtInfoDigest\030\016 \001(\014\022\023\n\013parall" +
+      "elism\030\017 \001(\005\032\027\n\007IntList\022\014\n\004ints\030\001 \003(\005\"\224\003\n" +
+      "\021CubeVisitResponse\022\026\n\016compressedRows\030\001 \002" +
+      "(\014\022\'\n\005stats\030\002 \002(\0132\030.CubeVisitResponse.St" +
+      "ats\022\033\n\023compressedRowBlocks\030\003 \003(\014\022\021\n\tresu" +
+      "meKey\030\004 \001(\014\022\021\n\tcacheMiss\030\005 \001(\010\032\372\001\n\005Stats" +
+      "\022\030\n\020serviceStartTime\030\001 \001(\003\022\026\n\016serviceEnd" +
+      "Time\030\002 \001(\003\022\027\n\017scannedRowCount\030\003 \001(\005\022\032\n\022a" +
+      "ggregatedRowCount\030\004 \001(\005\022\025\n\rsystemCpuLoad",
+      "\030\005 \001(\001\022\036\n\026freePhysicalMemorySize\030\006 \001(\001\022\031" +
+      "\n\021freeSwapSpaceSize\030\007 \001(\001\022\020\n\010hostname\030\010 " +
+      "\001(\t\022\016\n\006etcMsg\030\t \001(\t\022\026\n\016normalComplete\030\n " +
+      "\001(\0052F\n\020CubeVisitService\0222\n\tvisitCube\022\021.C" +
+      "ubeVisitRequest\032\022.CubeVisitResponseB`\nEo" +
+      "rg.apache.kylin.storage.hbase.cube.v2.co" +
+      "processor.endpoint.generatedB\017CubeVisitP" +
+      "rotosH\001\210\001\001\240\001\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -4552,7 +5748,7 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitRequest_descriptor,
-              new java.lang.String[] { "Behavior", "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "StartTime", "Timeout", "KylinProperties", });
+              new java.lang.String[] { "Behavior", "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "StartTime", "Timeout", "KylinProperties", "RowBlockSize", "PageSize", "ResumeKey", "CuboidId", "KylinPropertiesDigest", "GtInfoDigest", "Parallelism", });
           internal_static_CubeVisitRequest_IntList_descriptor =
             internal_static_CubeVisitRequest_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitRequest_IntList_fieldAccessorTable = new
@@ -4564,7 +5760,7 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitResponse_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitResponse_descriptor,
-              new java.lang.String[] { "CompressedRows", "Stats", });
+              new java.lang.String[] { "CompressedRows", "Stats", "CompressedRowBlocks", "ResumeKey", "CacheMiss", });
           internal_static_CubeVisitResponse_Stats_descriptor =
             internal_static_CubeVisitResponse_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitResponse_Stats_fieldAccessorTable = new
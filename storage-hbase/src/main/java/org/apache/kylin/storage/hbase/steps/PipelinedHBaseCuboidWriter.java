@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.inmemcubing.ICuboidWriter;
+import org.apache.kylin.cube.kv.AbstractRowKeyEncoder;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.HBaseColumnDesc;
+import org.apache.kylin.cube.model.HBaseColumnFamilyDesc;
+import org.apache.kylin.gridtable.GTRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes cuboids to HBase like {@link HBaseCuboidWriter}, but with less copying and without waiting on every put.
+ * 
+ * Measures are copied as encoded in the GTRecord, the grid table and HBase use the same measure serializers.
+ * Cells are laid out as KeyValues straight into pooled slabs, and one Put per row holds all column families.
+ * A full batch is put by a background thread while the next batch is encoded, with at most maxInFlight
+ * batches pending.
+ */
+public class PipelinedHBaseCuboidWriter implements ICuboidWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedHBaseCuboidWriter.class);
+
+    static final int SLAB_SIZE = 1024 * 1024;
+
+    private static final int KEY_INFRASTRUCTURE_SIZE = 2 + 1 + 8 + 1; // row length, family length, timestamp, type
+    private static final long TIMESTAMP = HConstants.LATEST_TIMESTAMP; // same as Put.add() in HBaseCuboidWriter, the region server stamps the cells
+
+    private final CubeSegment cubeSegment;
+    private final CubeDesc cubeDesc;
+    private final HTableInterface hTable;
+    private final int batchSize;
+
+    private final byte[][] families;
+    private final byte[][] qualifiers;
+    private final int[][] measureIndexes;
+
+    private final ExecutorService flusher;
+    private final Semaphore inFlight;
+    private final List<Future<?>> pending = Lists.newLinkedList();
+    private final Queue<byte[]> slabPool = new ConcurrentLinkedQueue<byte[]>();
+
+    private Batch batch;
+    private AbstractRowKeyEncoder rowKeyEncoder;
+    private byte[] keybuf;
+    private int nDims;
+
+    public PipelinedHBaseCuboidWriter(CubeSegment segment, HTableInterface hTable) {
+        this(segment, hTable, segment.getConfig().getHBaseStreamingWriteBatchSize(), segment.getConfig().getHBaseStreamingWriteMaxInFlight());
+    }
+
+    public PipelinedHBaseCuboidWriter(CubeSegment segment, HTableInterface hTable, int batchSize, int maxInFlight) {
+        this.cubeSegment = segment;
+        this.cubeDesc = segment.getCubeDesc();
+        this.hTable = hTable;
+        this.batchSize = batchSize;
+
+        List<HBaseColumnDesc> columns = Lists.newArrayList();
+        for (HBaseColumnFamilyDesc cfDesc : cubeDesc.getHbaseMapping().getColumnFamily()) {
+            for (HBaseColumnDesc colDesc : cfDesc.getColumns()) {
+                columns.add(colDesc);
+            }
+        }
+        this.families = new byte[columns.size()][];
+        this.qualifiers = new byte[columns.size()][];
+        this.measureIndexes = new int[columns.size()][];
+        for (int i = 0; i < columns.size(); i++) {
+            families[i] = Bytes.toBytes(columns.get(i).getColumnFamilyName());
+            qualifiers[i] = Bytes.toBytes(columns.get(i).getQualifier());
+            measureIndexes[i] = columns.get(i).getMeasureIndex();
+        }
+
+        this.flusher = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batch = new Batch();
+    }
+
+    @Override
+    public void write(long cuboidId, GTRecord record) throws IOException {
+        if (rowKeyEncoder == null || rowKeyEncoder.getCuboidID() != cuboidId) {
+            Cuboid cuboid = Cuboid.findById(cubeDesc, cuboidId);
+            rowKeyEncoder = AbstractRowKeyEncoder.createInstance(cubeSegment, cuboid);
+            keybuf = rowKeyEncoder.createBuf();
+            nDims = cuboid.getColumns().size();
+        }
+        rowKeyEncoder.encode(record, record.getInfo().getPrimaryKey(), keybuf);
+
+        Put put = new Put(keybuf);
+        for (int i = 0; i < families.length; i++) {
+            put.add(batch.newKeyValue(keybuf, families[i], qualifiers[i], measureIndexes[i], record));
+        }
+        batch.puts.add(put);
+
+        if (batch.puts.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    private void submit() throws IOException {
+        final Batch full = batch;
+        batch = new Batch();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted when waiting for pending puts", e);
+        }
+        pending.add(flusher.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    full.put();
+                } finally {
+                    inFlight.release();
+                }
+                return null;
+            }
+        }));
+
+        checkPending(false);
+    }
+
+    private void checkPending(boolean waitAll) throws IOException {
+        for (Iterator<Future<?>> it = pending.iterator(); it.hasNext();) {
+            Future<?> future = it.next();
+            if (!waitAll && !future.isDone())
+                continue;
+
+            it.remove();
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted when waiting for pending puts", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to put cuboids to HBase", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public final void flush() throws IOException {
+        if (!batch.puts.isEmpty()) {
+            submit();
+        }
+        checkPending(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            flusher.shutdownNow();
+            IOUtils.closeQuietly(hTable);
+        }
+    }
+
+    private class Batch {
+        final List<Put> puts = Lists.newArrayListWithCapacity(batchSize);
+        final List<byte[]> slabs = Lists.newArrayList();
+        byte[] slab;
+        int slabPos;
+
+        /** lays out a KeyValue in the slab, the value is the concatenated measure bytes of the record */
+        KeyValue newKeyValue(byte[] row, byte[] family, byte[] qualifier, int[] measures, GTRecord record) {
+            int vlen = 0;
+            for (int m : measures) {
+                vlen += record.get(nDims + m).length();
+            }
+            int klen = KEY_INFRASTRUCTURE_SIZE + row.length + family.length + qualifier.length;
+            int length = KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE + klen + vlen;
+
+            byte[] buf;
+            int offset;
+            if (length > SLAB_SIZE) {
+                buf = new byte[length]; // too big to share a slab
+                offset = 0;
+            } else {
+                if (slab == null || slabPos + length > slab.length) {
+                    slab = slabPool.poll();
+                    if (slab == null) {
+                        slab = new byte[SLAB_SIZE];
+                    }
+                    slabs.add(slab);
+                    slabPos = 0;
+                }
+                buf = slab;
+                offset = slabPos;
+                slabPos += length;
+            }
+
+            int pos = offset;
+            pos = Bytes.putInt(buf, pos, klen);
+            pos = Bytes.putInt(buf, pos, vlen);
+            pos = Bytes.putShort(buf, pos, (short) row.length);
+            pos = Bytes.putBytes(buf, pos, row, 0, row.length);
+            pos = Bytes.putByte(buf, pos, (byte) family.length);
+            pos = Bytes.putBytes(buf, pos, family, 0, family.length);
+            pos = Bytes.putBytes(buf, pos, qualifier, 0, qualifier.length);
+            pos = Bytes.putLong(buf, pos, TIMESTAMP);
+            pos = Bytes.putByte(buf, pos, KeyValue.Type.Put.getCode());
+            for (int m : measures) {
+                ByteArray value = record.get(nDims + m);
+                pos = Bytes.putBytes(buf, pos, value.array(), value.offset(), value.length());
+            }
+            return new KeyValue(buf, offset, length);
+        }
+
+        void put() throws IOException {
+            long t = System.currentTimeMillis();
+            if (hTable != null) {
+                hTable.put(puts);
+                hTable.flushCommits();
+            }
+            logger.info("commit total " + puts.size() + " puts, totally cost:" + (System.currentTimeMillis() - t) + "ms");
+
+            // HBase is done with the cells, the slabs can be reused
+            puts.clear();
+            slabPool.addAll(slabs);
+        }
+    }
+}
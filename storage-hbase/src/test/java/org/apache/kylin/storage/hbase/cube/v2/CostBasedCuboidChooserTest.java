@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CostBasedCuboidChooserTest extends LocalFileMetadataTestCase {
+
+    private CubeDesc cube;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        // rowkey: CAL_DT, LEAF_CATEG_ID, META_CATEG_NAME, CATEG_LVL2_NAME, ...; the first aggregation group joins
+        // LEAF_CATEG_ID and META_CATEG_NAME, the second has META_CATEG_NAME on top of a hierarchy
+        cube = CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_without_slr_left_join_desc");
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testChooseFewerRows() {
+        Cuboid cuboid = Cuboid.findById(cube, bits("CAL_DT", "META_CATEG_NAME"));
+        List<Long> candidates = Cuboid.findValidCandidates(cube, cuboid.getInputID());
+        assertEquals(2, candidates.size());
+        assertEquals(cuboid.getInputID(), cuboid.getId()); // valid in the second group as it is
+        long other = otherCandidate(cuboid, candidates);
+
+        // the static pick is kept when it has fewer rows
+        assertSame(cuboid, CostBasedCuboidChooser.choose(cuboid, 0, Collections.singletonList(estimates(cuboid.getId(), 100, other, 1000))));
+
+        // otherwise the other candidate is scanned, with rows summed over the segments
+        Cuboid chosen = CostBasedCuboidChooser.choose(cuboid, 0, Collections.singletonList(estimates(cuboid.getId(), 1000, other, 100)));
+        assertEquals(other, chosen.getId());
+        assertEquals(cuboid.getInputID(), chosen.getInputID());
+
+        List<Map<Long, Long>> twoSegments = Lists.newArrayList(estimates(cuboid.getId(), 100, other, 150), estimates(cuboid.getId(), 100, other, 10));
+        assertEquals(other, CostBasedCuboidChooser.choose(cuboid, 0, twoSegments).getId());
+
+        // a segment without the estimates of a candidate falls back to the static pick
+        Map<Long, Long> partial = Maps.newHashMap();
+        partial.put(cuboid.getId(), 1000L);
+        assertSame(cuboid, CostBasedCuboidChooser.choose(cuboid, 0, Collections.singletonList(partial)));
+    }
+
+    @Test
+    public void testChooseWithFilterOnLeadingColumns() {
+        Cuboid cuboid = Cuboid.findById(cube, bits("CAL_DT", "META_CATEG_NAME"));
+        long other = otherCandidate(cuboid, Cuboid.findValidCandidates(cube, cuboid.getInputID()));
+        List<Map<Long, Long>> otherHasFewerRows = Collections.singletonList(estimates(cuboid.getId(), 1000, other, 100));
+
+        // CAL_DT leads the rowkey of both, the filter narrows the scan of each the same way
+        long filterOnFirst = bits("CAL_DT");
+        assertEquals(1, CostBasedCuboidChooser.filterPrefixLength(cuboid.getId(), filterOnFirst, nRowKey()));
+        assertEquals(1, CostBasedCuboidChooser.filterPrefixLength(other, filterOnFirst, nRowKey()));
+        assertEquals(other, CostBasedCuboidChooser.choose(cuboid, filterOnFirst, otherHasFewerRows).getId());
+
+        // LEAF_CATEG_ID comes between CAL_DT and META_CATEG_NAME in the other, so only the static pick can
+        // scan a range on both filter columns, it is kept though the other has fewer rows
+        long filterOnBoth = bits("CAL_DT", "META_CATEG_NAME");
+        assertEquals(2, CostBasedCuboidChooser.filterPrefixLength(cuboid.getId(), filterOnBoth, nRowKey()));
+        assertEquals(1, CostBasedCuboidChooser.filterPrefixLength(other, filterOnBoth, nRowKey()));
+        assertSame(cuboid, CostBasedCuboidChooser.choose(cuboid, filterOnBoth, otherHasFewerRows));
+
+        // a filter on a column not leading any rowkey does not matter
+        long filterOnSecond = bits("META_CATEG_NAME");
+        assertEquals(other, CostBasedCuboidChooser.choose(cuboid, filterOnSecond, otherHasFewerRows).getId());
+    }
+
+    private long otherCandidate(Cuboid cuboid, List<Long> candidates) {
+        return candidates.get(0) == cuboid.getId() ? candidates.get(1) : candidates.get(0);
+    }
+
+    private Map<Long, Long> estimates(long cuboid1, long rows1, long cuboid2, long rows2) {
+        Map<Long, Long> ret = Maps.newHashMap();
+        ret.put(cuboid1, rows1);
+        ret.put(cuboid2, rows2);
+        return ret;
+    }
+
+    private int nRowKey() {
+        return cube.getRowkey().getRowKeyColumns().length;
+    }
+
+    private long bits(String... columns) {
+        long ret = 0;
+        for (String column : columns) {
+            for (RowKeyColDesc rowKeyCol : cube.getRowkey().getRowKeyColumns()) {
+                if (rowKeyCol.getColRef().getName().equals(column)) {
+                    ret |= 1L << rowKeyCol.getBitIndex();
+                }
+            }
+        }
+        return ret;
+    }
+}
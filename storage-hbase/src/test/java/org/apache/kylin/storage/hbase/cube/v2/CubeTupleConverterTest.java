@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.Tuple;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class CubeTupleConverterTest extends LocalFileMetadataTestCase {
+
+    private CubeSegment segment;
+    private Cuboid cuboid;
+    private Set<TblColRef> dims;
+    private TupleInfo tupleInfo;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        segment = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready").getFirstSegment();
+        cuboid = Cuboid.findById(segment.getCubeDesc(), Cuboid.getBaseCuboidId(segment.getCubeDesc()));
+        dims = Sets.newLinkedHashSet(cuboid.getColumns());
+        tupleInfo = new TupleInfo();
+        int i = 0;
+        for (TblColRef dim : dims) {
+            tupleInfo.setField(dim.getName(), dim, i++);
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testCachedDecodeSameAsUncached() {
+        // few distinct values per dimension, so most of the decodes hit the cache
+        List<GTRecord> records = generateRecords(2000, 5);
+
+        CubeTupleConverter cached = newConverter(10000);
+        CubeTupleConverter uncached = newConverter(0);
+        assertTranslatedSame(records, cached, uncached);
+
+        for (int i = 0; i < cached.nSelectedDims; i++) {
+            int size = cached.dimDecodeCaches.get(i).size();
+            assertTrue(size > 0 && size <= 5);
+            assertEquals(0, uncached.dimDecodeCaches.get(i).size());
+        }
+    }
+
+    @Test
+    public void testCacheSizeBound() {
+        List<GTRecord> records = generateRecords(2000, Integer.MAX_VALUE);
+
+        CubeTupleConverter bounded = newConverter(3);
+        CubeTupleConverter uncached = newConverter(0);
+        // values beyond the bound are still decoded right
+        assertTranslatedSame(records, bounded, uncached);
+
+        for (int i = 0; i < bounded.nSelectedDims; i++) {
+            assertTrue(bounded.dimDecodeCaches.get(i).size() <= 3);
+        }
+    }
+
+    private void assertTranslatedSame(List<GTRecord> records, CubeTupleConverter converter, CubeTupleConverter expectedConverter) {
+        Tuple tuple = new Tuple(tupleInfo);
+        Tuple expected = new Tuple(tupleInfo);
+        for (GTRecord record : records) {
+            converter.translateResult(record, tuple);
+            expectedConverter.translateResult(record, expected);
+            assertArrayEquals(expected.getAllValues(), tuple.getAllValues());
+        }
+    }
+
+    private CubeTupleConverter newConverter(int decodeCacheSize) {
+        getTestConfig().setProperty("kylin.query.dimension.decode.cache.size", String.valueOf(decodeCacheSize));
+        assertEquals(decodeCacheSize, segment.getConfig().getQueryDimensionDecodeCacheSize());
+        return new CubeTupleConverter(segment, cuboid, dims, Collections.<FunctionDesc> emptySet(), tupleInfo);
+    }
+
+    /** records of the dimensions only, values are the first maxDistinct values of each dictionary */
+    private List<GTRecord> generateRecords(int n, int maxDistinct) {
+        GTInfo info = CubeGridTable.newGTInfo(segment, cuboid.getId());
+        List<Dictionary<String>> dicts = Lists.newArrayList();
+        for (TblColRef dim : dims) {
+            dicts.add(segment.getDictionary(dim));
+        }
+
+        Random rand = new Random(1);
+        List<GTRecord> records = Lists.newArrayListWithCapacity(n);
+        Object[] values = new Object[dims.size()];
+        for (int r = 0; r < n; r++) {
+            for (int i = 0; i < values.length; i++) {
+                Dictionary<String> dict = dicts.get(i);
+                values[i] = dict == null ? String.valueOf(rand.nextInt(Math.min(maxDistinct, 1000))) : dict.getValueFromId(dict.getMinId() + rand.nextInt(Math.min(maxDistinct, dict.getSize())));
+            }
+            records.add(new GTRecord(info).setValues(info.getPrimaryKey(), new ByteArray(info.getMaxRecordLength()), values));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.apache.kylin.storage.StorageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ParallelCubeTupleIteratorTest extends LocalFileMetadataTestCase {
+
+    private GTInfo info;
+    private CubeInstance cube;
+    private Cuboid cuboid;
+    private StorageContext context;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        info = GTInfo.builder().setCodeSystem(new CubeCodeSystem(new DimensionEncoding[] { new FixedLenDimEnc(4), new FixedLenDimEnc(4) })) //
+                .setColumns(DataType.getType("varchar(10)"), DataType.getType("varchar(10)")) //
+                .setPrimaryKey(ImmutableBitSet.valueOf(0, 1)) //
+                .build();
+        cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready_3_segments");
+        cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        context = new StorageContext();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testConcurrentScan() {
+        List<MockScanner> mocks = Lists.newArrayList();
+        List<String> expected = Lists.newArrayList();
+        for (int i = 0; i < cube.getSegments().size(); i++) {
+            mocks.add(new MockScanner(i, 2500, -1));
+            for (int j = 0; j < 2500; j++) {
+                expected.add(newRecord(i, j).toString());
+            }
+        }
+
+        ParallelCubeTupleIterator it = newIterator(mocks, 2, 2);
+        List<String> actual = Lists.newArrayList();
+        GTRecord record;
+        while ((record = it.nextRecord()) != null) {
+            actual.add(record.toString());
+        }
+        it.close();
+
+        // records of different segments interleave, but none is lost or duplicated
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+        assertEquals(mocks.size(), context.getSegmentScanTimes().size());
+        for (MockScanner mock : mocks) {
+            assertTrue(mock.closed);
+        }
+    }
+
+    @Test
+    public void testScanError() {
+        List<MockScanner> mocks = Lists.newArrayList();
+        for (int i = 0; i < cube.getSegments().size(); i++) {
+            mocks.add(new MockScanner(i, 2500, i == 1 ? 1500 : -1));
+        }
+
+        ParallelCubeTupleIterator it = newIterator(mocks, 2, 2);
+        try {
+            while (it.nextRecord() != null) {
+            }
+            fail("the scan error should be thrown to the caller");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        } finally {
+            it.close();
+        }
+
+        waitClosed(mocks);
+    }
+
+    @Test
+    public void testCloseEarly() {
+        List<MockScanner> mocks = Lists.newArrayList();
+        for (int i = 0; i < cube.getSegments().size(); i++) {
+            mocks.add(new MockScanner(i, 1000000, -1));
+        }
+
+        // one thread, the other segments are never started
+        ParallelCubeTupleIterator it = newIterator(mocks, 1, 1);
+        it.nextRecord();
+        it.close();
+
+        waitClosed(mocks);
+        assertTrue(mocks.get(0).scanned < 1000000);
+        for (int i = 1; i < mocks.size(); i++) {
+            assertEquals(0, mocks.get(i).scanned);
+        }
+    }
+
+    private ParallelCubeTupleIterator newIterator(List<MockScanner> mocks, int parallelism, int queueSize) {
+        List<CubeSegmentScanner> scanners = Lists.newArrayList();
+        for (MockScanner mock : mocks) {
+            CubeSegment seg = cube.getSegments().get(mock.segment);
+            scanners.add(new CubeSegmentScanner(seg, cuboid, mock));
+        }
+        return new ParallelCubeTupleIterator(scanners, cuboid, Collections.<TblColRef> emptySet(), Collections.<FunctionDesc> emptySet(), new TupleInfo(), context, parallelism, queueSize);
+    }
+
+    private void waitClosed(List<MockScanner> mocks) {
+        // the running scans close their scanners asynchronously
+        long deadline = System.currentTimeMillis() + 10000;
+        for (MockScanner mock : mocks) {
+            while (!mock.closed && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            assertTrue("scanner of segment " + mock.segment + " not closed", mock.closed);
+        }
+    }
+
+    private GTRecord newRecord(int segment, int row) {
+        GTRecord r = new GTRecord(info);
+        r.set(0, new ByteArray(toBytes("s" + segment)));
+        r.set(1, new ByteArray(toBytes(String.valueOf(row))));
+        return r;
+    }
+
+    private byte[] toBytes(String s) {
+        byte[] bytes = new byte[4];
+        byte[] src = s.getBytes();
+        System.arraycopy(src, 0, bytes, 0, Math.min(4, src.length));
+        return bytes;
+    }
+
+    private class MockScanner implements IGTScanner {
+        final int segment;
+        final int rows;
+        final int errorAt;
+
+        volatile int scanned = 0;
+        volatile boolean closed = false;
+
+        MockScanner(int segment, int rows, int errorAt) {
+            this.segment = segment;
+            this.rows = rows;
+            this.errorAt = errorAt;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            return scanned;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            // reuses the record like the real scanners do
+            final GTRecord record = new GTRecord(info);
+            return new Iterator<GTRecord>() {
+                @Override
+                public boolean hasNext() {
+                    return scanned < rows;
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    if (scanned == errorAt)
+                        throw new IllegalStateException("scan error at row " + scanned);
+                    GTRecord r = newRecord(segment, scanned++);
+                    record.set(0, r.get(0));
+                    record.set(1, r.get(1));
+                    return record;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
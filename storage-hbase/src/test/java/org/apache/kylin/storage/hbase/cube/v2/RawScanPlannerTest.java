@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.gridtable.GTScanRangePlanner;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class RawScanPlannerTest extends LocalFileMetadataTestCase {
+
+    private static final long CUBOID_ID = 0x3L;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testKeys() {
+        GTInfo info = newInfo();
+        GTRecord start = new GTRecord(info);
+        start.set(0, new ByteArray(new byte[] { 'a', 'b', 'c' }));
+        GTRecord end = new GTRecord(info);
+        end.set(0, new ByteArray(new byte[] { 'x', 'y', 'z' }));
+        end.set(1, new ByteArray(new byte[] { 'k', 'k' }));
+
+        List<RawScan> scans = new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(Lists.newArrayList(new GTScanRange(start, end)), newTemplate());
+        assertEquals(1, scans.size());
+
+        RawScan scan = scans.get(0);
+        assertArrayEquals(key(new byte[] { 'a', 'b', 'c', 0, 0 }), scan.startKey);
+        assertArrayEquals(Bytes.add(key(new byte[] { 'x', 'y', 'z', 'k', 'k' }), new byte[] { 0 }), scan.endKey);
+        assertEquals(0, scan.fuzzyKeys.size());
+        assertEquals(100, scan.hbaseCaching);
+        assertEquals(1024, scan.hbaseMaxResultSize);
+        assertEquals(1, scan.hbaseColumns.size());
+    }
+
+    @Test
+    public void testUnboundedEnd() {
+        GTInfo info = newInfo();
+        GTRecord start = new GTRecord(info);
+        GTRecord end = new GTRecord(info);
+
+        RawScan scan = new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(Lists.newArrayList(new GTScanRange(start, end)), newTemplate()).get(0);
+        byte ff = (byte) 0xff;
+        assertArrayEquals(key(new byte[] { 0, 0, 0, 0, 0 }), scan.startKey);
+        assertArrayEquals(Bytes.add(key(new byte[] { ff, ff, ff, ff, ff }), new byte[] { 0 }), scan.endKey);
+    }
+
+    @Test
+    public void testFuzzyKeys() {
+        GTInfo info = newInfo();
+        GTRecord fuzzy = new GTRecord(info);
+        fuzzy.set(1, new ByteArray(new byte[] { 'k', 'k' }));
+
+        RawScan scan = new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(Lists.newArrayList(new GTScanRange(new GTRecord(info), new GTRecord(info), Lists.newArrayList(fuzzy))), newTemplate()).get(0);
+        assertEquals(1, scan.fuzzyKeys.size());
+        Pair<byte[], byte[]> pair = scan.fuzzyKeys.get(0);
+        assertArrayEquals(key(new byte[] { 0, 0, 0, 'k', 'k' }), pair.getFirst());
+        assertArrayEquals(new byte[] { 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 0, 0 }, pair.getSecond());
+    }
+
+    @Test
+    public void testPlanFromFilter() {
+        GTInfo info = newInfo();
+        CompareTupleFilter in = new CompareTupleFilter(FilterOperatorEnum.IN);
+        in.addChild(new ColumnTupleFilter(info.colRef(1)));
+        in.addChild(new ConstantTupleFilter(Arrays.asList(new ByteArray(new byte[] { 'k', 'k' }), new ByteArray(new byte[] { 'm', 'm' }))));
+        CompareTupleFilter gt = new CompareTupleFilter(FilterOperatorEnum.GT);
+        gt.addChild(new ColumnTupleFilter(info.colRef(0)));
+        gt.addChild(new ConstantTupleFilter(new ByteArray(new byte[] { 'a', 'b', 'c' })));
+        LogicalTupleFilter filter = new LogicalTupleFilter(FilterOperatorEnum.AND);
+        filter.addChildren(Arrays.<TupleFilter> asList(in, gt));
+
+        // the query server plans the ranges, but sends only the filter
+        List<GTScanRange> ranges = new GTScanRangePlanner(info, null, null, filter).planScanRanges();
+        GTScanRequest sent = new GTScanRequest(info, Lists.<GTScanRange> newArrayList(), ImmutableBitSet.valueOf(0, 1), ImmutableBitSet.valueOf(0, 1), ImmutableBitSet.valueOf(2), new String[] { "SUM" }, filter, true, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        GTScanRequest.serializer.serialize(sent, buffer);
+        buffer.flip();
+        GTScanRequest received = GTScanRequest.serializer.deserialize(buffer);
+
+        RawScanPlanner planner = new RawScanPlanner(info, CUBOID_ID, 10);
+        List<RawScan> expected = planner.planRawScans(ranges, newTemplate());
+        List<RawScan> planned = planner.planRawScans(received, newTemplate());
+        assertEquals(1, planned.size());
+        assertArrayEquals(expected.get(0).startKey, planned.get(0).startKey);
+        assertArrayEquals(expected.get(0).endKey, planned.get(0).endKey);
+        assertEquals(2, planned.get(0).fuzzyKeys.size());
+        for (int i = 0; i < 2; i++) {
+            assertArrayEquals(expected.get(0).fuzzyKeys.get(i).getFirst(), planned.get(0).fuzzyKeys.get(i).getFirst());
+            assertArrayEquals(expected.get(0).fuzzyKeys.get(i).getSecond(), planned.get(0).fuzzyKeys.get(i).getSecond());
+        }
+    }
+
+    @Test
+    public void testPartitionRawScans() {
+        GTInfo info = newInfo();
+        List<GTScanRange> ranges = Lists.newArrayList();
+        for (char c = 'a'; c < 'd'; c++) {
+            GTRecord start = new GTRecord(info);
+            start.set(0, new ByteArray(new byte[] { (byte) c, 'a', 'a' }));
+            GTRecord end = new GTRecord(info);
+            end.set(0, new ByteArray(new byte[] { (byte) c, 'z', 'z' }));
+            ranges.add(new GTScanRange(start, end));
+        }
+        List<RawScan> scans = new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(ranges, newTemplate());
+
+        List<List<RawScan>> groups = RawScanPlanner.partitionRawScans(scans, 2);
+        assertEquals(2, groups.size());
+        assertEquals(Lists.newArrayList(scans.get(0)), groups.get(0));
+        assertEquals(Lists.newArrayList(scans.get(1), scans.get(2)), groups.get(1));
+
+        assertEquals(1, RawScanPlanner.partitionRawScans(scans, 1).size());
+    }
+
+    @Test
+    public void testPartitionSplitsByKey() {
+        GTInfo info = newInfo();
+        GTRecord start = new GTRecord(info);
+        start.set(0, new ByteArray(new byte[] { 'a', 'b', 'c' }));
+        GTRecord end = new GTRecord(info);
+        end.set(0, new ByteArray(new byte[] { 'x', 'y', 'z' }));
+        RawScan scan = new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(Lists.newArrayList(new GTScanRange(start, end)), newTemplate()).get(0);
+
+        List<List<RawScan>> groups = RawScanPlanner.partitionRawScans(Lists.newArrayList(scan), 4);
+        assertEquals(4, groups.size());
+        assertArrayEquals(scan.startKey, groups.get(0).get(0).startKey);
+        assertArrayEquals(scan.endKey, groups.get(3).get(0).endKey);
+        for (int i = 0; i < 4; i++) {
+            RawScan piece = groups.get(i).get(0);
+            assertEquals(1, groups.get(i).size());
+            assertTrue(Bytes.compareTo(piece.startKey, piece.endKey) < 0);
+            if (i > 0) {
+                assertArrayEquals(groups.get(i - 1).get(0).endKey, piece.startKey);
+            }
+            assertEquals(scan.hbaseColumns, piece.hbaseColumns);
+        }
+
+        // a single row can not be split
+        GTRecord row = new GTRecord(info);
+        row.set(0, new ByteArray(new byte[] { 'a', 'b', 'c' }));
+        row.set(1, new ByteArray(new byte[] { 'k', 'k' }));
+        RawScan point = new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(Lists.newArrayList(new GTScanRange(row, row)), newTemplate()).get(0);
+        groups = RawScanPlanner.partitionRawScans(Lists.newArrayList(point), 4);
+        assertEquals(1, groups.size());
+        assertSame(point, groups.get(0).get(0));
+    }
+
+    @Test
+    public void testSkipVisitedRows() {
+        List<RawScan> scans = threeScans();
+
+        // resume inside the second scan, the first is done
+        byte[] resumeKey = key(new byte[] { 'b', 'm', 'm', 'k', 'k' });
+        List<RawScan> resumed = RawScanPlanner.skipVisitedRows(scans, resumeKey);
+        assertEquals(2, resumed.size());
+        assertArrayEquals(Bytes.add(resumeKey, new byte[] { 0 }), resumed.get(0).startKey);
+        assertArrayEquals(scans.get(1).endKey, resumed.get(0).endKey);
+        assertSame(scans.get(2), resumed.get(1));
+        assertArrayEquals(key(new byte[] { 'b', 'a', 'a', 0, 0 }), scans.get(1).startKey); // not changed
+
+        // resume before any scan, nothing is skipped
+        assertEquals(scans, RawScanPlanner.skipVisitedRows(scans, key(new byte[] { 'A', 'A', 'A', 'A', 'A' })));
+
+        // resume at the last row of the last scan, nothing is left
+        byte ff = (byte) 0xff;
+        assertEquals(0, RawScanPlanner.skipVisitedRows(scans, key(new byte[] { 'c', 'z', 'z', ff, ff })).size());
+    }
+
+    @Test
+    public void testResumeFromPageKey() {
+        List<RawScan> scans = threeScans();
+        List<byte[]> rows = Lists.newArrayList();
+        for (char c = 'a'; c < 'd'; c++) {
+            for (char s = 'a'; s <= 'z'; s += 5) {
+                rows.add(key(new byte[] { (byte) c, 'm', 'm', (byte) s, (byte) s }));
+            }
+        }
+
+        // every page returns 4 rows and the last one as resume key, as the region does
+        List<byte[]> visited = Lists.newArrayList();
+        List<RawScan> toVisit = scans;
+        int pages = 0;
+        while (true) {
+            List<byte[]> page = Lists.newArrayList();
+            for (RawScan scan : toVisit) {
+                for (byte[] row : rows) {
+                    if (page.size() < 4 && Bytes.compareTo(scan.startKey, row) <= 0 && Bytes.compareTo(row, scan.endKey) < 0) {
+                        page.add(row);
+                    }
+                }
+            }
+            visited.addAll(page);
+            pages++;
+            if (page.size() < 4) {
+                break;
+            }
+            toVisit = RawScanPlanner.skipVisitedRows(scans, page.get(page.size() - 1));
+        }
+
+        assertEquals((rows.size() + 4) / 4, pages);
+        assertEquals(rows.size(), visited.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), visited.get(i));
+        }
+    }
+
+    private List<RawScan> threeScans() {
+        GTInfo info = newInfo();
+        List<GTScanRange> ranges = Lists.newArrayList();
+        for (char c = 'a'; c < 'd'; c++) {
+            GTRecord start = new GTRecord(info);
+            start.set(0, new ByteArray(new byte[] { (byte) c, 'a', 'a' }));
+            GTRecord end = new GTRecord(info);
+            end.set(0, new ByteArray(new byte[] { (byte) c, 'z', 'z' }));
+            ranges.add(new GTScanRange(start, end));
+        }
+        return new RawScanPlanner(info, CUBOID_ID, 10).planRawScans(ranges, newTemplate());
+    }
+
+    private byte[] key(byte[] body) {
+        return Bytes.add(new byte[] { 0, 0 }, Bytes.toBytes(CUBOID_ID), body);
+    }
+
+    private RawScan newTemplate() {
+        List<Pair<byte[], byte[]>> hbaseColumns = Lists.newArrayList();
+        hbaseColumns.add(Pair.newPair(Bytes.toBytes("F1"), Bytes.toBytes("M")));
+        List<Pair<byte[], byte[]>> noFuzzyKeys = Collections.emptyList();
+        return new RawScan(null, null, hbaseColumns, noFuzzyKeys, 100, 1024);
+    }
+
+    private GTInfo newInfo() {
+        return GTInfo.builder().setCodeSystem(new CubeCodeSystem(new DimensionEncoding[] { new FixedLenDimEnc(3), new FixedLenDimEnc(2) })) //
+                .setColumns(DataType.getType("varchar(10)"), DataType.getType("varchar(10)"), DataType.getType("bigint")) //
+                .setPrimaryKey(ImmutableBitSet.valueOf(0, 1)) //
+                .build();
+    }
+}
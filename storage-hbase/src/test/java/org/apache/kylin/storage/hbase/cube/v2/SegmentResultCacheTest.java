@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public class SegmentResultCacheTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testCacheAfterFullIteration() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        GTInfo info = newInfo();
+        ImmutableBitSet columns = ImmutableBitSet.valueOf(0, 1);
+        ByteArray key = new ByteArray(new byte[] { 1, 2, 3 });
+
+        List<String> expected = Lists.newArrayList();
+        List<GTRecord> input = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            input.add(newRecord(info, "k" + (i % 10), "v" + (i / 10)));
+            expected.add(input.get(i).toString());
+        }
+
+        // partially read, not cached
+        Iterator<GTRecord> it = SegmentResultCache.caching(config, key, columns, input.iterator());
+        it.next();
+        assertNull(SegmentResultCache.get(config, key, info, columns));
+
+        it = SegmentResultCache.caching(config, key, columns, input.iterator());
+        while (it.hasNext()) {
+            it.next();
+        }
+
+        IGTScanner cached = SegmentResultCache.get(config, key, info, columns);
+        List<String> actual = Lists.newArrayList();
+        for (GTRecord r : cached) {
+            actual.add(r.toString());
+        }
+        assertEquals(expected, actual);
+        assertEquals(0, cached.getScannedRowCount());
+    }
+
+    @Test
+    public void testTooBigNotCached() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.query.segment.cache.max.entry.size", "100");
+        GTInfo info = newInfo();
+        ImmutableBitSet columns = ImmutableBitSet.valueOf(0, 1);
+        ByteArray key = new ByteArray(new byte[] { 4, 5, 6 });
+
+        List<GTRecord> input = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            input.add(newRecord(info, "k" + (i % 10), "v" + (i / 10)));
+        }
+        Iterator<GTRecord> it = SegmentResultCache.caching(config, key, columns, input.iterator());
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(100, count);
+        assertFalse(it.hasNext());
+        assertNull(SegmentResultCache.get(config, key, info, columns));
+    }
+
+    @Test
+    public void testDisabledByBackdoorToggles() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        assertTrue(SegmentResultCache.isEnabled(config));
+        try {
+            BackdoorToggles.setToggles(ImmutableMap.of(BackdoorToggles.DEBUG_TOGGLE_COPROCESSOR_BEHAVIOR, "SCAN_FILTER"));
+            assertFalse(SegmentResultCache.isEnabled(config));
+            BackdoorToggles.setToggles(ImmutableMap.of(BackdoorToggles.DEBUG_TOGGLE_SHARD_ASSIGNMENT, "0#1"));
+            assertFalse(SegmentResultCache.isEnabled(config));
+            BackdoorToggles.setToggles(ImmutableMap.of(BackdoorToggles.DEBUG_TOGGLE_DISABLE_QUERY_CACHE, "true"));
+            assertFalse(SegmentResultCache.isEnabled(config));
+        } finally {
+            BackdoorToggles.cleanToggles();
+        }
+        assertTrue(SegmentResultCache.isEnabled(config));
+
+        config.setProperty("kylin.query.segment.cache.enabled", "false");
+        assertFalse(SegmentResultCache.isEnabled(config));
+    }
+
+    private GTRecord newRecord(GTInfo info, String k, String v) {
+        GTRecord r = new GTRecord(info);
+        r.set(0, new ByteArray(toBytes(k, 3)));
+        r.set(1, new ByteArray(toBytes(v, 2)));
+        return r;
+    }
+
+    private byte[] toBytes(String s, int len) {
+        byte[] bytes = new byte[len];
+        byte[] src = s.getBytes();
+        System.arraycopy(src, 0, bytes, 0, Math.min(len, src.length));
+        return bytes;
+    }
+
+    private GTInfo newInfo() {
+        return GTInfo.builder().setCodeSystem(new CubeCodeSystem(new DimensionEncoding[] { new FixedLenDimEnc(3), new FixedLenDimEnc(2) })) //
+                .setColumns(DataType.getType("varchar(10)"), DataType.getType("varchar(10)")) //
+                .setPrimaryKey(ImmutableBitSet.valueOf(0, 1)) //
+                .build();
+    }
+}
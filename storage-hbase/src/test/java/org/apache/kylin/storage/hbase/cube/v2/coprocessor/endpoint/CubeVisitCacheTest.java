@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CubeVisitCacheTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testKylinConfig() {
+        // the cache is region server wide, so the properties are made unique to this run
+        String props = "# " + UUID.randomUUID() + "\nkylin.query.endpoint.parallelism=3\n";
+        byte[] digest = CubeVisitCache.digest(props);
+
+        // a request with the digest only misses until the full payload is sent once
+        assertNull(CubeVisitCache.getKylinConfig(digest));
+        KylinConfig loaded = CubeVisitCache.loadKylinConfig(props);
+        assertEquals(3, loaded.getQueryEndpointParallelism());
+
+        assertSame(loaded, CubeVisitCache.getKylinConfig(digest));
+        assertSame(loaded, CubeVisitCache.loadKylinConfig(props));
+
+        // other properties have another digest
+        String changed = props.replace("=3", "=5");
+        assertNull(CubeVisitCache.getKylinConfig(CubeVisitCache.digest(changed)));
+        KylinConfig reloaded = CubeVisitCache.loadKylinConfig(changed);
+        assertNotSame(loaded, reloaded);
+        assertEquals(5, reloaded.getQueryEndpointParallelism());
+        assertSame(loaded, CubeVisitCache.getKylinConfig(digest));
+    }
+
+    @Test
+    public void testGTInfo() {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        buffer.put(new byte[] { 1, 2, 3 }); // the info may follow other bytes
+        int start = buffer.position();
+        GTInfo.serializer.serialize(newInfo(UUID.randomUUID().toString()), buffer);
+        int length = buffer.position() - start;
+        byte[] digest = CubeVisitCache.digest(buffer.array(), start, length);
+
+        // a request with the digest only misses until the full payload is sent once
+        assertNull(CubeVisitCache.getGTInfo(digest));
+
+        buffer.flip();
+        buffer.position(start);
+        GTInfo loaded = CubeVisitCache.loadGTInfo(buffer);
+        assertEquals(start + length, buffer.position());
+        assertSame(loaded, CubeVisitCache.getGTInfo(digest));
+
+        // a changed byte gives another digest
+        byte[] changed = Arrays.copyOfRange(buffer.array(), start, start + length);
+        changed[changed.length - 1]++;
+        assertNull(CubeVisitCache.getGTInfo(CubeVisitCache.digest(changed, 0, changed.length)));
+    }
+
+    private GTInfo newInfo(String tableName) {
+        return GTInfo.builder().setTableName(tableName).setCodeSystem(new CubeCodeSystem(new DimensionEncoding[] { new FixedLenDimEnc(3) })) //
+                .setColumns(DataType.getType("varchar(10)"), DataType.getType("bigint")) //
+                .setPrimaryKey(ImmutableBitSet.valueOf(0)) //
+                .build();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTAggregateScanner;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.CubeVisitService.InnerScannerAsIterator;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.CubeVisitService.TimedCellListIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class CubeVisitServiceTest extends LocalFileMetadataTestCase {
+
+    private File regionDir;
+    private HRegion region;
+    private GTInfo info;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+
+        regionDir = Files.createTempDir();
+        HTableDescriptor tableDesc = new HTableDescriptor(TableName.valueOf("CubeVisitServiceTest"));
+        tableDesc.addFamily(new HColumnDescriptor("F1"));
+        region = HRegion.createHRegion(new HRegionInfo(tableDesc.getTableName()), new Path(regionDir.getAbsolutePath()), HBaseConfiguration.create(), tableDesc);
+
+        info = UnitTestSupport.basicInfo();
+    }
+
+    @After
+    public void after() throws Exception {
+        HRegion.closeHRegion(region);
+        FileUtils.deleteQuietly(regionDir);
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testAggregatePartitions() throws IOException {
+        List<GTRecord> data = UnitTestSupport.mockupData(info, 1000);
+
+        // the same as aggregating all the rows at once
+        List<String> expected = toStrings(new GTAggregateScanner(new ListScanner(info, data), newAggrRequest()));
+
+        int nPartitions = 3;
+        List<TimedCellListIterator> inputs = Lists.newArrayList();
+        List<IGTScanner> partitionScanners = Lists.newArrayList();
+        for (int i = 0; i < nPartitions; i++) {
+            List<GTRecord> partition = data.subList(data.size() * i / nPartitions, data.size() * (i + 1) / nPartitions);
+            inputs.add(newInput(false, Long.MAX_VALUE));
+            partitionScanners.add(new GTAggregateScanner(new ListScanner(info, partition), newAggrRequest()));
+        }
+        IGTScanner merged = CubeVisitService.aggregatePartitions(region, inputs, partitionScanners, newAggrRequest());
+        assertEquals(expected, toStrings(merged));
+        assertTrue(expected.size() > 0 && expected.size() < data.size());
+    }
+
+    @Test
+    public void testCancelPartitionsOnFailure() throws IOException {
+        // times out in case the pool has a single thread, which runs the partitions one by one
+        final TimedCellListIterator endless = newInput(true, 10000);
+        final CountDownLatch readingStarted = new CountDownLatch(1);
+        final boolean[] readingStopped = new boolean[1];
+
+        // reads the region until it is aborted
+        ListScanner reading = new ListScanner(info, Collections.<GTRecord> emptyList()) {
+            @Override
+            public Iterator<GTRecord> iterator() {
+                readingStarted.countDown();
+                while (endless.hasNext()) {
+                    endless.next();
+                }
+                readingStopped[0] = true;
+                return super.iterator();
+            }
+        };
+        // fails once the other partition is reading
+        ListScanner failing = new ListScanner(info, Collections.<GTRecord> emptyList()) {
+            @Override
+            public Iterator<GTRecord> iterator() {
+                try {
+                    readingStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                throw new IllegalStateException("partition failed");
+            }
+        };
+
+        try {
+            CubeVisitService.aggregatePartitions(region, Lists.newArrayList(endless, newInput(false, Long.MAX_VALUE)), Lists.<IGTScanner> newArrayList(reading, failing), newAggrRequest());
+            fail("the failure of a partition should fail the region");
+        } catch (IOException e) {
+            assertEquals("partition failed", e.getCause().getMessage());
+        }
+
+        // returns only after the other partition stops reading the region, then the scanners are closed
+        assertTrue(readingStopped[0]);
+        assertTrue(reading.closed);
+        assertTrue(failing.closed);
+    }
+
+    @Test
+    public void testPartitionTimeout() throws IOException {
+        final TimedCellListIterator endless = newInput(true, 100);
+        ListScanner reading = new ListScanner(info, Collections.<GTRecord> emptyList()) {
+            @Override
+            public Iterator<GTRecord> iterator() {
+                while (endless.hasNext()) {
+                    endless.next();
+                }
+                return super.iterator();
+            }
+        };
+
+        IGTScanner merged = CubeVisitService.aggregatePartitions(region, Lists.<TimedCellListIterator> newArrayList(endless), Lists.<IGTScanner> newArrayList(reading), newAggrRequest());
+        assertEquals(0, toStrings(merged).size());
+        assertFalse(endless.isNormalComplete());
+        assertTrue(reading.closed);
+    }
+
+    private GTScanRequest newAggrRequest() {
+        return new GTScanRequest(info, null, new ImmutableBitSet(0, 5), new ImmutableBitSet(0, 1), new ImmutableBitSet(3, 5), new String[] { "SUM", "SUM" }, null, true, 0.5);
+    }
+
+    private List<String> toStrings(IGTScanner scanner) throws IOException {
+        List<String> result = Lists.newArrayList();
+        for (GTRecord record : scanner) {
+            result.add(record.toString());
+        }
+        scanner.close();
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * The input of a partition, an endless one keeps returning a row until aborted or timeout.
+     */
+    private TimedCellListIterator newInput(final boolean endless, long timeout) {
+        RegionScanner regionScanner = (RegionScanner) Proxy.newProxyInstance(RegionScanner.class.getClassLoader(), new Class<?>[] { RegionScanner.class }, new InvocationHandler() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("nextRaw".equals(method.getName())) {
+                    if (endless) {
+                        ((List<Cell>) args[0]).add(new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("F1"), Bytes.toBytes("M"), Bytes.toBytes("value")));
+                    }
+                    return endless;
+                }
+                return null;
+            }
+        });
+        return new TimedCellListIterator(Lists.<InnerScannerAsIterator> newArrayList(new InnerScannerAsIterator(regionScanner)), System.currentTimeMillis(), timeout);
+    }
+
+    private static class ListScanner implements IGTScanner {
+        final GTInfo info;
+        final List<GTRecord> records;
+        volatile boolean closed = false;
+
+        ListScanner(GTInfo info, List<GTRecord> records) {
+            this.info = info;
+            this.records = records;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public int getScannedRowCount() {
+            return records.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return records.iterator();
+        }
+    }
+}
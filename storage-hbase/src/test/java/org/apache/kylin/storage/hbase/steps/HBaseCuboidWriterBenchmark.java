@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.inmemcubing.ICuboidWriter;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Benchmark of HBaseCuboidWriter against PipelinedHBaseCuboidWriter, writing the base cuboid of a test cube
+ * to a mock HTable that takes a fixed time for every put call.
+ */
+public class HBaseCuboidWriterBenchmark {
+
+    static final Logger logger = LoggerFactory.getLogger(HBaseCuboidWriterBenchmark.class);
+
+    final int N = 200000;
+    final int ROUNDS = 5;
+    final long PUT_LATENCY_MILLIS = 50;
+
+    final CubeSegment segment;
+    final long cuboidId;
+    final List<GTRecord> records;
+
+    public HBaseCuboidWriterBenchmark() {
+        segment = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("test_kylin_cube_with_slr_ready").getFirstSegment();
+        cuboidId = Cuboid.getBaseCuboidId(segment.getCubeDesc());
+        records = generateRecords(segment, cuboidId, N, 1);
+    }
+
+    public void run() throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            String round = " " + (i + 1) + " of " + ROUNDS;
+            testWriter("HBaseCuboidWriter" + round, new HBaseCuboidWriter(segment, newMockHTable(null, PUT_LATENCY_MILLIS)));
+            testWriter("PipelinedHBaseCuboidWriter" + round, new PipelinedHBaseCuboidWriter(segment, newMockHTable(null, PUT_LATENCY_MILLIS)));
+        }
+    }
+
+    private void testWriter(String msg, ICuboidWriter writer) throws IOException {
+        long t = System.currentTimeMillis();
+        for (GTRecord record : records) {
+            writer.write(cuboidId, record);
+        }
+        writer.close();
+
+        t = System.currentTimeMillis() - t;
+        logger.info(msg + ", " + records.size() + " rows, " + speed(t) + "K row/sec");
+    }
+
+    private int speed(long t) {
+        double sec = (double) t / 1000;
+        return (int) (records.size() / sec / 1000);
+    }
+
+    /** random records of a cuboid, dimension values are taken from the segment dictionaries */
+    static List<GTRecord> generateRecords(CubeSegment segment, long cuboidId, int n, long seed) {
+        GTInfo info = CubeGridTable.newGTInfo(segment, cuboidId);
+        List<TblColRef> dims = Cuboid.findById(segment.getCubeDesc(), cuboidId).getColumns();
+        int nMeasures = segment.getCubeDesc().getMeasures().size();
+
+        List<Dictionary<String>> dicts = Lists.newArrayList();
+        for (TblColRef dim : dims) {
+            dicts.add(segment.getDictionary(dim));
+        }
+
+        Random rand = new Random(seed);
+        List<GTRecord> records = Lists.newArrayListWithCapacity(n);
+        Object[] values = new Object[dims.size() + nMeasures];
+        for (int r = 0; r < n; r++) {
+            for (int i = 0; i < dims.size(); i++) {
+                Dictionary<String> dict = dicts.get(i);
+                values[i] = dict == null ? String.valueOf(rand.nextInt(1000)) : dict.getValueFromId(dict.getMinId() + rand.nextInt(dict.getSize()));
+            }
+            for (int i = 0; i < nMeasures; i++) {
+                values[dims.size() + i] = String.valueOf(rand.nextInt(10000));
+            }
+            records.add(new GTRecord(info).setValues(values));
+        }
+        return records;
+    }
+
+    /** a mock HTable that waits on every put call, and keeps copies of the cells put if asked */
+    static HTableInterface newMockHTable(final List<KeyValue> cells, final long putLatencyMillis) {
+        return (HTableInterface) Proxy.newProxyInstance(HTableInterface.class.getClassLoader(), new Class<?>[] { HTableInterface.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("put".equals(method.getName()) && args[0] instanceof List) {
+                    Thread.sleep(putLatencyMillis);
+                    if (cells != null) {
+                        for (Object put : (List<?>) args[0]) {
+                            for (List<Cell> familyCells : ((Put) put).getFamilyCellMap().values()) {
+                                for (Cell cell : familyCells) {
+                                    cells.add(KeyValueUtil.ensureKeyValue(cell).clone());
+                                }
+                            }
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+        try {
+            new HBaseCuboidWriterBenchmark().run();
+        } finally {
+            LocalFileMetadataTestCase.staticCleanupTestMetadata();
+        }
+    }
+}
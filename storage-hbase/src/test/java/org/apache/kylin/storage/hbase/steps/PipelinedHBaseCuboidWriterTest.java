@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.kylin.storage.hbase.steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.inmemcubing.ICuboidWriter;
+import org.apache.kylin.gridtable.GTRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PipelinedHBaseCuboidWriterTest extends LocalFileMetadataTestCase {
+
+    private CubeSegment segment;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        segment = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready").getFirstSegment();
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSameCellsAsHBaseCuboidWriter() throws Exception {
+        long baseCuboidId = Cuboid.getBaseCuboidId(segment.getCubeDesc());
+        List<GTRecord> records = HBaseCuboidWriterBenchmark.generateRecords(segment, baseCuboidId, 5000, 1);
+
+        List<KeyValue> expected = Lists.newArrayList();
+        write(new HBaseCuboidWriter(segment, HBaseCuboidWriterBenchmark.newMockHTable(expected, 0)), baseCuboidId, records);
+
+        // small batches and slabs reused across them
+        List<KeyValue> actual = Lists.newArrayList();
+        write(new PipelinedHBaseCuboidWriter(segment, HBaseCuboidWriterBenchmark.newMockHTable(actual, 1), 100, 2), baseCuboidId, records);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            KeyValue e = expected.get(i);
+            KeyValue a = actual.get(i);
+            assertArrayEquals(CellUtil.cloneRow(e), CellUtil.cloneRow(a));
+            assertArrayEquals(CellUtil.cloneFamily(e), CellUtil.cloneFamily(a));
+            assertArrayEquals(CellUtil.cloneQualifier(e), CellUtil.cloneQualifier(a));
+            assertEquals(e.getTimestamp(), a.getTimestamp());
+            assertArrayEquals(CellUtil.cloneValue(e), CellUtil.cloneValue(a));
+        }
+    }
+
+    private void write(ICuboidWriter writer, long cuboidId, List<GTRecord> records) throws Exception {
+        for (GTRecord record : records) {
+            writer.write(cuboidId, record);
+        }
+        writer.close();
+    }
+}